@@ -0,0 +1,232 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import lombok.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Contraction hierarchy of a {@link CsrGraph}: the result of the offline preprocessing answering shortest path
+ * queries with {@link ContractionHierarchyQuery}.
+ * <p>
+ * The preprocessing, see {@link #build(CsrGraph)}, contracts the vertices one by one, from the least to the most
+ * important one, and adds a shortcut edge wherever removing a vertex would lengthen a shortest path between two of its
+ * neighbours. The rank of a vertex is its position in that order. Every edge, original or shortcut, is then kept
+ * in one of two CSR graphs:
+ * <ul>
+ *   <li>the upward edges, from a vertex to a higher ranked one, searched forward from the source, and</li>
+ *   <li>the downward edges, from a higher ranked vertex to a lower ranked one, stored reversed at their lower end and
+ *   searched backward from the target.</li>
+ * </ul>
+ * Every shortcut records the contracted vertex it bypasses, so paths are unpacked into original edges.
+ * <p>
+ * Hierarchies are immutable, saved to and loaded from a file with {@link #save(Path)} and {@link #load(Path)}, so the
+ * preprocessing runs once per graph.
+ */
+public final class ContractionHierarchy {
+
+  // "CH" and the version of the file format
+  private static final int FILE_MAGIC = 0x43480001;
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+  private final VertexIndex vertices;
+  private final int[] ranks;
+  final Edges upward;
+  final Edges downward;
+
+  ContractionHierarchy(VertexIndex vertices, int[] ranks, Edges upward, Edges downward) {
+    this.vertices = vertices;
+    this.ranks = ranks;
+    this.upward = upward;
+    this.downward = downward;
+  }
+
+  /**
+   * Runs the preprocessing of a graph.
+   *
+   * @param graph The graph.
+   * @return The contraction hierarchy of the graph.
+   * @throws IllegalStateException if a shortcut is longer than {@link Integer#MAX_VALUE}.
+   */
+  public static ContractionHierarchy build(@NonNull CsrGraph graph) {
+    return new ContractionHierarchyBuilder(graph).build();
+  }
+
+  public int getVertexCount() {
+    return ranks.length;
+  }
+
+  /**
+   * Returns the number of upward and downward edges, shortcuts included.
+   */
+  public int getEdgeCount() {
+    return upward.targets.length + downward.targets.length;
+  }
+
+  /**
+   * Returns the number of shortcut edges.
+   */
+  public int getShortcutCount() {
+    return upward.shortcutCount() + downward.shortcutCount();
+  }
+
+  /**
+   * Returns the position of a vertex in the contraction order.
+   */
+  public int rankOf(int vertex) {
+    return ranks[vertex];
+  }
+
+  /**
+   * Returns the id of the vertex with the given name, or -1 if the graph has no such vertex.
+   */
+  public int idOf(String name) {
+    return vertices.idOf(name);
+  }
+
+  /**
+   * Returns the name of the vertex with the given id.
+   *
+   * @throws IndexOutOfBoundsException if the graph has no such vertex.
+   */
+  public String nameOf(int vertex) {
+    return vertices.nameOf(vertex);
+  }
+
+  /**
+   * Saves the hierarchy, vertex names included. It is written to a temporary file first, forced to the disk and
+   * atomically moved in place.
+   *
+   * @param path The file.
+   * @throws IOException if the file can't be written.
+   */
+  public void save(@NonNull Path path) throws IOException {
+    final Path temporaryPath = path.resolveSibling(path.getFileName() + TEMPORARY_FILE_SUFFIX);
+    try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      out.writeInt(FILE_MAGIC);
+      out.writeInt(ranks.length);
+      for (int v = 0; v < ranks.length; v++) {
+        out.writeUTF(vertices.nameOf(v));
+      }
+      writeInts(out, ranks);
+      upward.write(out);
+      downward.write(out);
+      out.flush();
+      // Forced before the move, so a crash can't keep the rename but lose the content
+      channel.force(true);
+    }
+    Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    forceDirectory(path.toAbsolutePath().getParent());
+  }
+
+  // Makes the rename durable, where the platform can open a directory
+  private static void forceDirectory(Path directory) {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // Not supported on this platform, Windows notably
+    }
+  }
+
+  /**
+   * Loads a hierarchy saved with {@link #save(Path)}.
+   *
+   * @param path The file.
+   * @return The hierarchy.
+   * @throws IOException if the file can't be read or isn't a saved hierarchy.
+   */
+  public static ContractionHierarchy load(@NonNull Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != FILE_MAGIC) {
+        throw new IOException("Not a contraction hierarchy file: " + path);
+      }
+      final int vertexCount = in.readInt();
+      final VertexIndex vertices = new VertexIndex(vertexCount);
+      for (int v = 0; v < vertexCount; v++) {
+        if (vertices.intern(in.readUTF()) != v) {
+          throw new IOException("Duplicate vertex name in " + path);
+        }
+      }
+      final int[] ranks = readInts(in);
+      return new ContractionHierarchy(vertices, ranks, Edges.read(in), Edges.read(in));
+    }
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(DataInputStream in) throws IOException {
+    final int[] values = new int[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+
+  /**
+   * Edges of one direction of the hierarchy in CSR form, with the vertex bypassed by every shortcut, -1 for the
+   * original edges.
+   */
+  static final class Edges {
+
+    final int[] offsets;
+    final int[] targets;
+    final int[] weights;
+    final int[] middles;
+
+    Edges(int[] offsets, int[] targets, int[] weights, int[] middles) {
+      this.offsets = offsets;
+      this.targets = targets;
+      this.weights = weights;
+      this.middles = middles;
+    }
+
+    /**
+     * Returns the lightest edge of the given vertex leading to the given target, or -1.
+     */
+    int find(int vertex, int target) {
+      int found = -1;
+      for (int e = offsets[vertex]; e < offsets[vertex + 1]; e++) {
+        if (targets[e] == target && (found < 0 || weights[e] < weights[found])) {
+          found = e;
+        }
+      }
+      return found;
+    }
+
+    private int shortcutCount() {
+      int count = 0;
+      for (int middle : middles) {
+        if (middle >= 0) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      writeInts(out, offsets);
+      writeInts(out, targets);
+      writeInts(out, weights);
+      writeInts(out, middles);
+    }
+
+    private static Edges read(DataInputStream in) throws IOException {
+      return new Edges(readInts(in), readInts(in), readInts(in), readInts(in));
+    }
+  }
+}
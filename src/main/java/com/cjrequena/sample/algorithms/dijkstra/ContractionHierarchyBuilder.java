@@ -0,0 +1,348 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Preprocessing of a {@link ContractionHierarchy}.
+ * <p>
+ * The vertices are contracted in the order of their priority: the edge difference, i.e. the shortcuts their
+ * contraction adds minus the edges it removes, plus the number of their neighbours contracted already and their level,
+ * one more than the highest level of a contracted neighbour, which both spread the contractions evenly over the graph.
+ * The priorities of the neighbours of a vertex are updated once it is contracted, and the vertex with the lowest
+ * priority is evaluated again before it is contracted, and put back in the queue if it is no longer the lowest.
+ * <p>
+ * A shortcut from u to x through v is only added when a local witness search from u, avoiding v, finds no path to x
+ * as short. Witness searches give up after a number of settled vertices, adding a shortcut that may be superfluous but
+ * never a wrong one: {@value #SIMULATION_SETTLE_LIMIT} to estimate a priority, {@value #CONTRACTION_SETTLE_LIMIT} to
+ * contract a vertex.
+ */
+@Log4j2
+final class ContractionHierarchyBuilder {
+
+  private static final int SIMULATION_SETTLE_LIMIT = 16;
+  private static final int CONTRACTION_SETTLE_LIMIT = 512;
+  private static final int ARITY = 4;
+
+  private final CsrGraph graph;
+  private final int vertexCount;
+
+  // Edges of the graph being contracted, original ones first, then the shortcuts
+  private int[] edgeSources;
+  private int[] edgeTargets;
+  private int[] edgeWeights;
+  private int[] edgeMiddles;
+  private int edgeCount;
+  private final IntList[] outEdges;
+  private final IntList[] inEdges;
+
+  private final boolean[] contracted;
+  private final int[] contractedNeighbours;
+  private final int[] levels;
+  // Marks the neighbours already visited by the current forEachNeighbour
+  private final int[] neighbourStamps;
+  private int neighbourStamp;
+
+  // State of the witness searches, valid for the vertices stamped with the current search
+  private final IndexedDaryHeap witnessQueue;
+  private final long[] witnessDistances;
+  private final int[] witnessStamps;
+  private final int[] witnessTargetStamps;
+  private int witnessStamp;
+
+  ContractionHierarchyBuilder(CsrGraph graph) {
+    this.graph = graph;
+    this.vertexCount = graph.getVertexCount();
+    final int capacity = Math.max(16, graph.getEdgeCount() * 2);
+    this.edgeSources = new int[capacity];
+    this.edgeTargets = new int[capacity];
+    this.edgeWeights = new int[capacity];
+    this.edgeMiddles = new int[capacity];
+    this.outEdges = new IntList[vertexCount];
+    this.inEdges = new IntList[vertexCount];
+    for (int v = 0; v < vertexCount; v++) {
+      outEdges[v] = new IntList(graph.outDegree(v));
+      inEdges[v] = new IntList(4);
+    }
+    this.contracted = new boolean[vertexCount];
+    this.contractedNeighbours = new int[vertexCount];
+    this.levels = new int[vertexCount];
+    this.neighbourStamps = new int[vertexCount];
+    this.witnessQueue = new IndexedDaryHeap(vertexCount, ARITY);
+    this.witnessDistances = new long[vertexCount];
+    this.witnessStamps = new int[vertexCount];
+    this.witnessTargetStamps = new int[vertexCount];
+  }
+
+  ContractionHierarchy build() {
+    for (int v = 0; v < vertexCount; v++) {
+      for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+        // Self loops are never part of a shortest path
+        if (graph.target(e) != v) {
+          addEdge(v, graph.target(e), graph.weight(e), -1);
+        }
+      }
+    }
+    final int originalEdges = edgeCount;
+
+    final IndexedDaryHeap order = new IndexedDaryHeap(vertexCount, ARITY);
+    for (int v = 0; v < vertexCount; v++) {
+      order.insertOrDecrease(v, priorityOf(v));
+    }
+    final int[] ranks = new int[vertexCount];
+    int rank = 0;
+    while (!order.isEmpty()) {
+      final int v = order.pollMin();
+      final long priority = priorityOf(v);
+      if (!order.isEmpty() && priority > order.minKey()) {
+        order.insertOrDecrease(v, priority);
+        continue;
+      }
+      contract(v, false);
+      contracted[v] = true;
+      ranks[v] = rank++;
+      forEachNeighbour(v, neighbour -> {
+        // Edges to contracted vertices are never followed again
+        outEdges[neighbour].removeIf(edge -> contracted[edgeTargets[edge]]);
+        inEdges[neighbour].removeIf(edge -> contracted[edgeSources[edge]]);
+        contractedNeighbours[neighbour]++;
+        levels[neighbour] = Math.max(levels[neighbour], levels[v] + 1);
+      });
+      forEachNeighbour(v, neighbour -> order.update(neighbour, priorityOf(neighbour)));
+    }
+    log.debug("Contracted {} vertices, {} original edges, {} shortcuts", vertexCount, originalEdges, edgeCount - originalEdges);
+    return new ContractionHierarchy(graph.getVertices(), ranks, split(ranks, true), split(ranks, false));
+  }
+
+  private long priorityOf(int v) {
+    int removedEdges = 0;
+    for (int i = 0; i < outEdges[v].size; i++) {
+      if (!contracted[edgeTargets[outEdges[v].values[i]]]) {
+        removedEdges++;
+      }
+    }
+    for (int i = 0; i < inEdges[v].size; i++) {
+      if (!contracted[edgeSources[inEdges[v].values[i]]]) {
+        removedEdges++;
+      }
+    }
+    return (long) contract(v, true) - removedEdges + contractedNeighbours[v] + levels[v];
+  }
+
+  /**
+   * Adds the shortcuts needed to contract a vertex, or only counts them.
+   *
+   * @return The number of shortcuts.
+   */
+  private int contract(int v, boolean simulate) {
+    int shortcuts = 0;
+    final IntList in = inEdges[v];
+    final IntList out = outEdges[v];
+    for (int i = 0; i < in.size; i++) {
+      final int inEdge = in.values[i];
+      final int u = edgeSources[inEdge];
+      if (contracted[u]) {
+        continue;
+      }
+      long maxOutWeight = -1;
+      for (int j = 0; j < out.size; j++) {
+        final int x = edgeTargets[out.values[j]];
+        if (!contracted[x] && x != u) {
+          maxOutWeight = Math.max(maxOutWeight, edgeWeights[out.values[j]]);
+        }
+      }
+      if (maxOutWeight < 0) {
+        continue;
+      }
+      final long inWeight = edgeWeights[inEdge];
+      witnessSearch(u, v, inWeight + maxOutWeight, simulate ? SIMULATION_SETTLE_LIMIT : CONTRACTION_SETTLE_LIMIT);
+      for (int j = 0; j < out.size; j++) {
+        final int outEdge = out.values[j];
+        final int x = edgeTargets[outEdge];
+        if (contracted[x] || x == u) {
+          continue;
+        }
+        final long viaWeight = inWeight + edgeWeights[outEdge];
+        if (witnessDistanceOf(x) <= viaWeight) {
+          continue;
+        }
+        shortcuts++;
+        if (!simulate) {
+          addShortcut(u, x, viaWeight, v);
+        }
+      }
+    }
+    return shortcuts;
+  }
+
+  // Dijkstra from the source over the vertices not contracted yet, avoiding the excluded one, up to the max distance
+  // or until every vertex the excluded one leads to is settled
+  private void witnessSearch(int source, int excluded, long maxDistance, int settleLimit) {
+    if (++witnessStamp == 0) {
+      // Wrapped around: stamps of old searches could match again
+      Arrays.fill(witnessStamps, 0);
+      Arrays.fill(witnessTargetStamps, 0);
+      witnessStamp = 1;
+    }
+    int remainingTargets = 0;
+    final IntList targets = outEdges[excluded];
+    for (int i = 0; i < targets.size; i++) {
+      final int x = edgeTargets[targets.values[i]];
+      if (!contracted[x] && x != source && witnessTargetStamps[x] != witnessStamp) {
+        witnessTargetStamps[x] = witnessStamp;
+        remainingTargets++;
+      }
+    }
+    witnessQueue.clear();
+    reachWitness(source, 0);
+    witnessQueue.insertOrDecrease(source, 0);
+    int settled = 0;
+    while (remainingTargets > 0 && !witnessQueue.isEmpty() && settled < settleLimit && witnessQueue.minKey() <= maxDistance) {
+      final int u = witnessQueue.pollMin();
+      settled++;
+      if (witnessTargetStamps[u] == witnessStamp) {
+        remainingTargets--;
+      }
+      final long distance = witnessDistances[u];
+      final IntList out = outEdges[u];
+      for (int i = 0; i < out.size; i++) {
+        final int edge = out.values[i];
+        final int x = edgeTargets[edge];
+        if (contracted[x] || x == excluded) {
+          continue;
+        }
+        final long alternate = distance + edgeWeights[edge];
+        if (alternate < witnessDistanceOf(x)) {
+          reachWitness(x, alternate);
+          witnessQueue.insertOrDecrease(x, alternate);
+        }
+      }
+    }
+  }
+
+  private long witnessDistanceOf(int vertex) {
+    return witnessStamps[vertex] == witnessStamp ? witnessDistances[vertex] : Long.MAX_VALUE;
+  }
+
+  private void reachWitness(int vertex, long distance) {
+    witnessStamps[vertex] = witnessStamp;
+    witnessDistances[vertex] = distance;
+  }
+
+  private void addShortcut(int u, int x, long weight, int middle) {
+    if (weight > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Shortcut from %s to %s is too long: %d".formatted(graph.nameOf(u), graph.nameOf(x), weight));
+    }
+    // Lower an existing edge between the same vertices instead of adding a parallel one
+    final IntList out = outEdges[u];
+    for (int i = 0; i < out.size; i++) {
+      final int edge = out.values[i];
+      if (edgeTargets[edge] == x) {
+        if (weight < edgeWeights[edge]) {
+          edgeWeights[edge] = (int) weight;
+          edgeMiddles[edge] = middle;
+        }
+        return;
+      }
+    }
+    addEdge(u, x, (int) weight, middle);
+  }
+
+  private void addEdge(int source, int target, int weight, int middle) {
+    if (edgeCount == edgeSources.length) {
+      final int capacity = edgeCount * 2;
+      edgeSources = Arrays.copyOf(edgeSources, capacity);
+      edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+      edgeWeights = Arrays.copyOf(edgeWeights, capacity);
+      edgeMiddles = Arrays.copyOf(edgeMiddles, capacity);
+    }
+    edgeSources[edgeCount] = source;
+    edgeTargets[edgeCount] = target;
+    edgeWeights[edgeCount] = weight;
+    edgeMiddles[edgeCount] = middle;
+    outEdges[source].add(edgeCount);
+    inEdges[target].add(edgeCount);
+    edgeCount++;
+  }
+
+  // Visits every vertex not contracted yet linked to the given one, once even if linked both ways
+  private void forEachNeighbour(int v, IntConsumer action) {
+    neighbourStamp++;
+    for (int i = 0; i < outEdges[v].size; i++) {
+      visitNeighbour(edgeTargets[outEdges[v].values[i]], action);
+    }
+    for (int i = 0; i < inEdges[v].size; i++) {
+      visitNeighbour(edgeSources[inEdges[v].values[i]], action);
+    }
+  }
+
+  private void visitNeighbour(int neighbour, IntConsumer action) {
+    if (!contracted[neighbour] && neighbourStamps[neighbour] != neighbourStamp) {
+      neighbourStamps[neighbour] = neighbourStamp;
+      action.accept(neighbour);
+    }
+  }
+
+  /**
+   * Builds the upward edges, stored at their source, or the downward edges, stored reversed at their target.
+   */
+  private ContractionHierarchy.Edges split(int[] ranks, boolean upward) {
+    final int[] offsets = new int[vertexCount + 1];
+    for (int e = 0; e < edgeCount; e++) {
+      final boolean up = ranks[edgeSources[e]] < ranks[edgeTargets[e]];
+      if (up == upward) {
+        offsets[(upward ? edgeSources[e] : edgeTargets[e]) + 1]++;
+      }
+    }
+    for (int v = 0; v < vertexCount; v++) {
+      offsets[v + 1] += offsets[v];
+    }
+    final int[] next = Arrays.copyOf(offsets, vertexCount);
+    final int[] targets = new int[offsets[vertexCount]];
+    final int[] weights = new int[targets.length];
+    final int[] middles = new int[targets.length];
+    for (int e = 0; e < edgeCount; e++) {
+      final boolean up = ranks[edgeSources[e]] < ranks[edgeTargets[e]];
+      if (up == upward) {
+        final int index = next[upward ? edgeSources[e] : edgeTargets[e]]++;
+        targets[index] = upward ? edgeTargets[e] : edgeSources[e];
+        weights[index] = edgeWeights[e];
+        middles[index] = edgeMiddles[e];
+      }
+    }
+    return new ContractionHierarchy.Edges(offsets, targets, weights, middles);
+  }
+
+  /**
+   * Growable list of edge ids.
+   */
+  private static final class IntList {
+
+    private int[] values;
+    private int size;
+
+    private IntList(int capacity) {
+      values = new int[Math.max(capacity, 1)];
+    }
+
+    private void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    private void removeIf(IntPredicate filter) {
+      int kept = 0;
+      for (int i = 0; i < size; i++) {
+        if (!filter.test(values[i])) {
+          values[kept++] = values[i];
+        }
+      }
+      size = kept;
+    }
+  }
+}
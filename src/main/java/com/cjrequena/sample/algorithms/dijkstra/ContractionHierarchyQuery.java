@@ -0,0 +1,249 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path queries over a {@link ContractionHierarchy}.
+ * <p>
+ * A query runs two Dijkstra searches that only climb the hierarchy: forward from the source over the upward edges and
+ * backward from the target over the downward edges. Every shortest path goes up then down the ranks, so it is found
+ * through the vertex both searches reached with the lowest sum of distances, and each search stops once its lowest
+ * key reaches the best sum found. The searches settle a few hundred vertices even on large road networks, instead of
+ * a large part of the graph.
+ * <p>
+ * The searches also stall on demand: the edges of a settled vertex aren't relaxed when a higher ranked vertex the
+ * search already reached leads down to it at a lower distance, as it then isn't on a shortest path of the search.
+ * <p>
+ * As in {@link PointToPointSearch}, the state of the searches is stamped with a query number, so a query takes time
+ * proportional to the vertices it touches. An instance runs one query at a time; concurrent queries on the same
+ * hierarchy use one instance each.
+ */
+public class ContractionHierarchyQuery {
+
+  private static final int ARITY = 4;
+
+  private final ContractionHierarchy hierarchy;
+  private final Direction forward;
+  private final Direction backward;
+  private int query;
+  private int settled;
+
+  public ContractionHierarchyQuery(@NonNull ContractionHierarchy hierarchy) {
+    this.hierarchy = hierarchy;
+    this.forward = new Direction(hierarchy.upward, hierarchy.downward, hierarchy.getVertexCount());
+    this.backward = new Direction(hierarchy.downward, hierarchy.upward, hierarchy.getVertexCount());
+  }
+
+  /**
+   * Returns the distance from the source to the target, or {@link ShortestPathTree#UNREACHABLE}.
+   *
+   * @param source The source vertex id.
+   * @param target The target vertex id.
+   */
+  public long distance(int source, int target) {
+    final int meeting = search(source, target);
+    return meeting < 0 ? ShortestPathTree.UNREACHABLE : forward.distanceOf(meeting) + backward.distanceOf(meeting);
+  }
+
+  /**
+   * Returns a shortest path from the source to the target, its shortcuts unpacked into original edges.
+   *
+   * @param source The source vertex id.
+   * @param target The target vertex id.
+   * @return The shortest path, not found if the target is unreachable.
+   */
+  public ShortestPath path(int source, int target) {
+    final int meeting = search(source, target);
+    if (meeting < 0) {
+      return new ShortestPath(source, target, ShortestPathTree.UNREACHABLE, new int[0], settled);
+    }
+    final Path path = new Path();
+    path.add(source);
+    // Upward edges from the source to the meeting vertex, collected backward from the meeting vertex
+    int[] upwardEdges = new int[64];
+    int upwardCount = 0;
+    for (int v = meeting; v != source; v = forward.previous[v]) {
+      if (upwardCount == upwardEdges.length) {
+        upwardEdges = Arrays.copyOf(upwardEdges, upwardCount * 2);
+      }
+      upwardEdges[upwardCount++] = forward.previousEdges[v];
+    }
+    int from = source;
+    for (int i = upwardCount - 1; i >= 0; i--) {
+      final int edge = upwardEdges[i];
+      final int to = hierarchy.upward.targets[edge];
+      unpack(path, from, to, hierarchy.upward.middles[edge]);
+      from = to;
+    }
+    // Downward edges from the meeting vertex to the target, stored reversed at their lower end
+    for (int v = meeting; v != target; v = backward.previous[v]) {
+      final int edge = backward.previousEdges[v];
+      final int to = backward.previous[v];
+      unpack(path, v, to, hierarchy.downward.middles[edge]);
+    }
+    return new ShortestPath(source, target, forward.distanceOf(meeting) + backward.distanceOf(meeting), path.toArray(), settled);
+  }
+
+  public ContractionHierarchy getHierarchy() {
+    return hierarchy;
+  }
+
+  /**
+   * Runs the upward searches.
+   *
+   * @return The vertex of the shortest path with the highest rank, or -1 if the target is unreachable.
+   */
+  private int search(int source, int target) {
+    if (source < 0 || source >= hierarchy.getVertexCount() || target < 0 || target >= hierarchy.getVertexCount()) {
+      throw new IllegalArgumentException("Unknown vertex id %d or %d".formatted(source, target));
+    }
+    final int stamp = nextQuery();
+    forward.start(stamp, source);
+    backward.start(stamp, target);
+    long best = source == target ? 0 : ShortestPathTree.UNREACHABLE;
+    int meeting = source == target ? source : -1;
+    settled = 0;
+    boolean forwardTurn = true;
+    while (true) {
+      final boolean forwardDone = forward.queue.isEmpty() || forward.queue.minKey() >= best;
+      final boolean backwardDone = backward.queue.isEmpty() || backward.queue.minKey() >= best;
+      if (forwardDone && backwardDone) {
+        break;
+      }
+      final Direction search = forwardDone ? backward : backwardDone ? forward : forwardTurn ? forward : backward;
+      final Direction other = search == forward ? backward : forward;
+      forwardTurn = !forwardTurn;
+
+      final int u = search.queue.pollMin();
+      settled++;
+      final long distance = search.distances[u];
+      if (search.isStalled(u, distance)) {
+        continue;
+      }
+      final ContractionHierarchy.Edges edges = search.edges;
+      for (int e = edges.offsets[u], end = edges.offsets[u + 1]; e < end; e++) {
+        final int v = edges.targets[e];
+        final long alternate = distance + edges.weights[e];
+        if (alternate < search.distanceOf(v)) {
+          search.reach(v, alternate, u, e);
+          search.queue.insertOrDecrease(v, alternate);
+          final long otherDistance = other.distanceOf(v);
+          if (otherDistance != ShortestPathTree.UNREACHABLE && alternate + otherDistance < best) {
+            best = alternate + otherDistance;
+            meeting = v;
+          }
+        }
+      }
+    }
+    forward.queue.clear();
+    backward.queue.clear();
+    return meeting;
+  }
+
+  /**
+   * Appends the original vertices of the edge from one vertex to another, but the first one, to the path.
+   */
+  private void unpack(Path path, int from, int to, int middle) {
+    if (middle < 0) {
+      path.add(to);
+      return;
+    }
+    // The bypassed vertex ranks below both ends: the edge to it is a downward one, the edge from it an upward one
+    final int down = hierarchy.downward.find(middle, from);
+    final int up = hierarchy.upward.find(middle, to);
+    unpack(path, from, middle, hierarchy.downward.middles[down]);
+    unpack(path, middle, to, hierarchy.upward.middles[up]);
+  }
+
+  private int nextQuery() {
+    if (++query == 0) {
+      // Wrapped around: stamps of old queries could match again
+      forward.resetStamps();
+      backward.resetStamps();
+      query = 1;
+    }
+    return query;
+  }
+
+  /**
+   * State of the upward search in one direction. The distance and previous vertex of a vertex are only valid when its
+   * stamp is the current query.
+   */
+  private static final class Direction {
+
+    private final ContractionHierarchy.Edges edges;
+    // Edges of the other direction, from higher ranked vertices down to the vertex they are stored at
+    private final ContractionHierarchy.Edges stallEdges;
+    private final IndexedDaryHeap queue;
+    private final long[] distances;
+    private final int[] previous;
+    private final int[] previousEdges;
+    private final int[] stamps;
+    private int stamp;
+
+    private Direction(ContractionHierarchy.Edges edges, ContractionHierarchy.Edges stallEdges, int vertexCount) {
+      this.edges = edges;
+      this.stallEdges = stallEdges;
+      this.queue = new IndexedDaryHeap(vertexCount, ARITY);
+      this.distances = new long[vertexCount];
+      this.previous = new int[vertexCount];
+      this.previousEdges = new int[vertexCount];
+      this.stamps = new int[vertexCount];
+    }
+
+    private void start(int stamp, int root) {
+      this.stamp = stamp;
+      queue.clear();
+      reach(root, 0, -1, -1);
+      queue.insertOrDecrease(root, 0);
+    }
+
+    private void resetStamps() {
+      Arrays.fill(stamps, 0);
+    }
+
+    private long distanceOf(int vertex) {
+      return stamps[vertex] == stamp ? distances[vertex] : ShortestPathTree.UNREACHABLE;
+    }
+
+    // Whether a higher ranked vertex reached already leads down to the vertex at a lower distance
+    private boolean isStalled(int vertex, long distance) {
+      for (int e = stallEdges.offsets[vertex], end = stallEdges.offsets[vertex + 1]; e < end; e++) {
+        final long higherDistance = distanceOf(stallEdges.targets[e]);
+        if (higherDistance != ShortestPathTree.UNREACHABLE && higherDistance + stallEdges.weights[e] < distance) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void reach(int vertex, long distance, int previousVertex, int previousEdge) {
+      stamps[vertex] = stamp;
+      distances[vertex] = distance;
+      previous[vertex] = previousVertex;
+      previousEdges[vertex] = previousEdge;
+    }
+  }
+
+  /**
+   * Growable array of the vertex ids of an unpacked path.
+   */
+  private static final class Path {
+
+    private int[] vertices = new int[16];
+    private int size;
+
+    private void add(int vertex) {
+      if (size == vertices.length) {
+        vertices = Arrays.copyOf(vertices, size * 2);
+      }
+      vertices[size++] = vertex;
+    }
+
+    private int[] toArray() {
+      return Arrays.copyOf(vertices, size);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import lombok.NonNull;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * {@link Heuristic} of graphs whose vertices have plane coordinates, e.g. road networks: the straight line distance
+ * between two vertices, times the lowest cost of an edge per unit of length.
+ * <p>
+ * It is admissible, and consistent, as long as no edge costs less than {@code costPerUnit} times the straight line
+ * distance between its ends.
+ */
+public final class CoordinateHeuristic implements Heuristic {
+
+  private final double[] xs;
+  private final double[] ys;
+  private final double costPerUnit;
+
+  /**
+   * Creates a heuristic.
+   *
+   * @param xs The x coordinate of every vertex, by vertex id.
+   * @param ys The y coordinate of every vertex, by vertex id.
+   * @param costPerUnit The lowest cost of an edge per unit of length.
+   */
+  public CoordinateHeuristic(@NonNull double[] xs, @NonNull double[] ys, double costPerUnit) {
+    if (xs.length != ys.length) {
+      throw new IllegalArgumentException("Every vertex must have both coordinates.");
+    }
+    if (!(costPerUnit >= 0)) {
+      throw new IllegalArgumentException("The cost per unit can't be negative.");
+    }
+    this.xs = xs;
+    this.ys = ys;
+    this.costPerUnit = costPerUnit;
+  }
+
+  /**
+   * Creates a heuristic from the coordinates of the vertices of a graph, looked up by vertex name.
+   *
+   * @param graph The graph.
+   * @param x Returns the x coordinate of a vertex name.
+   * @param y Returns the y coordinate of a vertex name.
+   * @param costPerUnit The lowest cost of an edge per unit of length.
+   */
+  public static CoordinateHeuristic of(CsrGraph graph, ToDoubleFunction<String> x, ToDoubleFunction<String> y, double costPerUnit) {
+    final double[] xs = new double[graph.getVertexCount()];
+    final double[] ys = new double[graph.getVertexCount()];
+    for (int v = 0; v < xs.length; v++) {
+      xs[v] = x.applyAsDouble(graph.nameOf(v));
+      ys[v] = y.applyAsDouble(graph.nameOf(v));
+    }
+    return new CoordinateHeuristic(xs, ys, costPerUnit);
+  }
+
+  @Override
+  public long estimate(int vertex, int target) {
+    // Rounded down, so the estimate stays below the integer distances
+    return (long) (Math.hypot(xs[vertex] - xs[target], ys[vertex] - ys[target]) * costPerUnit);
+  }
+}
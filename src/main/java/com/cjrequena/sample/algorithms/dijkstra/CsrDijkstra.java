@@ -0,0 +1,86 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Dijkstra's algorithm over a {@link CsrGraph}, on a selectable {@link QueueType}.
+ * <p>
+ * Every search returns its own {@link ShortestPathTree}; the graph is never modified. The queue is allocated once and
+ * reused from one search to the next, so an instance runs one search at a time.
+ */
+public class CsrDijkstra {
+
+  private final CsrGraph graph;
+  private final VertexQueue queue;
+
+  /**
+   * Creates a search on an indexed 4-ary heap.
+   */
+  public CsrDijkstra(CsrGraph graph) {
+    this(graph, QueueType.QUATERNARY_HEAP);
+  }
+
+  /**
+   * Creates a search.
+   *
+   * @param graph The graph.
+   * @param queueType The queue of the search.
+   */
+  public CsrDijkstra(@NonNull CsrGraph graph, @NonNull QueueType queueType) {
+    this.graph = graph;
+    this.queue = queueType.create(graph.getVertexCount());
+  }
+
+  /**
+   * Runs Dijkstra's algorithm from the vertex with the given name.
+   *
+   * @throws IllegalArgumentException if the graph has no such vertex.
+   */
+  public ShortestPathTree search(String sourceName) {
+    final int source = graph.idOf(sourceName);
+    if (source < 0) {
+      throw new IllegalArgumentException("Graph doesn't contain start vertex \"%s\"".formatted(sourceName));
+    }
+    return search(source);
+  }
+
+  /**
+   * Runs Dijkstra's algorithm from the given vertex, settling every vertex it reaches.
+   *
+   * @param source The source vertex id.
+   * @return The shortest path tree of the source.
+   */
+  public ShortestPathTree search(int source) {
+    final int vertexCount = graph.getVertexCount();
+    if (source < 0 || source >= vertexCount) {
+      throw new IllegalArgumentException("Unknown vertex id " + source);
+    }
+    final long[] distances = new long[vertexCount];
+    final int[] previous = new int[vertexCount];
+    Arrays.fill(distances, ShortestPathTree.UNREACHABLE);
+    Arrays.fill(previous, -1);
+
+    distances[source] = 0;
+    // Left over by a search that failed half way, if any
+    queue.clear();
+    queue.insertOrDecrease(source, 0);
+    int settled = 0;
+    while (!queue.isEmpty()) {
+      final int u = queue.pollMin();
+      settled++;
+      final long distance = distances[u];
+      for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+        final int v = graph.target(e);
+        final long alternate = distance + graph.weight(e);
+        if (alternate < distances[v]) {
+          distances[v] = alternate;
+          previous[v] = u;
+          queue.insertOrDecrease(v, alternate);
+        }
+      }
+    }
+    return new ShortestPathTree(graph, source, distances, previous, settled);
+  }
+}
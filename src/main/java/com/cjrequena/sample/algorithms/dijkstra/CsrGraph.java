@@ -0,0 +1,170 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+/**
+ * Immutable directed and weighted graph in compressed sparse row (CSR) form.
+ * <p>
+ * The vertices are interned to dense int ids, 0 to n - 1, in order of first appearance in the edges. The edges leaving
+ * vertex {@code v} are the indexes {@code firstEdge(v)} to {@code endEdge(v) - 1} of two parallel int arrays, the
+ * targets and the weights, so iterating the neighbours of a vertex reads two contiguous runs of memory, without boxing
+ * nor pointer chasing. The graph takes {@code 4 * (n + 1) + 8 * m} bytes for n vertices and m edges, plus the vertex
+ * names, against a {@code HashMap} entry, a boxed weight and a vertex object per edge and per vertex in {@link Graph}.
+ * <p>
+ * Edges keep their input order within every vertex. Unlike {@link Graph}, parallel edges between the same vertices
+ * are all kept, so searches follow the shortest of them.
+ * <p>
+ * Typical use:
+ * <pre>{@code
+ * CsrGraph graph = CsrGraph.of(edges);
+ * int u = graph.idOf("a");
+ * for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+ *   relax(u, graph.target(e), graph.weight(e));
+ * }
+ * }</pre>
+ */
+public final class CsrGraph {
+
+  private final VertexIndex vertices;
+  // Edges of vertex v are offsets[v] to offsets[v + 1] - 1
+  private final int[] offsets;
+  private final int[] targets;
+  private final int[] weights;
+
+  private CsrGraph(VertexIndex vertices, int[] offsets, int[] targets, int[] weights) {
+    this.vertices = vertices;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.weights = weights;
+  }
+
+  /**
+   * Builds a graph from a set of edges: the vertices are interned, the edges of every vertex counted, then every edge
+   * is placed in the run of its source.
+   *
+   * @param edges The edges, with non-negative distances.
+   * @return The graph.
+   * @throws IllegalArgumentException if an edge has a negative distance.
+   */
+  public static CsrGraph of(Graph.Edge[] edges) {
+    final VertexIndex vertices = new VertexIndex(Math.max(16, edges.length / 2));
+    final int[] sources = new int[edges.length];
+    final int[] destinations = new int[edges.length];
+    for (int i = 0; i < edges.length; i++) {
+      final Graph.Edge edge = edges[i];
+      if (edge.distance < 0) {
+        throw new IllegalArgumentException("Negative distance from %s to %s".formatted(edge.vertex1, edge.vertex2));
+      }
+      sources[i] = vertices.intern(edge.vertex1);
+      destinations[i] = vertices.intern(edge.vertex2);
+    }
+    vertices.trim();
+
+    final int vertexCount = vertices.size();
+    final int[] offsets = new int[vertexCount + 1];
+    for (int source : sources) {
+      offsets[source + 1]++;
+    }
+    for (int v = 0; v < vertexCount; v++) {
+      offsets[v + 1] += offsets[v];
+    }
+    // Next free edge index in the run of every vertex
+    final int[] next = new int[vertexCount];
+    System.arraycopy(offsets, 0, next, 0, vertexCount);
+    final int[] targets = new int[edges.length];
+    final int[] weights = new int[edges.length];
+    for (int i = 0; i < edges.length; i++) {
+      final int edge = next[sources[i]]++;
+      targets[edge] = destinations[i];
+      weights[edge] = edges[i].distance;
+    }
+    return new CsrGraph(vertices, offsets, targets, weights);
+  }
+
+  /**
+   * Builds the reverse of this graph: the same vertex ids, with every edge from v to w turned into an edge from w to v,
+   * as the backward searches from a target need.
+   *
+   * @return The reversed graph.
+   */
+  public CsrGraph reversed() {
+    final int vertexCount = getVertexCount();
+    final int[] reversedOffsets = new int[vertexCount + 1];
+    for (int target : targets) {
+      reversedOffsets[target + 1]++;
+    }
+    for (int v = 0; v < vertexCount; v++) {
+      reversedOffsets[v + 1] += reversedOffsets[v];
+    }
+    final int[] next = new int[vertexCount];
+    System.arraycopy(reversedOffsets, 0, next, 0, vertexCount);
+    final int[] reversedTargets = new int[targets.length];
+    final int[] reversedWeights = new int[targets.length];
+    for (int v = 0; v < vertexCount; v++) {
+      for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+        final int edge = next[targets[e]]++;
+        reversedTargets[edge] = v;
+        reversedWeights[edge] = weights[e];
+      }
+    }
+    return new CsrGraph(vertices, reversedOffsets, reversedTargets, reversedWeights);
+  }
+
+  VertexIndex getVertices() {
+    return vertices;
+  }
+
+  public int getVertexCount() {
+    return offsets.length - 1;
+  }
+
+  public int getEdgeCount() {
+    return targets.length;
+  }
+
+  /**
+   * Returns the id of the vertex with the given name, or -1 if the graph has no such vertex.
+   */
+  public int idOf(String name) {
+    return vertices.idOf(name);
+  }
+
+  /**
+   * Returns the name of the vertex with the given id.
+   *
+   * @throws IndexOutOfBoundsException if the graph has no such vertex.
+   */
+  public String nameOf(int vertex) {
+    return vertices.nameOf(vertex);
+  }
+
+  /**
+   * Returns the index of the first edge leaving the given vertex.
+   */
+  public int firstEdge(int vertex) {
+    return offsets[vertex];
+  }
+
+  /**
+   * Returns the index after the last edge leaving the given vertex.
+   */
+  public int endEdge(int vertex) {
+    return offsets[vertex + 1];
+  }
+
+  public int outDegree(int vertex) {
+    return offsets[vertex + 1] - offsets[vertex];
+  }
+
+  /**
+   * Returns the vertex the given edge leads to.
+   */
+  public int target(int edge) {
+    return targets[edge];
+  }
+
+  /**
+   * Returns the distance of the given edge.
+   */
+  public int weight(int edge) {
+    return weights[edge];
+  }
+}
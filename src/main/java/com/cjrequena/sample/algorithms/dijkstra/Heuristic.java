@@ -0,0 +1,26 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+/**
+ * Estimate of the distance between two vertices, guiding the A* searches of a {@link PointToPointSearch}.
+ * <p>
+ * The estimate must be admissible, i.e. never above the actual distance, for the searches to find shortest paths.
+ * Consistent estimates, never decreasing by more than the weight of an edge along it, also settle every vertex at
+ * most once.
+ */
+@FunctionalInterface
+public interface Heuristic {
+
+  /**
+   * The heuristic of Dijkstra's algorithm, estimating every distance as 0.
+   */
+  Heuristic ZERO = (vertex, target) -> 0;
+
+  /**
+   * Returns a lower bound of the distance from a vertex to the target.
+   *
+   * @param vertex The vertex id.
+   * @param target The target vertex id.
+   * @return The estimate, not negative.
+   */
+  long estimate(int vertex, int target);
+}
@@ -0,0 +1,157 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed d-ary min-heap of int vertex ids keyed by long distances, with a true decrease-key.
+ * <p>
+ * The heap is laid out in two parallel arrays, the vertices and their keys by heap position, plus the heap position of
+ * every vertex, so decreasing a key moves the vertex up from its position in O(log_d n) without searching it, and no
+ * entry is ever boxed. Wider heaps are shallower: inserts and decrease-keys, the bulk of the operations of Dijkstra's
+ * algorithm, get cheaper, while every removal compares more children per level, within a cache line for d up to 8.
+ */
+public final class IndexedDaryHeap implements VertexQueue {
+
+  // log2 of the arity: the children of position i are (i << shift) + 1 to (i << shift) + arity
+  private final int shift;
+  private final int[] heapVertices;
+  private final long[] heapKeys;
+  // Heap position of every vertex, -1 for vertices not in the heap
+  private final int[] positions;
+  private int size;
+
+  /**
+   * Creates a heap.
+   *
+   * @param vertexCount The number of vertices: ids are 0 to vertexCount - 1.
+   * @param arity The number of children of every heap node, a power of two.
+   */
+  public IndexedDaryHeap(int vertexCount, int arity) {
+    if (arity < 2 || Integer.bitCount(arity) != 1) {
+      throw new IllegalArgumentException("The arity must be a power of two, at least 2: " + arity);
+    }
+    this.shift = Integer.numberOfTrailingZeros(arity);
+    this.heapVertices = new int[vertexCount];
+    this.heapKeys = new long[vertexCount];
+    this.positions = new int[vertexCount];
+    Arrays.fill(positions, -1);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  public boolean contains(int vertex) {
+    return positions[vertex] >= 0;
+  }
+
+  @Override
+  public boolean insertOrDecrease(int vertex, long key) {
+    final int position = positions[vertex];
+    if (position < 0) {
+      siftUp(size++, vertex, key);
+      return true;
+    }
+    if (key < heapKeys[position]) {
+      siftUp(position, vertex, key);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Inserts a vertex, or changes its key, up or down, if it is already queued.
+   *
+   * @param vertex The vertex id.
+   * @param key The new key of the vertex.
+   */
+  public void update(int vertex, long key) {
+    final int position = positions[vertex];
+    if (position < 0 || key < heapKeys[position]) {
+      insertOrDecrease(vertex, key);
+    } else if (key > heapKeys[position]) {
+      siftDown(position, vertex, key);
+    }
+  }
+
+  @Override
+  public long minKey() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return heapKeys[0];
+  }
+
+  @Override
+  public int pollMin() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    final int min = heapVertices[0];
+    positions[min] = -1;
+    if (--size > 0) {
+      siftDown(0, heapVertices[size], heapKeys[size]);
+    }
+    return min;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      positions[heapVertices[i]] = -1;
+    }
+    size = 0;
+  }
+
+  // Moves the hole at the given position up until the key fits, then places the vertex in it
+  private void siftUp(int position, int vertex, long key) {
+    while (position > 0) {
+      final int parent = (position - 1) >>> shift;
+      final long parentKey = heapKeys[parent];
+      if (parentKey <= key) {
+        break;
+      }
+      place(position, heapVertices[parent], parentKey);
+      position = parent;
+    }
+    place(position, vertex, key);
+  }
+
+  // Moves the hole at the given position down until the key fits, then places the vertex in it
+  private void siftDown(int position, int vertex, long key) {
+    while (true) {
+      final int firstChild = (position << shift) + 1;
+      if (firstChild >= size) {
+        break;
+      }
+      final int endChild = Math.min(firstChild + (1 << shift), size);
+      int minChild = firstChild;
+      long minChildKey = heapKeys[firstChild];
+      for (int child = firstChild + 1; child < endChild; child++) {
+        if (heapKeys[child] < minChildKey) {
+          minChild = child;
+          minChildKey = heapKeys[child];
+        }
+      }
+      if (key <= minChildKey) {
+        break;
+      }
+      place(position, heapVertices[minChild], minChildKey);
+      position = minChild;
+    }
+    place(position, vertex, key);
+  }
+
+  private void place(int position, int vertex, long key) {
+    heapVertices[position] = vertex;
+    heapKeys[position] = key;
+    positions[vertex] = position;
+  }
+}
@@ -0,0 +1,226 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path searches between two vertices of a {@link CsrGraph}, stopping as soon as the path is known instead of
+ * settling every vertex reachable from the source:
+ * <ul>
+ *   <li>{@link #dijkstra(int, int)} stops once the target is settled.</li>
+ *   <li>{@link #bidirectional(int, int)} grows a forward search from the source and a backward search from the target,
+ *   over the {@link CsrGraph#reversed() reversed graph}, until their frontiers can't improve the best path through a
+ *   vertex both reached. It settles about half of the vertices of a one-way search on road-like graphs.</li>
+ *   <li>{@link #aStar(int, int, Heuristic)} orders the vertices by their distance from the source plus an estimate of
+ *   their distance to the target, so the search heads to the target.</li>
+ * </ul>
+ * The state of the searches is stamped with a query number instead of being reset, so a query takes time proportional
+ * to the vertices it touches, not to the size of the graph. An instance runs one search at a time.
+ */
+public class PointToPointSearch {
+
+  private static final int ARITY = 4;
+
+  private final CsrGraph graph;
+  private final Direction forward;
+  // Created by the first bidirectional search
+  private Direction backward;
+  private int query;
+
+  public PointToPointSearch(@NonNull CsrGraph graph) {
+    this.graph = graph;
+    this.forward = new Direction(graph);
+  }
+
+  /**
+   * Runs Dijkstra's algorithm from the source until the target is settled.
+   *
+   * @param source The source vertex id.
+   * @param target The target vertex id.
+   * @return The shortest path, not found if the target is unreachable.
+   */
+  public ShortestPath dijkstra(int source, int target) {
+    return aStar(source, target, Heuristic.ZERO);
+  }
+
+  /**
+   * Runs A* from the source until the target is settled.
+   *
+   * @param source The source vertex id.
+   * @param target The target vertex id.
+   * @param heuristic An admissible estimate of the distances to the target.
+   * @return The shortest path, not found if the target is unreachable.
+   */
+  public ShortestPath aStar(int source, int target, @NonNull Heuristic heuristic) {
+    checkVertices(source, target);
+    final Direction search = forward;
+    search.start(nextQuery(), source, heuristic.estimate(source, target));
+    int settled = 0;
+    while (!search.queue.isEmpty()) {
+      final int u = search.queue.pollMin();
+      settled++;
+      if (u == target) {
+        search.queue.clear();
+        return new ShortestPath(source, target, search.distances[u], search.pathFromRoot(u), settled);
+      }
+      final long distance = search.distances[u];
+      for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+        final int v = graph.target(e);
+        final long alternate = distance + graph.weight(e);
+        if (alternate < search.distanceOf(v)) {
+          search.reach(v, alternate, u);
+          // Vertices settled already are queued again if an inconsistent heuristic underestimated them
+          search.queue.insertOrDecrease(v, alternate + heuristic.estimate(v, target));
+        }
+      }
+    }
+    return notFound(source, target, settled);
+  }
+
+  /**
+   * Runs a bidirectional Dijkstra search between the source and the target, expanding the smaller frontier first.
+   *
+   * @param source The source vertex id.
+   * @param target The target vertex id.
+   * @return The shortest path, not found if the target is unreachable.
+   */
+  public ShortestPath bidirectional(int source, int target) {
+    checkVertices(source, target);
+    if (backward == null) {
+      backward = new Direction(graph.reversed());
+    }
+    final int stamp = nextQuery();
+    forward.start(stamp, source, 0);
+    backward.start(stamp, target, 0);
+    long best = source == target ? 0 : ShortestPathTree.UNREACHABLE;
+    int meeting = source == target ? source : -1;
+    int settled = 0;
+    while (!forward.queue.isEmpty() && !backward.queue.isEmpty()) {
+      // Any path through an unsettled vertex is at least as long as the two lowest keys
+      if (forward.queue.minKey() + backward.queue.minKey() >= best) {
+        break;
+      }
+      final Direction search = forward.queue.size() <= backward.queue.size() ? forward : backward;
+      final Direction other = search == forward ? backward : forward;
+      final int u = search.queue.pollMin();
+      settled++;
+      final long distance = search.distances[u];
+      final CsrGraph edges = search.graph;
+      for (int e = edges.firstEdge(u), end = edges.endEdge(u); e < end; e++) {
+        final int v = edges.target(e);
+        final long alternate = distance + edges.weight(e);
+        if (alternate < search.distanceOf(v)) {
+          search.reach(v, alternate, u);
+          search.queue.insertOrDecrease(v, alternate);
+          final long otherDistance = other.distanceOf(v);
+          if (otherDistance != ShortestPathTree.UNREACHABLE && alternate + otherDistance < best) {
+            best = alternate + otherDistance;
+            meeting = v;
+          }
+        }
+      }
+    }
+    forward.queue.clear();
+    backward.queue.clear();
+    if (meeting < 0) {
+      return notFound(source, target, settled);
+    }
+    // Source to meeting vertex, then the backward tree from the meeting vertex to the target
+    final int[] head = forward.pathFromRoot(meeting);
+    int length = head.length;
+    for (int v = meeting; v != target; v = backward.previous[v]) {
+      length++;
+    }
+    final int[] path = Arrays.copyOf(head, length);
+    for (int v = meeting, i = head.length; v != target; i++) {
+      v = backward.previous[v];
+      path[i] = v;
+    }
+    return new ShortestPath(source, target, best, path, settled);
+  }
+
+  public CsrGraph getGraph() {
+    return graph;
+  }
+
+  private int nextQuery() {
+    if (++query == 0) {
+      // Wrapped around: stamps of old queries could match again
+      forward.resetStamps();
+      if (backward != null) {
+        backward.resetStamps();
+      }
+      query = 1;
+    }
+    return query;
+  }
+
+  private void checkVertices(int source, int target) {
+    if (source < 0 || source >= graph.getVertexCount() || target < 0 || target >= graph.getVertexCount()) {
+      throw new IllegalArgumentException("Unknown vertex id %d or %d".formatted(source, target));
+    }
+  }
+
+  private static ShortestPath notFound(int source, int target, int settled) {
+    return new ShortestPath(source, target, ShortestPathTree.UNREACHABLE, new int[0], settled);
+  }
+
+  /**
+   * State of a search in one direction. The distance and previous vertex of a vertex are only valid when its stamp is
+   * the current query.
+   */
+  private static final class Direction {
+
+    private final CsrGraph graph;
+    private final IndexedDaryHeap queue;
+    private final long[] distances;
+    private final int[] previous;
+    private final int[] stamps;
+    private int stamp;
+    private int root;
+
+    private Direction(CsrGraph graph) {
+      this.graph = graph;
+      this.queue = new IndexedDaryHeap(graph.getVertexCount(), ARITY);
+      this.distances = new long[graph.getVertexCount()];
+      this.previous = new int[graph.getVertexCount()];
+      this.stamps = new int[graph.getVertexCount()];
+    }
+
+    private void start(int stamp, int root, long rootKey) {
+      this.stamp = stamp;
+      this.root = root;
+      queue.clear();
+      reach(root, 0, -1);
+      queue.insertOrDecrease(root, rootKey);
+    }
+
+    private void resetStamps() {
+      Arrays.fill(stamps, 0);
+    }
+
+    private long distanceOf(int vertex) {
+      return stamps[vertex] == stamp ? distances[vertex] : ShortestPathTree.UNREACHABLE;
+    }
+
+    private void reach(int vertex, long distance, int previousVertex) {
+      stamps[vertex] = stamp;
+      distances[vertex] = distance;
+      previous[vertex] = previousVertex;
+    }
+
+    // Vertex ids from the root of the search to the given reached vertex
+    private int[] pathFromRoot(int vertex) {
+      int length = 1;
+      for (int v = vertex; v != root; v = previous[v]) {
+        length++;
+      }
+      final int[] path = new int[length];
+      for (int v = vertex, i = length - 1; i >= 0; v = previous[v], i--) {
+        path[i] = v;
+      }
+      return path;
+    }
+  }
+}
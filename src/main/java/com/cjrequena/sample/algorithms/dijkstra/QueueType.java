@@ -0,0 +1,35 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+import java.util.function.IntFunction;
+
+/**
+ * The vertex queues a {@link CsrDijkstra} search can run on.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public enum QueueType {
+
+  /**
+   * Red-black tree with remove and add as decrease-key, as {@link Graph} does.
+   */
+  TREE_SET(TreeSetVertexQueue::new),
+  /**
+   * Indexed binary heap.
+   */
+  BINARY_HEAP(vertexCount -> new IndexedDaryHeap(vertexCount, 2)),
+  /**
+   * Indexed 4-ary heap, usually the fastest for sparse graphs.
+   */
+  QUATERNARY_HEAP(vertexCount -> new IndexedDaryHeap(vertexCount, 4));
+
+  private final IntFunction<VertexQueue> factory;
+
+  /**
+   * Creates an empty queue for the given number of vertices.
+   */
+  public VertexQueue create(int vertexCount) {
+    return factory.apply(vertexCount);
+  }
+}
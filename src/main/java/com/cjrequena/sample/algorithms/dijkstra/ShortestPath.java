@@ -0,0 +1,54 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+/**
+ * Result of a point-to-point search: a shortest path between two vertices and its distance.
+ */
+public final class ShortestPath {
+
+  private final int source;
+  private final int target;
+  private final long distance;
+  private final int[] path;
+  private final int settledVertices;
+
+  ShortestPath(int source, int target, long distance, int[] path, int settledVertices) {
+    this.source = source;
+    this.target = target;
+    this.distance = distance;
+    this.path = path;
+    this.settledVertices = settledVertices;
+  }
+
+  public int getSource() {
+    return source;
+  }
+
+  public int getTarget() {
+    return target;
+  }
+
+  /**
+   * Returns the distance from the source to the target, or {@link ShortestPathTree#UNREACHABLE}.
+   */
+  public long getDistance() {
+    return distance;
+  }
+
+  public boolean isFound() {
+    return distance != ShortestPathTree.UNREACHABLE;
+  }
+
+  /**
+   * Returns the vertex ids from the source to the target, or an empty array if the target is unreachable.
+   */
+  public int[] getPath() {
+    return path.clone();
+  }
+
+  /**
+   * Returns the number of vertices the search settled, i.e. removed from its queues.
+   */
+  public int getSettledVertices() {
+    return settledVertices;
+  }
+}
@@ -0,0 +1,217 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import lombok.NonNull;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers shortest path queries concurrently over one shared, immutable {@link CsrGraph}.
+ * <p>
+ * All the state of a query lives in the arrays of its {@link ShortestPathTree}, plus the queue of the search running
+ * it. The searches, each with its own queue, are pooled and borrowed by one query at a time, so any number of threads
+ * may query the engine, and {@link #submit(int)} runs queries on the thread pool of the engine.
+ * <p>
+ * The trees of the recent sources are kept in a {@link ShortestPathTreeCache}, so repeated sources are answered
+ * without searching. Concurrent queries of the same uncached source may both search it. Many-to-many queries, see
+ * {@link #distances(int[], int[])}, search every distinct source once, in parallel.
+ */
+@Log4j2
+public class ShortestPathQueryEngine implements Closeable {
+
+  public static final int DEFAULT_CACHE_SIZE = 64;
+
+  private final CsrGraph graph;
+  private final QueueType queueType;
+  private final ExecutorService executor;
+  private final ShortestPathTreeCache cache;
+  private final Queue<CsrDijkstra> idleSearches = new ConcurrentLinkedQueue<>();
+  private final LongAdder searches = new LongAdder();
+  private final int maxSearchesInFlight;
+
+  /**
+   * Creates an engine with one thread per available processor, 4-ary heaps and a cache of
+   * {@value #DEFAULT_CACHE_SIZE} trees.
+   */
+  public ShortestPathQueryEngine(CsrGraph graph) {
+    this(graph, QueueType.QUATERNARY_HEAP, Runtime.getRuntime().availableProcessors(), DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates an engine and its thread pool.
+   *
+   * @param graph The graph.
+   * @param queueType The queue of the searches.
+   * @param threads The number of threads running the submitted queries.
+   * @param cacheSize The number of trees cached, 0 to disable the cache.
+   */
+  public ShortestPathQueryEngine(@NonNull CsrGraph graph, @NonNull QueueType queueType, int threads, int cacheSize) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("The number of threads must be positive.");
+    }
+    this.graph = graph;
+    this.queueType = queueType;
+    this.cache = new ShortestPathTreeCache(cacheSize);
+    this.maxSearchesInFlight = threads * 2;
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+      final Thread thread = new Thread(runnable, "shortest-path-query-" + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Returns the shortest path tree of a source, from the cache or else searched on the calling thread.
+   *
+   * @param source The source vertex id.
+   * @throws IllegalArgumentException if the graph has no such vertex.
+   */
+  public ShortestPathTree tree(int source) {
+    final ShortestPathTree cached = cache.get(source);
+    return cached != null ? cached : search(source);
+  }
+
+  /**
+   * Returns the shortest path tree of a source, from the cache or else searched on the thread pool of the engine.
+   *
+   * @param source The source vertex id.
+   * @return A future completed with the tree, or completed exceptionally if the graph has no such vertex.
+   * @throws RejectedExecutionException if the engine is closed.
+   */
+  public CompletableFuture<ShortestPathTree> submit(int source) {
+    final ShortestPathTree cached = cache.get(source);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+    return CompletableFuture.supplyAsync(() -> search(source), executor);
+  }
+
+  /**
+   * Returns the distance between two vertices, or {@link ShortestPathTree#UNREACHABLE}, see {@link #tree(int)}.
+   */
+  public long distance(int source, int target) {
+    return tree(source).distanceTo(target);
+  }
+
+  /**
+   * Returns the distances from many sources to many targets. Every distinct source is searched once, or taken from
+   * the cache, and the searches run in parallel on the thread pool of the engine. At most two searches per thread are
+   * in flight: the rows of a source are filled as soon as its tree completes, and the tree is dropped then, so the
+   * memory used doesn't grow with the number of sources.
+   *
+   * @param sources The source vertex ids, possibly repeated.
+   * @param targets The target vertex ids.
+   * @return The distance from {@code sources[i]} to {@code targets[j]} at {@code [i][j]}, or
+   * {@link ShortestPathTree#UNREACHABLE}.
+   * @throws IllegalArgumentException if the graph has no such source or target.
+   * @throws RejectedExecutionException if the engine is closed.
+   */
+  public long[][] distances(@NonNull int[] sources, @NonNull int[] targets) {
+    for (int target : targets) {
+      if (target < 0 || target >= graph.getVertexCount()) {
+        throw new IllegalArgumentException("Unknown vertex id " + target);
+      }
+    }
+    // The rows of every distinct source, in the order of its first occurrence
+    final Map<Integer, List<Integer>> rowsBySource = new LinkedHashMap<>();
+    for (int i = 0; i < sources.length; i++) {
+      rowsBySource.computeIfAbsent(sources[i], source -> new ArrayList<>(1)).add(i);
+    }
+    final long[][] distances = new long[sources.length][targets.length];
+    final Queue<Map.Entry<List<Integer>, CompletableFuture<ShortestPathTree>>> inFlight = new ArrayDeque<>(maxSearchesInFlight);
+    for (Map.Entry<Integer, List<Integer>> entry : rowsBySource.entrySet()) {
+      if (inFlight.size() == maxSearchesInFlight) {
+        fillRows(distances, inFlight.remove(), targets);
+      }
+      inFlight.add(Map.entry(entry.getValue(), submit(entry.getKey())));
+    }
+    while (!inFlight.isEmpty()) {
+      fillRows(distances, inFlight.remove(), targets);
+    }
+    return distances;
+  }
+
+  public CsrGraph getGraph() {
+    return graph;
+  }
+
+  public ShortestPathTreeCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Returns the number of searches run so far, i.e. the queries not answered from the cache.
+   */
+  public long getSearches() {
+    return searches.sum();
+  }
+
+  /**
+   * Stops accepting submitted queries and waits for the running ones.
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        log.warn("Shortest path queries still running after close");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Searches a source not found in the cache and caches its tree
+  private ShortestPathTree search(int source) {
+    final CsrDijkstra search = borrowSearch();
+    try {
+      final ShortestPathTree tree = search.search(source);
+      searches.increment();
+      cache.put(tree);
+      return tree;
+    } finally {
+      idleSearches.offer(search);
+    }
+  }
+
+  private static void fillRows(long[][] distances, Map.Entry<List<Integer>, CompletableFuture<ShortestPathTree>> rows, int[] targets) {
+    final ShortestPathTree tree = join(rows.getValue());
+    for (int row : rows.getKey()) {
+      for (int j = 0; j < targets.length; j++) {
+        distances[row][j] = tree.distanceTo(targets[j]);
+      }
+    }
+  }
+
+  private CsrDijkstra borrowSearch() {
+    final CsrDijkstra search = idleSearches.poll();
+    return search != null ? search : new CsrDijkstra(graph, queueType);
+  }
+
+  private static ShortestPathTree join(CompletableFuture<ShortestPathTree> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+}
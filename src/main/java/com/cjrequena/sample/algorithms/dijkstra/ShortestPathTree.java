@@ -0,0 +1,93 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a single-source search over a {@link CsrGraph}: the distance from the source to every vertex and the
+ * previous vertex on a shortest path to it. Immutable once returned by the search.
+ */
+public final class ShortestPathTree {
+
+  /**
+   * Distance of the vertices the source doesn't reach.
+   */
+  public static final long UNREACHABLE = Long.MAX_VALUE;
+
+  private final CsrGraph graph;
+  private final int source;
+  private final long[] distances;
+  // Previous vertex on a shortest path, -1 for the source and the unreached vertices
+  private final int[] previous;
+  private final int settledVertices;
+
+  ShortestPathTree(CsrGraph graph, int source, long[] distances, int[] previous, int settledVertices) {
+    this.graph = graph;
+    this.source = source;
+    this.distances = distances;
+    this.previous = previous;
+    this.settledVertices = settledVertices;
+  }
+
+  public int getSource() {
+    return source;
+  }
+
+  /**
+   * Returns the number of vertices the search settled, i.e. removed from its queue.
+   */
+  public int getSettledVertices() {
+    return settledVertices;
+  }
+
+  /**
+   * Returns the distance from the source to the given vertex, or {@link #UNREACHABLE}.
+   */
+  public long distanceTo(int vertex) {
+    return distances[vertex];
+  }
+
+  public boolean isReachable(int vertex) {
+    return distances[vertex] != UNREACHABLE;
+  }
+
+  /**
+   * Returns the previous vertex on a shortest path from the source to the given vertex, or -1 for the source and the
+   * unreached vertices.
+   */
+  public int previousOf(int vertex) {
+    return previous[vertex];
+  }
+
+  /**
+   * Returns a shortest path from the source to the given vertex.
+   *
+   * @return The vertex ids from the source to the vertex, or an empty array if the vertex is unreached.
+   */
+  public int[] pathTo(int vertex) {
+    if (!isReachable(vertex)) {
+      return new int[0];
+    }
+    int length = 1;
+    for (int v = vertex; v != source; v = previous[v]) {
+      length++;
+    }
+    final int[] path = new int[length];
+    for (int v = vertex, i = length - 1; i >= 0; v = previous[v], i--) {
+      path[i] = v;
+    }
+    return path;
+  }
+
+  /**
+   * Returns the names of the vertices of a shortest path from the source to the given vertex, see {@link #pathTo(int)}.
+   */
+  public List<String> namedPathTo(int vertex) {
+    final int[] path = pathTo(vertex);
+    final List<String> names = new ArrayList<>(path.length);
+    for (int v : path) {
+      names.add(graph.nameOf(v));
+    }
+    return names;
+  }
+}
@@ -0,0 +1,83 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded LRU cache of single-source search results, keyed by source vertex id.
+ * <p>
+ * Every tree takes 12 bytes per vertex of the graph, so the number of entries bounds the memory of the cache.
+ */
+public class ShortestPathTreeCache {
+
+  private final int maxEntries;
+
+  // Access ordered, the eldest entry is the least recently used one
+  private final LinkedHashMap<Integer, ShortestPathTree> entries;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxEntries The maximum number of cached trees.
+   */
+  public ShortestPathTreeCache(int maxEntries) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("The max entries can't be negative.");
+    }
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, ShortestPathTree> eldest) {
+        if (size() > ShortestPathTreeCache.this.maxEntries) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached tree of a source and marks it as the most recently used one.
+   *
+   * @return The tree, or null if it isn't cached.
+   */
+  public synchronized ShortestPathTree get(int source) {
+    final ShortestPathTree tree = entries.get(source);
+    if (tree == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return tree;
+  }
+
+  /**
+   * Caches a tree as the most recently used one, evicting the least recently used tree if the cache is full.
+   */
+  public synchronized void put(ShortestPathTree tree) {
+    if (maxEntries > 0) {
+      entries.put(tree.getSource(), tree);
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+}
@@ -0,0 +1,65 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * Vertex queue backed by a {@link TreeSet} ordered by key, then vertex id, as in {@link Graph#dijkstra(String)}: a
+ * decrease-key removes the vertex and adds it back with its new key. Kept as the baseline of the heaps.
+ */
+public final class TreeSetVertexQueue implements VertexQueue {
+
+  private final long[] keys;
+  private final TreeSet<Integer> tree;
+
+  public TreeSetVertexQueue(int vertexCount) {
+    this.keys = new long[vertexCount];
+    this.tree = new TreeSet<>((a, b) -> keys[a] != keys[b] ? Long.compare(keys[a], keys[b]) : Integer.compare(a, b));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return tree.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return tree.size();
+  }
+
+  @Override
+  public boolean insertOrDecrease(int vertex, long key) {
+    // The vertex must be removed with the key it was added with
+    if (tree.contains(vertex)) {
+      if (keys[vertex] <= key) {
+        return false;
+      }
+      tree.remove(vertex);
+    }
+    keys[vertex] = key;
+    tree.add(vertex);
+    return true;
+  }
+
+  @Override
+  public long minKey() {
+    if (tree.isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return keys[tree.first()];
+  }
+
+  @Override
+  public int pollMin() {
+    final Integer min = tree.pollFirst();
+    if (min == null) {
+      throw new NoSuchElementException();
+    }
+    return min;
+  }
+
+  @Override
+  public void clear() {
+    tree.clear();
+  }
+}
@@ -0,0 +1,112 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import java.util.Arrays;
+
+/**
+ * Interning table of the vertex names: maps every name to a dense int id, 0 to n - 1, in order of first appearance.
+ * <p>
+ * Open addressing with linear probing over an int array of ids, so a lookup hashes the name once and compares it with
+ * the names of the probed ids, without boxing.
+ */
+final class VertexIndex {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private String[] names;
+  // id + 1 of the vertex in every slot, 0 for empty slots
+  private int[] slots;
+  private int size;
+
+  VertexIndex(int expectedSize) {
+    names = new String[Math.max(expectedSize, 1)];
+    slots = new int[tableSizeFor(expectedSize)];
+  }
+
+  /**
+   * Returns the id of the given name, assigning the next id to names seen for the first time.
+   */
+  int intern(String name) {
+    int slot = slotOf(name);
+    if (slots[slot] != 0) {
+      return slots[slot] - 1;
+    }
+    if ((size + 1) * 2 > slots.length) {
+      rehash(slots.length * 2);
+      slot = slotOf(name);
+    }
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+    }
+    names[size] = name;
+    slots[slot] = ++size;
+    return size - 1;
+  }
+
+  /**
+   * Returns the id of the given name, or -1 if the name was never interned.
+   */
+  int idOf(String name) {
+    return slots[slotOf(name)] - 1;
+  }
+
+  String nameOf(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("Unknown vertex id " + id);
+    }
+    return names[id];
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Releases the spare capacity of the table, once every vertex is interned.
+   */
+  void trim() {
+    if (names.length > size) {
+      names = Arrays.copyOf(names, Math.max(size, 1));
+    }
+    if (tableSizeFor(size) < slots.length) {
+      rehash(tableSizeFor(size));
+    }
+  }
+
+  // Slot holding the name, or the empty slot where it would be inserted
+  private int slotOf(String name) {
+    final int mask = slots.length - 1;
+    int slot = mix(name.hashCode()) & mask;
+    while (slots[slot] != 0 && !names[slots[slot] - 1].equals(name)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash(int capacity) {
+    final int[] rehashed = new int[capacity];
+    final int mask = capacity - 1;
+    for (int id = 0; id < size; id++) {
+      int slot = mix(names[id].hashCode()) & mask;
+      while (rehashed[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      rehashed[slot] = id + 1;
+    }
+    slots = rehashed;
+  }
+
+  // Spreads the low entropy of the string hash codes of similar names, e.g. "v1", "v2"
+  private static int mix(int hash) {
+    final int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  // Power of two keeping the load factor at or below 1/2
+  private static int tableSizeFor(int expectedSize) {
+    final long minimum = Math.max(MIN_CAPACITY, 2L * expectedSize);
+    if (minimum > 1 << 30) {
+      throw new IllegalArgumentException("Too many vertices: " + expectedSize);
+    }
+    return Integer.highestOneBit((int) minimum - 1) << 1;
+  }
+}
@@ -0,0 +1,44 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+/**
+ * Priority queue of the vertices of a search, keyed by their tentative distance, with decrease-key.
+ * <p>
+ * Implementations keep one entry per vertex id, 0 to n - 1, and are reused from one search to the next through
+ * {@link #clear()}. They are not thread safe.
+ */
+public interface VertexQueue {
+
+  boolean isEmpty();
+
+  int size();
+
+  /**
+   * Inserts a vertex, or lowers its key if it is already queued with a higher key.
+   *
+   * @param vertex The vertex id.
+   * @param key The new key of the vertex.
+   * @return true if the vertex was inserted or its key lowered, false if it is queued with a key at or below the new
+   * one.
+   */
+  boolean insertOrDecrease(int vertex, long key);
+
+  /**
+   * Returns the key of the vertex with the lowest key.
+   *
+   * @throws java.util.NoSuchElementException if the queue is empty.
+   */
+  long minKey();
+
+  /**
+   * Removes the vertex with the lowest key. Ties are broken in an order specific to the implementation.
+   *
+   * @return The vertex id.
+   * @throws java.util.NoSuchElementException if the queue is empty.
+   */
+  int pollMin();
+
+  /**
+   * Removes every vertex, in time proportional to the number of queued vertices.
+   */
+  void clear();
+}
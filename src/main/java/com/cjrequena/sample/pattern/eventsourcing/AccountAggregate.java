@@ -1,6 +1,7 @@
 package com.cjrequena.sample.pattern.eventsourcing;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -8,6 +9,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import jakarta.annotation.Nonnull;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
@@ -22,10 +24,15 @@ import java.util.UUID;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
-public class AccountAggregate extends Aggregate {
+public class AccountAggregate extends Aggregate implements Snapshotable<AccountVO>, EventViewHandler {
 
   private AccountVO data;
 
+  // Balance in minor units while replaying event views, copied to the data once the replay ends
+  @Getter(AccessLevel.NONE)
+  @ToString.Exclude
+  private long replayedBalance;
+
   @Builder
   @JsonCreator
   public AccountAggregate(@NonNull @JsonProperty("aggregate_id") UUID aggregateId, @JsonProperty("aggregate_version") long aggregateVersion) {
@@ -41,9 +48,8 @@ public class AccountAggregate extends Aggregate {
     applyUnconfirmedEvent(AccountCreatedEvent.builder()
       .aggregateId(command.getAggregateId())
       .aggregateVersion(getNextAggregateVersion())
-      .dataContentType("application/json")
+      .dataContentType(DataContentType.BINARY.getType())
       .data(command.getData())
-      //.dataBase64(JsonUtil.objectToJsonBase64(command.getData()))
       .build());
   }
 
@@ -53,9 +59,8 @@ public class AccountAggregate extends Aggregate {
       .builder()
       .aggregateId(command.getAggregateId())
       .aggregateVersion(getNextAggregateVersion())
-      .dataContentType("application/json")
+      .dataContentType(DataContentType.BINARY.getType())
       .data(command.getData())
-      //.dataBase64(JsonUtil.objectToJsonBase64(command.getData()))
       .build());
   }
 
@@ -65,9 +70,8 @@ public class AccountAggregate extends Aggregate {
       .builder()
       .aggregateId(command.getAggregateId())
       .aggregateVersion(getNextAggregateVersion())
-      .dataContentType("application/json")
+      .dataContentType(DataContentType.BINARY.getType())
       .data(command.getData())
-      //.dataBase64(JsonUtil.objectToJsonBase64(command.getData()))
       .build());
   }
 
@@ -94,6 +98,73 @@ public class AccountAggregate extends Aggregate {
     this.data = this.data.subtractToBalanceAndClone(withdrawVO.amount());
   }
 
+  // ---------------------------
+  // Event views
+  // ---------------------------
+  @Override
+  public void beginEventViewReplay() {
+    this.replayedBalance = this.data == null ? 0 : this.data.balance().minorUnits();
+  }
+
+  @Override
+  public void applyEventView(EventView view) {
+    switch (view.getEventType()) {
+      case ACCOUNT_CREATED_EVENT -> {
+        this.data = (AccountVO) view.getData();
+        this.replayedBalance = this.data.balance().minorUnits();
+      }
+      case ACCOUNT_DEPOSITED_EVENT -> {
+        final long amount = readAmount(view, "deposit");
+        this.replayedBalance = Math.addExact(this.replayedBalance, amount);
+      }
+      case ACCOUNT_WITHDRAWN_EVENT -> {
+        final long balance = Math.subtractExact(this.replayedBalance, readAmount(view, "withdraw"));
+        if (balance < 0) {
+          throw new AccountBalanceException("Account balance cannot be negative");
+        }
+        this.replayedBalance = balance;
+      }
+    }
+  }
+
+  @Override
+  public void endEventViewReplay() {
+    if (this.data != null && this.data.balance().minorUnits() != this.replayedBalance) {
+      this.data = this.data.cloneWithBalance(Money.ofMinor(this.replayedBalance));
+    }
+  }
+
+  private long readAmount(EventView view, String operation) {
+    if (this.data == null) {
+      throw new IllegalStateException("Invalid %s: The account has not been created.".formatted(operation));
+    }
+    final long amount = AccountBinaryCodecs.readAmountMinorUnits(view);
+    if (amount <= 0) {
+      throw new AmountException("Invalid %s amount: The amount must be greater than zero.".formatted(operation));
+    }
+    return amount;
+  }
+
+  // ---------------------------
+  // Snapshots
+  // ---------------------------
+  @JsonIgnore
+  @Override
+  public Class<AccountVO> getSnapshotStateClass() {
+    return AccountVO.class;
+  }
+
+  @Override
+  public Snapshot<AccountVO> takeSnapshot() {
+    return newSnapshot(this.data);
+  }
+
+  @Override
+  public void reproduceFromSnapshot(Snapshot<AccountVO> snapshot) {
+    reproduceVersionFromSnapshot(snapshot);
+    this.data = snapshot.state();
+  }
+
   @Nonnull
   @Override
   public String getAggregateType() {
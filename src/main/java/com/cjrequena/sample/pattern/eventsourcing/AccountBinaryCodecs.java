@@ -0,0 +1,89 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.nio.ByteBuffer;
+
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.getBoolean;
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.getMoney;
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.getString;
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.getUUID;
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.putBoolean;
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.putMoney;
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.putString;
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.putUUID;
+
+/**
+ * Binary schemas of the account event data.
+ */
+final class AccountBinaryCodecs {
+
+  /**
+   * Schema 1: id (16), owner (4+n), email (4+n), balance (8+1), isActive (1).
+   */
+  static final BinaryDataCodec<AccountVO> ACCOUNT = new BinaryDataCodec<>() {
+    @Override
+    public void write(AccountVO data, ByteBuffer target) {
+      putUUID(target, data.id());
+      putString(target, data.owner());
+      putString(target, data.email());
+      putMoney(target, data.balance());
+      putBoolean(target, data.isActive());
+    }
+
+    @Override
+    public AccountVO read(ByteBuffer source) {
+      return new AccountVO(getUUID(source), getString(source), getString(source), getMoney(source), getBoolean(source));
+    }
+  };
+
+  /**
+   * Schema 1: accountId (16), amount (8+1).
+   */
+  static final BinaryDataCodec<DepositVO> DEPOSIT = new BinaryDataCodec<>() {
+    @Override
+    public void write(DepositVO data, ByteBuffer target) {
+      putUUID(target, data.accountId());
+      putMoney(target, data.amount());
+    }
+
+    @Override
+    public DepositVO read(ByteBuffer source) {
+      return new DepositVO(getUUID(source), getMoney(source));
+    }
+  };
+
+  /**
+   * Schema 1: accountId (16), amount (8+1).
+   */
+  static final BinaryDataCodec<WithdrawVO> WITHDRAW = new BinaryDataCodec<>() {
+    @Override
+    public void write(WithdrawVO data, ByteBuffer target) {
+      putUUID(target, data.accountId());
+      putMoney(target, data.amount());
+    }
+
+    @Override
+    public WithdrawVO read(ByteBuffer source) {
+      return new WithdrawVO(getUUID(source), getMoney(source));
+    }
+  };
+
+  // Position of the amount in the deposit and withdraw schemas
+  private static final int AMOUNT = 16;
+
+  private AccountBinaryCodecs() {
+  }
+
+  /**
+   * Reads the amount of a deposit or a withdraw event in minor units. Data stored in the current binary schema is read
+   * in place, without decoding it, any other data is decoded.
+   *
+   * @param view The view of a deposit or a withdraw event.
+   */
+  static long readAmountMinorUnits(EventView view) {
+    if (view.hasCurrentBinaryData()) {
+      return BinaryDataCodec.getMoneyMinorUnits(view.getBuffer(), view.getDataPosition() + AMOUNT);
+    }
+    final Object data = view.getData();
+    return (data instanceof DepositVO deposit ? deposit.amount() : ((WithdrawVO) data).amount()).minorUnits();
+  }
+}
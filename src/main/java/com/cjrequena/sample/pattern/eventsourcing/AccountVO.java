@@ -4,15 +4,12 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
-import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
 import lombok.extern.jackson.Jacksonized;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.UUID;
 
 /**
@@ -36,8 +33,7 @@ public record AccountVO(
   String email,
 
   @NotNull
-  @DecimalMin(value = "0.00", message = "Account balance cannot be negative")
-  BigDecimal balance,
+  Money balance,
 
   @NotNull
   Boolean isActive
@@ -61,14 +57,11 @@ public record AccountVO(
       }
     }
 
-    // Set default balance if null and normalize to 2 decimal places
+    // Set default balance if null
     if (balance == null) {
-      balance = BigDecimal.ZERO;
-    } else {
-      balance = balance.setScale(2, RoundingMode.HALF_UP);
-      if (balance.compareTo(BigDecimal.ZERO) < 0) {
-        throw new AccountBalanceException("Account balance cannot be negative");
-      }
+      balance = Money.ZERO;
+    } else if (balance.isNegative()) {
+      throw new AccountBalanceException("Account balance cannot be negative");
     }
   }
 
@@ -78,14 +71,9 @@ public record AccountVO(
    * @param newBalance the new balance
    * @return a new AccountVO instance with the updated balance
    */
-  public AccountVO cloneWithBalance(BigDecimal newBalance) {
-    return AccountVO.builder()
-      .id(this.id)
-      .owner(this.owner)
-      .email(this.email)
-      .balance(newBalance)
-      .isActive(this.isActive)
-      .build();
+  public AccountVO cloneWithBalance(Money newBalance) {
+    // Balance updates run on every replayed event, skip the builder
+    return new AccountVO(this.id, this.owner, this.email, newBalance, this.isActive);
   }
 
   /**
@@ -104,13 +92,13 @@ public record AccountVO(
       .build();
   }
 
-  public AccountVO addToBalanceAndClone(BigDecimal amount) {
-    final BigDecimal newBalance = this.balance.add(amount);
+  public AccountVO addToBalanceAndClone(Money amount) {
+    final Money newBalance = this.balance.plus(amount);
     return this.cloneWithBalance(newBalance);
   }
 
-  public AccountVO subtractToBalanceAndClone(BigDecimal amount) {
-    final BigDecimal newBalance = this.balance.subtract(amount);
+  public AccountVO subtractToBalanceAndClone(Money amount) {
+    final Money newBalance = this.balance.minus(amount);
     return this.cloneWithBalance(newBalance);
   }
 
@@ -120,8 +108,8 @@ public record AccountVO(
    * @param amount the amount to check
    * @return true if balance is sufficient, false otherwise
    */
-  public boolean hasSufficientBalance(BigDecimal amount) {
-    return balance != null && amount != null && balance.compareTo(amount) >= 0;
+  public boolean hasSufficientBalance(Money amount) {
+    return balance != null && amount != null && balance.isGreaterThanOrEqualTo(amount);
   }
 
   /**
@@ -130,7 +118,7 @@ public record AccountVO(
    * @return true if balance is zero, false otherwise
    */
   public boolean isBalanceEqualToZero() {
-    return balance != null && balance.compareTo(BigDecimal.ZERO) == 0;
+    return balance != null && balance.isZero();
   }
 
   /**
@@ -139,7 +127,7 @@ public record AccountVO(
    * @return true if balance is zero, false otherwise
    */
   public boolean isBalanceLessThanZero() {
-    return balance != null && balance.compareTo(BigDecimal.ZERO) < 0;
+    return balance != null && balance.isNegative();
   }
 
   /**
@@ -148,7 +136,7 @@ public record AccountVO(
    * @return formatted balance string
    */
   public String getFormattedBalance() {
-    return balance != null ? balance.setScale(2, RoundingMode.HALF_UP).toString() : "0.00";
+    return balance != null ? balance.toString() : "0.00";
   }
 
   /**
@@ -170,7 +158,7 @@ public record AccountVO(
    * @param initialBalance the initial balance
    * @return a new AccountVO with generated ID and specified balance
    */
-  public static AccountVO createNewWith(String owner, BigDecimal initialBalance) {
+  public static AccountVO createNewWith(String owner, Money initialBalance) {
     return AccountVO.builder()
       .owner(owner)
       .balance(initialBalance)
@@ -5,12 +5,18 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.annotation.Nonnull;
 import lombok.*;
 import lombok.extern.log4j.Log4j2;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 
 /**
  * Abstract base class for aggregates in the domain model.
@@ -23,6 +29,12 @@ import java.util.UUID;
 @Log4j2
 public abstract class Aggregate {
 
+  // Events requested ahead of the replay of a stream
+  public static final int REPLAY_PREFETCH = 256;
+
+  private static final String APPLY_EVENT_VIEW = "applyEventView";
+  private static final BiConsumer<Aggregate, Object> EVENT_VIEW_HANDLER = (aggregate, view) -> ((EventViewHandler) aggregate).applyEventView((EventView) view);
+
   @JsonProperty("aggregate_id")
   protected final UUID aggregateId;
 
@@ -65,25 +77,183 @@ public abstract class Aggregate {
    * @throws IllegalStateException if there are uncommitted changes.
    * @throws IllegalArgumentException if any event's aggregate version is not greater than the current version.
    */
-  public void reproduceFromEvents(List<Event> events) {
+  public void reproduceFromEvents(List<? extends Event> events) {
+    reproduceFromEvents(events.iterator());
+  }
+
+  /**
+   * Reconstitutes the aggregate's state from a spliterator of confirmed events, see
+   * {@link #reproduceFromEvents(Iterator)}.
+   *
+   * @param events The events used to reproduce the aggregate, in version order.
+   * @throws IllegalStateException if there are uncommitted changes.
+   * @throws IllegalArgumentException if any event's aggregate version is not greater than the current version.
+   */
+  public void reproduceFromEvents(Spliterator<? extends Event> events) {
+    reproduceFromEvents(Spliterators.iterator(events));
+  }
+
+  /**
+   * Reconstitutes the aggregate's state from an iterator of confirmed events.
+   * Every event is validated, applied and becomes the aggregate's version in a single pass, without logging it, so
+   * histories of any length can be replayed without materializing them first. If an event fails, the aggregate keeps
+   * the state and the version of the events applied before it.
+   *
+   * @param events The events used to reproduce the aggregate, in version order.
+   * @throws IllegalStateException if there are uncommitted changes.
+   * @throws IllegalArgumentException if any event's aggregate version is not greater than the current version.
+   */
+  public void reproduceFromEvents(Iterator<? extends Event> events) {
     // Guard clause to check for unsaved changes
     if (!unconfirmedEventsPool.isEmpty()) {
       throw new IllegalStateException("Cannot reproduce from history. The aggregate has unconfirmed events.");
     }
 
-    // Validate and apply events using Stream API
-    events.stream()
-      .peek(event -> {
-        // Validate the event aggregate version before applying
-        if (event.getAggregateVersion() <= aggregateVersion) {
-          throw new IllegalArgumentException(
-            "Event aggregate version (%s) must be greater than the current aggregate version (%s).".formatted(event.getAggregateVersion(), aggregateVersion));
+    final AggregateHandlerRegistry registry = AggregateHandlerRegistry.of(getClass());
+    final long fromAggregateVersion = aggregateVersion;
+    final long start = System.nanoTime();
+    while (events.hasNext()) {
+      reproduceFromEvent(registry, events.next());
+    }
+    reproduced(fromAggregateVersion, start);
+  }
+
+  /**
+   * Reconstitutes the aggregate's state from a stream of confirmed events, as {@link #reproduceFromEvents(Iterator)}
+   * does. At most {@link #REPLAY_PREFETCH} events are requested ahead of the replay, so a stream decoding its events
+   * lazily, such as {@link EventStore#streamEvents(UUID, long)}, never holds more than that in memory.
+   *
+   * @param events The events used to reproduce the aggregate, in version order.
+   * @return A mono completing once all the events are applied, or failing with the first failure. Nothing happens
+   * until it is subscribed.
+   */
+  public Mono<Void> reproduceFromEvents(Flux<? extends Event> events) {
+    return Mono.defer(() -> {
+      if (!unconfirmedEventsPool.isEmpty()) {
+        return Mono.error(new IllegalStateException("Cannot reproduce from history. The aggregate has unconfirmed events."));
+      }
+      final AggregateHandlerRegistry registry = AggregateHandlerRegistry.of(getClass());
+      final long fromAggregateVersion = aggregateVersion;
+      final long start = System.nanoTime();
+      return events
+        .limitRate(REPLAY_PREFETCH)
+        .doOnNext(event -> reproduceFromEvent(registry, event))
+        .then(Mono.fromRunnable(() -> reproduced(fromAggregateVersion, start)));
+    });
+  }
+
+  /**
+   * Reconstitutes the aggregate's state from a cursor of views of confirmed events, such as
+   * {@link EventStore#openViewCursor(UUID, long)}, as {@link #reproduceFromEvents(Iterator)} does. Aggregates
+   * implementing {@link EventViewHandler} read every event straight from its view, so the replay allocates nothing per
+   * event. The events of other aggregates are decoded from their views and applied by their {@code applyEvent}
+   * handlers.
+   *
+   * @param views The views of the events used to reproduce the aggregate, in version order.
+   * @throws IllegalStateException if there are uncommitted changes.
+   * @throws IllegalArgumentException if any event's aggregate version is not greater than the current version.
+   */
+  public void reproduceFromEventViews(Iterator<EventView> views) {
+    if (!(this instanceof EventViewHandler handler)) {
+      reproduceFromEvents(new Iterator<Event>() {
+        @Override
+        public boolean hasNext() {
+          return views.hasNext();
         }
-      })
-      .forEach(this::applyEvent);  // Apply each valid event to the aggregate's state
 
-    // Update currentAggregateVersion and reproducedAggregateVersion if events are applied successfully
-    events.stream().reduce((first, second) -> second).ifPresent(lastEvent -> reproducedAggregateVersion = aggregateVersion = lastEvent.getAggregateVersion());
+        @Override
+        public Event next() {
+          return views.next().toEvent();
+        }
+      });
+      return;
+    }
+    if (!unconfirmedEventsPool.isEmpty()) {
+      throw new IllegalStateException("Cannot reproduce from history. The aggregate has unconfirmed events.");
+    }
+
+    final long fromAggregateVersion = aggregateVersion;
+    final long start = System.nanoTime();
+    handler.beginEventViewReplay();
+    try {
+      while (views.hasNext()) {
+        reproduceFromEventView(views.next());
+      }
+    } finally {
+      handler.endEventViewReplay();
+    }
+    reproduced(fromAggregateVersion, start);
+  }
+
+  private void reproduceFromEventView(EventView view) {
+    final long eventAggregateVersion = view.getAggregateVersion();
+    if (eventAggregateVersion <= aggregateVersion) {
+      throw new IllegalArgumentException(
+        "Event aggregate version (%s) must be greater than the current aggregate version (%s).".formatted(eventAggregateVersion, aggregateVersion));
+    }
+    if (AggregateMetrics.isReplaySampled(eventAggregateVersion)) {
+      final long start = System.nanoTime();
+      invoke(view, APPLY_EVENT_VIEW, EVENT_VIEW_HANDLER);
+      AggregateMetrics.global().recordEvent(view.getEventType().getEventClass(), System.nanoTime() - start);
+    } else {
+      invoke(view, APPLY_EVENT_VIEW, EVENT_VIEW_HANDLER);
+    }
+    reproducedAggregateVersion = aggregateVersion = eventAggregateVersion;
+  }
+
+  private void reproduceFromEvent(AggregateHandlerRegistry registry, Event event) {
+    // Validate the event aggregate version before applying
+    if (event.getAggregateVersion() <= aggregateVersion) {
+      throw new IllegalArgumentException(
+        "Event aggregate version (%s) must be greater than the current aggregate version (%s).".formatted(event.getAggregateVersion(), aggregateVersion));
+    }
+    if (AggregateMetrics.isReplaySampled(event.getAggregateVersion())) {
+      final long start = System.nanoTime();
+      invoke(event, AggregateHandlerRegistry.APPLY_EVENT, registry.getEventHandler(event.getClass()));
+      AggregateMetrics.global().recordEvent(event.getClass(), System.nanoTime() - start);
+    } else {
+      invoke(event, AggregateHandlerRegistry.APPLY_EVENT, registry.getEventHandler(event.getClass()));
+    }
+    reproducedAggregateVersion = aggregateVersion = event.getAggregateVersion();
+  }
+
+  private void reproduced(long fromAggregateVersion, long start) {
+    AggregateMetrics.global().recordReplay(aggregateVersion - fromAggregateVersion, System.nanoTime() - start);
+    if (log.isDebugEnabled() && aggregateVersion > fromAggregateVersion) {
+      log.debug("Reproduced aggregate {} from version {} to version {}", aggregateId, fromAggregateVersion, aggregateVersion);
+    }
+  }
+
+  /**
+   * Reconstitutes the aggregate's version from a snapshot. Aggregates implementing {@link Snapshotable} call this
+   * method before restoring their own state from the snapshot.
+   *
+   * @param snapshot The snapshot.
+   * @throws IllegalStateException if there are uncommitted changes.
+   * @throws IllegalArgumentException if the snapshot belongs to another aggregate.
+   */
+  protected void reproduceVersionFromSnapshot(Snapshot<?> snapshot) {
+    if (!unconfirmedEventsPool.isEmpty()) {
+      throw new IllegalStateException("Cannot reproduce from snapshot. The aggregate has unconfirmed events.");
+    }
+    if (!aggregateId.equals(snapshot.aggregateId())) {
+      throw new IllegalArgumentException("Snapshot of aggregate %s can't be applied to aggregate %s.".formatted(snapshot.aggregateId(), aggregateId));
+    }
+    reproducedAggregateVersion = aggregateVersion = snapshot.aggregateVersion();
+  }
+
+  /**
+   * Creates a snapshot of the given state at the reproduced version of the aggregate.
+   *
+   * @param state The confirmed state of the aggregate.
+   * @return The snapshot.
+   * @throws IllegalStateException if there are uncommitted changes.
+   */
+  protected <S> Snapshot<S> newSnapshot(S state) {
+    if (!unconfirmedEventsPool.isEmpty()) {
+      throw new IllegalStateException("Cannot take a snapshot. The aggregate has unconfirmed events.");
+    }
+    return new Snapshot<>(aggregateId, getAggregateType(), reproducedAggregateVersion, OffsetDateTime.now(ZoneOffset.UTC), state);
   }
 
   /**
@@ -94,6 +264,7 @@ public abstract class Aggregate {
    */
   public void applyUnconfirmedEvent(Event event) {
     validateEventVersion(event);
+    log.info("Applying event {}", event);
     applyEvent(event);
     unconfirmedEventsPool.add(event);
     aggregateVersion = event.getAggregateVersion();
@@ -105,13 +276,24 @@ public abstract class Aggregate {
    * @param event The event to apply.
    */
   private void applyEvent(Event event) {
-    log.info("Applying event {}", event);
-    invoke(event, "applyEvent");
+    final long start = System.nanoTime();
+    invoke(event, AggregateHandlerRegistry.APPLY_EVENT, AggregateHandlerRegistry.of(getClass()).getEventHandler(event.getClass()));
+    AggregateMetrics.global().recordEvent(event.getClass(), System.nanoTime() - start);
   }
 
+  /**
+   * Applies a command to the aggregate through its {@code applyCommand} handler. The latency of the handler and the
+   * resulting size of the unconfirmed events pool are recorded in {@link AggregateMetrics#global()}.
+   *
+   * @param command The command.
+   */
   public void applyCommand(Command command) {
     log.info("Applying command {}", command);
-    invoke(command, "applyCommand");
+    final long start = System.nanoTime();
+    invoke(command, AggregateHandlerRegistry.APPLY_COMMAND, AggregateHandlerRegistry.of(getClass()).getCommandHandler(command.getClass()));
+    final AggregateMetrics metrics = AggregateMetrics.global();
+    metrics.recordCommand(command.getClass(), System.nanoTime() - start);
+    metrics.recordUnconfirmedPoolSize(unconfirmedEventsPool.size());
   }
 
   /**
@@ -136,36 +318,40 @@ public abstract class Aggregate {
     }
   }
 
+  /**
+   * Drops the unconfirmed events, e.g. because they conflict with the events appended to the store in the meantime.
+   * The version goes back to the reproduced version, but the changes the events made to the state are kept: the state
+   * must be reproduced again, e.g. from a snapshot taken before, see {@link RetryingCommandExecutor}.
+   */
+  void discardUnconfirmedEvents() {
+    this.unconfirmedEventsPool.clear();
+    this.aggregateVersion = this.reproducedAggregateVersion;
+  }
+
   /**
    * Marks the unconfirmed events as confirmed, clearing the unconfirmed events pool.
+   * The current version becomes the reproduced version, i.e. the version the aggregate has in the event store.
    */
   public void markUnconfirmedEventsAsConfirmed() {
     this.unconfirmedEventsPool.clear();
+    this.reproducedAggregateVersion = this.aggregateVersion;
   }
 
   /**
-   * Invokes a method on the aggregate with the specified parameter.
+   * Invokes a handler method on the aggregate with the specified parameter.
+   * Handlers are resolved from the precompiled handler table of the aggregate class, see {@link AggregateHandlerRegistry}.
    *
    * @param parameter The parameter to pass to the method.
    * @param methodName The name of the method to invoke.
-   * @throws UnsupportedOperationException if the method is not supported or accessible.
+   * @param handler The precompiled handler of the method.
    * @throws RuntimeException if invocation fails due to an exception thrown by the invoked method.
    */
-  @SneakyThrows
-  private void invoke(Object parameter, String methodName) {
-    Class<?> parameterType = parameter.getClass();
+  private void invoke(Object parameter, String methodName, BiConsumer<Aggregate, Object> handler) {
     try {
-      Method method = this.getClass().getMethod(methodName, parameterType);
-      method.invoke(this, parameter);
-    } catch (NoSuchMethodException e) {
-      throw new UnsupportedOperationException(
-        String.format("Aggregate %s doesn't support method %s(%s).", this.getClass().getSimpleName(), methodName, parameterType.getSimpleName()), e);
-    } catch (IllegalAccessException e) {
-      throw new UnsupportedOperationException(
-        String.format("Method %s in aggregate %s is not accessible.", methodName, this.getClass().getSimpleName()), e);
-    } catch (InvocationTargetException e) {
+      handler.accept(this, parameter);
+    } catch (Throwable e) {
       throw new RuntimeException(
-        String.format("Invocation of method %s failed due to: %s", methodName, e.getCause().getMessage()), e.getCause());
+        String.format("Invocation of method %s failed due to: %s", methodName, e.getMessage()), e);
     }
   }
 
@@ -0,0 +1,156 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.function.ToLongFunction;
+
+/**
+ * Size bounded LRU cache of hydrated aggregates, keyed by {@code aggregateId}.
+ * <p>
+ * The cache is bounded both by a number of entries and by a total weight, computed by a weigher when an aggregate is
+ * put in the cache. When any bound is exceeded the least recently used aggregates are evicted.
+ * <p>
+ * Cached aggregates are shared with the callers of {@link AggregateRepository#load}, so the commands of an aggregate
+ * must be serialized, as {@link ShardedCommandExecutor} does. An aggregate holding unconfirmed events, e.g. because
+ * its save failed, is never returned: it is discarded and counted as a miss.
+ */
+public class AggregateCache {
+
+  private final long maxEntries;
+  private final long maxWeight;
+  private final ToLongFunction<? super Aggregate> weigher;
+
+  // Access ordered, the eldest entry is the least recently used one
+  private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long weight;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long refreshes;
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxEntries The maximum number of cached aggregates.
+   * @param maxWeight The maximum total weight of the cached aggregates.
+   * @param weigher Computes the weight of an aggregate, it must not be negative.
+   */
+  public AggregateCache(long maxEntries, long maxWeight, @NonNull ToLongFunction<? super Aggregate> weigher) {
+    if (maxEntries < 0 || maxWeight < 0) {
+      throw new IllegalArgumentException("The max entries and the max weight can't be negative.");
+    }
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  /**
+   * Creates a cache bounded by the number of entries only.
+   *
+   * @param maxEntries The maximum number of cached aggregates.
+   */
+  public static AggregateCache ofMaxEntries(long maxEntries) {
+    return new AggregateCache(maxEntries, Long.MAX_VALUE, aggregate -> 1);
+  }
+
+  /**
+   * Creates a cache bounded by the total weight of the entries only.
+   *
+   * @param maxWeight The maximum total weight of the cached aggregates.
+   * @param weigher Computes the weight of an aggregate, it must not be negative.
+   */
+  public static AggregateCache ofMaxWeight(long maxWeight, ToLongFunction<? super Aggregate> weigher) {
+    return new AggregateCache(Long.MAX_VALUE, maxWeight, weigher);
+  }
+
+  /**
+   * Returns the cached aggregate and marks it as the most recently used one.
+   *
+   * @param aggregateId The aggregate id.
+   * @return The cached aggregate, or null if it isn't cached or it holds unconfirmed events.
+   */
+  public synchronized Aggregate get(UUID aggregateId) {
+    final Entry entry = entries.get(aggregateId);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    if (!entry.aggregate.getUnconfirmedEventsPool().isEmpty()) {
+      remove(aggregateId);
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.aggregate;
+  }
+
+  /**
+   * Caches an aggregate, replacing any cached instance with the same id, and evicts the least recently used
+   * aggregates exceeding the bounds of the cache.
+   *
+   * @param aggregate The aggregate.
+   */
+  public synchronized void put(@NonNull Aggregate aggregate) {
+    final long aggregateWeight = weigher.applyAsLong(aggregate);
+    final Entry previous = entries.put(aggregate.getAggregateId(), new Entry(aggregate, aggregateWeight));
+    weight += aggregateWeight - (previous == null ? 0 : previous.weight);
+    final Iterator<Entry> iterator = entries.values().iterator();
+    while ((entries.size() > maxEntries || weight > maxWeight) && iterator.hasNext()) {
+      weight -= iterator.next().weight;
+      iterator.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Removes an aggregate from the cache.
+   *
+   * @param aggregateId The aggregate id.
+   */
+  public synchronized void invalidate(UUID aggregateId) {
+    remove(aggregateId);
+  }
+
+  /**
+   * Records that a cached aggregate was behind the event store and was refreshed from the events appended after it.
+   */
+  synchronized void recordRefresh() {
+    refreshes++;
+  }
+
+  public synchronized Stats getStats() {
+    return new Stats(hits, misses, evictions, refreshes, entries.size(), weight);
+  }
+
+  private void remove(UUID aggregateId) {
+    final Entry entry = entries.remove(aggregateId);
+    if (entry != null) {
+      weight -= entry.weight;
+    }
+  }
+
+  private record Entry(Aggregate aggregate, long weight) {
+  }
+
+  /**
+   * Point in time statistics of the cache.
+   *
+   * @param hits The number of lookups returning a cached aggregate.
+   * @param misses The number of lookups not returning a cached aggregate.
+   * @param evictions The number of aggregates evicted to keep the cache within its bounds.
+   * @param refreshes The number of cached aggregates caught up with the events appended after them.
+   * @param size The number of cached aggregates.
+   * @param weight The total weight of the cached aggregates.
+   */
+  public record Stats(long hits, long misses, long evictions, long refreshes, long size, long weight) {
+
+    public double hitRate() {
+      final long lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+  }
+}
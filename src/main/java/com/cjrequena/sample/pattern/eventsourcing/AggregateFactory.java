@@ -1,18 +1,49 @@
 package com.cjrequena.sample.pattern.eventsourcing;
 
 
-import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
+import lombok.Getter;
+import lombok.NonNull;
 
 import java.util.UUID;
 
-@RequiredArgsConstructor
+/**
+ * Creates empty aggregates, at version 0, through the constructors of an {@link AggregateRegistry}.
+ */
+@Getter
 public class AggregateFactory {
 
-    @SneakyThrows(ReflectiveOperationException.class)
+    private final AggregateRegistry registry;
+
+    /**
+     * Creates a factory of the {@link AggregateType} kinds.
+     */
+    public AggregateFactory() {
+        this(AggregateRegistry.withDefaults());
+    }
+
+    /**
+     * Creates a factory.
+     *
+     * @param registry The registry of the aggregate kinds.
+     */
+    public AggregateFactory(@NonNull AggregateRegistry registry) {
+        this.registry = registry;
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends Aggregate> T newInstance( Class<? extends Aggregate> aggregateClass, UUID aggregateId) {
-        var constructor = aggregateClass.getDeclaredConstructor(UUID.class, Long.TYPE);
-        return (T) constructor.newInstance(aggregateId, 0);
+        return (T) registry.constructorOf(aggregateClass).apply(aggregateId, 0L);
+    }
+
+    /**
+     * Creates an empty aggregate of the given type.
+     *
+     * @param aggregateType The aggregate type, as in {@link Command#getAggregateType()}.
+     * @param aggregateId The aggregate id.
+     * @throws IllegalArgumentException if the aggregate type is not registered.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Aggregate> T newInstance(String aggregateType, UUID aggregateId) {
+        return (T) registry.constructorOf(aggregateType).apply(aggregateId, 0L);
     }
 }
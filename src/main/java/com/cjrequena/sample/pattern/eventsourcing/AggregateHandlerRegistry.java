@@ -0,0 +1,126 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Precompiled table of the {@code applyCommand} and {@code applyEvent} handlers declared by an aggregate class.
+ * <p>
+ * The table is built once per aggregate class, the first time an instance of that class dispatches a command or
+ * an event, and is cached in a {@link ClassValue}. Every handler is bound through {@link LambdaMetafactory} into
+ * a {@link BiConsumer}, so dispatching is a map lookup keyed by the concrete command/event class followed by a
+ * plain interface call, instead of a {@code getMethod} lookup plus a reflective {@code Method.invoke}.
+ */
+final class AggregateHandlerRegistry {
+
+  static final String APPLY_COMMAND = "applyCommand";
+  static final String APPLY_EVENT = "applyEvent";
+
+  private static final ClassValue<AggregateHandlerRegistry> REGISTRIES = new ClassValue<>() {
+    @Override
+    protected AggregateHandlerRegistry computeValue(Class<?> aggregateClass) {
+      return new AggregateHandlerRegistry(aggregateClass);
+    }
+  };
+
+  private static final MethodType HANDLER_FACTORY_TYPE = MethodType.methodType(BiConsumer.class);
+  private static final MethodType HANDLER_ERASED_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final Class<?> aggregateClass;
+  private final Map<Class<?>, BiConsumer<Aggregate, Object>> commandHandlers;
+  private final Map<Class<?>, BiConsumer<Aggregate, Object>> eventHandlers;
+
+  private AggregateHandlerRegistry(Class<?> aggregateClass) {
+    this.aggregateClass = aggregateClass;
+    this.commandHandlers = compileHandlers(aggregateClass, APPLY_COMMAND);
+    this.eventHandlers = compileHandlers(aggregateClass, APPLY_EVENT);
+  }
+
+  /**
+   * Returns the handler table of the given aggregate class, building it on first use.
+   *
+   * @param aggregateClass The concrete aggregate class.
+   * @return The cached handler table.
+   */
+  static AggregateHandlerRegistry of(Class<? extends Aggregate> aggregateClass) {
+    return REGISTRIES.get(aggregateClass);
+  }
+
+  /**
+   * Finds the {@code applyCommand} handler whose parameter type is exactly the given command class.
+   *
+   * @param commandClass The concrete command class.
+   * @return The handler.
+   * @throws UnsupportedOperationException if the aggregate doesn't declare such a handler.
+   */
+  BiConsumer<Aggregate, Object> getCommandHandler(Class<?> commandClass) {
+    return getHandler(commandHandlers, commandClass, APPLY_COMMAND);
+  }
+
+  /**
+   * Finds the {@code applyEvent} handler whose parameter type is exactly the given event class.
+   *
+   * @param eventClass The concrete event class.
+   * @return The handler.
+   * @throws UnsupportedOperationException if the aggregate doesn't declare such a handler.
+   */
+  BiConsumer<Aggregate, Object> getEventHandler(Class<?> eventClass) {
+    return getHandler(eventHandlers, eventClass, APPLY_EVENT);
+  }
+
+  private BiConsumer<Aggregate, Object> getHandler(Map<Class<?>, BiConsumer<Aggregate, Object>> handlers, Class<?> parameterType, String methodName) {
+    final BiConsumer<Aggregate, Object> handler = handlers.get(parameterType);
+    if (handler == null) {
+      throw new UnsupportedOperationException(
+        String.format("Aggregate %s doesn't support method %s(%s).", aggregateClass.getSimpleName(), methodName, parameterType.getSimpleName()));
+    }
+    return handler;
+  }
+
+  /**
+   * Binds every public single-argument method with the given name, declared by the aggregate class or by one of
+   * its superclasses below {@link Aggregate}, keyed by its parameter type.
+   */
+  private static Map<Class<?>, BiConsumer<Aggregate, Object>> compileHandlers(Class<?> aggregateClass, String methodName) {
+    final Map<Class<?>, BiConsumer<Aggregate, Object>> handlers = new HashMap<>();
+    for (Method method : aggregateClass.getMethods()) {
+      if (method.getName().equals(methodName)
+        && method.getParameterCount() == 1
+        && method.getReturnType() == void.class
+        && method.getDeclaringClass() != Aggregate.class
+        && !method.isBridge()
+        && !method.isSynthetic()
+        && !Modifier.isStatic(method.getModifiers())) {
+        handlers.put(method.getParameterTypes()[0], compileHandler(aggregateClass, method));
+      }
+    }
+    return Map.copyOf(handlers);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Aggregate, Object> compileHandler(Class<?> aggregateClass, Method method) {
+    try {
+      final MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(aggregateClass, MethodHandles.lookup());
+      final MethodHandle target = lookup.unreflect(method);
+      final CallSite callSite = LambdaMetafactory.metafactory(
+        lookup,
+        "accept",
+        HANDLER_FACTORY_TYPE,
+        HANDLER_ERASED_TYPE,
+        target,
+        MethodType.methodType(void.class, method.getDeclaringClass(), method.getParameterTypes()[0]));
+      return (BiConsumer<Aggregate, Object>) callSite.getTarget().invoke();
+    } catch (Throwable e) {
+      throw new UnsupportedOperationException(
+        String.format("Method %s in aggregate %s is not accessible.", method.getName(), aggregateClass.getSimpleName()), e);
+    }
+  }
+}
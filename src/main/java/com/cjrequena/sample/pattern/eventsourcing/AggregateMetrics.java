@@ -0,0 +1,209 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the hot paths of the aggregates: latency of the command and event handlers, replay rate, size of the
+ * unconfirmed events pool, and rate and retries of optimistic concurrency conflicts.
+ * <p>
+ * Every aggregate records into the {@link #global()} instance, as a logger would. Latencies are recorded in
+ * nanoseconds into a lock-free {@link Histogram} per command and per event class, resolved through a
+ * {@link ClassValue}, so recording costs two clock reads and an atomic increment. Commands and unconfirmed events are
+ * all timed. On the replay path, where the clock reads would cost more than the handlers themselves, only one event
+ * out of {@value #REPLAY_SAMPLE_INTERVAL} is timed, while the replay rate is timed once per replay.
+ * {@link #snapshot()} copies the counters, and {@link Snapshot#export()} formats them as text.
+ */
+public final class AggregateMetrics {
+
+  // A power of two
+  public static final int REPLAY_SAMPLE_INTERVAL = 64;
+
+  private static final AggregateMetrics GLOBAL = new AggregateMetrics();
+
+  private final Map<String, Histogram> commandLatencies = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> eventLatencies = new ConcurrentHashMap<>();
+  private final ClassValue<Histogram> commandHistograms = histogramsOf(commandLatencies);
+  private final ClassValue<Histogram> eventHistograms = histogramsOf(eventLatencies);
+  private final Histogram unconfirmedPoolSizes = new Histogram();
+  private final LongAdder replayedEvents = new LongAdder();
+  private final LongAdder replayNanos = new LongAdder();
+  private final LongAdder appends = new LongAdder();
+  private final LongAdder versionConflicts = new LongAdder();
+  private final LongAdder conflictRetries = new LongAdder();
+  private final LongAdder exhaustedRetries = new LongAdder();
+
+  /**
+   * Returns the metrics every aggregate records into.
+   */
+  public static AggregateMetrics global() {
+    return GLOBAL;
+  }
+
+  /**
+   * Tells whether the latency of a replayed event is recorded. Events are sampled by version, so the decision costs
+   * no state.
+   *
+   * @param aggregateVersion The version of the event.
+   */
+  static boolean isReplaySampled(long aggregateVersion) {
+    return (aggregateVersion & (REPLAY_SAMPLE_INTERVAL - 1)) == 0;
+  }
+
+  /**
+   * Records the latency of a command handler.
+   *
+   * @param commandClass The command class.
+   * @param nanos The latency, in nanoseconds.
+   */
+  public void recordCommand(Class<?> commandClass, long nanos) {
+    commandHistograms.get(commandClass).record(nanos);
+  }
+
+  /**
+   * Records the latency of an event handler.
+   *
+   * @param eventClass The event class.
+   * @param nanos The latency, in nanoseconds.
+   */
+  public void recordEvent(Class<?> eventClass, long nanos) {
+    eventHistograms.get(eventClass).record(nanos);
+  }
+
+  /**
+   * Records the size of the unconfirmed events pool of an aggregate, after a command.
+   *
+   * @param size The number of unconfirmed events.
+   */
+  public void recordUnconfirmedPoolSize(int size) {
+    unconfirmedPoolSizes.record(size);
+  }
+
+  /**
+   * Records a replay.
+   *
+   * @param events The number of replayed events.
+   * @param nanos The duration of the replay, in nanoseconds.
+   */
+  public void recordReplay(long events, long nanos) {
+    replayedEvents.add(events);
+    replayNanos.add(nanos);
+  }
+
+  /**
+   * Records appends of aggregates to the event store.
+   *
+   * @param aggregates The number of appended aggregates.
+   */
+  public void recordAppends(long aggregates) {
+    appends.add(aggregates);
+  }
+
+  /**
+   * Records an optimistic concurrency conflict, see {@link OptimisticConcurrencyException}.
+   */
+  public void recordVersionConflict() {
+    versionConflicts.increment();
+  }
+
+  /**
+   * Records a command retried after a conflict.
+   */
+  public void recordConflictRetry() {
+    conflictRetries.increment();
+  }
+
+  /**
+   * Records a command given up after conflicting on every attempt.
+   */
+  public void recordExhaustedRetries() {
+    exhaustedRetries.increment();
+  }
+
+  /**
+   * Returns a copy of the metrics recorded so far.
+   */
+  public Snapshot snapshot() {
+    return new Snapshot(
+      snapshotOf(commandLatencies),
+      snapshotOf(eventLatencies),
+      unconfirmedPoolSizes.snapshot(),
+      replayedEvents.sum(),
+      Duration.ofNanos(replayNanos.sum()),
+      appends.sum(),
+      versionConflicts.sum(),
+      conflictRetries.sum(),
+      exhaustedRetries.sum());
+  }
+
+  private static ClassValue<Histogram> histogramsOf(Map<String, Histogram> histograms) {
+    return new ClassValue<>() {
+      @Override
+      protected Histogram computeValue(Class<?> type) {
+        return histograms.computeIfAbsent(type.getSimpleName(), name -> new Histogram());
+      }
+    };
+  }
+
+  private static Map<String, Histogram.Snapshot> snapshotOf(Map<String, Histogram> histograms) {
+    final Map<String, Histogram.Snapshot> snapshots = new TreeMap<>();
+    histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+    return Collections.unmodifiableMap(snapshots);
+  }
+
+  /**
+   * Metrics of the aggregates at a point in time.
+   *
+   * @param commandLatencies The latencies of the command handlers in nanoseconds, by command class simple name.
+   * @param eventLatencies The latencies of the event handlers in nanoseconds, by event class simple name. Replayed
+   *                       events are sampled.
+   * @param unconfirmedPoolSizes The sizes of the unconfirmed events pools after every command.
+   * @param replayedEvents The number of replayed events.
+   * @param replayTime The time spent replaying events.
+   * @param appends The number of aggregates appended, or attempted to, to the event store.
+   * @param versionConflicts The number of optimistic concurrency conflicts.
+   * @param conflictRetries The number of commands retried after a conflict.
+   * @param exhaustedRetries The number of commands given up after conflicting on every attempt.
+   */
+  public record Snapshot(Map<String, Histogram.Snapshot> commandLatencies, Map<String, Histogram.Snapshot> eventLatencies,
+                         Histogram.Snapshot unconfirmedPoolSizes, long replayedEvents, Duration replayTime, long appends,
+                         long versionConflicts, long conflictRetries, long exhaustedRetries) {
+
+    /**
+     * Returns the share of the appended aggregates that conflicted, between 0 and 1.
+     */
+    public double conflictRate() {
+      return appends == 0 ? 0 : (double) versionConflicts / appends;
+    }
+
+    /**
+     * Returns the number of events replayed per second of replay.
+     */
+    public double replayRate() {
+      final long nanos = replayTime.toNanos();
+      return nanos == 0 ? 0 : replayedEvents * 1e9 / nanos;
+    }
+
+    /**
+     * Formats the metrics as text, one metric per line.
+     */
+    public String export() {
+      final StringBuilder text = new StringBuilder();
+      commandLatencies.forEach((name, histogram) -> text.append("command.latency.nanos[").append(name).append("] ").append(histogram).append('\n'));
+      eventLatencies.forEach((name, histogram) -> text.append("event.latency.nanos[").append(name).append("] ").append(histogram).append('\n'));
+      text.append("unconfirmed.pool.size ").append(unconfirmedPoolSizes).append('\n');
+      text.append("replay.events ").append(replayedEvents).append('\n');
+      text.append("replay.events.per.second ").append((long) replayRate()).append('\n');
+      text.append("appends ").append(appends).append('\n');
+      text.append("version.conflicts ").append(versionConflicts).append('\n');
+      text.append("version.conflict.rate ").append(conflictRate()).append('\n');
+      text.append("conflict.retries ").append(conflictRetries).append('\n');
+      text.append("conflict.retries.exhausted ").append(exhaustedRetries).append('\n');
+      return text.toString();
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Registry of the aggregate kinds: resolves an aggregate type, as in {@link Command#getAggregateType()}, or an
+ * aggregate class to the function creating its aggregates from their id and version, with a hash lookup.
+ * <p>
+ * {@link #withDefaults()} registers every {@link AggregateType}. Other aggregate kinds are registered at startup,
+ * before the registry is used, e.g. {@code registry.register("NOTE_AGGREGATE", NoteAggregate.class, NoteAggregate::new)}.
+ * Creating an aggregate is then a plain constructor call, instead of the reflective lookup and invocation of its
+ * constructor.
+ * <p>
+ * Aggregate classes that are not registered are still created through their {@code (UUID, long)} constructor, looked
+ * up reflectively once per class.
+ */
+public final class AggregateRegistry {
+
+  private final Map<String, Registration> byType = new ConcurrentHashMap<>();
+  private final Map<Class<?>, Registration> byClass = new ConcurrentHashMap<>();
+  // Constructors of the aggregate classes that are not registered, looked up reflectively
+  private final Map<Class<?>, BiFunction<UUID, Long, Aggregate>> reflectiveConstructors = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a registry of the {@link AggregateType} kinds.
+   */
+  @SuppressWarnings("unchecked")
+  public static AggregateRegistry withDefaults() {
+    final AggregateRegistry registry = new AggregateRegistry();
+    for (AggregateType aggregateType : AggregateType.values()) {
+      registry.register(aggregateType.getType(), (Class<Aggregate>) aggregateType.getClazz(), aggregateType.getConstructor());
+    }
+    return registry;
+  }
+
+  /**
+   * Registers an aggregate kind.
+   *
+   * @param aggregateType The aggregate type, as in {@link Aggregate#getAggregateType()}.
+   * @param aggregateClass The aggregate class.
+   * @param constructor Creates an aggregate from its id and version.
+   * @param <T> The aggregate type.
+   * @return This registry.
+   * @throws IllegalArgumentException if the aggregate type or class is already registered.
+   */
+  public synchronized <T extends Aggregate> AggregateRegistry register(@NonNull String aggregateType, @NonNull Class<T> aggregateClass,
+    @NonNull BiFunction<UUID, Long, ? extends T> constructor) {
+    if (byType.containsKey(aggregateType)) {
+      throw new IllegalArgumentException("Aggregate type %s is already registered.".formatted(aggregateType));
+    }
+    if (byClass.containsKey(aggregateClass)) {
+      throw new IllegalArgumentException("Aggregate class %s is already registered.".formatted(aggregateClass.getName()));
+    }
+    final Registration registration = new Registration(aggregateClass, constructor::apply);
+    byClass.put(aggregateClass, registration);
+    byType.put(aggregateType, registration);
+    return this;
+  }
+
+  /**
+   * Returns the constructor of the aggregates of the given type.
+   *
+   * @param aggregateType The aggregate type.
+   * @throws IllegalArgumentException if the aggregate type is not registered.
+   */
+  public BiFunction<UUID, Long, Aggregate> constructorOf(String aggregateType) {
+    return registrationOf(aggregateType).constructor;
+  }
+
+  /**
+   * Returns the class of the aggregates of the given type.
+   *
+   * @param aggregateType The aggregate type.
+   * @throws IllegalArgumentException if the aggregate type is not registered.
+   */
+  public Class<? extends Aggregate> classOf(String aggregateType) {
+    return registrationOf(aggregateType).aggregateClass;
+  }
+
+  /**
+   * Returns the constructor of the aggregates of the given class. Classes that are not registered are created through
+   * their {@code (UUID, long)} constructor.
+   *
+   * @param aggregateClass The aggregate class.
+   */
+  public BiFunction<UUID, Long, Aggregate> constructorOf(Class<? extends Aggregate> aggregateClass) {
+    final Registration registration = byClass.get(aggregateClass);
+    if (registration != null) {
+      return registration.constructor;
+    }
+    return reflectiveConstructors.computeIfAbsent(aggregateClass, AggregateRegistry::reflectiveConstructorOf);
+  }
+
+  private Registration registrationOf(String aggregateType) {
+    final Registration registration = byType.get(aggregateType);
+    if (registration == null) {
+      throw new IllegalArgumentException("Unknown aggregate type " + aggregateType);
+    }
+    return registration;
+  }
+
+  @SneakyThrows(ReflectiveOperationException.class)
+  private static BiFunction<UUID, Long, Aggregate> reflectiveConstructorOf(Class<?> aggregateClass) {
+    final Constructor<?> constructor = aggregateClass.getDeclaredConstructor(UUID.class, Long.TYPE);
+    return new BiFunction<>() {
+      @Override
+      @SneakyThrows(ReflectiveOperationException.class)
+      public Aggregate apply(UUID aggregateId, Long aggregateVersion) {
+        return (Aggregate) constructor.newInstance(aggregateId, aggregateVersion);
+      }
+    };
+  }
+
+  private record Registration(Class<? extends Aggregate> aggregateClass, BiFunction<UUID, Long, Aggregate> constructor) {
+  }
+}
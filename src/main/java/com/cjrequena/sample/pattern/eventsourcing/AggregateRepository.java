@@ -0,0 +1,280 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads aggregates from, and saves them to, an {@link EventStore}.
+ * <p>
+ * Aggregates implementing {@link Snapshotable} are reproduced from their latest snapshot plus the events appended
+ * after it, so their load time is bounded by the snapshot policy instead of growing with their history. After every
+ * save the {@link SnapshotPolicy} decides whether a new snapshot is taken.
+ * <p>
+ * With an {@link AggregateCache}, hydrated aggregates are kept in memory between loads. A cached aggregate is checked
+ * against the version of its stream in the event store and, when it is behind, only the events appended after it are
+ * replayed.
+ * <p>
+ * Events are replayed through {@link EventStore#openViewCursor(UUID, long) views} of the stored records, so aggregates
+ * implementing {@link EventViewHandler} are reproduced without decoding their events.
+ * <p>
+ * Aggregates can also be loaded as they were at a past version, offset or time, e.g. for audits. Such loads start
+ * from the latest snapshot at or before the version, when the {@link SnapshotStore} keeps a history of snapshots, and
+ * replay a bounded range of events. They never go through the cache.
+ */
+@Log4j2
+public class AggregateRepository {
+
+  @NonNull
+  private final AggregateFactory aggregateFactory;
+
+  @NonNull
+  private final EventStore eventStore;
+
+  @NonNull
+  private final SnapshotStore snapshotStore;
+
+  @NonNull
+  private final SnapshotPolicy snapshotPolicy;
+
+  // Null when aggregates are not cached
+  private final AggregateCache aggregateCache;
+
+  // Latest snapshot of every aggregate loaded or snapshotted through this repository
+  private final Map<UUID, SnapshotMark> latestSnapshots = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a repository without an aggregate cache.
+   */
+  public AggregateRepository(AggregateFactory aggregateFactory, EventStore eventStore, SnapshotStore snapshotStore, SnapshotPolicy snapshotPolicy) {
+    this(aggregateFactory, eventStore, snapshotStore, snapshotPolicy, null);
+  }
+
+  /**
+   * Creates a repository.
+   *
+   * @param aggregateCache The cache of hydrated aggregates, or null to hydrate the aggregates on every load.
+   */
+  public AggregateRepository(@NonNull AggregateFactory aggregateFactory, @NonNull EventStore eventStore, @NonNull SnapshotStore snapshotStore,
+    @NonNull SnapshotPolicy snapshotPolicy, AggregateCache aggregateCache) {
+    this.aggregateFactory = aggregateFactory;
+    this.eventStore = eventStore;
+    this.snapshotStore = snapshotStore;
+    this.snapshotPolicy = snapshotPolicy;
+    this.aggregateCache = aggregateCache;
+  }
+
+  /**
+   * Loads an aggregate from the cache, if it is cached, or else from its latest snapshot, if any. Then replays the
+   * events appended after it.
+   *
+   * @param aggregateClass The aggregate class.
+   * @param aggregateId The aggregate id.
+   * @param <T> The aggregate type.
+   * @return The reproduced aggregate, at version 0 if it has no events yet.
+   */
+  public <T extends Aggregate> T load(Class<T> aggregateClass, UUID aggregateId) {
+    if (aggregateCache != null) {
+      final Aggregate cached = aggregateCache.get(aggregateId);
+      if (aggregateClass.isInstance(cached) && refresh(cached)) {
+        return aggregateClass.cast(cached);
+      }
+    }
+    final T aggregate = aggregateFactory.newInstance(aggregateClass, aggregateId);
+    if (aggregate instanceof Snapshotable<?> snapshotable) {
+      reproduceFromLatestSnapshot(snapshotable, aggregateId);
+    }
+    aggregate.reproduceFromEventViews(eventStore.openViewCursor(aggregateId, aggregate.getAggregateVersion()));
+    if (aggregateCache != null) {
+      aggregateCache.put(aggregate);
+    }
+    return aggregate;
+  }
+
+  /**
+   * Loads an aggregate of the given type, see {@link #load(Class, UUID)}.
+   *
+   * @param aggregateType The aggregate type, as in {@link Command#getAggregateType()}.
+   * @param aggregateId The aggregate id.
+   * @return The reproduced aggregate, at version 0 if it has no events yet.
+   * @throws IllegalArgumentException if the aggregate type is not registered in the {@link AggregateRegistry}.
+   */
+  public Aggregate load(String aggregateType, UUID aggregateId) {
+    return load(aggregateFactory.getRegistry().classOf(aggregateType), aggregateId);
+  }
+
+  /**
+   * Loads an aggregate as it was at the given version: from the latest snapshot at or before the version, if any,
+   * plus the events appended after it up to the version.
+   *
+   * @param aggregateClass The aggregate class.
+   * @param aggregateId The aggregate id.
+   * @param aggregateVersion The version. Versions after the current one load the current aggregate.
+   * @param <T> The aggregate type.
+   * @return The reproduced aggregate, at version 0 if it had no events yet.
+   */
+  public <T extends Aggregate> T loadAsOfVersion(Class<T> aggregateClass, UUID aggregateId, long aggregateVersion) {
+    final T aggregate = aggregateFactory.newInstance(aggregateClass, aggregateId);
+    if (aggregate instanceof Snapshotable<?> snapshotable) {
+      reproduceFromSnapshotAtOrBefore(snapshotable, aggregateId, aggregateVersion);
+    }
+    aggregate.reproduceFromEventViews(eventStore.openViewCursor(aggregateId, aggregate.getAggregateVersion(), aggregateVersion));
+    return aggregate;
+  }
+
+  /**
+   * Loads an aggregate as it was once the event at the given offset was appended, see
+   * {@link #loadAsOfVersion(Class, UUID, long)}.
+   *
+   * @param aggregateClass The aggregate class.
+   * @param aggregateId The aggregate id.
+   * @param offsetId The offset id.
+   * @param <T> The aggregate type.
+   * @return The reproduced aggregate, at version 0 if it had no events yet.
+   */
+  public <T extends Aggregate> T loadAsOfOffset(Class<T> aggregateClass, UUID aggregateId, long offsetId) {
+    return loadAsOfVersion(aggregateClass, aggregateId, eventStore.getAggregateVersionAt(aggregateId, offsetId));
+  }
+
+  /**
+   * Loads an aggregate as it was at the given time, i.e. at the offset of the log at that time, see
+   * {@link EventStore#getOffsetIdAt(OffsetDateTime)} and {@link #loadAsOfVersion(Class, UUID, long)}.
+   *
+   * @param aggregateClass The aggregate class.
+   * @param aggregateId The aggregate id.
+   * @param time The time.
+   * @param <T> The aggregate type.
+   * @return The reproduced aggregate, at version 0 if it had no events yet.
+   */
+  public <T extends Aggregate> T loadAsOf(Class<T> aggregateClass, UUID aggregateId, @NonNull OffsetDateTime time) {
+    return loadAsOfOffset(aggregateClass, aggregateId, eventStore.getOffsetIdAt(time));
+  }
+
+  /**
+   * Appends the unconfirmed events of the aggregate to the event store and marks them as confirmed. Then takes a
+   * snapshot of the aggregate if the snapshot policy decides so.
+   *
+   * @param aggregate The aggregate to save.
+   * @throws OptimisticConcurrencyException if the aggregate was modified in the store since it was loaded.
+   */
+  public void save(Aggregate aggregate) {
+    saveAll(List.of(aggregate));
+  }
+
+  /**
+   * Appends the unconfirmed events of all the aggregates to the event store in a single group commit, see
+   * {@link EventStore#appendAll(List)}, marks them as confirmed and caches the saved aggregates. Then takes a snapshot
+   * of every aggregate the snapshot policy decides so; a snapshot that can't be taken is logged and skipped.
+   *
+   * @param aggregates The aggregates to save, each one at most once.
+   * @throws OptimisticConcurrencyException if any aggregate was modified in the store since it was loaded. In that
+   *                                        case no aggregate is saved.
+   */
+  public void saveAll(Collection<? extends Aggregate> aggregates) {
+    final List<EventStore.AppendRequest> requests = new ArrayList<>(aggregates.size());
+    for (Aggregate aggregate : aggregates) {
+      if (!aggregate.getUnconfirmedEventsPool().isEmpty()) {
+        requests.add(new EventStore.AppendRequest(aggregate.getAggregateId(), aggregate.getReproducedAggregateVersion(), aggregate.getUnconfirmedEventsPool()));
+      }
+    }
+    if (requests.isEmpty()) {
+      return;
+    }
+    AggregateMetrics.global().recordAppends(requests.size());
+    try {
+      eventStore.appendAll(requests);
+    } catch (OptimisticConcurrencyException e) {
+      AggregateMetrics.global().recordVersionConflict();
+      throw e;
+    }
+    final List<Aggregate> saved = new ArrayList<>(requests.size());
+    for (Aggregate aggregate : aggregates) {
+      if (!aggregate.getUnconfirmedEventsPool().isEmpty()) {
+        aggregate.markUnconfirmedEventsAsConfirmed();
+        if (aggregateCache != null) {
+          aggregateCache.put(aggregate);
+        }
+        saved.add(aggregate);
+      }
+    }
+    // The events are committed: a snapshot failure only costs a longer replay, it doesn't fail the save
+    for (Aggregate aggregate : saved) {
+      if (aggregate instanceof Snapshotable<?> snapshotable) {
+        try {
+          takeSnapshotIfNeeded(aggregate, snapshotable);
+        } catch (RuntimeException e) {
+          log.warn("Unable to take a snapshot of the aggregate {}", aggregate.getAggregateId(), e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Catches up an aggregate with the events appended to its stream in the store after its version, without reloading
+   * it.
+   *
+   * @param aggregate The aggregate, without unconfirmed events.
+   * @throws IllegalStateException if the aggregate has unconfirmed events.
+   */
+  public void catchUp(Aggregate aggregate) {
+    aggregate.reproduceFromEventViews(eventStore.openViewCursor(aggregate.getAggregateId(), aggregate.getAggregateVersion()));
+  }
+
+  /**
+   * Catches up a cached aggregate with the events appended to its stream after it was cached.
+   *
+   * @return false if the aggregate can't be refreshed, in which case it has been invalidated.
+   */
+  private boolean refresh(Aggregate cached) {
+    final long version = eventStore.getAggregateVersion(cached.getAggregateId());
+    if (version == cached.getAggregateVersion()) {
+      return true;
+    }
+    if (version > cached.getAggregateVersion()) {
+      try {
+        catchUp(cached);
+        aggregateCache.recordRefresh();
+        return true;
+      } catch (RuntimeException e) {
+        log.warn("Unable to refresh the cached aggregate {}", cached.getAggregateId(), e);
+      }
+    }
+    aggregateCache.invalidate(cached.getAggregateId());
+    return false;
+  }
+
+  private <S> void reproduceFromLatestSnapshot(Snapshotable<S> snapshotable, UUID aggregateId) {
+    snapshotStore.findLatest(aggregateId, snapshotable.getSnapshotStateClass()).ifPresent(snapshot -> {
+      snapshotable.reproduceFromSnapshot(snapshot);
+      latestSnapshots.put(aggregateId, new SnapshotMark(snapshot.aggregateVersion(), snapshot.time()));
+    });
+  }
+
+  private <S> void reproduceFromSnapshotAtOrBefore(Snapshotable<S> snapshotable, UUID aggregateId, long aggregateVersion) {
+    snapshotStore.findLatestAtOrBefore(aggregateId, aggregateVersion, snapshotable.getSnapshotStateClass()).ifPresent(snapshotable::reproduceFromSnapshot);
+  }
+
+  private void takeSnapshotIfNeeded(Aggregate aggregate, Snapshotable<?> snapshotable) {
+    final SnapshotMark latest = latestSnapshots.get(aggregate.getAggregateId());
+    final long eventsSinceSnapshot = aggregate.getAggregateVersion() - (latest == null ? 0 : latest.aggregateVersion());
+    final Duration timeSinceSnapshot = latest == null ? null : Duration.between(latest.time(), OffsetDateTime.now(ZoneOffset.UTC));
+    if (eventsSinceSnapshot > 0 && snapshotPolicy.shouldTakeSnapshot(eventsSinceSnapshot, timeSinceSnapshot)) {
+      final Snapshot<?> snapshot = snapshotable.takeSnapshot();
+      snapshotStore.save(snapshot);
+      latestSnapshots.put(aggregate.getAggregateId(), new SnapshotMark(snapshot.aggregateVersion(), snapshot.time()));
+      log.debug("Snapshot of aggregate {} taken at version {}", snapshot.aggregateId(), snapshot.aggregateVersion());
+    }
+  }
+
+  private record SnapshotMark(long aggregateVersion, OffsetDateTime time) {
+  }
+}
@@ -4,15 +4,42 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 //@RequiredArgsConstructor(onConstructor = @__(@Autowired))
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 @Getter
 public enum AggregateType {
 
-  ACCOUNT_AGGREGATE(AccountAggregate.class, "ACCOUNT_AGGREGATE");
+  ACCOUNT_AGGREGATE(AccountAggregate.class, "ACCOUNT_AGGREGATE", AccountAggregate::new);
+
+  private static final Map<String, AggregateType> BY_TYPE = Arrays.stream(values())
+    .collect(Collectors.toUnmodifiableMap(AggregateType::getType, Function.identity()));
 
   private final Class<? extends Aggregate> clazz;
   private final String type;
+  // Creates an aggregate from its id and version, see AggregateRegistry
+  private final BiFunction<UUID, Long, ? extends Aggregate> constructor;
   //private final String value;
 
+  /**
+   * Resolves the enum constant of the given aggregate type.
+   *
+   * @param type The aggregate type, as in {@link Command#getAggregateType()}.
+   * @return The aggregate type.
+   * @throws IllegalArgumentException if the aggregate type is unknown.
+   */
+  public static AggregateType of(String type) {
+    final AggregateType aggregateType = BY_TYPE.get(type);
+    if (aggregateType == null) {
+      throw new IllegalArgumentException("Unknown aggregate type " + type);
+    }
+    return aggregateType;
+  }
+
 }
@@ -0,0 +1,130 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+
+/**
+ * Read model of the total balance of the accounts of every owner. Accounts created without an owner are left out.
+ * <p>
+ * The owners of the accounts outnumber the balances and never change, so the changes of a batch only hold the owners
+ * of the accounts created and the balances updated by the batch.
+ */
+public final class BalanceByOwnerProjection extends Projection {
+
+  public static final String NAME = "balance-by-owner";
+
+  // The owner of every account, as deposits and withdrawals only carry the account id
+  private final Map<UUID, String> owners = new ConcurrentHashMap<>();
+  private final Map<String, Money> balances = new ConcurrentHashMap<>();
+  // The changes since the state or the changes were last written or read, only touched by the handlers' thread
+  private final Map<UUID, String> createdOwners = new HashMap<>();
+  private final Set<String> updatedBalances = new HashSet<>();
+
+  public BalanceByOwnerProjection() {
+    on(AccountCreatedEvent.class, event -> {
+      final AccountVO account = event.getData();
+      if (account.owner() != null) {
+        owners.put(event.getAggregateId(), account.owner());
+        balances.merge(account.owner(), account.balance(), Money::plus);
+        createdOwners.put(event.getAggregateId(), account.owner());
+        updatedBalances.add(account.owner());
+      }
+    });
+    on(AccountDepositedEvent.class, event -> mergeIntoOwner(event.getAggregateId(), event.getData().amount(), Money::plus));
+    on(AccountWithdrawnEvent.class, event -> mergeIntoOwner(event.getAggregateId(), event.getData().amount(), Money::minus));
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  /**
+   * Returns the total balance of the accounts of an owner.
+   *
+   * @param owner The owner.
+   * @return The balance, zero if the owner has no account.
+   */
+  public Money getBalance(String owner) {
+    return balances.getOrDefault(owner, Money.ZERO);
+  }
+
+  public Map<String, Money> getBalances() {
+    return Collections.unmodifiableMap(balances);
+  }
+
+  // Accounts left out have no owner and their movements are skipped
+  private void mergeIntoOwner(UUID accountId, Money amount, BinaryOperator<Money> operator) {
+    final String owner = owners.get(accountId);
+    if (owner != null) {
+      balances.merge(owner, amount, operator);
+      updatedBalances.add(owner);
+    }
+  }
+
+  @Override
+  protected void reset() {
+    owners.clear();
+    balances.clear();
+    createdOwners.clear();
+    updatedBalances.clear();
+  }
+
+  @Override
+  protected void writeState(DataOutputStream out) throws IOException {
+    writeOwners(out, owners);
+    writeBalances(out, balances.keySet());
+    createdOwners.clear();
+    updatedBalances.clear();
+  }
+
+  @Override
+  protected void readState(DataInputStream in) throws IOException {
+    reset();
+    readChanges(in);
+  }
+
+  @Override
+  protected void writeChanges(DataOutputStream out) throws IOException {
+    writeOwners(out, createdOwners);
+    writeBalances(out, updatedBalances);
+    createdOwners.clear();
+    updatedBalances.clear();
+  }
+
+  @Override
+  protected void readChanges(DataInputStream in) throws IOException {
+    for (int i = in.readInt(); i > 0; i--) {
+      owners.put(new UUID(in.readLong(), in.readLong()), in.readUTF());
+    }
+    for (int i = in.readInt(); i > 0; i--) {
+      balances.put(in.readUTF(), Money.ofMinor(in.readLong()));
+    }
+  }
+
+  private static void writeOwners(DataOutputStream out, Map<UUID, String> owners) throws IOException {
+    out.writeInt(owners.size());
+    for (Map.Entry<UUID, String> entry : owners.entrySet()) {
+      out.writeLong(entry.getKey().getMostSignificantBits());
+      out.writeLong(entry.getKey().getLeastSignificantBits());
+      out.writeUTF(entry.getValue());
+    }
+  }
+
+  private void writeBalances(DataOutputStream out, Set<String> owners) throws IOException {
+    out.writeInt(owners.size());
+    for (String owner : owners) {
+      out.writeUTF(owner);
+      out.writeLong(balances.get(owner).minorUnits());
+    }
+  }
+}
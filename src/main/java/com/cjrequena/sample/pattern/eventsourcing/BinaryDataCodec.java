@@ -0,0 +1,104 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Compact binary schema of the data of one {@link EventType}.
+ * <p>
+ * The layout written by a codec is the current schema version of its event type, see
+ * {@link EventType#getSchemaVersion()}. Any change to the layout must bump that version.
+ *
+ * @param <T> The type of the event data.
+ */
+public interface BinaryDataCodec<T> {
+
+  /**
+   * Writes the data at the current position of the buffer, advancing the position past it.
+   *
+   * @throws java.nio.BufferOverflowException if the data doesn't fit in the remaining space of the buffer.
+   */
+  void write(T data, ByteBuffer target);
+
+  /**
+   * Reads the data from the current position of the buffer, advancing the position past it.
+   */
+  T read(ByteBuffer source);
+
+  /**
+   * Writes a UUID as two longs.
+   */
+  static void putUUID(ByteBuffer target, UUID value) {
+    target.putLong(value.getMostSignificantBits());
+    target.putLong(value.getLeastSignificantBits());
+  }
+
+  static UUID getUUID(ByteBuffer source) {
+    return new UUID(source.getLong(), source.getLong());
+  }
+
+  /**
+   * Writes an amount of money as a decimal: its minor units, i.e. its unscaled value, followed by its scale as a byte.
+   */
+  static void putMoney(ByteBuffer target, Money value) {
+    target.putLong(value.minorUnits());
+    target.put((byte) Money.SCALE);
+  }
+
+  /**
+   * Reads an amount of money written as a decimal, see {@link #putMoney(ByteBuffer, Money)}. Decimals with another
+   * scale are rounded to the scale of money.
+   */
+  static Money getMoney(ByteBuffer source) {
+    final long unscaledValue = source.getLong();
+    final byte scale = source.get();
+    return scale == Money.SCALE ? Money.ofMinor(unscaledValue) : Money.of(BigDecimal.valueOf(unscaledValue, scale));
+  }
+
+  /**
+   * Reads the minor units of an amount of money written as a decimal at the given index, see
+   * {@link #putMoney(ByteBuffer, Money)}, without moving the position of the buffer nor allocating the amount.
+   */
+  static long getMoneyMinorUnits(ByteBuffer source, int index) {
+    final long unscaledValue = source.getLong(index);
+    final byte scale = source.get(index + Long.BYTES);
+    return scale == Money.SCALE ? unscaledValue : Money.of(BigDecimal.valueOf(unscaledValue, scale)).minorUnits();
+  }
+
+  /**
+   * Writes a nullable string as its UTF-8 length, -1 for null, followed by its UTF-8 bytes.
+   */
+  static void putString(ByteBuffer target, String value) {
+    if (value == null) {
+      target.putInt(-1);
+      return;
+    }
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    target.putInt(bytes.length);
+    target.put(bytes);
+  }
+
+  static String getString(ByteBuffer source) {
+    final int length = source.getInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    source.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes a nullable boolean as a byte: -1 for null, 0 for false and 1 for true.
+   */
+  static void putBoolean(ByteBuffer target, Boolean value) {
+    target.put(value == null ? (byte) -1 : value ? (byte) 1 : (byte) 0);
+  }
+
+  static Boolean getBoolean(ByteBuffer source) {
+    final byte value = source.get();
+    return value < 0 ? null : value == 1;
+  }
+}
@@ -0,0 +1,25 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes event payloads with the compact {@link BinaryDataCodec} registered by every {@link EventType}.
+ */
+final class BinaryEventDataCodec implements EventDataCodec {
+
+  static final BinaryEventDataCodec INSTANCE = new BinaryEventDataCodec();
+
+  private BinaryEventDataCodec() {
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void encode(EventType eventType, Object data, ByteBuffer target) {
+    ((BinaryDataCodec<Object>) eventType.getBinaryDataCodec()).write(data, target);
+  }
+
+  @Override
+  public Object decode(Class<?> dataClass, BinaryDataCodec<?> binaryDataCodec, ByteBuffer source) {
+    return binaryDataCodec.read(source);
+  }
+}
@@ -0,0 +1,183 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Rebuilds many aggregates at once from a single stream of events in global, i.e. {@code offsetId}, order.
+ * <p>
+ * The calling thread reads the stream and partitions it by {@code aggregateId}. Every partition owns the aggregates
+ * hashed to it and receives their events in chunks. The chunks of one partition are applied one after another on a
+ * {@link ForkJoinPool}, which keeps the order of the events of every aggregate, while different partitions are
+ * applied in parallel. The number of chunks in flight is bounded, so the reader blocks instead of buffering the whole
+ * stream when the pool falls behind.
+ * <p>
+ * Progress is reported to a listener every {@code progressInterval} read events, and once more when the rebuild is
+ * complete.
+ */
+@Log4j2
+public class BulkRehydrator {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1024;
+  public static final long DEFAULT_PROGRESS_INTERVAL = 1_000_000;
+
+  private final AggregateFactory aggregateFactory;
+  private final ForkJoinPool pool;
+  private final int chunkSize;
+  private final long progressInterval;
+  private final Consumer<Progress> progressListener;
+
+  /**
+   * Creates a rehydrator applying events on the common pool and logging its progress.
+   */
+  public BulkRehydrator(AggregateFactory aggregateFactory) {
+    this(aggregateFactory, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, DEFAULT_PROGRESS_INTERVAL,
+      progress -> log.info("Rehydrated {} events of {} aggregates, {} events/s", progress.events(), progress.aggregates(), (long) progress.eventsPerSecond()));
+  }
+
+  /**
+   * Creates a rehydrator.
+   *
+   * @param aggregateFactory Creates the aggregates seen for the first time in the stream.
+   * @param pool The pool applying the events.
+   * @param chunkSize The number of events handed to a partition at once.
+   * @param progressInterval The number of read events between two progress reports.
+   * @param progressListener Receives the progress reports, on the reading thread.
+   */
+  public BulkRehydrator(@NonNull AggregateFactory aggregateFactory, @NonNull ForkJoinPool pool, int chunkSize, long progressInterval,
+    @NonNull Consumer<Progress> progressListener) {
+    if (chunkSize < 1 || progressInterval < 1) {
+      throw new IllegalArgumentException("The chunk size and the progress interval must be positive.");
+    }
+    this.aggregateFactory = aggregateFactory;
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+    this.progressInterval = progressInterval;
+    this.progressListener = progressListener;
+  }
+
+  /**
+   * Rebuilds the aggregates of all the events of the stream.
+   *
+   * @param aggregateClass The class of the aggregates.
+   * @param events The events, in {@code offsetId} order.
+   * @param <T> The aggregate type.
+   * @return The rebuilt aggregates by id.
+   * @throws RuntimeException the first failure applying an event, once the chunks in flight are done.
+   */
+  public <T extends Aggregate> Map<UUID, T> rehydrate(@NonNull Class<T> aggregateClass, @NonNull Iterator<? extends Event> events) {
+    final long start = System.nanoTime();
+    // A few partitions per worker, so a partition with hot aggregates doesn't hold back a whole worker
+    final int partitionCount = pool.getParallelism() * 4;
+    final Semaphore chunksInFlight = new Semaphore(partitionCount * 2);
+    final LongAdder aggregates = new LongAdder();
+    final List<Partition<T>> partitions = new ArrayList<>(partitionCount);
+    for (int i = 0; i < partitionCount; i++) {
+      partitions.add(new Partition<>(aggregateClass, aggregates));
+    }
+
+    long read = 0;
+    while (events.hasNext()) {
+      final Event event = events.next();
+      final Partition<T> partition = partitions.get(Math.floorMod(spread(event.getAggregateId()), partitionCount));
+      partition.chunk.add(event);
+      if (partition.chunk.size() == chunkSize) {
+        partition.submit(chunksInFlight);
+      }
+      if (++read % progressInterval == 0) {
+        progressListener.accept(new Progress(read, aggregates.sum(), Duration.ofNanos(System.nanoTime() - start)));
+      }
+    }
+    for (Partition<T> partition : partitions) {
+      if (!partition.chunk.isEmpty()) {
+        partition.submit(chunksInFlight);
+      }
+    }
+
+    final Map<UUID, T> rehydrated = new HashMap<>();
+    for (Partition<T> partition : partitions) {
+      try {
+        partition.tail.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException cause ? cause : e;
+      }
+      rehydrated.putAll(partition.aggregates);
+    }
+    progressListener.accept(new Progress(read, rehydrated.size(), Duration.ofNanos(System.nanoTime() - start)));
+    return rehydrated;
+  }
+
+  private static int spread(UUID aggregateId) {
+    final int hash = aggregateId.hashCode() * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * The aggregates hashed to one partition. Its chunks are chained on {@code tail}, so they are applied one at a time
+   * and every chunk sees the aggregates left by the previous one.
+   */
+  private final class Partition<T extends Aggregate> {
+
+    private final Class<T> aggregateClass;
+    private final LongAdder aggregateCount;
+    private final Map<UUID, T> aggregates = new HashMap<>();
+    private List<Event> chunk = new ArrayList<>(chunkSize);
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+    private Partition(Class<T> aggregateClass, LongAdder aggregateCount) {
+      this.aggregateClass = aggregateClass;
+      this.aggregateCount = aggregateCount;
+    }
+
+    private void submit(Semaphore chunksInFlight) {
+      final List<Event> events = chunk;
+      chunk = new ArrayList<>(chunkSize);
+      chunksInFlight.acquireUninterruptibly();
+      tail = tail.thenRunAsync(() -> apply(events), pool).whenComplete((result, failure) -> chunksInFlight.release());
+    }
+
+    private void apply(List<Event> events) {
+      // Group the events of the chunk by aggregate, keeping their order, to replay every aggregate once per chunk
+      final Map<UUID, List<Event>> eventsByAggregate = new LinkedHashMap<>();
+      for (Event event : events) {
+        eventsByAggregate.computeIfAbsent(event.getAggregateId(), aggregateId -> new ArrayList<>()).add(event);
+      }
+      for (Map.Entry<UUID, List<Event>> entry : eventsByAggregate.entrySet()) {
+        aggregates.computeIfAbsent(entry.getKey(), aggregateId -> {
+          aggregateCount.increment();
+          return aggregateFactory.newInstance(aggregateClass, aggregateId);
+        }).reproduceFromEvents(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Progress of a rebuild.
+   *
+   * @param events The number of events read so far.
+   * @param aggregates The number of aggregates created so far.
+   * @param elapsed The time elapsed since the rebuild started.
+   */
+  public record Progress(long events, long aggregates, Duration elapsed) {
+
+    public double eventsPerSecond() {
+      final long nanos = elapsed.toNanos();
+      return nanos == 0 ? 0 : events * 1e9 / nanos;
+    }
+  }
+}
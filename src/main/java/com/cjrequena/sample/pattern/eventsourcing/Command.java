@@ -3,9 +3,7 @@ package com.cjrequena.sample.pattern.eventsourcing;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import jakarta.validation.constraints.NotNull;
-import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 
 import java.util.UUID;
@@ -18,16 +16,32 @@ import java.util.UUID;
  *
  * @author cjrequena
  */
-@RequiredArgsConstructor(access = AccessLevel.PROTECTED)
 @Getter
 @ToString
 @JsonNaming(PropertyNamingStrategies.LowerCaseStrategy.class)
 public abstract class Command {
 
+  // Identifies the command across retries, see CommandDeduplicator
+  @NotNull
+  protected final UUID commandId;
+
   @NotNull
   protected final UUID aggregateId;
 
   @NotNull
   protected final String aggregateType;
 
+  protected Command(UUID aggregateId, String aggregateType) {
+    this(null, aggregateId, aggregateType);
+  }
+
+  /**
+   * @param commandId The command id, or null to generate a new one. A command sent again must keep its id.
+   */
+  protected Command(UUID commandId, UUID aggregateId, String aggregateType) {
+    this.commandId = commandId == null ? UUID.randomUUID() : commandId;
+    this.aggregateId = aggregateId;
+    this.aggregateType = aggregateType;
+  }
+
 }
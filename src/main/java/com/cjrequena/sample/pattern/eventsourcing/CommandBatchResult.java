@@ -0,0 +1,44 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.util.List;
+
+/**
+ * Outcome of a batch of commands dispatched through the {@link CommandBus}.
+ *
+ * @param accepted The number of commands whose events were committed.
+ * @param droppedDuplicates The commands dropped as duplicates of commands already seen, see
+ *                          {@link CommandDeduplicator}.
+ * @param failures The commands that were rejected.
+ */
+public record CommandBatchResult(int accepted, List<Duplicate> droppedDuplicates, List<Failure> failures) {
+
+  /**
+   * Returns the number of commands dropped as duplicates.
+   */
+  public int duplicates() {
+    return droppedDuplicates.size();
+  }
+
+  public boolean isFullyAccepted() {
+    return failures.isEmpty();
+  }
+
+  /**
+   * A rejected command.
+   *
+   * @param command The command.
+   * @param cause The reason it was rejected.
+   */
+  public record Failure(Command command, RuntimeException cause) {
+  }
+
+  /**
+   * A command dropped as a duplicate. Its outcome is the outcome of the original command: committed if the original
+   * was committed by a previous batch, else the outcome of the original within this batch.
+   *
+   * @param command The dropped command.
+   * @param original The command of this batch it duplicates, or null if it duplicates a command committed before.
+   */
+  public record Duplicate(Command command, Command original) {
+  }
+}
@@ -0,0 +1,142 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Applies batches of commands to their aggregates and commits the resulting events with a single group commit.
+ * <p>
+ * The commands of a batch are grouped by {@code aggregateId}, keeping their order within each aggregate. Every
+ * aggregate is loaded once, all its commands are applied to it in memory and then the unconfirmed events of all the
+ * aggregates are appended through {@link AggregateRepository#saveAll}, so the cost of the store lock and of forcing
+ * the segment to disk is paid once per batch instead of once per command.
+ * <p>
+ * A command rejected by its aggregate doesn't stop the batch: its failure is reported and the next commands are
+ * still applied. This relies on aggregates validating a command before changing their state, as
+ * {@link Aggregate#applyUnconfirmedEvent(Event)} only registers an event once it has been applied. If the group commit
+ * itself fails, every command of the batch is reported as failed.
+ * <p>
+ * With a {@link CommandDeduplicator}, a command whose id has already been seen is dropped before it reaches its
+ * aggregate, without loading the aggregate nor touching the store, and takes the outcome of the command it duplicates,
+ * see {@link CommandBatchResult.Duplicate}. The ids are reserved while the batch is applied and committed once its
+ * events are stored, while the ids of the commands that fail are forgotten, so they can be retried. A command whose
+ * id is reserved by another batch still in flight fails, as the outcome of that batch isn't known yet.
+ * <p>
+ * The bus is not thread-safe: callers must not dispatch concurrent batches touching the same aggregates.
+ */
+@Log4j2
+public class CommandBus {
+
+  @NonNull
+  private final AggregateRepository aggregateRepository;
+
+  // Null when commands are not deduplicated
+  private final CommandDeduplicator commandDeduplicator;
+
+  /**
+   * Creates a bus without command deduplication.
+   */
+  public CommandBus(AggregateRepository aggregateRepository) {
+    this(aggregateRepository, null);
+  }
+
+  /**
+   * Creates a bus.
+   *
+   * @param commandDeduplicator The window of the ids of the commands already seen, or null to apply every command.
+   */
+  public CommandBus(@NonNull AggregateRepository aggregateRepository, CommandDeduplicator commandDeduplicator) {
+    this.aggregateRepository = aggregateRepository;
+    this.commandDeduplicator = commandDeduplicator;
+  }
+
+  /**
+   * Dispatches a batch of commands.
+   *
+   * @param commands The commands, in the order they must be applied to each aggregate.
+   * @return The outcome of the batch.
+   */
+  public CommandBatchResult dispatch(List<? extends Command> commands) {
+    final Map<UUID, List<Command>> commandsByAggregate = new LinkedHashMap<>();
+    final List<CommandBatchResult.Duplicate> duplicates = new ArrayList<>();
+    // Failures of the commands not applied by this batch, whose ids must not be forgotten
+    final List<CommandBatchResult.Failure> inFlight = new ArrayList<>();
+    // The first command of the batch with every id
+    final Map<UUID, Command> originals = new HashMap<>();
+    for (Command command : commands) {
+      if (commandDeduplicator != null) {
+        final UUID commandId = command.getCommandId();
+        final Command original = originals.get(commandId);
+        if (original != null) {
+          log.debug("Command {} dropped as a duplicate within its batch", commandId);
+          duplicates.add(new CommandBatchResult.Duplicate(command, original));
+          continue;
+        }
+        if (!commandDeduplicator.reserveIfAbsent(commandId)) {
+          if (commandDeduplicator.isInFlight(commandId)) {
+            // Being applied by another batch, which may still fail
+            inFlight.add(new CommandBatchResult.Failure(command, new IllegalStateException("Command %s is still in flight.".formatted(commandId))));
+          } else {
+            log.debug("Command {} dropped as a duplicate", commandId);
+            duplicates.add(new CommandBatchResult.Duplicate(command, null));
+          }
+          continue;
+        }
+        originals.put(commandId, command);
+      }
+      commandsByAggregate.computeIfAbsent(command.getAggregateId(), aggregateId -> new ArrayList<>()).add(command);
+    }
+
+    final List<Aggregate> aggregates = new ArrayList<>(commandsByAggregate.size());
+    final List<Command> applied = new ArrayList<>(commands.size());
+    final List<CommandBatchResult.Failure> failures = new ArrayList<>(inFlight);
+    for (Map.Entry<UUID, List<Command>> entry : commandsByAggregate.entrySet()) {
+      final Aggregate aggregate;
+      try {
+        final Command first = entry.getValue().get(0);
+        aggregate = aggregateRepository.load(first.getAggregateType(), entry.getKey());
+      } catch (RuntimeException e) {
+        entry.getValue().forEach(command -> fail(failures, command, e));
+        continue;
+      }
+      for (Command command : entry.getValue()) {
+        try {
+          aggregate.applyCommand(command);
+          applied.add(command);
+        } catch (RuntimeException e) {
+          log.debug("Command {} rejected", command, e);
+          fail(failures, command, e);
+        }
+      }
+      aggregates.add(aggregate);
+    }
+
+    try {
+      aggregateRepository.saveAll(aggregates);
+    } catch (RuntimeException e) {
+      log.warn("Group commit of {} commands failed", commands.size(), e);
+      final List<CommandBatchResult.Failure> all = new ArrayList<>(inFlight);
+      commandsByAggregate.values().forEach(aggregateCommands -> aggregateCommands.forEach(command -> fail(all, command, e)));
+      return new CommandBatchResult(0, Collections.unmodifiableList(duplicates), Collections.unmodifiableList(all));
+    }
+    if (commandDeduplicator != null) {
+      applied.forEach(command -> commandDeduplicator.commit(command.getCommandId()));
+    }
+    return new CommandBatchResult(applied.size(), Collections.unmodifiableList(duplicates), Collections.unmodifiableList(failures));
+  }
+
+  private void fail(List<CommandBatchResult.Failure> failures, Command command, RuntimeException cause) {
+    failures.add(new CommandBatchResult.Failure(command, cause));
+    if (commandDeduplicator != null) {
+      commandDeduplicator.forget(command.getCommandId());
+    }
+  }
+}
@@ -0,0 +1,314 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process window of the ids of the recently seen commands, used to drop commands sent again, e.g. by a retrying
+ * client, before they are applied a second time.
+ * <p>
+ * The ids of the window are kept in a concurrent hash set, bounded both by a number of ids and by the time an id is
+ * kept. Ids are evicted oldest first once any bound is exceeded, by the thread marking a new id, so marking an id is
+ * O(1) amortized and never blocks on another thread.
+ * <p>
+ * The id of a command being applied is reserved with {@link #reserveIfAbsent(UUID)}, then committed with
+ * {@link #commit(UUID)} once its events are stored, or forgotten with {@link #forget(UUID)} if it fails. A reserved id
+ * is never evicted: the ids marked after it wait until it is committed or forgotten, so the window may exceed its
+ * bounds by the ids of the commands in flight, and the id of a command that fails can always be forgotten.
+ * <p>
+ * Optionally, evicted ids move to a cold range held by two generations of Bloom filters of {@code coldCapacity} ids
+ * each, so the window covers between one and two times {@code coldCapacity} more ids, at about 10 bits per id for a 1%
+ * false positive rate. A Bloom filter has false positives: a new command whose id is wrongly found in the cold range,
+ * at the configured rate, is dropped as a duplicate and must be sent again with a new id.
+ */
+public class CommandDeduplicator {
+
+  // States of a mark: reserved by a command in flight, committed, forgotten, or evicted from the window
+  private static final int IN_FLIGHT = 0;
+  private static final int COMMITTED = 1;
+  private static final int FORGOTTEN = 2;
+  private static final int EVICTED = 3;
+
+  private final int maxEntries;
+  private final long windowNanos;
+  private final LongSupplier ticker;
+
+  private final ConcurrentHashMap<UUID, Mark> marks = new ConcurrentHashMap<>();
+  // Marks in the order they were made, the head is the oldest one
+  private final ConcurrentLinkedQueue<Mark> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  // Null without a cold range
+  private final ColdRange coldRange;
+
+  /**
+   * Creates a deduplicator.
+   *
+   * @param maxEntries The maximum number of ids in the window.
+   * @param window The maximum time an id is kept in the window.
+   * @param coldCapacity The number of ids per generation of the cold range, or 0 for no cold range.
+   * @param falsePositiveRate The rate of new ids wrongly found in the cold range.
+   */
+  public CommandDeduplicator(int maxEntries, @NonNull Duration window, int coldCapacity, double falsePositiveRate) {
+    this(maxEntries, window, coldCapacity, falsePositiveRate, System::nanoTime);
+  }
+
+  CommandDeduplicator(int maxEntries, @NonNull Duration window, int coldCapacity, double falsePositiveRate, @NonNull LongSupplier ticker) {
+    if (maxEntries < 1 || window.isNegative() || window.isZero() || coldCapacity < 0) {
+      throw new IllegalArgumentException("The max entries and the window must be positive, the cold capacity can't be negative.");
+    }
+    if (coldCapacity > 0 && !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("The false positive rate must be between 0 and 1.");
+    }
+    this.maxEntries = maxEntries;
+    this.windowNanos = window.toNanos();
+    this.ticker = ticker;
+    this.coldRange = coldCapacity == 0 ? null : new ColdRange(coldCapacity, falsePositiveRate);
+  }
+
+  /**
+   * Creates a deduplicator without a cold range.
+   *
+   * @param maxEntries The maximum number of ids in the window.
+   * @param window The maximum time an id is kept in the window.
+   */
+  public static CommandDeduplicator of(int maxEntries, Duration window) {
+    return new CommandDeduplicator(maxEntries, window, 0, 0);
+  }
+
+  /**
+   * Adds the id of a command to the window, unless it is already there.
+   *
+   * @param commandId The command id.
+   * @return true if the id is new, false if the command is a duplicate.
+   */
+  public boolean markIfAbsent(@NonNull UUID commandId) {
+    return addIfAbsent(commandId, COMMITTED);
+  }
+
+  /**
+   * Adds the id of a command about to be applied to the window, unless it is already there. The id isn't evicted
+   * until it is committed or forgotten.
+   *
+   * @param commandId The command id.
+   * @return true if the id is new, false if the command is a duplicate.
+   */
+  public boolean reserveIfAbsent(@NonNull UUID commandId) {
+    return addIfAbsent(commandId, IN_FLIGHT);
+  }
+
+  /**
+   * Marks a reserved id as the id of a committed command, which may be evicted from now on.
+   *
+   * @param commandId The command id.
+   */
+  public void commit(@NonNull UUID commandId) {
+    final Mark mark = marks.get(commandId);
+    if (mark != null && mark.state.compareAndSet(IN_FLIGHT, COMMITTED)) {
+      evict(ticker.getAsLong());
+    }
+  }
+
+  /**
+   * Returns whether an id is reserved by a command not committed nor forgotten yet.
+   *
+   * @param commandId The command id.
+   */
+  public boolean isInFlight(@NonNull UUID commandId) {
+    final Mark mark = marks.get(commandId);
+    return mark != null && mark.state.get() == IN_FLIGHT;
+  }
+
+  /**
+   * Removes the id of a command from the window, so the command is accepted again, e.g. because it failed. An id
+   * already evicted to the cold range is kept there, which never happens to a reserved id.
+   *
+   * @param commandId The command id.
+   */
+  public void forget(@NonNull UUID commandId) {
+    final Mark mark = marks.get(commandId);
+    if (mark == null) {
+      return;
+    }
+    while (true) {
+      final int state = mark.state.get();
+      if (state == FORGOTTEN || state == EVICTED) {
+        return;
+      }
+      if (mark.state.compareAndSet(state, FORGOTTEN)) {
+        marks.remove(commandId, mark);
+        // The mark stays in the queue until it reaches its head, but no longer counts
+        queued.decrementAndGet();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of ids in the window, excluding the cold range.
+   */
+  public int size() {
+    return marks.size();
+  }
+
+  private boolean addIfAbsent(UUID commandId, int state) {
+    final long now = ticker.getAsLong();
+    final Mark mark = new Mark(commandId, now, state);
+    if (marks.putIfAbsent(commandId, mark) != null) {
+      return false;
+    }
+    // Evicted ids reach the cold range before they leave the window, so an id is always found in one or the other
+    if (coldRange != null && coldRange.mightContain(commandId)) {
+      marks.remove(commandId, mark);
+      return false;
+    }
+    queue.add(mark);
+    queued.incrementAndGet();
+    evict(now);
+    return true;
+  }
+
+  private void evict(long now) {
+    // A single thread evicts at a time, the others don't wait for it
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      Mark eldest;
+      while ((eldest = queue.peek()) != null) {
+        final int state = eldest.state.get();
+        if (state == FORGOTTEN) {
+          // Uncounted already, only dropped from the queue
+          queue.poll();
+          continue;
+        }
+        if (queued.get() <= maxEntries && now - eldest.time < windowNanos) {
+          return;
+        }
+        if (state == IN_FLIGHT) {
+          // Evicted once its command is committed, the ids after it wait
+          return;
+        }
+        if (eldest.state.compareAndSet(COMMITTED, EVICTED)) {
+          queue.poll();
+          queued.decrementAndGet();
+          if (coldRange != null) {
+            coldRange.add(eldest.commandId);
+          }
+          marks.remove(eldest.commandId, eldest);
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private static final class Mark {
+
+    private final UUID commandId;
+    private final long time;
+    private final AtomicInteger state;
+
+    private Mark(UUID commandId, long time, int state) {
+      this.commandId = commandId;
+      this.time = time;
+      this.state = new AtomicInteger(state);
+    }
+  }
+
+  /**
+   * The ids evicted from the window. Ids are added to the current generation and, once it is full, the previous
+   * generation is dropped and the current one takes its place. Only the evicting thread adds ids.
+   */
+  private static final class ColdRange {
+
+    private final int capacity;
+    private final double falsePositiveRate;
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+
+    private ColdRange(int capacity, double falsePositiveRate) {
+      this.capacity = capacity;
+      this.falsePositiveRate = falsePositiveRate;
+      this.current = new BloomFilter(capacity, falsePositiveRate);
+    }
+
+    private boolean mightContain(UUID id) {
+      // Read the current generation first, so a concurrent rotation can't hide the generation it retires
+      final BloomFilter newer = current;
+      final BloomFilter older = previous;
+      return newer.mightContain(id) || (older != null && older.mightContain(id));
+    }
+
+    private void add(UUID id) {
+      if (current.count == capacity) {
+        previous = current;
+        current = new BloomFilter(capacity, falsePositiveRate);
+      }
+      current.add(id);
+    }
+  }
+
+  /**
+   * Bloom filter of UUIDs, probed through double hashing of the two halves of the id.
+   */
+  private static final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private int count;
+
+    private BloomFilter(int capacity, double falsePositiveRate) {
+      final double bitsPerId = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+      this.words = new AtomicLongArray((int) Math.max(1, (long) Math.ceil(capacity * bitsPerId / Long.SIZE)));
+      this.bitCount = (long) words.length() * Long.SIZE;
+      this.hashCount = Math.max(1, (int) Math.round(bitsPerId * Math.log(2)));
+    }
+
+    private void add(UUID id) {
+      final long hash1 = mix(id.getMostSignificantBits());
+      final long hash2 = mix(id.getLeastSignificantBits()) | 1;
+      for (int i = 0; i < hashCount; i++) {
+        final long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+        final int word = (int) (bit >>> 6);
+        final long mask = 1L << bit;
+        long value;
+        do {
+          value = words.get(word);
+        } while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask));
+      }
+      count++;
+    }
+
+    private boolean mightContain(UUID id) {
+      final long hash1 = mix(id.getMostSignificantBits());
+      final long hash2 = mix(id.getLeastSignificantBits()) | 1;
+      for (int i = 0; i < hashCount; i++) {
+        final long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+        if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // Finalizer of MurmurHash3
+    private static long mix(long value) {
+      value ^= value >>> 33;
+      value *= 0xff51afd7ed558ccdL;
+      value ^= value >>> 33;
+      value *= 0xc4ceb93e5a4ed53bL;
+      return value ^ (value >>> 33);
+    }
+  }
+}
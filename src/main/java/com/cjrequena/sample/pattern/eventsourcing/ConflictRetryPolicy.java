@@ -0,0 +1,60 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how often, and after how long, a command failing with an {@link OptimisticConcurrencyException} is retried
+ * by a {@link RetryingCommandExecutor}.
+ * <p>
+ * The backoff grows exponentially from {@code initialBackoff} by {@code multiplier} at every retry, up to
+ * {@code maxBackoff}. The actual delay is drawn uniformly between zero and the backoff ("full jitter"), so the writers
+ * of a hot aggregate don't retry in lockstep.
+ *
+ * @param maxAttempts The maximum number of attempts, including the first one.
+ * @param initialBackoff The backoff before the first retry.
+ * @param maxBackoff The maximum backoff.
+ * @param multiplier The growth of the backoff between two retries, at least 1.
+ */
+public record ConflictRetryPolicy(int maxAttempts, @NonNull Duration initialBackoff, @NonNull Duration maxBackoff, double multiplier) {
+
+  public static final ConflictRetryPolicy DEFAULT = new ConflictRetryPolicy(5, Duration.ofMillis(1), Duration.ofMillis(100), 2);
+
+  public ConflictRetryPolicy {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("The max attempts must be positive.");
+    }
+    if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0 || multiplier < 1) {
+      throw new IllegalArgumentException("The backoff can't be negative nor shrink between retries.");
+    }
+  }
+
+  /**
+   * Never retries.
+   */
+  public static ConflictRetryPolicy noRetry() {
+    return new ConflictRetryPolicy(1, Duration.ZERO, Duration.ZERO, 1);
+  }
+
+  /**
+   * Retries up to {@code maxAttempts - 1} times without waiting.
+   *
+   * @param maxAttempts The maximum number of attempts, including the first one.
+   */
+  public static ConflictRetryPolicy immediate(int maxAttempts) {
+    return new ConflictRetryPolicy(maxAttempts, Duration.ZERO, Duration.ZERO, 1);
+  }
+
+  /**
+   * Returns the delay before a retry.
+   *
+   * @param retry The retry, 1 for the first one.
+   * @return The delay in nanoseconds, drawn between zero and the backoff of the retry.
+   */
+  long delayNanos(int retry) {
+    final double backoff = Math.min(initialBackoff.toNanos() * Math.pow(multiplier, retry - 1), maxBackoff.toNanos());
+    return backoff < 1 ? 0 : ThreadLocalRandom.current().nextLong((long) backoff + 1);
+  }
+}
@@ -13,8 +13,8 @@ public class CreateAccountCommand extends Command {
   private final AccountVO data;
 
   @Builder
-  public CreateAccountCommand(AccountVO data) {
-    super(UUID.randomUUID(), AggregateType.ACCOUNT_AGGREGATE.getType());
+  public CreateAccountCommand(UUID commandId, AccountVO data) {
+    super(commandId, UUID.randomUUID(), AggregateType.ACCOUNT_AGGREGATE.getType());
     this.data = AccountVO
       .builder()
       .id(getAggregateId())
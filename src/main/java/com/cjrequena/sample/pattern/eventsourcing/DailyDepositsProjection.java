@@ -0,0 +1,66 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read model of the total amount deposited per day, in UTC.
+ */
+public final class DailyDepositsProjection extends Projection {
+
+  public static final String NAME = "daily-deposits";
+
+  private final Map<LocalDate, Money> totals = new ConcurrentHashMap<>();
+
+  public DailyDepositsProjection() {
+    on(AccountDepositedEvent.class, event ->
+      totals.merge(event.getTime().atZoneSameInstant(ZoneOffset.UTC).toLocalDate(), event.getData().amount(), Money::plus));
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  /**
+   * Returns the total amount deposited on a day.
+   *
+   * @param day The day, in UTC.
+   * @return The total, zero if there were no deposits.
+   */
+  public Money getTotal(LocalDate day) {
+    return totals.getOrDefault(day, Money.ZERO);
+  }
+
+  public Map<LocalDate, Money> getTotals() {
+    return Collections.unmodifiableMap(totals);
+  }
+
+  @Override
+  protected void reset() {
+    totals.clear();
+  }
+
+  @Override
+  protected void writeState(DataOutputStream out) throws IOException {
+    out.writeInt(totals.size());
+    for (Map.Entry<LocalDate, Money> entry : totals.entrySet()) {
+      out.writeLong(entry.getKey().toEpochDay());
+      out.writeLong(entry.getValue().minorUnits());
+    }
+  }
+
+  @Override
+  protected void readState(DataInputStream in) throws IOException {
+    reset();
+    for (int i = in.readInt(); i > 0; i--) {
+      totals.put(LocalDate.ofEpochDay(in.readLong()), Money.ofMinor(in.readLong()));
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Content types supported for event payloads, see {@link Event#getDataContentType()}, and their codecs.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+public enum DataContentType {
+
+  JSON("application/json", (byte) 1, JsonEventDataCodec.INSTANCE),
+  BINARY("application/x-event-binary", (byte) 2, BinaryEventDataCodec.INSTANCE);
+
+  private final String type;
+  // Stable code stored in the event store records
+  private final byte code;
+  private final EventDataCodec codec;
+
+  // values() copies the array on every call, and codes are resolved for every read record
+  private static final DataContentType[] VALUES = values();
+  // Content types are resolved for every written record
+  private static final Map<String, DataContentType> BY_TYPE = Arrays.stream(VALUES)
+    .collect(Collectors.toUnmodifiableMap(DataContentType::getType, Function.identity()));
+
+  /**
+   * Resolves the enum constant of the given content type.
+   *
+   * @param type The content type, as in {@link Event#getDataContentType()}.
+   * @return The data content type.
+   * @throws IllegalArgumentException if the content type is not supported.
+   */
+  public static DataContentType of(String type) {
+    final DataContentType dataContentType = type == null ? null : BY_TYPE.get(type);
+    if (dataContentType == null) {
+      throw new IllegalArgumentException("Unsupported data content type " + type);
+    }
+    return dataContentType;
+  }
+
+  static DataContentType ofCode(byte code) {
+    for (DataContentType dataContentType : VALUES) {
+      if (dataContentType.code == code) {
+        return dataContentType;
+      }
+    }
+    throw new IllegalArgumentException("Unknown data content type code " + code);
+  }
+}
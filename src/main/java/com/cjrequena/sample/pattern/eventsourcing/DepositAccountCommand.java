@@ -15,8 +15,8 @@ public class DepositAccountCommand extends Command {
   private final DepositVO data;
 
   @Builder
-  public DepositAccountCommand(UUID aggregateId, @NotNull DepositVO data) {
-    super(aggregateId, AggregateType.ACCOUNT_AGGREGATE.getType());
+  public DepositAccountCommand(UUID commandId, UUID aggregateId, @NotNull DepositVO data) {
+    super(commandId, aggregateId, AggregateType.ACCOUNT_AGGREGATE.getType());
     this.data = data;
   }
 
@@ -4,14 +4,11 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
-import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
 import lombok.extern.jackson.Jacksonized;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.UUID;
 
 @Builder
@@ -25,8 +22,7 @@ public record DepositVO(
   UUID accountId,
 
   @NotNull
-  @DecimalMin(value = "0.00", message = "Amount cannot be negative")
-  BigDecimal amount
+  Money amount
 
 ) implements Serializable {
 
@@ -36,14 +32,11 @@ public record DepositVO(
       throw new IllegalArgumentException("AccountId is required");
     }
 
-    // Set default amount if null and normalize to 2 decimal places
+    // Set default amount if null
     if (amount == null) {
-      amount = BigDecimal.ZERO;
-    } else {
-      amount = amount.setScale(2, RoundingMode.HALF_UP);
-      if (amount.compareTo(BigDecimal.ZERO) <=0) {
-        throw new AmountException("Credit amount must be positive");
-      }
+      amount = Money.ZERO;
+    } else if (!amount.isPositive()) {
+      throw new AmountException("Credit amount must be positive");
     }
   }
 
@@ -53,7 +46,7 @@ public record DepositVO(
    * @return true if amount is zero, false otherwise
    */
   public boolean isAmountEqualOrLessThanZero() {
-    return amount != null && amount.compareTo(BigDecimal.ZERO) <= 0;
+    return amount != null && !amount.isPositive();
   }
 
 }
@@ -0,0 +1,98 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Crash safe replacement of small files, and appends to and deletion of journals.
+ * <p>
+ * A file is written to a temporary file, which is forced to the disk before it is atomically moved in place, and the
+ * directory is forced then, so after a crash the file is either the previous one or the complete new one. Without the
+ * first force, the rename could reach the disk before the content and leave an empty or truncated file.
+ */
+final class DurableFiles {
+
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+  private DurableFiles() {
+  }
+
+  /**
+   * Replaces the content of a file.
+   *
+   * @param path The file.
+   * @param writer Writes the new content.
+   * @throws IOException if the file can't be written.
+   */
+  static void replace(Path path, Writer writer) throws IOException {
+    final Path temporaryPath = path.resolveSibling(path.getFileName() + TEMPORARY_FILE_SUFFIX);
+    try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      writer.write(out);
+      out.flush();
+      channel.force(true);
+    }
+    Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    forceDirectory(path.toAbsolutePath().getParent());
+  }
+
+  /**
+   * Appends to a file, created if it doesn't exist, and forces the appended bytes to the disk.
+   *
+   * @param path The file.
+   * @param bytes The bytes to append.
+   * @throws IOException if the file can't be written.
+   */
+  static void append(Path path, byte[] bytes) throws IOException {
+    final boolean created;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      created = channel.size() == 0;
+      final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    }
+    if (created) {
+      forceDirectory(path.toAbsolutePath().getParent());
+    }
+  }
+
+  /**
+   * Deletes a file, if it exists.
+   *
+   * @param path The file.
+   * @throws IOException if the file can't be deleted.
+   */
+  static void delete(Path path) throws IOException {
+    if (Files.deleteIfExists(path)) {
+      forceDirectory(path.toAbsolutePath().getParent());
+    }
+  }
+
+  // Makes the rename, the creation or the deletion durable. Some platforms can't open a directory, Windows notably, and the rename is left to the OS
+  private static void forceDirectory(Path directory) {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // Not supported on this platform
+    }
+  }
+
+  /**
+   * Writes the content of a file.
+   */
+  @FunctionalInterface
+  interface Writer {
+
+    void write(DataOutputStream out) throws IOException;
+  }
+}
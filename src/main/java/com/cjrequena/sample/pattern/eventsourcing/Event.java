@@ -44,6 +44,13 @@ public abstract class Event {
   // The time the event occurred
   protected OffsetDateTime time;
 
+  /**
+   * Returns the event payload.
+   *
+   * @return The event data.
+   */
+  public abstract Object getData();
+
 //  public AbstractEventEntity mapToEventEntity() {
 //    log.info("Mapping to event entity {}", this);
 //    return invoke();
@@ -0,0 +1,44 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes event payloads for a {@link DataContentType}.
+ * <p>
+ * Codecs write straight into, and read straight from, caller supplied buffers, so the same buffer (for instance a
+ * memory-mapped segment of the {@link EventStore}) can be reused for many events.
+ */
+public interface EventDataCodec {
+
+  /**
+   * Encodes the payload of an event at the current position of the buffer, advancing the position past it.
+   *
+   * @param eventType The event type. Determines the schema of the payload.
+   * @param data The event data.
+   * @param target The target buffer.
+   * @throws java.nio.BufferOverflowException if the payload doesn't fit in the remaining space of the buffer.
+   */
+  void encode(EventType eventType, Object data, ByteBuffer target);
+
+  /**
+   * Decodes the payload of an event from the remaining bytes of the buffer.
+   *
+   * @param eventType The event type.
+   * @param source The source buffer.
+   * @return The event data.
+   */
+  default Object decode(EventType eventType, ByteBuffer source) {
+    return decode(eventType.getDataClass(), eventType.getBinaryDataCodec(), source);
+  }
+
+  /**
+   * Decodes a payload with the given schema from the remaining bytes of the buffer, e.g. the schema of a past version
+   * of an event type, see {@link Upcaster}.
+   *
+   * @param dataClass The data class.
+   * @param binaryDataCodec The binary codec of the data.
+   * @param source The source buffer.
+   * @return The event data.
+   */
+  Object decode(Class<?> dataClass, BinaryDataCodec<?> binaryDataCodec, ByteBuffer source);
+}
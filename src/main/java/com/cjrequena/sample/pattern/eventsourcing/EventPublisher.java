@@ -0,0 +1,147 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+import lombok.extern.log4j.Log4j2;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes the confirmed events to in-process subscribers, e.g. projections or notifications, as a hot
+ * {@link Flux}, so they follow the event store without polling it.
+ * <p>
+ * Register the publisher on the event store, {@code eventStore.addAppendListener(publisher::publish)}, and every
+ * append is published once it is stored, in offset order. Subscribers only receive the events published after they
+ * subscribe.
+ * <p>
+ * Every subscriber has its own bounded buffer, filled by the appending thread without blocking and drained on the
+ * scheduler of the publisher, so a slow subscriber never holds back the appends nor the other subscribers. When its
+ * buffer is full, the {@link BufferOverflowStrategy} of the subscriber decides: drop the latest or the oldest events,
+ * counted in {@link #getDroppedEvents()}, or cut the subscriber off: it is unsubscribed at once and receives an
+ * overflow error after the events it had buffered, see {@link reactor.core.Exceptions#isOverflow}. Subscribers may
+ * also receive the events in batches, see {@link #batches(int, BufferOverflowStrategy, int, Duration)}.
+ */
+@Log4j2
+public class EventPublisher implements Closeable {
+
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  // Events handed from the buffer of a subscriber to its scheduler at once, on top of the buffer
+  private static final int PREFETCH = 32;
+
+  private final Scheduler scheduler;
+  // Best effort: every subscriber requests all the events into its own buffer
+  private final Sinks.Many<Event> sink = Sinks.many().multicast().directBestEffort();
+  private final LongAdder publishedEvents = new LongAdder();
+  private final LongAdder droppedEvents = new LongAdder();
+
+  /**
+   * Creates a publisher delivering the events on the bounded elastic scheduler, so subscribers may block.
+   */
+  public EventPublisher() {
+    this(Schedulers.boundedElastic());
+  }
+
+  /**
+   * Creates a publisher.
+   *
+   * @param scheduler The scheduler delivering the events to the subscribers.
+   */
+  public EventPublisher(@NonNull Scheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Publishes confirmed events to the current subscribers. Events published after {@link #close()} are ignored.
+   *
+   * @param events The events, in offset order.
+   */
+  public synchronized void publish(@NonNull List<? extends Event> events) {
+    for (Event event : events) {
+      final Sinks.EmitResult result = sink.tryEmitNext(event);
+      if (result == Sinks.EmitResult.FAIL_TERMINATED) {
+        return;
+      }
+      publishedEvents.increment();
+    }
+  }
+
+  /**
+   * Subscribes to the confirmed events with a buffer of {@value #DEFAULT_BUFFER_SIZE} events, failing with an overflow
+   * error once it is full.
+   */
+  public Flux<Event> events() {
+    return events(DEFAULT_BUFFER_SIZE, BufferOverflowStrategy.ERROR);
+  }
+
+  /**
+   * Subscribes to the confirmed events.
+   *
+   * @param bufferSize The number of events buffered for the subscriber, besides a few events in flight.
+   * @param overflowStrategy What happens to the events published while the buffer is full.
+   * @return The events published from the subscription on, completing once the publisher is closed.
+   */
+  public Flux<Event> events(int bufferSize, @NonNull BufferOverflowStrategy overflowStrategy) {
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("The buffer size must be positive.");
+    }
+    return sink.asFlux()
+      .onBackpressureBuffer(bufferSize, event -> droppedEvents.increment(), overflowStrategy)
+      .publishOn(scheduler, PREFETCH);
+  }
+
+  /**
+   * Subscribes to the confirmed events in batches, see {@link #events(int, BufferOverflowStrategy)}. A batch is
+   * emitted once it is full or once its first event waited for the given delay, whichever comes first.
+   *
+   * @param bufferSize The number of events buffered for the subscriber, besides a few events in flight.
+   * @param overflowStrategy What happens to the events published while the buffer is full.
+   * @param maxBatchSize The maximum number of events of a batch.
+   * @param maxBatchDelay The maximum time the first event of a batch waits for the batch to be emitted.
+   * @return The batches of events published from the subscription on.
+   */
+  public Flux<List<Event>> batches(int bufferSize, @NonNull BufferOverflowStrategy overflowStrategy, int maxBatchSize, @NonNull Duration maxBatchDelay) {
+    if (maxBatchSize < 1 || maxBatchDelay.isNegative() || maxBatchDelay.isZero()) {
+      throw new IllegalArgumentException("The max batch size and the max batch delay must be positive.");
+    }
+    // Fair backpressure: batches are only emitted as the subscriber requests them
+    return events(bufferSize, overflowStrategy).bufferTimeout(maxBatchSize, maxBatchDelay, true);
+  }
+
+  /**
+   * Returns the number of events published so far.
+   */
+  public long getPublishedEvents() {
+    return publishedEvents.sum();
+  }
+
+  /**
+   * Returns the number of events dropped so far by the subscribers whose buffer was full.
+   */
+  public long getDroppedEvents() {
+    return droppedEvents.sum();
+  }
+
+  /**
+   * Returns the number of current subscribers.
+   */
+  public int getSubscriberCount() {
+    return sink.currentSubscriberCount();
+  }
+
+  /**
+   * Completes the subscribers once they have received the events published so far.
+   */
+  @Override
+  public synchronized void close() {
+    sink.tryEmitComplete();
+    log.debug("Event publisher closed after {} events, {} dropped", getPublishedEvents(), getDroppedEvents());
+  }
+}
@@ -0,0 +1,232 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.putUUID;
+
+/**
+ * Binary layout of a single event record inside an {@link EventStore} segment.
+ * <pre>
+ *  offset  size  field
+ *  0       4     record length, not counting this field (0 marks the end of the written data)
+ *  4       4     checksum, CRC32C of the rest of the record
+ *  8       8     offset id
+ *  16      8     offset tx id
+ *  24      16    aggregate id
+ *  40      8     aggregate version
+ *  48      16    event id
+ *  64      8     time, epoch seconds
+ *  72      4     time, nanos
+ *  76      4     time, zone offset seconds
+ *  80      2     event type code, see {@link EventType#getCode()}
+ *  82      1     data content type code, see {@link DataContentType#getCode()}
+ *  83      1     data schema version, see {@link EventType#getSchemaVersion()}
+ *  84      1     flags, bit 0 set on the last record of its offset tx
+ *  85      3     unused
+ *  88      4     data length
+ *  92      n     data, encoded by the codec of the data content type
+ * </pre>
+ * The pages of a segment may reach the disk in any order, so after a crash a record may be partially written, or a
+ * group commit only partially stored. The checksum detects the former and the flag of the last record of every offset
+ * tx the latter, see {@link #isValid(ByteBuffer, int)} and {@link #isEndOfTransaction(ByteBuffer, int)}.
+ */
+final class EventRecordCodec {
+
+  static final String DEFAULT_DATA_CONTENT_TYPE = DataContentType.JSON.getType();
+
+  static final int LENGTH_SIZE = Integer.BYTES;
+  private static final int CHECKSUM = 4;
+  private static final int OFFSET_ID = 8;
+  private static final int OFFSET_TX_ID = 16;
+  private static final int AGGREGATE_ID = 24;
+  private static final int AGGREGATE_VERSION = 40;
+  private static final int EVENT_ID = 48;
+  private static final int TIME = 64;
+  private static final int EVENT_TYPE = 80;
+  private static final int DATA_CONTENT_TYPE = 82;
+  private static final int SCHEMA_VERSION = 83;
+  private static final int FLAGS = 84;
+  private static final int DATA_LENGTH = 88;
+  private static final int DATA = 92;
+
+  private static final byte END_OF_TRANSACTION = 1;
+
+  private EventRecordCodec() {
+  }
+
+  /**
+   * Writes the event as a record at the current position of the buffer and advances the position past it.
+   * The data is encoded straight into the buffer by the codec of the event data content type.
+   *
+   * @param event The event to write. Its offset, event id, time and content type must already be assigned.
+   * @param endOfTransaction Whether the event is the last one of its offset tx.
+   * @param buffer The target buffer.
+   * @throws BufferOverflowException if the record doesn't fit in the remaining space of the buffer.
+   * @throws IllegalArgumentException if the event type or the data content type is not supported.
+   */
+  static void write(Event event, boolean endOfTransaction, ByteBuffer buffer) {
+    final EventType eventType = EventType.of(event.getEventType());
+    final DataContentType dataContentType = DataContentType.of(event.getDataContentType());
+    final int start = buffer.position();
+    if (buffer.remaining() < DATA) {
+      throw new BufferOverflowException();
+    }
+    buffer.position(start + OFFSET_ID);
+    buffer.putLong(event.getOffsetId());
+    buffer.putLong(event.getOffsetTxId());
+    putUUID(buffer, event.getAggregateId());
+    buffer.putLong(event.getAggregateVersion());
+    putUUID(buffer, event.getEventId());
+    buffer.putLong(event.getTime().toEpochSecond());
+    buffer.putInt(event.getTime().getNano());
+    buffer.putInt(event.getTime().getOffset().getTotalSeconds());
+    buffer.putShort(eventType.getCode());
+    buffer.put(dataContentType.getCode());
+    buffer.put(eventType.getSchemaVersion());
+    buffer.put(endOfTransaction ? END_OF_TRANSACTION : 0);
+    buffer.position(start + DATA);
+    dataContentType.getCodec().encode(eventType, event.getData(), buffer);
+    buffer.putInt(start + DATA_LENGTH, buffer.position() - start - DATA);
+    buffer.putInt(start + CHECKSUM, checksum(buffer, start, buffer.position() - start - LENGTH_SIZE));
+    buffer.putInt(start, buffer.position() - start - LENGTH_SIZE);
+  }
+
+  /**
+   * Checks that a whole record was written at the given position: its length fits in the buffer and is consistent
+   * with its data length, and its checksum matches its content.
+   *
+   * @param buffer The source buffer.
+   * @param position The position of the record, whose length isn't 0.
+   * @return true if the record is intact, false if it is torn or corrupt.
+   */
+  static boolean isValid(ByteBuffer buffer, int position) {
+    final int length = readLength(buffer, position);
+    if (length < DATA - LENGTH_SIZE || length > buffer.limit() - position - LENGTH_SIZE
+      || buffer.getInt(position + DATA_LENGTH) != length + LENGTH_SIZE - DATA) {
+      return false;
+    }
+    return buffer.getInt(position + CHECKSUM) == checksum(buffer, position, length);
+  }
+
+  /**
+   * Returns whether the record starting at the given position is the last one of its offset tx.
+   */
+  static boolean isEndOfTransaction(ByteBuffer buffer, int position) {
+    return (buffer.get(position + FLAGS) & END_OF_TRANSACTION) != 0;
+  }
+
+  private static int checksum(ByteBuffer buffer, int position, int length) {
+    final CRC32C crc = new CRC32C();
+    crc.update(buffer.slice(position + OFFSET_ID, length + LENGTH_SIZE - OFFSET_ID));
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Reads the length of the record starting at the given position.
+   *
+   * @return The record length, not counting the length field itself, or 0 if no record was written there.
+   */
+  static int readLength(ByteBuffer buffer, int position) {
+    return buffer.getInt(position);
+  }
+
+  static long readOffsetId(ByteBuffer buffer, int position) {
+    return buffer.getLong(position + OFFSET_ID);
+  }
+
+  static long readOffsetTxId(ByteBuffer buffer, int position) {
+    return buffer.getLong(position + OFFSET_TX_ID);
+  }
+
+  static UUID readAggregateId(ByteBuffer buffer, int position) {
+    return new UUID(buffer.getLong(position + AGGREGATE_ID), buffer.getLong(position + AGGREGATE_ID + Long.BYTES));
+  }
+
+  static long readAggregateVersion(ByteBuffer buffer, int position) {
+    return buffer.getLong(position + AGGREGATE_VERSION);
+  }
+
+  /**
+   * Reads the time of the record starting at the given position, in nanoseconds since the epoch, see
+   * {@link #epochNanos(long, int)}.
+   */
+  static long readEpochNanos(ByteBuffer buffer, int position) {
+    return epochNanos(buffer.getLong(position + TIME), buffer.getInt(position + TIME + Long.BYTES));
+  }
+
+  /**
+   * Converts a time to nanoseconds since the epoch, saturated to the long range, i.e. to the years 1677 to 2262.
+   */
+  static long epochNanos(long epochSecond, int nano) {
+    final long seconds = Math.max(Math.min(epochSecond, Long.MAX_VALUE / 1_000_000_000L - 1), Long.MIN_VALUE / 1_000_000_000L + 1);
+    return seconds * 1_000_000_000L + nano;
+  }
+
+  static EventType readEventType(ByteBuffer buffer, int position) {
+    return EventType.ofCode(buffer.getShort(position + EVENT_TYPE));
+  }
+
+  static DataContentType readDataContentType(ByteBuffer buffer, int position) {
+    return DataContentType.ofCode(buffer.get(position + DATA_CONTENT_TYPE));
+  }
+
+  static byte readSchemaVersion(ByteBuffer buffer, int position) {
+    return buffer.get(position + SCHEMA_VERSION);
+  }
+
+  /**
+   * Returns the position of the data of the record starting at the given position.
+   */
+  static int dataPosition(int position) {
+    return position + DATA;
+  }
+
+  /**
+   * Decodes the data of the record starting at the given position, upcasting it to the current schema version of its
+   * event type.
+   */
+  static Object readData(ByteBuffer buffer, int position, EventType eventType, UpcasterChain upcasterChain) {
+    final ByteBuffer data = buffer.slice(position + DATA, buffer.getInt(position + DATA_LENGTH));
+    return upcasterChain.decode(eventType, readDataContentType(buffer, position), readSchemaVersion(buffer, position), data);
+  }
+
+  /**
+   * Decodes the record starting at the given position. The data is decoded straight from the buffer, without copying
+   * the record into an intermediate array.
+   *
+   * @param buffer The source buffer. Only absolute reads are performed, so the buffer may be shared between threads.
+   * @param position The position of the record.
+   * @param upcasterChain Upcasts the data stored at a past schema version.
+   * @return The decoded event.
+   */
+  static Event read(ByteBuffer buffer, int position, UpcasterChain upcasterChain) {
+    final long epochSecond = buffer.getLong(position + TIME);
+    final int nano = buffer.getInt(position + TIME + Long.BYTES);
+    final int offsetSeconds = buffer.getInt(position + TIME + Long.BYTES + Integer.BYTES);
+    final EventType eventType = readEventType(buffer, position);
+    final DataContentType dataContentType = readDataContentType(buffer, position);
+    final Object eventData = readData(buffer, position, eventType, upcasterChain);
+
+    final Event.EventBuilder<?, ?> builder = switch (eventType) {
+      case ACCOUNT_CREATED_EVENT -> AccountCreatedEvent.builder().data((AccountVO) eventData);
+      case ACCOUNT_DEPOSITED_EVENT -> AccountDepositedEvent.builder().data((DepositVO) eventData);
+      case ACCOUNT_WITHDRAWN_EVENT -> AccountWithdrawnEvent.builder().data((WithdrawVO) eventData);
+    };
+    return builder
+      .eventId(new UUID(buffer.getLong(position + EVENT_ID), buffer.getLong(position + EVENT_ID + Long.BYTES)))
+      .offsetId(buffer.getLong(position + OFFSET_ID))
+      .offsetTxId(buffer.getLong(position + OFFSET_TX_ID))
+      .aggregateId(readAggregateId(buffer, position))
+      .aggregateVersion(readAggregateVersion(buffer, position))
+      .eventType(eventType.getEventType())
+      .dataContentType(dataContentType.getType())
+      .time(OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), ZoneOffset.ofTotalSeconds(offsetSeconds)))
+      .build();
+  }
+}
@@ -0,0 +1,929 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+import lombok.extern.log4j.Log4j2;
+import reactor.core.publisher.Flux;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Append-only event store backed by segmented, memory-mapped files.
+ * <p>
+ * Events are written as records (see {@link EventRecordCodec}) into fixed size segment files mapped through
+ * {@link FileChannel#map}. When a record doesn't fit in the active segment a new segment is rolled. Every event gets
+ * a global, monotonically increasing {@code offsetId}, and all the events of a single append share the same
+ * {@code offsetTxId}.
+ * <p>
+ * An in-memory index maps every {@code aggregateId} to the positions of its records and to its current version. The
+ * index is rebuilt by scanning the segments when the store is opened. Appends are serialized, while reads are lock-free
+ * and decode the records straight from the mapped segments.
+ * <p>
+ * Events stored at a past schema version of their event type are upgraded on read by the {@link UpcasterChain} of the
+ * store.
+ * <p>
+ * A sparse time index samples the log every {@value #TIME_INDEX_INTERVAL} offsets, so the offset of the log at a point
+ * in time is found with a binary search and a scan of at most that many records, see
+ * {@link #getOffsetIdAt(OffsetDateTime)}. Together with {@link #getAggregateVersionAt(UUID, long)}, it backs the loads
+ * of aggregates as of a past offset or time.
+ */
+@Log4j2
+public class EventStore implements Closeable {
+
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private static final String SEGMENT_FILE_PREFIX = "segment-";
+  private static final String SEGMENT_FILE_SUFFIX = ".log";
+  private static final int TIME_INDEX_INTERVAL = 256;
+
+  private final Path directory;
+  private final int segmentSize;
+  private final UpcasterChain upcasterChain;
+  private final Map<UUID, AggregateStream> index = new ConcurrentHashMap<>();
+  private final TimeIndex timeIndex = new TimeIndex();
+  private final List<Consumer<List<Event>>> appendListeners = new CopyOnWriteArrayList<>();
+
+  // Replaced, never mutated, when a segment is rolled
+  private volatile Segment[] segments = new Segment[0];
+  private long lastOffsetId;
+  private long lastOffsetTxId;
+  private boolean closed;
+
+  private EventStore(Path directory, int segmentSize, UpcasterChain upcasterChain) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.upcasterChain = upcasterChain;
+  }
+
+  /**
+   * Opens, or creates, an event store in the given directory using the default segment size.
+   *
+   * @param directory The directory holding the segment files.
+   * @return The opened event store.
+   * @throws EventStoreException if the segments can't be opened.
+   */
+  public static EventStore open(Path directory) {
+    return open(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Opens, or creates, an event store in the given directory.
+   *
+   * @param directory The directory holding the segment files.
+   * @param segmentSize The size in bytes of every segment file. A single record must fit in one segment.
+   * @return The opened event store.
+   * @throws EventStoreException if the segments can't be opened.
+   */
+  public static EventStore open(Path directory, int segmentSize) {
+    return open(directory, segmentSize, UpcasterChain.NONE);
+  }
+
+  /**
+   * Opens, or creates, an event store in the given directory, upcasting the events stored at a past schema version.
+   *
+   * @param directory The directory holding the segment files.
+   * @param segmentSize The size of every segment file, in bytes.
+   * @param upcasterChain The upcasters of the past schema versions of the event types.
+   * @return The opened event store.
+   * @throws EventStoreException if the store can't be opened.
+   */
+  public static EventStore open(Path directory, int segmentSize, @NonNull UpcasterChain upcasterChain) {
+    final EventStore eventStore = new EventStore(directory, segmentSize, upcasterChain);
+    eventStore.recover();
+    return eventStore;
+  }
+
+  /**
+   * Appends the events of an aggregate, provided that the stored version of the aggregate is the expected one.
+   * The events are forced to disk before the method returns.
+   *
+   * @param aggregateId The aggregate the events belong to.
+   * @param expectedVersion The version the aggregate is expected to have in the store, 0 for a new aggregate.
+   * @param events The events to append, with consecutive versions starting at {@code expectedVersion + 1}.
+   * @throws OptimisticConcurrencyException if the stored version of the aggregate isn't the expected one.
+   * @throws IllegalArgumentException if the events don't belong to the aggregate or their versions aren't consecutive.
+   */
+  public void append(UUID aggregateId, long expectedVersion, List<? extends Event> events) {
+    appendAll(List.of(new AppendRequest(aggregateId, expectedVersion, events)));
+  }
+
+  /**
+   * Appends the events of several aggregates as a single group commit: the records of all the aggregates are written
+   * in one pass, share the same {@code offsetTxId} and are forced to disk once. Either all the requests are appended
+   * or none is.
+   *
+   * @param requests The append requests, at most one per aggregate.
+   * @throws OptimisticConcurrencyException if the stored version of any aggregate isn't the expected one.
+   * @throws IllegalArgumentException if an aggregate appears more than once, or if the events of a request don't
+   *                                  belong to its aggregate or their versions aren't consecutive.
+   */
+  public synchronized void appendAll(List<AppendRequest> requests) {
+    if (closed) {
+      throw new IllegalStateException("The event store is closed.");
+    }
+    final Set<UUID> aggregateIds = new HashSet<>();
+    int size = 0;
+    for (AppendRequest request : requests) {
+      if (!aggregateIds.add(request.aggregateId())) {
+        throw new IllegalArgumentException("Aggregate %s appears more than once in the batch.".formatted(request.aggregateId()));
+      }
+      validate(request);
+      size += request.events().size();
+    }
+    if (size == 0) {
+      return;
+    }
+
+    final long offsetTxId = lastOffsetTxId + 1;
+    final long[] positions = new long[size];
+    final OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+    // The fields of the events before they were assigned, restored if the append fails
+    final AssignedFields[] unassigned = new AssignedFields[size];
+    int assigned = 0;
+    int written = 0;
+    try {
+      for (AppendRequest request : requests) {
+        for (Event event : request.events()) {
+          unassigned[assigned++] = AssignedFields.of(event);
+          assignOffset(event, lastOffsetId + written + 1, offsetTxId, now);
+          positions[written] = writeRecord(event, written == size - 1);
+          written++;
+        }
+      }
+      force(positions);
+    } catch (RuntimeException e) {
+      discard(positions, written);
+      restore(requests, unassigned, assigned);
+      throw e;
+    }
+
+    int indexed = 0;
+    for (AppendRequest request : requests) {
+      for (Event event : request.events()) {
+        timeIndex.add(event.getOffsetId(), EventRecordCodec.epochNanos(event.getTime().toEpochSecond(), event.getTime().getNano()), positions[indexed++]);
+      }
+    }
+    lastOffsetId += written;
+    lastOffsetTxId = offsetTxId;
+    int from = 0;
+    for (AppendRequest request : requests) {
+      final int to = from + request.events().size();
+      if (to > from) {
+        index.computeIfAbsent(request.aggregateId(), id -> new AggregateStream()).add(Arrays.copyOfRange(positions, from, to));
+      }
+      from = to;
+    }
+    notifyAppendListeners(requests, size);
+  }
+
+  /**
+   * Registers a listener receiving the events of every append once they are stored, in offset order, e.g. an
+   * {@link EventPublisher}. Listeners are called under the append lock, so they must hand the events off without
+   * blocking. A failing listener is logged and doesn't fail the append.
+   *
+   * @param listener The listener.
+   */
+  public void addAppendListener(@NonNull Consumer<List<Event>> listener) {
+    appendListeners.add(listener);
+  }
+
+  private void notifyAppendListeners(List<AppendRequest> requests, int size) {
+    if (appendListeners.isEmpty()) {
+      return;
+    }
+    final List<Event> events = new ArrayList<>(size);
+    requests.forEach(request -> events.addAll(request.events()));
+    final List<Event> appended = Collections.unmodifiableList(events);
+    for (Consumer<List<Event>> listener : appendListeners) {
+      try {
+        listener.accept(appended);
+      } catch (RuntimeException e) {
+        log.warn("Append listener {} failed", listener, e);
+      }
+    }
+  }
+
+  /**
+   * Retrieves all the events of an aggregate, in version order.
+   *
+   * @param aggregateId The aggregate id.
+   * @return The events, empty if the aggregate is unknown.
+   */
+  public List<Event> retrieveEvents(UUID aggregateId) {
+    return retrieveEvents(aggregateId, 0);
+  }
+
+  /**
+   * Retrieves the events of an aggregate whose version is greater than the given one, in version order.
+   *
+   * @param aggregateId The aggregate id.
+   * @param fromAggregateVersion The version after which events are retrieved (exclusive).
+   * @return The events, empty if there are none.
+   */
+  public List<Event> retrieveEvents(UUID aggregateId, long fromAggregateVersion) {
+    final AggregateStream stream = index.get(aggregateId);
+    if (stream == null) {
+      return Collections.emptyList();
+    }
+    final int size = stream.size;
+    final long[] positions = stream.positions;
+    // Versions start at 1 and are consecutive, so the version is the index of the record plus one
+    final int from = (int) Math.max(0, Math.min(fromAggregateVersion, size));
+    final List<Event> events = new ArrayList<>(size - from);
+    for (int i = from; i < size; i++) {
+      events.add(readRecord(positions[i]));
+    }
+    return events;
+  }
+
+  /**
+   * Opens a cursor over the events of an aggregate whose version is greater than the given one, in version order.
+   * Records are decoded one at a time as the cursor advances, so replaying through the cursor takes constant memory
+   * whatever the length of the history. The cursor covers the events stored when it is opened.
+   *
+   * @param aggregateId The aggregate id.
+   * @param fromAggregateVersion The version after which events are retrieved (exclusive).
+   * @return The cursor, empty if there are no events.
+   */
+  public Iterator<Event> openCursor(UUID aggregateId, long fromAggregateVersion) {
+    final AggregateStream stream = index.get(aggregateId);
+    if (stream == null) {
+      return Collections.emptyIterator();
+    }
+    final int size = stream.size;
+    final long[] positions = stream.positions;
+    final int from = (int) Math.max(0, Math.min(fromAggregateVersion, size));
+    return new Iterator<>() {
+      private int next = from;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public Event next() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        return readRecord(positions[next++]);
+      }
+    };
+  }
+
+  /**
+   * Opens a cursor over views of the events of an aggregate whose version is greater than the given one, in version
+   * order, as {@link #openCursor(UUID, long)} does. The cursor owns a single {@link EventView} and moves it to the next
+   * record on every step instead of decoding the record, so it allocates nothing per event. A view is only valid until
+   * the cursor advances.
+   *
+   * @param aggregateId The aggregate id.
+   * @param fromAggregateVersion The version after which events are retrieved (exclusive).
+   * @return The cursor, empty if there are no events.
+   */
+  public Iterator<EventView> openViewCursor(UUID aggregateId, long fromAggregateVersion) {
+    return openViewCursor(aggregateId, fromAggregateVersion, Long.MAX_VALUE);
+  }
+
+  /**
+   * Opens a cursor over views of the events of an aggregate whose version is greater than {@code fromAggregateVersion}
+   * and at most {@code toAggregateVersion}, in version order, see {@link #openViewCursor(UUID, long)}.
+   *
+   * @param aggregateId The aggregate id.
+   * @param fromAggregateVersion The version after which events are retrieved (exclusive).
+   * @param toAggregateVersion The version up to which events are retrieved (inclusive).
+   * @return The cursor, empty if there are no events.
+   */
+  public Iterator<EventView> openViewCursor(UUID aggregateId, long fromAggregateVersion, long toAggregateVersion) {
+    final AggregateStream stream = index.get(aggregateId);
+    if (stream == null) {
+      return Collections.emptyIterator();
+    }
+    final int streamSize = stream.size;
+    final long[] positions = stream.positions;
+    final int from = (int) Math.max(0, Math.min(fromAggregateVersion, streamSize));
+    final int size = (int) Math.max(from, Math.min(toAggregateVersion, streamSize));
+    final EventView view = new EventView(upcasterChain);
+    return new Iterator<>() {
+      private int next = from;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public EventView next() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        final long position = positions[next++];
+        return view.wrap(segments[segmentIdOf(position)].buffer, recordPositionOf(position));
+      }
+    };
+  }
+
+  /**
+   * Streams the events of an aggregate whose version is greater than the given one, in version order. Every
+   * subscription opens its own cursor, see {@link #openCursor(UUID, long)}, and records are only decoded as they are
+   * requested by the subscriber.
+   *
+   * @param aggregateId The aggregate id.
+   * @param fromAggregateVersion The version after which events are retrieved (exclusive).
+   * @return The events, empty if there are none.
+   */
+  public Flux<Event> streamEvents(UUID aggregateId, long fromAggregateVersion) {
+    return Flux.fromIterable(() -> openCursor(aggregateId, fromAggregateVersion));
+  }
+
+  /**
+   * Returns the version of an aggregate in the store.
+   *
+   * @param aggregateId The aggregate id.
+   * @return The version of the latest stored event of the aggregate, 0 if the aggregate is unknown.
+   */
+  public long getAggregateVersion(UUID aggregateId) {
+    final AggregateStream stream = index.get(aggregateId);
+    return stream == null ? 0 : stream.size;
+  }
+
+  /**
+   * Returns the version an aggregate had in the store once the event at the given offset was appended, found with a
+   * binary search over the offsets of its events.
+   *
+   * @param aggregateId The aggregate id.
+   * @param offsetId The offset id.
+   * @return The version of the latest event of the aggregate at or before the offset, 0 if there is none.
+   */
+  public long getAggregateVersionAt(UUID aggregateId, long offsetId) {
+    final AggregateStream stream = index.get(aggregateId);
+    if (stream == null) {
+      return 0;
+    }
+    final int size = stream.size;
+    final long[] positions = stream.positions;
+    final Segment[] current = segments;
+    // Offsets grow with versions, find the number of events at or before the offset
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      final long position = positions[middle];
+      if (EventRecordCodec.readOffsetId(current[segmentIdOf(position)].buffer, recordPositionOf(position)) <= offsetId) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the offset of the log at the given time: the offset id of the last event of the longest run of events,
+   * from the first one, all stamped at or before the time. Appends are stamped with the time they are written unless
+   * their events carry a time, so this is the latest event stamped at or before the time unless events were appended
+   * with times out of order.
+   *
+   * @param time The time.
+   * @return The offset id, 0 if the first event is stamped after the time or the store is empty.
+   */
+  public long getOffsetIdAt(@NonNull OffsetDateTime time) {
+    final long nanos = EventRecordCodec.epochNanos(time.toEpochSecond(), time.getNano());
+    // Read the samples before the last offset, which is always at or after the last sample
+    final int sample = timeIndex.floor(nanos);
+    if (sample < 0) {
+      return 0;
+    }
+    long position = timeIndex.positionOf(sample);
+    final long toOffsetId = getLastOffsetId();
+    final Segment[] current = segments;
+    int segmentId = segmentIdOf(position);
+    int recordPosition = recordPositionOf(position);
+    long offsetId = EventRecordCodec.readOffsetId(current[segmentId].buffer, recordPosition);
+    // The next sample, if any, is stamped after the time, so at most an interval of records is scanned
+    while (true) {
+      final MappedByteBuffer buffer = current[segmentId].buffer;
+      recordPosition += EventRecordCodec.LENGTH_SIZE + EventRecordCodec.readLength(buffer, recordPosition);
+      if (recordPosition > buffer.limit() - EventRecordCodec.LENGTH_SIZE || EventRecordCodec.readLength(buffer, recordPosition) == 0) {
+        if (++segmentId == current.length) {
+          return offsetId;
+        }
+        recordPosition = 0;
+        if (EventRecordCodec.readLength(current[segmentId].buffer, 0) == 0) {
+          return offsetId;
+        }
+      }
+      final MappedByteBuffer next = current[segmentId].buffer;
+      final long nextOffsetId = EventRecordCodec.readOffsetId(next, recordPosition);
+      if (nextOffsetId > toOffsetId || EventRecordCodec.readEpochNanos(next, recordPosition) > nanos) {
+        return offsetId;
+      }
+      offsetId = nextOffsetId;
+    }
+  }
+
+  /**
+   * Retrieves the events appended after the given offset, in offset order, i.e. in the global order they were
+   * appended. The stream is lazy: records are decoded straight from the segments as it is consumed. It covers the
+   * events appended before this method is called.
+   *
+   * @param fromOffsetId The offset id after which events are retrieved (exclusive), 0 for all the events.
+   * @return The events, in offset order.
+   */
+  public Stream<Event> retrieveAllEvents(long fromOffsetId) {
+    return retrieveAllEvents(fromOffsetId, EnumSet.allOf(EventType.class));
+  }
+
+  /**
+   * Retrieves the events of the given types appended after the given offset, in offset order, as
+   * {@link #retrieveAllEvents(long)} does. The records of the other types are skipped without decoding them.
+   *
+   * @param fromOffsetId The offset id after which events are retrieved (exclusive), 0 for all the events.
+   * @param eventTypes The types of the events to retrieve.
+   * @return The events, in offset order.
+   */
+  public Stream<Event> retrieveAllEvents(long fromOffsetId, @NonNull Set<EventType> eventTypes) {
+    final long toOffsetId = getLastOffsetId();
+    final RecordIterator iterator = new RecordIterator(segments, fromOffsetId, toOffsetId, eventTypes, upcasterChain);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * Returns the offset id of the latest appended event.
+   *
+   * @return The latest offset id, 0 if the store is empty.
+   */
+  public synchronized long getLastOffsetId() {
+    return lastOffsetId;
+  }
+
+  /**
+   * Forces every segment to disk.
+   */
+  public synchronized void flush() {
+    for (Segment segment : segments) {
+      segment.buffer.force();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    flush();
+    for (Segment segment : segments) {
+      try {
+        segment.channel.close();
+      } catch (IOException e) {
+        log.warn("Unable to close segment {}", segment.path, e);
+      }
+    }
+  }
+
+  private void validate(AppendRequest request) {
+    final AggregateStream stream = index.get(request.aggregateId());
+    final long currentVersion = stream == null ? 0 : stream.size;
+    if (currentVersion != request.expectedVersion()) {
+      throw new OptimisticConcurrencyException(request.aggregateId(), request.expectedVersion(), currentVersion);
+    }
+    long nextVersion = request.expectedVersion() + 1;
+    for (Event event : request.events()) {
+      if (!request.aggregateId().equals(event.getAggregateId()) || event.getAggregateVersion() != nextVersion) {
+        throw new IllegalArgumentException(
+          "Event %s (version %s) doesn't follow version %s of aggregate %s.".formatted(event.getEventId(), event.getAggregateVersion(), nextVersion - 1, request.aggregateId()));
+      }
+      nextVersion++;
+    }
+  }
+
+  private void assignOffset(Event event, long offsetId, long offsetTxId, OffsetDateTime now) {
+    event.offsetId = offsetId;
+    event.offsetTxId = offsetTxId;
+    if (event.eventId == null) {
+      event.eventId = UUID.randomUUID();
+    }
+    if (event.time == null) {
+      event.time = now;
+    }
+    if (event.dataContentType == null) {
+      event.dataContentType = EventRecordCodec.DEFAULT_DATA_CONTENT_TYPE;
+    }
+  }
+
+  /**
+   * Restores the fields of the events assigned by a failed append, so the caller can retry them as they were.
+   */
+  private static void restore(List<AppendRequest> requests, AssignedFields[] unassigned, int assigned) {
+    int restored = 0;
+    for (AppendRequest request : requests) {
+      for (Event event : request.events()) {
+        if (restored == assigned) {
+          return;
+        }
+        unassigned[restored++].restore(event);
+      }
+    }
+  }
+
+  /**
+   * Writes the event into the active segment, rolling a new segment when it doesn't fit.
+   *
+   * @return The encoded position of the record.
+   */
+  private long writeRecord(Event event, boolean endOfTransaction) {
+    Segment segment = activeSegment();
+    final int start = segment.buffer.position();
+    try {
+      EventRecordCodec.write(event, endOfTransaction, segment.buffer);
+    } catch (BufferOverflowException e) {
+      segment.buffer.position(start);
+      if (start == 0) {
+        throw new EventStoreException("Event %s doesn't fit in a segment of %s bytes.".formatted(event.getEventId(), segmentSize), e);
+      }
+      segment = rollSegment();
+      return writeRecord(event, endOfTransaction);
+    }
+    return encodePosition(segment.id, start);
+  }
+
+  private void force(long[] positions) {
+    int segmentId = -1;
+    for (long position : positions) {
+      if (segmentIdOf(position) != segmentId) {
+        segmentId = segmentIdOf(position);
+        final Segment segment = segments[segmentId];
+        final int from = recordPositionOf(position);
+        segment.buffer.force(from, segment.buffer.position() - from);
+      }
+    }
+  }
+
+  /**
+   * Hides records written by a failed append, so they are never indexed on recovery.
+   */
+  private void discard(long[] positions, int written) {
+    for (int i = written - 1; i >= 0; i--) {
+      final Segment segment = segments[segmentIdOf(positions[i])];
+      segment.buffer.putInt(recordPositionOf(positions[i]), 0);
+      segment.buffer.position(recordPositionOf(positions[i]));
+    }
+  }
+
+  private Event readRecord(long position) {
+    return EventRecordCodec.read(segments[segmentIdOf(position)].buffer, recordPositionOf(position), upcasterChain);
+  }
+
+  private Segment activeSegment() {
+    final Segment[] current = segments;
+    return current.length == 0 ? rollSegment() : current[current.length - 1];
+  }
+
+  private Segment rollSegment() {
+    final Segment[] current = segments;
+    final Segment segment = Segment.open(directory.resolve(segmentFileName(current.length)), current.length, segmentSize);
+    final Segment[] rolled = Arrays.copyOf(current, current.length + 1);
+    rolled[current.length] = segment;
+    segments = rolled;
+    return segment;
+  }
+
+  /**
+   * Maps the existing segments and rebuilds the index by scanning their records. The log is truncated at the first
+   * torn or corrupt record, or at the first record of an offset tx whose last record is missing, so a group commit
+   * interrupted by a crash is recovered either whole or not at all.
+   */
+  private synchronized void recover() {
+    final List<Path> paths;
+    try {
+      Files.createDirectories(directory);
+      try (Stream<Path> files = Files.list(directory)) {
+        paths = files
+          .filter(path -> path.getFileName().toString().startsWith(SEGMENT_FILE_PREFIX))
+          .sorted()
+          .toList();
+      }
+    } catch (IOException e) {
+      throw new EventStoreException("Unable to open the event store at " + directory, e);
+    }
+
+    final Segment[] recovered = new Segment[paths.size()];
+    for (int id = 0; id < recovered.length; id++) {
+      if (!paths.get(id).getFileName().toString().equals(segmentFileName(id))) {
+        throw new EventStoreException("Segment %s is missing from %s".formatted(segmentFileName(id), directory));
+      }
+      recovered[id] = Segment.open(paths.get(id), id, segmentSize);
+    }
+    // The positions of the records of the offset tx being scanned, indexed once its last record is found
+    final List<Long> transaction = new ArrayList<>();
+    long tornPosition = -1;
+    for (int id = 0; id < recovered.length && tornPosition < 0; id++) {
+      if (!scan(recovered, id, transaction)) {
+        tornPosition = transaction.isEmpty() ? encodePosition(id, recovered[id].buffer.position()) : transaction.get(0);
+      }
+    }
+    if (tornPosition < 0 && !transaction.isEmpty()) {
+      tornPosition = transaction.get(0);
+    }
+    segments = tornPosition < 0 ? recovered : truncate(recovered, tornPosition);
+    log.debug("Event store {} opened with {} segments and {} events", directory, segments.length, lastOffsetId);
+  }
+
+  /**
+   * Scans the records of a segment, indexing those of every offset tx once its last record is found.
+   *
+   * @param recovered The segments.
+   * @param id The id of the segment to scan.
+   * @param transaction The positions of the records of the offset tx being scanned, which may have started in the
+   *                    previous segment.
+   * @return false if the scan stopped at a torn or corrupt record, true if it reached the end of the written data.
+   */
+  private boolean scan(Segment[] recovered, int id, List<Long> transaction) {
+    final MappedByteBuffer buffer = recovered[id].buffer;
+    int position = 0;
+    boolean intact = true;
+    while (position <= buffer.limit() - EventRecordCodec.LENGTH_SIZE && EventRecordCodec.readLength(buffer, position) > 0) {
+      if (!EventRecordCodec.isValid(buffer, position)
+        || EventRecordCodec.readOffsetId(buffer, position) != lastOffsetId + transaction.size() + 1
+        || EventRecordCodec.readOffsetTxId(buffer, position) != lastOffsetTxId + 1) {
+        intact = false;
+        break;
+      }
+      transaction.add(encodePosition(id, position));
+      if (EventRecordCodec.isEndOfTransaction(buffer, position)) {
+        for (long recordPosition : transaction) {
+          final ByteBuffer recordBuffer = recovered[segmentIdOf(recordPosition)].buffer;
+          final int at = recordPositionOf(recordPosition);
+          index.computeIfAbsent(EventRecordCodec.readAggregateId(recordBuffer, at), aggregateId -> new AggregateStream()).add(new long[] {recordPosition});
+          timeIndex.add(EventRecordCodec.readOffsetId(recordBuffer, at), EventRecordCodec.readEpochNanos(recordBuffer, at), recordPosition);
+        }
+        lastOffsetId += transaction.size();
+        lastOffsetTxId++;
+        transaction.clear();
+      }
+      position += EventRecordCodec.LENGTH_SIZE + EventRecordCodec.readLength(buffer, position);
+    }
+    buffer.position(position);
+    return intact;
+  }
+
+  /**
+   * Drops the log from the given position on, zeroing the rest of its segment and the segments after it, so the torn
+   * records are never read again, nor mistaken for records once the log is appended again.
+   *
+   * @return The segments up to the one holding the position.
+   */
+  private Segment[] truncate(Segment[] recovered, long position) {
+    final int segmentId = segmentIdOf(position);
+    log.warn("Event store {} truncated at position {} of segment {}, after offset {}: the records after it are torn", directory, recordPositionOf(position), segmentId, lastOffsetId);
+    for (int id = segmentId; id < recovered.length; id++) {
+      final MappedByteBuffer buffer = recovered[id].buffer;
+      final int from = id == segmentId ? recordPositionOf(position) : 0;
+      final byte[] zeros = new byte[8192];
+      for (int at = from; at < buffer.limit(); at += zeros.length) {
+        final int length = Math.min(zeros.length, buffer.limit() - at);
+        // Only the pages written are touched, the rest of a sparse segment isn't allocated
+        if (buffer.slice(at, length).mismatch(ByteBuffer.wrap(zeros, 0, length)) >= 0) {
+          buffer.put(at, zeros, 0, length);
+        }
+      }
+      buffer.force();
+      buffer.position(from);
+    }
+    for (int id = segmentId + 1; id < recovered.length; id++) {
+      try {
+        // Reused when the log rolls over to it again
+        recovered[id].channel.close();
+      } catch (IOException e) {
+        log.warn("Unable to close segment {}", recovered[id].path, e);
+      }
+    }
+    return Arrays.copyOf(recovered, segmentId + 1);
+  }
+
+  private static String segmentFileName(int id) {
+    return SEGMENT_FILE_PREFIX + "%010d".formatted(id) + SEGMENT_FILE_SUFFIX;
+  }
+
+  private static long encodePosition(int segmentId, int position) {
+    return ((long) segmentId << 32) | position;
+  }
+
+  private static int segmentIdOf(long position) {
+    return (int) (position >>> 32);
+  }
+
+  private static int recordPositionOf(long position) {
+    return (int) position;
+  }
+
+  /**
+   * The events to append for one aggregate.
+   *
+   * @param aggregateId The aggregate the events belong to.
+   * @param expectedVersion The version the aggregate is expected to have in the store, 0 for a new aggregate.
+   * @param events The events to append, with consecutive versions starting at {@code expectedVersion + 1}.
+   */
+  public record AppendRequest(@NonNull UUID aggregateId, long expectedVersion, @NonNull List<? extends Event> events) {
+  }
+
+  /**
+   * The fields of an event assigned by an append.
+   */
+  private record AssignedFields(long offsetId, long offsetTxId, UUID eventId, OffsetDateTime time, String dataContentType) {
+
+    static AssignedFields of(Event event) {
+      return new AssignedFields(event.offsetId, event.offsetTxId, event.eventId, event.time, event.dataContentType);
+    }
+
+    void restore(Event event) {
+      event.offsetId = offsetId;
+      event.offsetTxId = offsetTxId;
+      event.eventId = eventId;
+      event.time = time;
+      event.dataContentType = dataContentType;
+    }
+  }
+
+  /**
+   * A memory-mapped segment file. The position of the buffer is the write position of the segment.
+   */
+  private record Segment(Path path, int id, FileChannel channel, MappedByteBuffer buffer) {
+
+    static Segment open(Path path, int id, int size) {
+      try {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(path, id, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size())));
+      } catch (IOException e) {
+        throw new EventStoreException("Unable to map segment " + path, e);
+      }
+    }
+  }
+
+  /**
+   * Iterates the records of the segments in offset order, from the first record after {@code fromOffsetId} up to the
+   * record at {@code toOffsetId}. Segments ending before {@code fromOffsetId} are skipped without reading them, and
+   * the records of the event types not retrieved are skipped without decoding them.
+   */
+  private static final class RecordIterator implements Iterator<Event> {
+
+    private final Segment[] segments;
+    private final long fromOffsetId;
+    private final long toOffsetId;
+    // Indexed by event type ordinal
+    private final boolean[] retrieved;
+    private final UpcasterChain upcasterChain;
+    private int segmentId;
+    private int position;
+    // Whether position points to the next record to return
+    private boolean ready;
+
+    private RecordIterator(Segment[] segments, long fromOffsetId, long toOffsetId, Set<EventType> eventTypes, UpcasterChain upcasterChain) {
+      this.segments = segments;
+      this.fromOffsetId = fromOffsetId;
+      this.toOffsetId = toOffsetId;
+      this.retrieved = new boolean[EventType.values().length];
+      eventTypes.forEach(eventType -> retrieved[eventType.ordinal()] = true);
+      this.upcasterChain = upcasterChain;
+      while (segmentId + 1 < segments.length
+        && EventRecordCodec.readLength(segments[segmentId + 1].buffer, 0) > 0
+        && EventRecordCodec.readOffsetId(segments[segmentId + 1].buffer, 0) <= fromOffsetId + 1) {
+        segmentId++;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!ready && segmentId < segments.length) {
+        final MappedByteBuffer buffer = segments[segmentId].buffer;
+        final int length = position <= buffer.limit() - EventRecordCodec.LENGTH_SIZE ? EventRecordCodec.readLength(buffer, position) : 0;
+        if (length == 0) {
+          segmentId++;
+          position = 0;
+          continue;
+        }
+        final long offsetId = EventRecordCodec.readOffsetId(buffer, position);
+        if (offsetId > toOffsetId) {
+          segmentId = segments.length;
+        } else if (offsetId > fromOffsetId && retrieved[EventRecordCodec.readEventType(buffer, position).ordinal()]) {
+          ready = true;
+        } else {
+          position += EventRecordCodec.LENGTH_SIZE + length;
+        }
+      }
+      return ready;
+    }
+
+    @Override
+    public Event next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final MappedByteBuffer buffer = segments[segmentId].buffer;
+      final Event event = EventRecordCodec.read(buffer, position, upcasterChain);
+      position += EventRecordCodec.LENGTH_SIZE + EventRecordCodec.readLength(buffer, position);
+      ready = false;
+      return event;
+    }
+  }
+
+  /**
+   * Sparse index of the times of the records: one sample every {@value #TIME_INDEX_INTERVAL} offsets, from the first
+   * one. A sample holds the position of its record and the highest time of the records up to it, so samples are
+   * ordered by time even when events are appended with times out of order.
+   * Written under the store lock and read without locking: the arrays are published before {@code size}.
+   */
+  private static final class TimeIndex {
+
+    private volatile long[] times = new long[16];
+    private volatile long[] positions = new long[16];
+    private volatile int size;
+    private long highestTime = Long.MIN_VALUE;
+
+    void add(long offsetId, long time, long position) {
+      highestTime = Math.max(highestTime, time);
+      if ((offsetId - 1) % TIME_INDEX_INTERVAL != 0) {
+        return;
+      }
+      if (size == times.length) {
+        times = Arrays.copyOf(times, size * 2);
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      times[size] = highestTime;
+      positions[size] = position;
+      size++;
+    }
+
+    /**
+     * Returns the last sample whose highest time is at or before the given time, -1 if there is none.
+     */
+    int floor(long time) {
+      final int current = size;
+      final long[] sampleTimes = times;
+      int low = 0;
+      int high = current;
+      while (low < high) {
+        final int middle = (low + high) >>> 1;
+        if (sampleTimes[middle] <= time) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low - 1;
+    }
+
+    long positionOf(int sample) {
+      return positions[sample];
+    }
+  }
+
+  /**
+   * Positions of the records of one aggregate, in version order. Versions start at 1 and are consecutive, so the
+   * size of the stream is the version of the aggregate.
+   * Written under the store lock and read without locking: {@code positions} is published before {@code size}.
+   */
+  private static final class AggregateStream {
+
+    private volatile long[] positions = new long[8];
+    private volatile int size;
+
+    void add(long[] newPositions) {
+      long[] current = positions;
+      if (size + newPositions.length > current.length) {
+        current = Arrays.copyOf(current, Math.max(current.length * 2, size + newPositions.length));
+      }
+      System.arraycopy(newPositions, 0, current, size, newPositions.length);
+      positions = current;
+      size += newPositions.length;
+    }
+  }
+}
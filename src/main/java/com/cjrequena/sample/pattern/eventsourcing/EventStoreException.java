@@ -0,0 +1,11 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+public class EventStoreException extends RuntimeServiceException {
+  public EventStoreException(String message) {
+    super(message);
+  }
+
+  public EventStoreException(String message, Throwable ex) {
+    super(message, ex);
+  }
+}
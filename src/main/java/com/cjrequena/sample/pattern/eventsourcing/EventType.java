@@ -4,16 +4,57 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 @Getter
 public enum EventType {
 
-  ACCOUNT_CREATED_EVENT(AccountCreatedEvent.class, AccountCreatedEvent.class.getName()),
-  ACCOUNT_DEPOSITED_EVENT(AccountDepositedEvent.class, AccountDepositedEvent.class.getName()),
- ACCOUNT_WITHDRAWN_EVENT(AccountWithdrawnEvent.class, AccountWithdrawnEvent.class.getName());
+  ACCOUNT_CREATED_EVENT(AccountCreatedEvent.class, AccountCreatedEvent.class.getName(), (short) 1, AccountVO.class, (byte) 1, AccountBinaryCodecs.ACCOUNT),
+  ACCOUNT_DEPOSITED_EVENT(AccountDepositedEvent.class, AccountDepositedEvent.class.getName(), (short) 2, DepositVO.class, (byte) 1, AccountBinaryCodecs.DEPOSIT),
+ ACCOUNT_WITHDRAWN_EVENT(AccountWithdrawnEvent.class, AccountWithdrawnEvent.class.getName(), (short) 3, WithdrawVO.class, (byte) 1, AccountBinaryCodecs.WITHDRAW);
+
+  // values() copies the array on every call, and codes are resolved for every read record
+  private static final EventType[] VALUES = values();
+
+  private static final Map<String, EventType> BY_EVENT_TYPE = Arrays.stream(values())
+    .collect(Collectors.toUnmodifiableMap(EventType::getEventType, Function.identity()));
 
   private final Class<? extends Event> eventClass;
   private final String eventType;
+  // Stable code stored in the event store records
+  private final short code;
+  private final Class<?> dataClass;
+  // Current version of the data schema, stored with every event
+  private final byte schemaVersion;
+  private final BinaryDataCodec<?> binaryDataCodec;
 
   //private final String value;
+
+  /**
+   * Resolves the enum constant of the given event type name.
+   *
+   * @param eventType The event type name, as returned by {@link Event#getEventType()}.
+   * @return The event type.
+   * @throws IllegalArgumentException if the event type is unknown.
+   */
+  public static EventType of(String eventType) {
+    final EventType type = BY_EVENT_TYPE.get(eventType);
+    if (type == null) {
+      throw new IllegalArgumentException("Unknown event type " + eventType);
+    }
+    return type;
+  }
+
+  static EventType ofCode(short code) {
+    for (EventType type : VALUES) {
+      if (type.code == code) {
+        return type;
+      }
+    }
+    throw new IllegalArgumentException("Unknown event type code " + code);
+  }
 }
@@ -0,0 +1,95 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight view over an event record stored in an {@link EventStore} segment, see {@link EventRecordCodec}.
+ * <p>
+ * A view reads the fields of its record straight from the stored bytes, on demand, so replaying through views
+ * allocates no event, no data object, no UUID and no time per event. A cursor of views, see
+ * {@link EventStore#openViewCursor(java.util.UUID, long)}, owns a single view and moves it from record to record: a
+ * view is only valid until its cursor advances, and must never be kept.
+ * <p>
+ * Event handlers read the data fields they need through the accessors of the binary schema of the event type, e.g.
+ * {@link AccountBinaryCodecs#readAmountMinorUnits(EventView)}, when the data is stored {@link #hasCurrentBinaryData()
+ * in the current binary schema}. Otherwise they fall back to {@link #getData()}, which decodes and upcasts the data.
+ */
+public final class EventView {
+
+  private final UpcasterChain upcasterChain;
+  private ByteBuffer buffer;
+  private int position;
+  private EventType eventType;
+
+  EventView(UpcasterChain upcasterChain) {
+    this.upcasterChain = upcasterChain;
+  }
+
+  /**
+   * Moves the view to the record starting at the given position.
+   */
+  EventView wrap(ByteBuffer buffer, int position) {
+    this.buffer = buffer;
+    this.position = position;
+    this.eventType = EventRecordCodec.readEventType(buffer, position);
+    return this;
+  }
+
+  public EventType getEventType() {
+    return eventType;
+  }
+
+  public long getAggregateVersion() {
+    return EventRecordCodec.readAggregateVersion(buffer, position);
+  }
+
+  public long getOffsetId() {
+    return EventRecordCodec.readOffsetId(buffer, position);
+  }
+
+  public long getOffsetTxId() {
+    return EventRecordCodec.readOffsetTxId(buffer, position);
+  }
+
+  /**
+   * Tells whether the data is stored with the {@link BinaryDataCodec} of the current schema version of the event type,
+   * i.e. whether its fields can be read in place at {@link #getDataPosition()}.
+   */
+  public boolean hasCurrentBinaryData() {
+    return EventRecordCodec.readDataContentType(buffer, position) == DataContentType.BINARY
+      && EventRecordCodec.readSchemaVersion(buffer, position) == eventType.getSchemaVersion();
+  }
+
+  /**
+   * Returns the buffer holding the record. Only absolute reads may be performed on it.
+   */
+  ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Returns the position of the data in {@link #getBuffer() the buffer}.
+   */
+  int getDataPosition() {
+    return EventRecordCodec.dataPosition(position);
+  }
+
+  /**
+   * Decodes the data, upcast to the current schema version of the event type. Allocates the data object.
+   */
+  public Object getData() {
+    return EventRecordCodec.readData(buffer, position, eventType, upcasterChain);
+  }
+
+  /**
+   * Decodes the whole record into an event, e.g. for a handler without view support. Allocates the event.
+   */
+  public Event toEvent() {
+    return EventRecordCodec.read(buffer, position, upcasterChain);
+  }
+
+  @Override
+  public String toString() {
+    return "EventView(eventType=%s, aggregateVersion=%s)".formatted(eventType, getAggregateVersion());
+  }
+}
@@ -0,0 +1,32 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+/**
+ * Implemented by aggregates replaying their confirmed events straight from {@link EventView}s, reading the fields they
+ * need from the stored bytes instead of decoding every event into objects, see
+ * {@link Aggregate#reproduceFromEventViews(java.util.Iterator)}.
+ * <p>
+ * During a replay an aggregate may keep its state in a mutable form, e.g. a running balance, and bring it back to its
+ * regular form once the replay ends. Views must not be kept after {@link #applyEventView(EventView)} returns.
+ */
+public interface EventViewHandler {
+
+  /**
+   * Called before the first view of a replay is applied.
+   */
+  default void beginEventViewReplay() {
+  }
+
+  /**
+   * Applies the event of a view to the state of the aggregate. The version of the event is validated by the caller.
+   *
+   * @param view The view, only valid during the call.
+   */
+  void applyEventView(EventView view);
+
+  /**
+   * Called once the views of a replay are applied, or once the first of them fails. The state must then reflect the
+   * views applied so far.
+   */
+  default void endEventViewReplay() {
+  }
+}
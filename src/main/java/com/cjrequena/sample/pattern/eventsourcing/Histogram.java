@@ -0,0 +1,145 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of non-negative long values, e.g. latencies in nanoseconds, with lock-free recording.
+ * <p>
+ * As in HdrHistogram, values are counted in log-linear buckets: every power of two range is split in
+ * {@value #SUB_BUCKET_COUNT} linear sub-buckets, so any recorded value is known within about 3% of its magnitude,
+ * over the whole long range, in a fixed array of counters. Recording a value is an index computation and an atomic
+ * increment, without locking nor allocating.
+ * <p>
+ * {@link #snapshot()} copies the counters. A snapshot taken while values are recorded may miss some of them, but never
+ * counts a value twice.
+ */
+public final class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // Enough buckets for the highest bit of a positive long
+  private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+  /**
+   * Records a value. Negative values are recorded as 0.
+   *
+   * @param value The value.
+   */
+  public void record(long value) {
+    counts.getAndIncrement(indexOf(Math.max(value, 0)));
+  }
+
+  /**
+   * Returns a copy of the counts recorded so far.
+   */
+  public Snapshot snapshot() {
+    final long[] copy = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      copy[i] = counts.get(i);
+    }
+    return new Snapshot(copy);
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+  }
+
+  static long lowestValueOf(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    final int shift = index / SUB_BUCKET_COUNT - 1;
+    return (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+  }
+
+  static long highestValueOf(int index) {
+    return index + 1 == BUCKET_COUNT ? Long.MAX_VALUE : lowestValueOf(index + 1) - 1;
+  }
+
+  /**
+   * Counts of a histogram at a point in time.
+   */
+  public static final class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+
+    private Snapshot(long[] counts) {
+      this.counts = counts;
+      long total = 0;
+      for (long bucket : counts) {
+        total += bucket;
+      }
+      this.count = total;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall, as the highest value of its
+     * bucket.
+     *
+     * @param percentile The percentage, between 0 and 100.
+     * @return The value, 0 if no value is recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      final long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return highestValueOf(i);
+        }
+      }
+      return getMax();
+    }
+
+    /**
+     * Returns the highest recorded value, as the highest value of its bucket, or 0 if no value is recorded.
+     */
+    public long getMax() {
+      for (int i = counts.length - 1; i >= 0; i--) {
+        if (counts[i] > 0) {
+          return highestValueOf(i);
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * Returns the mean of the recorded values, taking the middle of their buckets, or 0 if no value is recorded.
+     */
+    public double getMean() {
+      if (count == 0) {
+        return 0;
+      }
+      double sum = 0;
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0) {
+          sum += counts[i] * ((double) lowestValueOf(i) + highestValueOf(i)) / 2;
+        }
+      }
+      return sum / count;
+    }
+
+    @Override
+    public String toString() {
+      return "count=%d p50=%d p99=%d p999=%d max=%d".formatted(count, getValueAtPercentile(50), getValueAtPercentile(99),
+        getValueAtPercentile(99.9), getMax());
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes event payloads as JSON through Jackson.
+ */
+final class JsonEventDataCodec implements EventDataCodec {
+
+  static final JsonEventDataCodec INSTANCE = new JsonEventDataCodec();
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private JsonEventDataCodec() {
+  }
+
+  @Override
+  public void encode(EventType eventType, Object data, ByteBuffer target) {
+    try {
+      OBJECT_MAPPER.writeValue(new ByteBufferBackedOutputStream(target), data);
+    } catch (IOException e) {
+      throw new EventStoreException("Unable to serialize event data " + data, e);
+    }
+  }
+
+  @Override
+  public Object decode(Class<?> dataClass, BinaryDataCodec<?> binaryDataCodec, ByteBuffer source) {
+    try {
+      return OBJECT_MAPPER.readValue(new ByteBufferBackedInputStream(source), dataClass);
+    } catch (IOException e) {
+      throw new EventStoreException("Unable to deserialize event data as " + dataClass.getSimpleName(), e);
+    }
+  }
+}
@@ -2,12 +2,13 @@ package com.cjrequena.sample.pattern.eventsourcing;
 
 import lombok.extern.log4j.Log4j2;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.nio.file.Files;
 
 @Log4j2
 public class Main {
 
-  public static void main(String... args) {
+  public static void main(String... args) throws IOException {
 
     Command createAccountCommand = CreateAccountCommand
       .builder()
@@ -15,7 +16,7 @@ public class Main {
         .builder()
         .owner("Pepe")
         .email("pepe@aggregate-account.com")
-        .balance(new BigDecimal("999"))
+        .balance(Money.of(999))
         .isActive(true)
         .build()
       )
@@ -30,7 +31,7 @@ public class Main {
       .data(DepositVO
         .builder()
         .accountId(accountAggregate.getAggregateId())
-        .amount(BigDecimal.valueOf(100))
+        .amount(Money.of(100))
         .build())
       .build();
     accountAggregate.applyCommand(depositAccountCommand);
@@ -41,15 +42,20 @@ public class Main {
       .data(WithdrawVO
         .builder()
         .accountId(accountAggregate.getAggregateId())
-        .amount(BigDecimal.valueOf(100))
+        .amount(Money.of(100))
         .build())
       .build();
     accountAggregate.applyCommand(withdrawAccountCommand);
     log.debug(accountAggregate);
 
-    final Aggregate accountAggregate2 = aggregateFactory.newInstance(AccountAggregate.class, accountAggregate.aggregateId);
-    accountAggregate2.reproduceFromEvents(accountAggregate.unconfirmedEventsPool);
-    log.debug(accountAggregate2);
+    try (EventStore eventStore = EventStore.open(Files.createTempDirectory("event-store"))) {
+      eventStore.append(accountAggregate.getAggregateId(), accountAggregate.getReproducedAggregateVersion(), accountAggregate.getUnconfirmedEventsPool());
+      accountAggregate.markUnconfirmedEventsAsConfirmed();
+
+      final Aggregate accountAggregate2 = aggregateFactory.newInstance(AccountAggregate.class, accountAggregate.aggregateId);
+      accountAggregate2.reproduceFromEvents(eventStore.retrieveEvents(accountAggregate2.getAggregateId()));
+      log.debug(accountAggregate2);
+    }
 
 
   }
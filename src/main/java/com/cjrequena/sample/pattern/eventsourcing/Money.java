@@ -0,0 +1,118 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.NonNull;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable amount of money with a fixed scale of 2 decimal places, backed by a long number of minor units (cents).
+ * <p>
+ * Additions and subtractions are exact and allocate nothing but the result, instead of the {@link BigDecimal}
+ * arithmetic and rescaling they replace. Any result overflowing a long throws an {@link ArithmeticException} instead
+ * of wrapping around. Decimal amounts are rounded {@link RoundingMode#HALF_UP} to the scale, as before.
+ * <p>
+ * Amounts are serialized to JSON as decimal numbers, so existing JSON events and snapshots are read unchanged.
+ *
+ * @param minorUnits The amount in minor units, e.g. 1050 for 10.50.
+ */
+public record Money(long minorUnits) implements Comparable<Money>, Serializable {
+
+  public static final int SCALE = 2;
+  public static final Money ZERO = new Money(0);
+
+  private static final long MINOR_UNITS_PER_UNIT = 100;
+
+  /**
+   * Creates an amount from its minor units.
+   *
+   * @param minorUnits The amount in minor units, e.g. 1050 for 10.50.
+   */
+  public static Money ofMinor(long minorUnits) {
+    return minorUnits == 0 ? ZERO : new Money(minorUnits);
+  }
+
+  /**
+   * Creates an amount of whole units.
+   *
+   * @param units The amount in units, e.g. 10 for 10.00.
+   * @throws ArithmeticException if the amount doesn't fit in a long number of minor units.
+   */
+  public static Money of(long units) {
+    return ofMinor(Math.multiplyExact(units, MINOR_UNITS_PER_UNIT));
+  }
+
+  /**
+   * Creates an amount from a decimal, rounded half up to 2 decimal places.
+   *
+   * @param amount The decimal amount.
+   * @throws ArithmeticException if the amount doesn't fit in a long number of minor units.
+   */
+  @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+  public static Money of(@NonNull BigDecimal amount) {
+    final BigDecimal scaled = amount.setScale(SCALE, RoundingMode.HALF_UP);
+    if (scaled.unscaledValue().bitLength() >= Long.SIZE) {
+      throw new ArithmeticException("Amount %s overflows".formatted(amount));
+    }
+    return ofMinor(scaled.unscaledValue().longValue());
+  }
+
+  /**
+   * Parses a decimal amount, rounded half up to 2 decimal places.
+   *
+   * @param amount The decimal amount, e.g. "10.50".
+   * @throws NumberFormatException if the amount is not a decimal number.
+   * @throws ArithmeticException if the amount doesn't fit in a long number of minor units.
+   */
+  public static Money parse(@NonNull String amount) {
+    return of(new BigDecimal(amount));
+  }
+
+  /**
+   * @throws ArithmeticException if the result overflows.
+   */
+  public Money plus(Money other) {
+    return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+  }
+
+  /**
+   * @throws ArithmeticException if the result overflows.
+   */
+  public Money minus(Money other) {
+    return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+  }
+
+  public boolean isZero() {
+    return minorUnits == 0;
+  }
+
+  public boolean isPositive() {
+    return minorUnits > 0;
+  }
+
+  public boolean isNegative() {
+    return minorUnits < 0;
+  }
+
+  public boolean isGreaterThanOrEqualTo(Money other) {
+    return minorUnits >= other.minorUnits;
+  }
+
+  @Override
+  public int compareTo(Money other) {
+    return Long.compare(minorUnits, other.minorUnits);
+  }
+
+  @JsonValue
+  public BigDecimal toBigDecimal() {
+    return BigDecimal.valueOf(minorUnits, SCALE);
+  }
+
+  @Override
+  public String toString() {
+    return toBigDecimal().toPlainString();
+  }
+}
@@ -0,0 +1,33 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+public class OptimisticConcurrencyException extends RuntimeServiceException {
+
+  // Null when unknown
+  private final UUID aggregateId;
+  private final long expectedVersion;
+  private final long actualVersion;
+
+  public OptimisticConcurrencyException(String message) {
+    super(message);
+    this.aggregateId = null;
+    this.expectedVersion = -1;
+    this.actualVersion = -1;
+  }
+
+  /**
+   * @param aggregateId The aggregate whose version didn't match.
+   * @param expectedVersion The version the aggregate was expected to have in the store.
+   * @param actualVersion The version the aggregate has in the store.
+   */
+  public OptimisticConcurrencyException(UUID aggregateId, long expectedVersion, long actualVersion) {
+    super("Aggregate %s is at version %s, but version %s was expected.".formatted(aggregateId, actualVersion, expectedVersion));
+    this.aggregateId = aggregateId;
+    this.expectedVersion = expectedVersion;
+    this.actualVersion = actualVersion;
+  }
+}
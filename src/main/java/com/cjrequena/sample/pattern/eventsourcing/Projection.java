@@ -0,0 +1,100 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Read model kept up to date by a {@link ProjectionEngine} from the events of the event store.
+ * <p>
+ * Subclasses register a handler per {@link EventType} they are interested in, see {@link #on(Class, Consumer)}; the
+ * events of any other type are skipped. The state of the read model is persisted by the engine together with the
+ * offset of the latest event it has seen, so both always match: subclasses write and read it in
+ * {@link #writeState(DataOutputStream)} and {@link #readState(DataInputStream)}. Between two saves of the whole state,
+ * the engine only persists the changes of every batch, see {@link #writeChanges(DataOutputStream)}. When a handler
+ * fails, the engine rolls the read model back to its saved state, or {@link #reset()}s it if it has never been saved.
+ * <p>
+ * Handlers are called by a single thread at a time, while queries may run concurrently with them.
+ */
+public abstract class Projection {
+
+  private final Map<EventType, Consumer<Event>> handlers = new EnumMap<>(EventType.class);
+
+  /**
+   * Returns the name of the projection, unique within an engine. It names the checkpoint file of the projection.
+   */
+  public abstract String getName();
+
+  /**
+   * Registers the handler of an event type.
+   *
+   * @param eventClass The class of the events, see {@link EventType#getEventClass()}.
+   * @param handler The handler.
+   * @param <E> The event type.
+   * @throws IllegalArgumentException if the class isn't the class of an event type.
+   */
+  @SuppressWarnings("unchecked")
+  protected final <E extends Event> void on(Class<E> eventClass, Consumer<? super E> handler) {
+    for (EventType eventType : EventType.values()) {
+      if (eventType.getEventClass() == eventClass) {
+        handlers.put(eventType, event -> handler.accept((E) event));
+        return;
+      }
+    }
+    throw new IllegalArgumentException("Unknown event class " + eventClass.getName());
+  }
+
+  /**
+   * Returns the event types the projection has handlers for.
+   */
+  public Set<EventType> getEventTypes() {
+    return Collections.unmodifiableSet(handlers.keySet());
+  }
+
+  /**
+   * Applies an event to the read model, if the projection has a handler for its type.
+   *
+   * @param event The event.
+   */
+  void handle(Event event) {
+    final Consumer<Event> handler = handlers.get(EventType.of(event.getEventType()));
+    if (handler != null) {
+      handler.accept(event);
+    }
+  }
+
+  /**
+   * Clears the state of the read model, as it is before seeing any event.
+   */
+  protected abstract void reset();
+
+  /**
+   * Writes the state of the read model.
+   */
+  protected abstract void writeState(DataOutputStream out) throws IOException;
+
+  /**
+   * Replaces the state of the read model with the state written by {@link #writeState(DataOutputStream)}.
+   */
+  protected abstract void readState(DataInputStream in) throws IOException;
+
+  /**
+   * Writes the changes of the read model since its state or its changes were last written or read. By default, the
+   * whole state; read models holding more than what a batch of events changes override it with their changes only.
+   */
+  protected void writeChanges(DataOutputStream out) throws IOException {
+    writeState(out);
+  }
+
+  /**
+   * Applies the changes written by {@link #writeChanges(DataOutputStream)} to the state of the read model.
+   */
+  protected void readChanges(DataInputStream in) throws IOException {
+    readState(in);
+  }
+}
@@ -0,0 +1,339 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Runs {@link Projection}s over the event log of an {@link EventStore}.
+ * <p>
+ * Every projection has a checkpoint: the {@code offsetId} of the latest event it has seen. A catch-up tails the log
+ * from the checkpoint of every projection and delivers the new events in batches of {@code batchSize}. Only the events
+ * of the types a projection handles are decoded for it, the others are skipped in the log. After every
+ * batch the checkpoint and the changes of the read model in the batch are appended together, as a frame with a
+ * checksum, to the {@code <name>.journal} in the checkpoint directory, and forced to the disk. Once the journal grows
+ * larger than the whole state, it is compacted: the checkpoint and the state are saved to {@code <name>.checkpoint},
+ * through a temporary file forced to the disk and atomically moved in place, once the journal is deleted. A projection
+ * registered again after a restart restores the state and replays the journal frames after its checkpoint, so it only
+ * sees the events appended since. A frame torn by a crash is dropped.
+ * <p>
+ * Catch-ups run on demand through {@link #catchUp()}, or periodically on a background thread once {@link #start} is
+ * called.
+ */
+@Log4j2
+public class ProjectionEngine implements Closeable {
+
+  public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+  private static final String CHECKPOINT_FILE_SUFFIX = ".checkpoint";
+  private static final String JOURNAL_FILE_SUFFIX = ".journal";
+  // Offset id, changes length and checksum
+  private static final int FRAME_HEADER_SIZE = Long.BYTES + 2 * Integer.BYTES;
+  // A journal smaller than this isn't compacted, whatever the size of the state
+  private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+  private final EventStore eventStore;
+  private final Path checkpointDirectory;
+  private final int batchSize;
+  private final List<Subscription> subscriptions = new ArrayList<>();
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Creates an engine.
+   *
+   * @param eventStore The event store whose log is tailed.
+   * @param checkpointDirectory The directory holding the checkpoint files.
+   * @param batchSize The maximum number of events delivered between two checkpoints.
+   * @throws EventStoreException if the checkpoint directory can't be created.
+   */
+  public ProjectionEngine(@NonNull EventStore eventStore, @NonNull Path checkpointDirectory, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("The batch size must be positive.");
+    }
+    this.eventStore = eventStore;
+    this.checkpointDirectory = checkpointDirectory;
+    this.batchSize = batchSize;
+    try {
+      Files.createDirectories(checkpointDirectory);
+    } catch (IOException e) {
+      throw new EventStoreException("Unable to open the checkpoint directory " + checkpointDirectory, e);
+    }
+  }
+
+  /**
+   * Registers a projection, restoring its checkpoint and state if it has been saved before. The projection sees the
+   * events appended after its checkpoint on the next catch-up.
+   *
+   * @param projection The projection.
+   * @throws IllegalArgumentException if a projection with the same name is already registered.
+   * @throws EventStoreException if the checkpoint of the projection can't be read.
+   */
+  public synchronized void register(@NonNull Projection projection) {
+    for (Subscription subscription : subscriptions) {
+      if (subscription.projection.getName().equals(projection.getName())) {
+        throw new IllegalArgumentException("Projection %s is already registered.".formatted(projection.getName()));
+      }
+    }
+    final Subscription subscription = new Subscription(projection);
+    loadCheckpoint(subscription);
+    subscriptions.add(subscription);
+  }
+
+  /**
+   * Returns the checkpoint of a registered projection.
+   *
+   * @param projection The projection.
+   * @return The offset id of the latest event seen by the projection, 0 if it hasn't seen any.
+   */
+  public synchronized long getCheckpoint(Projection projection) {
+    for (Subscription subscription : subscriptions) {
+      if (subscription.projection == projection) {
+        return subscription.checkpoint;
+      }
+    }
+    throw new IllegalArgumentException("Projection %s is not registered.".formatted(projection.getName()));
+  }
+
+  /**
+   * Delivers the events appended since their checkpoint to all the projections. A projection whose handler fails is
+   * rolled back to its checkpoint and tried again on the next catch-up, while the other projections go on.
+   *
+   * @return The number of events delivered to the projections that didn't fail.
+   */
+  public synchronized long catchUp() {
+    long read = 0;
+    for (Subscription subscription : subscriptions) {
+      try {
+        read += catchUp(subscription);
+      } catch (RuntimeException e) {
+        log.error("Projection {} failed at checkpoint {}", subscription.projection.getName(), subscription.checkpoint, e);
+      }
+    }
+    return read;
+  }
+
+  /**
+   * Starts catching up periodically on a background thread.
+   *
+   * @param pollInterval The delay between the end of a catch-up and the start of the next one.
+   */
+  public synchronized void start(@NonNull Duration pollInterval) {
+    if (scheduler != null) {
+      throw new IllegalStateException("The engine is already started.");
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "projection-engine"));
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        catchUp();
+      } catch (RuntimeException e) {
+        log.error("Projection catch-up failed", e);
+      }
+    }, 0, pollInterval.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Stops the background catch-ups, if started, waiting for the running one to finish.
+   */
+  @Override
+  public void close() {
+    final ScheduledExecutorService current;
+    synchronized (this) {
+      current = scheduler;
+      scheduler = null;
+    }
+    if (current != null) {
+      current.shutdown();
+      try {
+        current.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private long catchUp(Subscription subscription) {
+    long read = 0;
+    // The events skipped up to here are seen as well once the catch-up is over
+    final long lastOffsetId = eventStore.getLastOffsetId();
+    try (Stream<Event> events = eventStore.retrieveAllEvents(subscription.checkpoint, subscription.projection.getEventTypes())) {
+      final Iterator<Event> iterator = events.iterator();
+      while (iterator.hasNext()) {
+        int batch = 0;
+        long offsetId = subscription.checkpoint;
+        while (batch < batchSize && iterator.hasNext()) {
+          final Event event = iterator.next();
+          subscription.projection.handle(event);
+          offsetId = event.getOffsetId();
+          batch++;
+        }
+        saveCheckpoint(subscription, offsetId);
+        read += batch;
+      }
+      if (subscription.checkpoint < lastOffsetId) {
+        saveCheckpoint(subscription, lastOffsetId);
+      }
+    } catch (RuntimeException e) {
+      // Roll the read model back to its saved checkpoint, so the failed batch is delivered again on the next catch-up
+      try {
+        loadCheckpoint(subscription);
+      } catch (RuntimeException rollbackFailure) {
+        // The read model is rebuilt from the start of the log instead, and its whole state saved
+        rollbackFailure.addSuppressed(e);
+        subscription.projection.reset();
+        subscription.checkpoint = 0;
+        subscription.compactionDue = true;
+        throw rollbackFailure;
+      }
+      throw e;
+    }
+    if (read > 0) {
+      log.debug("Projection {} caught up to offset {} with {} events", subscription.projection.getName(), subscription.checkpoint, read);
+    }
+    return read;
+  }
+
+  /**
+   * Restores the state of the projection from its checkpoint file and its journal, truncating a frame torn by a crash.
+   */
+  private void loadCheckpoint(Subscription subscription) {
+    final Projection projection = subscription.projection;
+    try (InputStream inputStream = Files.newInputStream(pathOf(projection)); DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream))) {
+      subscription.checkpoint = in.readLong();
+      projection.readState(in);
+      subscription.checkpointSize = Files.size(pathOf(projection));
+    } catch (NoSuchFileException e) {
+      projection.reset();
+      subscription.checkpoint = 0;
+      subscription.checkpointSize = 0;
+    } catch (IOException e) {
+      throw new EventStoreException("Unable to read the checkpoint of projection " + projection.getName(), e);
+    }
+    subscription.journalSize = replayJournal(subscription);
+    subscription.compactionDue = false;
+  }
+
+  /**
+   * Applies the journal frames after the checkpoint to the projection.
+   *
+   * @return The size of the intact frames of the journal.
+   */
+  private long replayJournal(Subscription subscription) {
+    final Projection projection = subscription.projection;
+    try (FileChannel channel = FileChannel.open(journalPathOf(projection), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      final long size = channel.size();
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      long position = 0;
+      while (position + FRAME_HEADER_SIZE <= size) {
+        final long offsetId = in.readLong();
+        final int length = in.readInt();
+        final int checksum = in.readInt();
+        if (length < 0 || length > size - position - FRAME_HEADER_SIZE) {
+          break;
+        }
+        final byte[] changes = in.readNBytes(length);
+        if (checksum(changes) != checksum) {
+          break;
+        }
+        // Already part of the state otherwise
+        if (offsetId > subscription.checkpoint) {
+          projection.readChanges(new DataInputStream(new ByteArrayInputStream(changes)));
+          subscription.checkpoint = offsetId;
+        }
+        position += FRAME_HEADER_SIZE + length;
+      }
+      if (position < size) {
+        log.warn("Journal of projection {} truncated at {} of {} bytes", projection.getName(), position, size);
+        channel.truncate(position);
+        channel.force(true);
+      }
+      return position;
+    } catch (NoSuchFileException e) {
+      return 0;
+    } catch (IOException e) {
+      throw new EventStoreException("Unable to read the journal of projection " + projection.getName(), e);
+    }
+  }
+
+  private void saveCheckpoint(Subscription subscription, long checkpoint) {
+    final Projection projection = subscription.projection;
+    try {
+      if (subscription.compactionDue || subscription.journalSize > Math.max(subscription.checkpointSize, MIN_COMPACTION_SIZE)) {
+        // Deleted first, so a crash before the replace rolls the read model back to the previous checkpoint
+        DurableFiles.delete(journalPathOf(projection));
+        DurableFiles.replace(pathOf(projection), out -> {
+          out.writeLong(checkpoint);
+          projection.writeState(out);
+        });
+        subscription.checkpointSize = Files.size(pathOf(projection));
+        subscription.journalSize = 0;
+        subscription.compactionDue = false;
+      } else {
+        final ByteArrayOutputStream changes = new ByteArrayOutputStream();
+        projection.writeChanges(new DataOutputStream(changes));
+        final ByteArrayOutputStream frame = new ByteArrayOutputStream(FRAME_HEADER_SIZE + changes.size());
+        final DataOutputStream out = new DataOutputStream(frame);
+        out.writeLong(checkpoint);
+        out.writeInt(changes.size());
+        out.writeInt(checksum(changes.toByteArray()));
+        changes.writeTo(out);
+        DurableFiles.append(journalPathOf(projection), frame.toByteArray());
+        subscription.journalSize += frame.size();
+      }
+      subscription.checkpoint = checkpoint;
+    } catch (IOException e) {
+      throw new EventStoreException("Unable to save the checkpoint of projection " + projection.getName(), e);
+    }
+  }
+
+  private static int checksum(byte[] bytes) {
+    final CRC32C crc = new CRC32C();
+    crc.update(bytes);
+    return (int) crc.getValue();
+  }
+
+  private Path pathOf(Projection projection) {
+    return checkpointDirectory.resolve(projection.getName() + CHECKPOINT_FILE_SUFFIX);
+  }
+
+  private Path journalPathOf(Projection projection) {
+    return checkpointDirectory.resolve(projection.getName() + JOURNAL_FILE_SUFFIX);
+  }
+
+  private static final class Subscription {
+
+    private final Projection projection;
+    private long checkpoint;
+    // Sizes of the checkpoint file and of the intact frames of the journal, in bytes
+    private long checkpointSize;
+    private long journalSize;
+    // Whether the next save must write the whole state, as the journal no longer matches it
+    private boolean compactionDue;
+
+    private Subscription(Projection projection) {
+      this.projection = projection;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Applies commands to their aggregates and saves them, retrying the commands that conflict with concurrent writers of
+ * the same aggregate.
+ * <p>
+ * The aggregate is saved with the version it was loaded at as the expected version, see
+ * {@link EventStore#append(java.util.UUID, long, java.util.List)}. When another writer appended events in the
+ * meantime, the save fails with an {@link OptimisticConcurrencyException}: the events of the command are discarded, the
+ * aggregate is caught up with the events appended by the other writer, and the command is applied again on the
+ * up-to-date state, after a backoff decided by the {@link ConflictRetryPolicy}.
+ * <p>
+ * Aggregates implementing {@link Snapshotable} are caught up incrementally: their state is captured in memory before
+ * the command is applied and restored after a conflict, then only the tail of their stream is replayed. Other
+ * aggregates are reloaded.
+ * <p>
+ * Commands rejected by their aggregate are not retried. Conflicts, retries and exhausted retries are recorded in
+ * {@link AggregateMetrics#global()}.
+ */
+@Log4j2
+public class RetryingCommandExecutor {
+
+  private final AggregateRepository aggregateRepository;
+  private final ConflictRetryPolicy retryPolicy;
+
+  /**
+   * Creates an executor retrying with the {@link ConflictRetryPolicy#DEFAULT default policy}.
+   */
+  public RetryingCommandExecutor(AggregateRepository aggregateRepository) {
+    this(aggregateRepository, ConflictRetryPolicy.DEFAULT);
+  }
+
+  /**
+   * Creates an executor.
+   *
+   * @param aggregateRepository Loads and saves the aggregates.
+   * @param retryPolicy Decides how often, and after how long, conflicting commands are retried.
+   */
+  public RetryingCommandExecutor(@NonNull AggregateRepository aggregateRepository, @NonNull ConflictRetryPolicy retryPolicy) {
+    this.aggregateRepository = aggregateRepository;
+    this.retryPolicy = retryPolicy;
+  }
+
+  /**
+   * Applies a command to its aggregate and saves it.
+   *
+   * @param command The command.
+   * @return The saved aggregate.
+   * @throws OptimisticConcurrencyException if the command conflicted on every attempt, or if the thread is
+   *                                        interrupted while backing off.
+   * @throws RuntimeException if the aggregate rejects the command.
+   */
+  public Aggregate execute(@NonNull Command command) {
+    Aggregate aggregate = aggregateRepository.load(command.getAggregateType(), command.getAggregateId());
+    for (int attempt = 1; ; attempt++) {
+      final Snapshot<?> beforeCommand = aggregate instanceof Snapshotable<?> snapshotable && aggregate.getAggregateVersion() > 0
+        ? snapshotable.takeSnapshot()
+        : null;
+      aggregate.applyCommand(command);
+      try {
+        aggregateRepository.save(aggregate);
+        return aggregate;
+      } catch (OptimisticConcurrencyException e) {
+        // Roll the aggregate back to its state before the command. Without a snapshot it keeps its unconfirmed events,
+        // so it is never served again by the aggregate cache
+        if (beforeCommand != null) {
+          aggregate.discardUnconfirmedEvents();
+          restore((Snapshotable<?>) aggregate, beforeCommand);
+        }
+        if (attempt >= retryPolicy.maxAttempts()) {
+          AggregateMetrics.global().recordExhaustedRetries();
+          throw e;
+        }
+        log.debug("Command {} conflicted on attempt {}, aggregate {} is at version {}", command.getCommandId(), attempt, e.getAggregateId(), e.getActualVersion());
+        AggregateMetrics.global().recordConflictRetry();
+        backOff(attempt, e);
+      }
+      if (beforeCommand != null) {
+        aggregateRepository.catchUp(aggregate);
+      } else {
+        aggregate = aggregateRepository.load(command.getAggregateType(), command.getAggregateId());
+      }
+    }
+  }
+
+  private void backOff(int attempt, OptimisticConcurrencyException conflict) {
+    final long delayNanos = retryPolicy.delayNanos(attempt);
+    if (delayNanos > 0) {
+      LockSupport.parkNanos(delayNanos);
+    }
+    if (Thread.currentThread().isInterrupted()) {
+      throw conflict;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <S> void restore(Snapshotable<S> snapshotable, Snapshot<?> snapshot) {
+    snapshotable.reproduceFromSnapshot((Snapshot<S>) snapshot);
+  }
+}
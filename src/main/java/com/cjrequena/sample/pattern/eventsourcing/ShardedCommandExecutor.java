@@ -0,0 +1,208 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executes commands concurrently while keeping every aggregate single-writer.
+ * <p>
+ * Commands are routed by the hash of their {@code aggregateId} to a fixed set of shards. Every shard owns one thread
+ * and a lock-free queue, fed by any number of producers and drained by the shard thread alone, so the commands of an
+ * aggregate are always applied by the same thread, in submission order, and without locking the aggregate. Different
+ * aggregates scale across the shards.
+ * <p>
+ * The shard thread drains up to {@code maxBatchSize} pending commands at a time and dispatches them through the
+ * {@link CommandBus}, so the commands queued while the previous batch was being committed share a single group
+ * commit. An idle shard thread parks until a producer enqueues a new command.
+ */
+@Log4j2
+public class ShardedCommandExecutor implements Closeable {
+
+  public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+  private final Shard[] shards;
+  private volatile boolean running = true;
+
+  /**
+   * Creates an executor with one shard per available processor.
+   *
+   * @param commandBus The bus applying the commands. It is shared by the shards, which never touch the same aggregate.
+   */
+  public ShardedCommandExecutor(CommandBus commandBus) {
+    this(commandBus, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  /**
+   * Creates an executor and starts its shard threads.
+   *
+   * @param commandBus The bus applying the commands. It is shared by the shards, which never touch the same aggregate.
+   * @param shards The number of shards, and of threads.
+   * @param maxBatchSize The maximum number of commands dispatched by a shard in a single group commit.
+   */
+  public ShardedCommandExecutor(@NonNull CommandBus commandBus, int shards, int maxBatchSize) {
+    if (shards < 1 || maxBatchSize < 1) {
+      throw new IllegalArgumentException("The number of shards and the max batch size must be positive.");
+    }
+    this.shards = new Shard[shards];
+    for (int i = 0; i < shards; i++) {
+      this.shards[i] = new Shard(commandBus, maxBatchSize);
+      this.shards[i].thread = new Thread(this.shards[i]::run, "command-shard-" + i);
+    }
+    for (Shard shard : this.shards) {
+      shard.thread.start();
+    }
+  }
+
+  /**
+   * Submits a command to the shard owning its aggregate.
+   *
+   * @param command The command.
+   * @return A future completed once the events of the command are committed, or completed exceptionally with the
+   * cause of the failure if the command is rejected or its group commit fails.
+   * @throws RejectedExecutionException if the executor is closed.
+   */
+  public CompletableFuture<Void> submit(@NonNull Command command) {
+    if (!running) {
+      throw new RejectedExecutionException("The executor is closed.");
+    }
+    final Task task = new Task(command, new CompletableFuture<>());
+    final Shard shard = shards[shardOf(command.getAggregateId())];
+    shard.enqueue(task);
+    // Closed meanwhile: the task may have been enqueued after its shard stopped and close drained the queues. Taking it
+    // back fails if a shard or the drain took it, and then its future completes
+    if (!running && shard.queue.remove(task)) {
+      throw new RejectedExecutionException("The executor is closed.");
+    }
+    return task.future;
+  }
+
+  /**
+   * Returns the shard owning an aggregate.
+   *
+   * @param aggregateId The aggregate id.
+   * @return The shard index, between 0 and the number of shards, exclusive.
+   */
+  public int shardOf(UUID aggregateId) {
+    // UUID.hashCode() folds the bits by xor, spread them again before reducing them to a shard index
+    final int hash = aggregateId.hashCode() * 0x9E3779B9;
+    return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+  }
+
+  public int getShards() {
+    return shards.length;
+  }
+
+  /**
+   * Stops accepting commands, waits for the shards to execute the commands already submitted and stops their threads.
+   */
+  @Override
+  public void close() {
+    running = false;
+    for (Shard shard : shards) {
+      LockSupport.unpark(shard.thread);
+    }
+    for (Shard shard : shards) {
+      try {
+        shard.thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    // Commands submitted while closing may have been enqueued after their shard stopped
+    for (Shard shard : shards) {
+      Task task;
+      while ((task = shard.queue.poll()) != null) {
+        task.future.completeExceptionally(new RejectedExecutionException("The executor is closed."));
+      }
+    }
+  }
+
+  private record Task(Command command, CompletableFuture<Void> future) {
+  }
+
+  private final class Shard {
+
+    private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+    private final CommandBus commandBus;
+    private final int maxBatchSize;
+    private Thread thread;
+    private volatile boolean parked;
+
+    private Shard(CommandBus commandBus, int maxBatchSize) {
+      this.commandBus = commandBus;
+      this.maxBatchSize = maxBatchSize;
+    }
+
+    private void enqueue(Task task) {
+      queue.offer(task);
+      if (parked) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    private void run() {
+      final List<Task> tasks = new ArrayList<>(maxBatchSize);
+      final List<Command> commands = new ArrayList<>(maxBatchSize);
+      while (true) {
+        Task task;
+        while (tasks.size() < maxBatchSize && (task = queue.poll()) != null) {
+          tasks.add(task);
+          commands.add(task.command);
+        }
+        if (!tasks.isEmpty()) {
+          execute(tasks, commands);
+          tasks.clear();
+          commands.clear();
+        } else if (running) {
+          // Publish the parked flag before checking the queue again, so an enqueue racing with it always unparks us
+          parked = true;
+          if (queue.isEmpty() && running) {
+            LockSupport.park(this);
+          }
+          parked = false;
+        } else if (queue.isEmpty()) {
+          return;
+        }
+      }
+    }
+
+    private void execute(List<Task> tasks, List<Command> commands) {
+      final CommandBatchResult result;
+      try {
+        result = commandBus.dispatch(commands);
+      } catch (RuntimeException e) {
+        log.error("Dispatch of {} commands failed", commands.size(), e);
+        tasks.forEach(task -> task.future.completeExceptionally(e));
+        return;
+      }
+      final Map<Command, RuntimeException> failures = new IdentityHashMap<>(result.failures().size());
+      result.failures().forEach(failure -> failures.put(failure.command(), failure.cause()));
+      // A duplicate of a command of the same batch takes the outcome of that command
+      final Map<Command, Command> originals = new IdentityHashMap<>(result.droppedDuplicates().size());
+      result.droppedDuplicates().stream()
+        .filter(duplicate -> duplicate.original() != null)
+        .forEach(duplicate -> originals.put(duplicate.command(), duplicate.original()));
+      for (Task task : tasks) {
+        final RuntimeException cause = failures.get(originals.getOrDefault(task.command, task.command));
+        if (cause == null) {
+          task.future.complete(null);
+        } else {
+          task.future.completeExceptionally(cause);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Point-in-time copy of the state of an aggregate, taken after its confirmed events up to {@code aggregateVersion}
+ * have been applied.
+ *
+ * @param aggregateId The aggregate id.
+ * @param aggregateType The aggregate type.
+ * @param aggregateVersion The version of the aggregate when the snapshot was taken.
+ * @param time The time the snapshot was taken.
+ * @param state The state of the aggregate.
+ * @param <S> The type of the state.
+ */
+public record Snapshot<S>(
+
+  @NonNull
+  UUID aggregateId,
+
+  @NonNull
+  String aggregateType,
+
+  long aggregateVersion,
+
+  @NonNull
+  OffsetDateTime time,
+
+  @NonNull
+  S state
+
+) {
+}
@@ -0,0 +1,58 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import java.time.Duration;
+
+/**
+ * Decides when a new snapshot of an aggregate is taken.
+ */
+@FunctionalInterface
+public interface SnapshotPolicy {
+
+  /**
+   * Decides whether a new snapshot must be taken after the aggregate has been saved.
+   *
+   * @param eventsSinceSnapshot The number of confirmed events applied since the latest snapshot, or since the
+   *                            creation of the aggregate if it has none. Always greater than zero.
+   * @param timeSinceSnapshot The time elapsed since the latest snapshot, or {@code null} if the aggregate has none.
+   * @return true if a snapshot must be taken.
+   */
+  boolean shouldTakeSnapshot(long eventsSinceSnapshot, Duration timeSinceSnapshot);
+
+  /**
+   * Never takes snapshots.
+   */
+  static SnapshotPolicy never() {
+    return (eventsSinceSnapshot, timeSinceSnapshot) -> false;
+  }
+
+  /**
+   * Takes a snapshot every {@code events} events.
+   *
+   * @param events The number of events between snapshots.
+   */
+  static SnapshotPolicy everyEvents(long events) {
+    if (events <= 0) {
+      throw new IllegalArgumentException("The number of events between snapshots must be greater than zero.");
+    }
+    return (eventsSinceSnapshot, timeSinceSnapshot) -> eventsSinceSnapshot >= events;
+  }
+
+  /**
+   * Takes a snapshot when the latest one is older than {@code interval}, or when there is none.
+   *
+   * @param interval The minimum time between snapshots.
+   */
+  static SnapshotPolicy every(Duration interval) {
+    return (eventsSinceSnapshot, timeSinceSnapshot) -> timeSinceSnapshot == null || timeSinceSnapshot.compareTo(interval) >= 0;
+  }
+
+  /**
+   * Takes a snapshot when either this or the other policy decides so.
+   *
+   * @param other The other policy.
+   */
+  default SnapshotPolicy or(SnapshotPolicy other) {
+    return (eventsSinceSnapshot, timeSinceSnapshot) ->
+      shouldTakeSnapshot(eventsSinceSnapshot, timeSinceSnapshot) || other.shouldTakeSnapshot(eventsSinceSnapshot, timeSinceSnapshot);
+  }
+}
@@ -0,0 +1,213 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * File based store keeping the latest {@link Snapshot} of every aggregate and, optionally, a history of its previous
+ * snapshots.
+ * <p>
+ * Each snapshot is written to {@code <aggregateId>.snapshot} in the store directory: a small binary header followed
+ * by the state serialized as JSON. Snapshots are written to a temporary file first, forced to the disk and atomically
+ * moved in place, so neither a reader nor a restart after a crash sees a partially written snapshot.
+ * <p>
+ * With a history, every snapshot is also kept as {@code <aggregateId>.history/<version>.snapshot}, up to the given
+ * number of snapshots per aggregate, oldest dropped first. The history serves the loads of past versions of the
+ * aggregates, see {@link #findLatestAtOrBefore(UUID, long, Class)}. The versions in the history of every aggregate are
+ * listed once and then kept in memory, so finding a past snapshot reads a single file.
+ */
+public class SnapshotStore {
+
+  private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+  private static final String HISTORY_DIRECTORY_SUFFIX = ".history";
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final Path directory;
+  private final int retainedSnapshots;
+  // Versions in the history of the aggregates listed so far
+  private final Map<UUID, NavigableSet<Long>> histories = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a snapshot store in the given directory, keeping the latest snapshot of every aggregate only.
+   *
+   * @param directory The directory holding the snapshot files.
+   * @throws EventStoreException if the directory can't be created.
+   */
+  public SnapshotStore(Path directory) {
+    this(directory, 1);
+  }
+
+  /**
+   * Creates a snapshot store in the given directory.
+   *
+   * @param directory The directory holding the snapshot files.
+   * @param retainedSnapshots The number of snapshots kept per aggregate, including the latest one.
+   * @throws EventStoreException if the directory can't be created.
+   */
+  public SnapshotStore(Path directory, int retainedSnapshots) {
+    if (retainedSnapshots < 1) {
+      throw new IllegalArgumentException("At least one snapshot must be retained.");
+    }
+    this.directory = directory;
+    this.retainedSnapshots = retainedSnapshots;
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new EventStoreException("Unable to open the snapshot store at " + directory, e);
+    }
+  }
+
+  /**
+   * Saves a snapshot, replacing the previous snapshot of the same aggregate as its latest one.
+   *
+   * @param snapshot The snapshot.
+   */
+  public void save(Snapshot<?> snapshot) {
+    try {
+      if (retainedSnapshots > 1) {
+        final Path historyDirectory = Files.createDirectories(historyDirectoryOf(snapshot.aggregateId()));
+        write(historyDirectory.resolve(historyFileName(snapshot.aggregateVersion())), snapshot);
+        final NavigableSet<Long> history = historyOf(snapshot.aggregateId());
+        history.add(snapshot.aggregateVersion());
+        while (history.size() > retainedSnapshots) {
+          final Long oldest = history.pollFirst();
+          if (oldest != null) {
+            Files.deleteIfExists(historyDirectory.resolve(historyFileName(oldest)));
+          }
+        }
+      }
+      write(pathOf(snapshot.aggregateId()), snapshot);
+    } catch (IOException e) {
+      throw new EventStoreException("Unable to save the snapshot of aggregate " + snapshot.aggregateId(), e);
+    }
+  }
+
+  /**
+   * Finds the latest snapshot of an aggregate.
+   *
+   * @param aggregateId The aggregate id.
+   * @param stateClass The class of the snapshot state.
+   * @param <S> The type of the snapshot state.
+   * @return The latest snapshot, or empty if the aggregate has none.
+   */
+  public <S> Optional<Snapshot<S>> findLatest(UUID aggregateId, Class<S> stateClass) {
+    try {
+      return Optional.of(read(pathOf(aggregateId), aggregateId, stateClass));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      throw new EventStoreException("Unable to read the snapshot of aggregate " + aggregateId, e);
+    }
+  }
+
+  /**
+   * Finds the latest snapshot of an aggregate taken at or before the given version, among the latest snapshot and
+   * the history of the aggregate.
+   *
+   * @param aggregateId The aggregate id.
+   * @param aggregateVersion The highest version of the snapshot.
+   * @param stateClass The class of the snapshot state.
+   * @param <S> The type of the snapshot state.
+   * @return The snapshot, or empty if the aggregate has none at or before the version.
+   */
+  public <S> Optional<Snapshot<S>> findLatestAtOrBefore(UUID aggregateId, long aggregateVersion, Class<S> stateClass) {
+    if (retainedSnapshots > 1) {
+      try {
+        // The latest snapshot is in the history too, unless it was taken before the history was kept
+        final Long version = historyOf(aggregateId).floor(aggregateVersion);
+        if (version != null) {
+          return Optional.of(read(historyDirectoryOf(aggregateId).resolve(historyFileName(version)), aggregateId, stateClass));
+        }
+      } catch (NoSuchFileException e) {
+        // Dropped by another store on the same directory, list the history again on the next search
+        histories.remove(aggregateId);
+      } catch (IOException e) {
+        throw new EventStoreException("Unable to read the snapshot history of aggregate " + aggregateId, e);
+      }
+    }
+    return findLatest(aggregateId, stateClass).filter(snapshot -> snapshot.aggregateVersion() <= aggregateVersion);
+  }
+
+  private static void write(Path path, Snapshot<?> snapshot) throws IOException {
+    DurableFiles.replace(path, out -> {
+      out.writeUTF(snapshot.aggregateType());
+      out.writeLong(snapshot.aggregateVersion());
+      out.writeLong(snapshot.time().toEpochSecond());
+      out.writeInt(snapshot.time().getNano());
+      out.writeInt(snapshot.time().getOffset().getTotalSeconds());
+      final byte[] state = OBJECT_MAPPER.writeValueAsBytes(snapshot.state());
+      out.writeInt(state.length);
+      out.write(state);
+    });
+  }
+
+  private static <S> Snapshot<S> read(Path path, UUID aggregateId, Class<S> stateClass) throws IOException {
+    try (InputStream inputStream = Files.newInputStream(path); DataInputStream in = new DataInputStream(inputStream)) {
+      final String aggregateType = in.readUTF();
+      final long aggregateVersion = in.readLong();
+      final long epochSecond = in.readLong();
+      final int nano = in.readInt();
+      final int offsetSeconds = in.readInt();
+      final byte[] state = in.readNBytes(in.readInt());
+      return new Snapshot<>(
+        aggregateId,
+        aggregateType,
+        aggregateVersion,
+        OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), ZoneOffset.ofTotalSeconds(offsetSeconds)),
+        OBJECT_MAPPER.readValue(state, stateClass));
+    }
+  }
+
+  /**
+   * Returns the versions in the history of an aggregate, listing its history directory the first time.
+   */
+  private NavigableSet<Long> historyOf(UUID aggregateId) throws IOException {
+    final NavigableSet<Long> history = histories.get(aggregateId);
+    if (history != null) {
+      return history;
+    }
+    final NavigableSet<Long> listed = new ConcurrentSkipListSet<>();
+    try (Stream<Path> files = Files.list(historyDirectoryOf(aggregateId))) {
+      files.filter(path -> path.getFileName().toString().endsWith(SNAPSHOT_FILE_SUFFIX)).forEach(path -> listed.add(versionOf(path)));
+    } catch (NoSuchFileException | NotDirectoryException e) {
+      // No snapshot was kept in the history yet
+    }
+    final NavigableSet<Long> raced = histories.putIfAbsent(aggregateId, listed);
+    return raced == null ? listed : raced;
+  }
+
+  private static String historyFileName(long aggregateVersion) {
+    return "%019d".formatted(aggregateVersion) + SNAPSHOT_FILE_SUFFIX;
+  }
+
+  private static long versionOf(Path historyFile) {
+    final String fileName = historyFile.getFileName().toString();
+    return Long.parseLong(fileName.substring(0, fileName.length() - SNAPSHOT_FILE_SUFFIX.length()));
+  }
+
+  private Path pathOf(UUID aggregateId) {
+    return directory.resolve(aggregateId + SNAPSHOT_FILE_SUFFIX);
+  }
+
+  private Path historyDirectoryOf(UUID aggregateId) {
+    return directory.resolve(aggregateId + HISTORY_DIRECTORY_SUFFIX);
+  }
+}
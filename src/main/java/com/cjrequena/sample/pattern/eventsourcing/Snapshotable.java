@@ -0,0 +1,34 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+/**
+ * Implemented by aggregates whose state can be captured in a {@link Snapshot}, so they can be reproduced from their
+ * latest snapshot plus the events appended after it, instead of from their whole history.
+ *
+ * @param <S> The type of the snapshot state. It must be serializable by Jackson.
+ */
+public interface Snapshotable<S> {
+
+  /**
+   * Returns the class of the snapshot state, used to deserialize stored snapshots.
+   *
+   * @return The snapshot state class.
+   */
+  Class<S> getSnapshotStateClass();
+
+  /**
+   * Takes a snapshot of the confirmed state of the aggregate.
+   *
+   * @return The snapshot, at the reproduced version of the aggregate.
+   * @throws IllegalStateException if the aggregate has unconfirmed events.
+   */
+  Snapshot<S> takeSnapshot();
+
+  /**
+   * Reconstitutes the aggregate's state from a snapshot. Events after the snapshot version may be applied afterwards
+   * with {@link Aggregate#reproduceFromEvents(java.util.List)}.
+   *
+   * @param snapshot The snapshot.
+   * @throws IllegalStateException if the aggregate has unconfirmed events.
+   */
+  void reproduceFromSnapshot(Snapshot<S> snapshot);
+}
@@ -0,0 +1,45 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+
+import java.util.function.Function;
+
+/**
+ * Upgrades the data of an {@link EventType} from a past schema version to the next one.
+ * <p>
+ * When the data schema of an event type changes, its schema version is bumped, see
+ * {@link EventType#getSchemaVersion()}, and the previous data class and binary codec are kept for the upcaster of the
+ * previous version. Upcasters are chained through an {@link UpcasterChain}: the stored data is decoded with the schema
+ * of its version, then upgraded one version at a time up to the current one.
+ *
+ * @param eventType The event type.
+ * @param sourceSchemaVersion The schema version the upcaster upgrades from, below the current one.
+ * @param sourceDataClass The data class of the source version, used to decode JSON data.
+ * @param sourceBinaryDataCodec The binary codec of the source version, used to decode binary data.
+ * @param function Upgrades data of the source version to the next version.
+ * @param <S> The data type of the source version.
+ * @param <T> The data type of the next version.
+ */
+public record Upcaster<S, T>(
+
+  @NonNull
+  EventType eventType,
+
+  byte sourceSchemaVersion,
+
+  @NonNull
+  Class<S> sourceDataClass,
+
+  @NonNull
+  BinaryDataCodec<S> sourceBinaryDataCodec,
+
+  @NonNull
+  Function<? super S, ? extends T> function
+
+) {
+
+  @SuppressWarnings("unchecked")
+  Object upcast(Object data) {
+    return function.apply((S) data);
+  }
+}
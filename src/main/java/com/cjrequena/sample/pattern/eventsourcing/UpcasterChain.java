@@ -0,0 +1,91 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The {@link Upcaster}s of the past schema versions of the event types, applied by the {@link EventStore} when it
+ * reads the events.
+ * <p>
+ * Data stored at the current schema version of its event type is decoded as before, without going through the chain.
+ * Data stored at a past version is decoded with the schema of that version, then upgraded by the upcaster of every
+ * version up to the current one. Events are upcast as they are read, one by one, and only when their data is decoded:
+ * the stored data is never rewritten.
+ */
+public final class UpcasterChain {
+
+  public static final UpcasterChain NONE = new UpcasterChain(new EnumMap<>(EventType.class));
+
+  // The upcasters of every event type, indexed by source schema version
+  private final Map<EventType, Upcaster<?, ?>[]> upcasters;
+
+  private UpcasterChain(Map<EventType, Upcaster<?, ?>[]> upcasters) {
+    this.upcasters = upcasters;
+  }
+
+  /**
+   * Creates a chain.
+   *
+   * @param upcasters The upcasters. The upcasters of an event type must cover every version from the oldest one they
+   *                  upgrade from up to the current one.
+   * @throws IllegalArgumentException if an upcaster doesn't upgrade from a past version, if two upcasters upgrade the
+   *                                  same version or if a version is missing.
+   */
+  public static UpcasterChain of(@NonNull Upcaster<?, ?>... upcasters) {
+    final Map<EventType, Upcaster<?, ?>[]> chains = new EnumMap<>(EventType.class);
+    for (Upcaster<?, ?> upcaster : upcasters) {
+      final EventType eventType = upcaster.eventType();
+      if (upcaster.sourceSchemaVersion() < 0 || upcaster.sourceSchemaVersion() >= eventType.getSchemaVersion()) {
+        throw new IllegalArgumentException("Upcaster of %s from schema version %s doesn't upgrade a past version."
+          .formatted(eventType, upcaster.sourceSchemaVersion()));
+      }
+      final Upcaster<?, ?>[] chain = chains.computeIfAbsent(eventType, type -> new Upcaster<?, ?>[type.getSchemaVersion()]);
+      if (chain[upcaster.sourceSchemaVersion()] != null) {
+        throw new IllegalArgumentException("Duplicate upcaster of %s from schema version %s.".formatted(eventType, upcaster.sourceSchemaVersion()));
+      }
+      chain[upcaster.sourceSchemaVersion()] = upcaster;
+    }
+    for (Map.Entry<EventType, Upcaster<?, ?>[]> entry : chains.entrySet()) {
+      final Upcaster<?, ?>[] chain = entry.getValue();
+      int version = 0;
+      while (chain[version] == null) {
+        version++;
+      }
+      for (; version < chain.length; version++) {
+        if (chain[version] == null) {
+          throw new IllegalArgumentException("Missing upcaster of %s from schema version %s.".formatted(entry.getKey(), version));
+        }
+      }
+    }
+    return new UpcasterChain(chains);
+  }
+
+  /**
+   * Decodes event data, upcasting it to the current schema version of its event type.
+   *
+   * @param eventType The event type.
+   * @param dataContentType The content type of the data.
+   * @param schemaVersion The schema version of the data.
+   * @param data The encoded data.
+   * @return The data, at the current schema version.
+   * @throws EventStoreException if there is no upcaster from the schema version.
+   */
+  Object decode(EventType eventType, DataContentType dataContentType, byte schemaVersion, ByteBuffer data) {
+    if (schemaVersion == eventType.getSchemaVersion()) {
+      return dataContentType.getCodec().decode(eventType, data);
+    }
+    final Upcaster<?, ?>[] chain = upcasters.get(eventType);
+    if (chain == null || schemaVersion < 0 || schemaVersion >= chain.length || chain[schemaVersion] == null) {
+      throw new EventStoreException("Unsupported schema version %s of %s".formatted(schemaVersion, eventType));
+    }
+    final Upcaster<?, ?> first = chain[schemaVersion];
+    Object upcast = dataContentType.getCodec().decode(first.sourceDataClass(), first.sourceBinaryDataCodec(), data);
+    for (int version = schemaVersion; version < chain.length; version++) {
+      upcast = chain[version].upcast(upcast);
+    }
+    return upcast;
+  }
+}
@@ -15,8 +15,8 @@ public class WithdrawAccountCommand extends Command {
   private final WithdrawVO data;
 
   @Builder
-  public WithdrawAccountCommand(UUID aggregateId, @NotNull WithdrawVO data) {
-    super(aggregateId, AggregateType.ACCOUNT_AGGREGATE.getType());
+  public WithdrawAccountCommand(UUID commandId, UUID aggregateId, @NotNull WithdrawVO data) {
+    super(commandId, aggregateId, AggregateType.ACCOUNT_AGGREGATE.getType());
     this.data = data;
   }
 
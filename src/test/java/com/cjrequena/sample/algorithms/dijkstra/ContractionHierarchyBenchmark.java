@@ -0,0 +1,145 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-to-point queries between random vertices of a square grid graph: {@link ContractionHierarchyQuery}, for the
+ * distance only and for the unpacked path, against the early exit and bidirectional Dijkstra searches of
+ * {@link PointToPointSearch}, plus the one-off costs of the hierarchy: its preprocessing and loading it from a file.
+ * As in {@link PointToPointBenchmark}, the {@code settled} counter is reported as time per settled vertex: the score
+ * divided by it is the number of vertices settled per query.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ContractionHierarchyBenchmark {
+
+  private static final int QUERIES = 1024;
+
+  @Param({"10000", "90000"})
+  public int vertices;
+
+  private CsrGraph graph;
+  private Path file;
+  private PointToPointSearch search;
+  private ContractionHierarchyQuery hierarchyQuery;
+  private int[] sources;
+  private int[] targets;
+  private int query;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+
+    public long settled;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      settled = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    final int side = (int) Math.sqrt(vertices);
+    graph = CsrGraph.of(CsrGraphTest.gridEdges(side, side, 42));
+    search = new PointToPointSearch(graph);
+    final ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+    hierarchyQuery = new ContractionHierarchyQuery(hierarchy);
+    file = Files.createTempFile("grid", ".ch");
+    hierarchy.save(file);
+    final SplittableRandom random = new SplittableRandom(42);
+    sources = random.ints(QUERIES, 0, graph.getVertexCount()).toArray();
+    targets = random.ints(QUERIES, 0, graph.getVertexCount()).toArray();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public long dijkstra(Counters counters) {
+    final int i = nextQuery();
+    return record(counters, search.dijkstra(sources[i], targets[i]));
+  }
+
+  @Benchmark
+  public long bidirectional(Counters counters) {
+    final int i = nextQuery();
+    return record(counters, search.bidirectional(sources[i], targets[i]));
+  }
+
+  @Benchmark
+  public long hierarchyDistance() {
+    final int i = nextQuery();
+    return hierarchyQuery.distance(sources[i], targets[i]);
+  }
+
+  @Benchmark
+  public long hierarchyPath(Counters counters) {
+    final int i = nextQuery();
+    return record(counters, hierarchyQuery.path(sources[i], targets[i]));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 3)
+  public ContractionHierarchy preprocessing() {
+    return ContractionHierarchy.build(graph);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 5)
+  public ContractionHierarchy load() throws IOException {
+    return ContractionHierarchy.load(file);
+  }
+
+  private int nextQuery() {
+    query = (query + 1) & (QUERIES - 1);
+    return query;
+  }
+
+  private static long record(Counters counters, ShortestPath path) {
+    counters.settled += path.getSettledVertices();
+    return path.getDistance();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ContractionHierarchyBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,84 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class ContractionHierarchyTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void answersTheSameDistancesAndPathsAsDijkstra() {
+    for (CsrGraph graph : List.of(CsrGraph.of(CsrGraphTest.gridEdges(40, 40, 41)), CsrGraph.of(CsrGraphTest.randomEdges(1_000, 3, 43)))) {
+      final ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+      final ContractionHierarchyQuery query = new ContractionHierarchyQuery(hierarchy);
+      final CsrDijkstra dijkstra = new CsrDijkstra(graph);
+      final SplittableRandom random = new SplittableRandom(47);
+      for (int i = 0; i < 30; i++) {
+        final int source = random.nextInt(graph.getVertexCount());
+        final ShortestPathTree tree = dijkstra.search(source);
+        for (int j = 0; j < 20; j++) {
+          final int target = random.nextInt(graph.getVertexCount());
+          final ShortestPath path = query.path(source, target);
+
+          assertEquals(tree.distanceTo(target), query.distance(source, target));
+          assertEquals(tree.distanceTo(target), path.getDistance());
+          assertEquals(tree.distanceTo(target), CsrDijkstraTest.lengthOf(graph, path.getPath()));
+        }
+      }
+    }
+  }
+
+  @Test
+  void settlesFewVerticesPerQuery() {
+    final CsrGraph graph = CsrGraph.of(CsrGraphTest.gridEdges(100, 100, 53));
+    final ContractionHierarchyQuery query = new ContractionHierarchyQuery(ContractionHierarchy.build(graph));
+    final SplittableRandom random = new SplittableRandom(59);
+    long settled = 0;
+    for (int i = 0; i < 100; i++) {
+      settled += query.path(random.nextInt(10_000), random.nextInt(10_000)).getSettledVertices();
+    }
+
+    assertTrue(settled / 100 < 1_000, "settled " + settled / 100 + " vertices per query");
+  }
+
+  @Test
+  void savesAndLoadsTheHierarchy() throws IOException {
+    final CsrGraph graph = CsrGraph.of(CsrGraphTest.SAMPLE);
+    final ContractionHierarchy built = ContractionHierarchy.build(graph);
+    final Path file = directory.resolve("sample.ch");
+    built.save(file);
+
+    final ContractionHierarchy loaded = ContractionHierarchy.load(file);
+    final ContractionHierarchyQuery query = new ContractionHierarchyQuery(loaded);
+    final int a = loaded.idOf("a");
+    final int e = loaded.idOf("e");
+
+    assertEquals(built.getEdgeCount(), loaded.getEdgeCount());
+    assertEquals(built.getShortcutCount(), loaded.getShortcutCount());
+    assertEquals(26, query.distance(a, e));
+    assertArrayEquals(new int[]{a, loaded.idOf("c"), loaded.idOf("d"), e}, query.path(a, e).getPath());
+    assertFalse(query.path(e, a).isFound());
+    assertEquals(0, query.distance(a, a));
+
+    Files.write(file, new byte[]{1, 2, 3, 4});
+    assertThrows(IOException.class, () -> ContractionHierarchy.load(file));
+  }
+}
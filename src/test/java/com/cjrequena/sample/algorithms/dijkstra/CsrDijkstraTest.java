@@ -0,0 +1,93 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author cjrequena
+ */
+class CsrDijkstraTest {
+
+  @Test
+  void findsTheShortestPathsOfTheSample() {
+    final CsrGraph graph = CsrGraph.of(CsrGraphTest.SAMPLE);
+    for (QueueType queueType : QueueType.values()) {
+      final ShortestPathTree tree = new CsrDijkstra(graph, queueType).search("a");
+
+      assertEquals(List.of("a", "c", "d", "e"), tree.namedPathTo(graph.idOf("e")));
+      assertEquals(26, tree.distanceTo(graph.idOf("e")));
+      assertEquals(11, tree.distanceTo(graph.idOf("f")));
+      assertEquals(6, tree.getSettledVertices());
+    }
+    final ShortestPathTree fromE = new CsrDijkstra(graph).search("e");
+    assertFalse(fromE.isReachable(graph.idOf("a")));
+    assertArrayEquals(new int[0], fromE.pathTo(graph.idOf("a")));
+    assertThrows(IllegalArgumentException.class, () -> new CsrDijkstra(graph).search("z"));
+  }
+
+  @Test
+  void everyQueueFindsTheShortestDistances() {
+    for (Graph.Edge[] edges : List.of(CsrGraphTest.randomEdges(2_000, 3, 11), CsrGraphTest.gridEdges(40, 50, 13))) {
+      final CsrGraph graph = CsrGraph.of(edges);
+      final long[] expected = bellmanFord(graph, 0);
+      for (QueueType queueType : QueueType.values()) {
+        final CsrDijkstra dijkstra = new CsrDijkstra(graph, queueType);
+        // Twice, to check the queue is reusable
+        for (int run = 0; run < 2; run++) {
+          final ShortestPathTree tree = dijkstra.search(0);
+          for (int v = 0; v < graph.getVertexCount(); v++) {
+            assertEquals(expected[v], tree.distanceTo(v), queueType.name());
+            assertEquals(expected[v], lengthOf(graph, tree.pathTo(v)), queueType.name());
+          }
+        }
+      }
+    }
+  }
+
+  static long[] bellmanFord(CsrGraph graph, int source) {
+    final long[] distances = new long[graph.getVertexCount()];
+    Arrays.fill(distances, ShortestPathTree.UNREACHABLE);
+    distances[source] = 0;
+    for (boolean changed = true; changed; ) {
+      changed = false;
+      for (int u = 0; u < graph.getVertexCount(); u++) {
+        if (distances[u] == ShortestPathTree.UNREACHABLE) {
+          continue;
+        }
+        for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+          if (distances[u] + graph.weight(e) < distances[graph.target(e)]) {
+            distances[graph.target(e)] = distances[u] + graph.weight(e);
+            changed = true;
+          }
+        }
+      }
+    }
+    return distances;
+  }
+
+  // Length of the shortest edges along a path, UNREACHABLE for an empty path
+  static long lengthOf(CsrGraph graph, int[] path) {
+    if (path.length == 0) {
+      return ShortestPathTree.UNREACHABLE;
+    }
+    long length = 0;
+    for (int i = 1; i < path.length; i++) {
+      long shortest = Long.MAX_VALUE;
+      for (int e = graph.firstEdge(path[i - 1]); e < graph.endEdge(path[i - 1]); e++) {
+        if (graph.target(e) == path[i]) {
+          shortest = Math.min(shortest, graph.weight(e));
+        }
+      }
+      length += shortest;
+    }
+    return length;
+  }
+}
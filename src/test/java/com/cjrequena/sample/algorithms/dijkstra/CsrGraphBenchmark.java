@@ -0,0 +1,77 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a {@link Graph} against a {@link CsrGraph} from the same random edges, and scanning every edge of the CSR
+ * graph. The {@code gc.alloc.rate.norm} of the GC profiler is the memory taken by a {@link Graph}; for a
+ * {@link CsrGraph} it also counts the temporary arrays of the build, about {@code 8 * m} bytes, so it is an upper
+ * bound of its footprint.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath, which enables the GC profiler, as {@code -prof gc} does.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CsrGraphBenchmark {
+
+  private static final int DEGREE = 4;
+
+  @Param({"10000", "1000000"})
+  public int vertices;
+
+  private Graph.Edge[] edges;
+  private CsrGraph csrGraph;
+
+  @Setup
+  public void setUp() {
+    edges = CsrGraphTest.randomEdges(vertices, DEGREE, 42);
+    csrGraph = CsrGraph.of(edges);
+  }
+
+  @Benchmark
+  public Graph buildGraph() {
+    return new Graph(edges);
+  }
+
+  @Benchmark
+  public CsrGraph buildCsrGraph() {
+    return CsrGraph.of(edges);
+  }
+
+  @Benchmark
+  public long scanCsrGraph() {
+    long sum = 0;
+    for (int v = 0; v < csrGraph.getVertexCount(); v++) {
+      for (int e = csrGraph.firstEdge(v); e < csrGraph.endEdge(v); e++) {
+        sum += csrGraph.target(e) ^ csrGraph.weight(e);
+      }
+    }
+    return sum;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CsrGraphBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,143 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author cjrequena
+ */
+class CsrGraphTest {
+
+  static final Graph.Edge[] SAMPLE = {
+    new Graph.Edge("a", "b", 7),
+    new Graph.Edge("a", "c", 9),
+    new Graph.Edge("a", "f", 14),
+    new Graph.Edge("b", "c", 10),
+    new Graph.Edge("b", "d", 15),
+    new Graph.Edge("c", "d", 11),
+    new Graph.Edge("c", "f", 2),
+    new Graph.Edge("d", "e", 6),
+    new Graph.Edge("e", "f", 9),
+  };
+
+  @Test
+  void internsVerticesInOrderOfFirstAppearance() {
+    final CsrGraph graph = CsrGraph.of(SAMPLE);
+
+    assertEquals(6, graph.getVertexCount());
+    assertEquals(9, graph.getEdgeCount());
+    final String[] names = new String[graph.getVertexCount()];
+    Arrays.setAll(names, graph::nameOf);
+    assertArrayEquals(new String[]{"a", "b", "c", "f", "d", "e"}, names);
+    assertEquals(-1, graph.idOf("z"));
+    assertThrows(IndexOutOfBoundsException.class, () -> graph.nameOf(6));
+
+    final int a = graph.idOf("a");
+    assertEquals(3, graph.outDegree(a));
+    assertEquals(List.of("b=7", "c=9", "f=14"), edgesOf(graph, a));
+    assertEquals(0, graph.outDegree(graph.idOf("f")));
+  }
+
+  @Test
+  void keepsEveryEdgeInTheRunOfItsSource() {
+    final Graph.Edge[] edges = randomEdges(5_000, 4, 17);
+    final CsrGraph graph = CsrGraph.of(edges);
+
+    final Map<String, List<String>> expected = new HashMap<>();
+    for (Graph.Edge edge : edges) {
+      expected.computeIfAbsent(edge.vertex1, name -> new ArrayList<>()).add(edge.vertex2 + "=" + edge.distance);
+    }
+    assertEquals(edges.length, graph.getEdgeCount());
+    for (Map.Entry<String, List<String>> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), edgesOf(graph, graph.idOf(entry.getKey())));
+    }
+  }
+
+  @Test
+  void rejectsNegativeDistances() {
+    assertThrows(IllegalArgumentException.class, () -> CsrGraph.of(new Graph.Edge[]{new Graph.Edge("a", "b", -1)}));
+  }
+
+  /**
+   * Random directed graph whose vertices, named {@code v0} to {@code v<n-1>}, have {@code degree} distinct neighbours
+   * each, at distances 1 to 100.
+   */
+  static Graph.Edge[] randomEdges(int vertexCount, int degree, long seed) {
+    final SplittableRandom random = new SplittableRandom(seed);
+    final Graph.Edge[] edges = new Graph.Edge[vertexCount * degree];
+    final int[] neighbours = new int[degree];
+    int i = 0;
+    for (int v = 0; v < vertexCount; v++) {
+      for (int k = 0; k < degree; k++) {
+        int neighbour;
+        do {
+          neighbour = random.nextInt(vertexCount);
+        } while (neighbour == v || contains(neighbours, k, neighbour));
+        neighbours[k] = neighbour;
+        edges[i++] = new Graph.Edge("v" + v, "v" + neighbour, 1 + random.nextInt(100));
+      }
+    }
+    return edges;
+  }
+
+  /**
+   * Grid graph of {@code width * height} vertices, named {@code v<y * width + x>}, with edges in both directions
+   * between horizontal and vertical neighbours, at distances 1 to 100.
+   */
+  static Graph.Edge[] gridEdges(int width, int height, long seed) {
+    return gridEdges(width, height, 1, seed);
+  }
+
+  /**
+   * Grid graph as {@link #gridEdges(int, int, long)}, at distances {@code minDistance} to 100.
+   */
+  static Graph.Edge[] gridEdges(int width, int height, int minDistance, long seed) {
+    final int range = 101 - minDistance;
+    final SplittableRandom random = new SplittableRandom(seed);
+    final List<Graph.Edge> edges = new ArrayList<>(4 * width * height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        final String vertex = "v" + (y * width + x);
+        if (x + 1 < width) {
+          final String right = "v" + (y * width + x + 1);
+          edges.add(new Graph.Edge(vertex, right, minDistance + random.nextInt(range)));
+          edges.add(new Graph.Edge(right, vertex, minDistance + random.nextInt(range)));
+        }
+        if (y + 1 < height) {
+          final String down = "v" + ((y + 1) * width + x);
+          edges.add(new Graph.Edge(vertex, down, minDistance + random.nextInt(range)));
+          edges.add(new Graph.Edge(down, vertex, minDistance + random.nextInt(range)));
+        }
+      }
+    }
+    return edges.toArray(Graph.Edge[]::new);
+  }
+
+  private static boolean contains(int[] values, int length, int value) {
+    for (int i = 0; i < length; i++) {
+      if (values[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<String> edgesOf(CsrGraph graph, int vertex) {
+    final List<String> edges = new ArrayList<>();
+    for (int e = graph.firstEdge(vertex); e < graph.endEdge(vertex); e++) {
+      edges.add(graph.nameOf(graph.target(e)) + "=" + graph.weight(e));
+    }
+    return edges;
+  }
+}
@@ -0,0 +1,63 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full single-source {@link CsrDijkstra} search on every {@link QueueType}, on random graphs of out-degree 4 and on
+ * square grid graphs. Larger graphs, e.g. {@code -p vertices=10000000}, need a larger heap for their input edges, e.g.
+ * {@code -jvmArgsAppend -Xmx12g}.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DijkstraQueueBenchmark {
+
+  @Param({"random", "grid"})
+  public String shape;
+
+  @Param({"10000", "1000000"})
+  public int vertices;
+
+  @Param({"TREE_SET", "BINARY_HEAP", "QUATERNARY_HEAP"})
+  public QueueType queueType;
+
+  private CsrDijkstra dijkstra;
+
+  @Setup
+  public void setUp() {
+    final int side = (int) Math.sqrt(vertices);
+    final Graph.Edge[] edges = shape.equals("grid") ? CsrGraphTest.gridEdges(side, side, 42) : CsrGraphTest.randomEdges(vertices, 4, 42);
+    dijkstra = new CsrDijkstra(CsrGraph.of(edges), queueType);
+  }
+
+  @Benchmark
+  public ShortestPathTree search() {
+    return dijkstra.search(0);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(DijkstraQueueBenchmark.class.getSimpleName()).build()).run();
+  }
+}
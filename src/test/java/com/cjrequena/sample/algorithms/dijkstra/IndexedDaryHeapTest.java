@@ -0,0 +1,87 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class IndexedDaryHeapTest {
+
+  @Test
+  void pollsInKeyOrderAfterDecreases() {
+    for (QueueType queueType : QueueType.values()) {
+      final int vertexCount = 10_000;
+      final VertexQueue queue = queueType.create(vertexCount);
+      final SplittableRandom random = new SplittableRandom(7);
+      final long[] keys = new long[vertexCount];
+      for (int v = 0; v < vertexCount; v++) {
+        keys[v] = random.nextLong(1_000_000);
+        assertTrue(queue.insertOrDecrease(v, keys[v]));
+      }
+      for (int i = 0; i < vertexCount; i++) {
+        final int v = random.nextInt(vertexCount);
+        final long key = random.nextLong(1_000_000);
+        assertEquals(key < keys[v], queue.insertOrDecrease(v, key), queueType.name());
+        keys[v] = Math.min(keys[v], key);
+      }
+
+      long previousKey = Long.MIN_VALUE;
+      final boolean[] polled = new boolean[vertexCount];
+      while (!queue.isEmpty()) {
+        final long minKey = queue.minKey();
+        final int v = queue.pollMin();
+        assertEquals(keys[v], minKey, queueType.name());
+        assertTrue(minKey >= previousKey, queueType.name());
+        assertFalse(polled[v]);
+        polled[v] = true;
+        previousKey = minKey;
+      }
+      assertThrows(NoSuchElementException.class, queue::pollMin);
+    }
+  }
+
+  @Test
+  void updatesKeysBothWays() {
+    final IndexedDaryHeap heap = new IndexedDaryHeap(100, 4);
+    for (int v = 0; v < 100; v++) {
+      heap.update(v, v);
+    }
+    heap.update(0, 1_000);
+    heap.update(99, -1);
+    heap.update(50, 50);
+
+    assertEquals(99, heap.pollMin());
+    for (int v = 1; v < 99; v++) {
+      assertEquals(v, heap.minKey());
+      assertEquals(v, heap.pollMin());
+    }
+    assertEquals(1_000, heap.minKey());
+    assertEquals(0, heap.pollMin());
+  }
+
+  @Test
+  void isReusedAfterClear() {
+    final IndexedDaryHeap heap = new IndexedDaryHeap(8, 4);
+    heap.insertOrDecrease(3, 30);
+    heap.insertOrDecrease(5, 50);
+    heap.clear();
+
+    assertTrue(heap.isEmpty());
+    assertFalse(heap.contains(3));
+    heap.insertOrDecrease(5, 5);
+    heap.insertOrDecrease(3, 3);
+    assertEquals(2, heap.size());
+    assertEquals(3, heap.pollMin());
+    assertEquals(5, heap.pollMin());
+    assertThrows(IllegalArgumentException.class, () -> new IndexedDaryHeap(8, 3));
+  }
+}
@@ -0,0 +1,120 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-to-point queries between random vertices of a square grid graph: a full {@link CsrDijkstra} search against
+ * the early exit, bidirectional and A* modes of {@link PointToPointSearch}. The {@code minDistance} of the edges sets
+ * how close the straight line estimate of A* is to the actual distances: distances 1 to 100 make it almost blind,
+ * 90 to 100 make it close, as travel times on a road network. The {@code settled} counter is reported as time per
+ * settled vertex: the score divided by it is the number of vertices settled per query.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PointToPointBenchmark {
+
+  private static final int QUERIES = 1024;
+
+  @Param({"1000000"})
+  public int vertices;
+
+  @Param({"1", "90"})
+  public int minDistance;
+
+  private CsrDijkstra fullSearch;
+  private PointToPointSearch search;
+  private Heuristic heuristic;
+  private int[] sources;
+  private int[] targets;
+  private int query;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+
+    public long settled;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      settled = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    final int side = (int) Math.sqrt(vertices);
+    final CsrGraph graph = CsrGraph.of(CsrGraphTest.gridEdges(side, side, minDistance, 42));
+    fullSearch = new CsrDijkstra(graph);
+    search = new PointToPointSearch(graph);
+    heuristic = PointToPointSearchTest.gridHeuristic(graph, side, minDistance);
+    final SplittableRandom random = new SplittableRandom(42);
+    sources = random.ints(QUERIES, 0, graph.getVertexCount()).toArray();
+    targets = random.ints(QUERIES, 0, graph.getVertexCount()).toArray();
+  }
+
+  @Benchmark
+  public long fullSearch(Counters counters) {
+    final int i = nextQuery();
+    final ShortestPathTree tree = fullSearch.search(sources[i]);
+    counters.settled += tree.getSettledVertices();
+    return tree.distanceTo(targets[i]);
+  }
+
+  @Benchmark
+  public long earlyExit(Counters counters) {
+    final int i = nextQuery();
+    return record(counters, search.dijkstra(sources[i], targets[i]));
+  }
+
+  @Benchmark
+  public long bidirectional(Counters counters) {
+    final int i = nextQuery();
+    return record(counters, search.bidirectional(sources[i], targets[i]));
+  }
+
+  @Benchmark
+  public long aStar(Counters counters) {
+    final int i = nextQuery();
+    return record(counters, search.aStar(sources[i], targets[i], heuristic));
+  }
+
+  private int nextQuery() {
+    query = (query + 1) & (QUERIES - 1);
+    return query;
+  }
+
+  private static long record(Counters counters, ShortestPath path) {
+    counters.settled += path.getSettledVertices();
+    return path.getDistance();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PointToPointBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,95 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class PointToPointSearchTest {
+
+  private static final int WIDTH = 60;
+
+  @Test
+  void everyModeFindsTheShortestPath() {
+    final CsrGraph grid = CsrGraph.of(CsrGraphTest.gridEdges(WIDTH, 50, 21));
+    final Heuristic heuristic = gridHeuristic(grid, WIDTH);
+    for (CsrGraph graph : List.of(grid, CsrGraph.of(CsrGraphTest.randomEdges(3_000, 3, 23)))) {
+      final PointToPointSearch search = new PointToPointSearch(graph);
+      final CsrDijkstra dijkstra = new CsrDijkstra(graph);
+      final SplittableRandom random = new SplittableRandom(29);
+      for (int query = 0; query < 50; query++) {
+        final int source = random.nextInt(graph.getVertexCount());
+        final int target = random.nextInt(graph.getVertexCount());
+        final ShortestPathTree tree = dijkstra.search(source);
+
+        final List<ShortestPath> paths = graph == grid
+          ? List.of(search.dijkstra(source, target), search.bidirectional(source, target), search.aStar(source, target, heuristic))
+          : List.of(search.dijkstra(source, target), search.bidirectional(source, target));
+        for (ShortestPath path : paths) {
+          assertEquals(tree.distanceTo(target), path.getDistance());
+          assertEquals(tree.distanceTo(target), CsrDijkstraTest.lengthOf(graph, path.getPath()));
+          if (path.isFound()) {
+            assertEquals(source, path.getPath()[0]);
+            assertEquals(target, path.getPath()[path.getPath().length - 1]);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void settlesFewerVerticesThanAFullSearch() {
+    final CsrGraph graph = CsrGraph.of(CsrGraphTest.gridEdges(WIDTH, WIDTH, 31));
+    final PointToPointSearch search = new PointToPointSearch(graph);
+    // Between two vertices 10 columns apart in the middle row
+    final int source = graph.idOf("v" + (WIDTH / 2 * WIDTH + 20));
+    final int target = graph.idOf("v" + (WIDTH / 2 * WIDTH + 30));
+
+    final int full = new CsrDijkstra(graph).search(source).getSettledVertices();
+    final int earlyExit = search.dijkstra(source, target).getSettledVertices();
+    final int bidirectional = search.bidirectional(source, target).getSettledVertices();
+    final int aStar = search.aStar(source, target, gridHeuristic(graph, WIDTH)).getSettledVertices();
+
+    assertEquals(WIDTH * WIDTH, full);
+    assertTrue(earlyExit < full / 2, "early exit settled " + earlyExit);
+    assertTrue(bidirectional < earlyExit, "bidirectional settled " + bidirectional);
+    assertTrue(aStar <= earlyExit, "A* settled " + aStar);
+  }
+
+  @Test
+  void handlesTrivialAndUnreachableTargets() {
+    final CsrGraph graph = CsrGraph.of(CsrGraphTest.SAMPLE);
+    final PointToPointSearch search = new PointToPointSearch(graph);
+    final int a = graph.idOf("a");
+    final int e = graph.idOf("e");
+
+    assertEquals(0, search.bidirectional(a, a).getDistance());
+    assertArrayEquals(new int[]{a}, search.dijkstra(a, a).getPath());
+    assertFalse(search.bidirectional(e, a).isFound());
+    assertFalse(search.dijkstra(e, a).isFound());
+    assertEquals(26, search.bidirectional(a, e).getDistance());
+    assertArrayEquals(new int[]{a, graph.idOf("c"), graph.idOf("d"), e}, search.bidirectional(a, e).getPath());
+  }
+
+  static Heuristic gridHeuristic(CsrGraph graph, int width) {
+    return gridHeuristic(graph, width, 1);
+  }
+
+  // Coordinates of the grid vertices: every edge is one unit long and costs at least its min distance
+  static Heuristic gridHeuristic(CsrGraph graph, int width, int minDistance) {
+    return CoordinateHeuristic.of(graph, name -> idOf(name) % width, name -> idOf(name) / width, minDistance);
+  }
+
+  private static int idOf(String name) {
+    return Integer.parseInt(name.substring(1));
+  }
+}
@@ -0,0 +1,84 @@
+package com.cjrequena.sample.algorithms.dijkstra;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author cjrequena
+ */
+class ShortestPathQueryEngineTest {
+
+  @Test
+  void answersConcurrentQueriesOnASharedGraph() {
+    final CsrGraph graph = CsrGraph.of(CsrGraphTest.gridEdges(30, 30, 3));
+    try (ShortestPathQueryEngine engine = new ShortestPathQueryEngine(graph, QueueType.QUATERNARY_HEAP, 4, 0)) {
+      final List<CompletableFuture<ShortestPathTree>> futures = new ArrayList<>();
+      for (int source = 0; source < 40; source++) {
+        futures.add(engine.submit(source * 20));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        final long[] expected = CsrDijkstraTest.bellmanFord(graph, i * 20);
+        final ShortestPathTree tree = futures.get(i).join();
+        for (int v = 0; v < graph.getVertexCount(); v++) {
+          assertEquals(expected[v], tree.distanceTo(v));
+        }
+      }
+      assertEquals(40, engine.getSearches());
+    }
+  }
+
+  @Test
+  void searchesEveryDistinctSourceOfABatchOnce() {
+    final CsrGraph graph = CsrGraph.of(CsrGraphTest.randomEdges(1_000, 3, 5));
+    try (ShortestPathQueryEngine engine = new ShortestPathQueryEngine(graph, QueueType.BINARY_HEAP, 2, 0)) {
+      // More distinct sources than searches kept in flight
+      final int[] sources = {1, 2, 1, 3, 2, 4, 5, 6, 7, 1};
+      final int[] targets = {0, 500, 999};
+
+      final long[][] distances = engine.distances(sources, targets);
+
+      assertEquals(7, engine.getSearches());
+      for (int i = 0; i < sources.length; i++) {
+        final long[] expected = CsrDijkstraTest.bellmanFord(graph, sources[i]);
+        assertArrayEquals(new long[]{expected[0], expected[500], expected[999]}, distances[i]);
+      }
+      assertThrows(IllegalArgumentException.class, () -> engine.distances(new int[]{1_000}, targets));
+      assertThrows(IllegalArgumentException.class, () -> engine.distances(sources, new int[]{-1}));
+    }
+  }
+
+  @Test
+  void cachesTheRecentSources() {
+    final CsrGraph graph = CsrGraph.of(CsrGraphTest.SAMPLE);
+    try (ShortestPathQueryEngine engine = new ShortestPathQueryEngine(graph, QueueType.QUATERNARY_HEAP, 1, 2)) {
+      final ShortestPathTree fromA = engine.tree(graph.idOf("a"));
+      engine.tree(graph.idOf("b"));
+      assertSame(fromA, engine.tree(graph.idOf("a")));
+      engine.tree(graph.idOf("c"));
+
+      // b was the least recently used tree
+      assertEquals(3, engine.getSearches());
+      engine.tree(graph.idOf("b"));
+      assertEquals(4, engine.getSearches());
+      assertEquals(17, engine.distance(graph.idOf("c"), graph.idOf("e")));
+      assertEquals(2, engine.getCache().size());
+      assertEquals(2, engine.getCache().getEvictions());
+      assertEquals(2, engine.getCache().getHits());
+      assertEquals(4, engine.getCache().getMisses());
+
+      // A submitted miss is looked up in the cache once
+      assertEquals(26, engine.submit(graph.idOf("a")).join().distanceTo(graph.idOf("e")));
+      assertEquals(5, engine.getCache().getMisses());
+      assertEquals(5, engine.getSearches());
+    }
+  }
+}
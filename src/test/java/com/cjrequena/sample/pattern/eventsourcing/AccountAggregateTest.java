@@ -0,0 +1,117 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author cjrequena
+ */
+class AccountAggregateTest {
+
+  @Test
+  void applyCommandDispatchesToTheCommandHandler() {
+    final AccountAggregate aggregate = createAccount(Money.of(999));
+
+    final Command depositAccountCommand = DepositAccountCommand.builder()
+      .aggregateId(aggregate.getAggregateId())
+      .data(DepositVO.builder().accountId(aggregate.getAggregateId()).amount(Money.of(100)).build())
+      .build();
+    final Command withdrawAccountCommand = WithdrawAccountCommand.builder()
+      .aggregateId(aggregate.getAggregateId())
+      .data(WithdrawVO.builder().accountId(aggregate.getAggregateId()).amount(Money.of(50)).build())
+      .build();
+    aggregate.applyCommand(depositAccountCommand);
+    aggregate.applyCommand(withdrawAccountCommand);
+
+    assertEquals(Money.of(1049), aggregate.getData().balance());
+    assertEquals(3, aggregate.getAggregateVersion());
+    assertEquals(3, aggregate.getUnconfirmedEventsPool().size());
+  }
+
+  @Test
+  void reproduceFromEventsReplaysTheHistory() {
+    final AccountAggregate aggregate = createAccount(Money.of(10));
+    final Command depositAccountCommand = DepositAccountCommand.builder()
+      .aggregateId(aggregate.getAggregateId())
+      .data(DepositVO.builder().accountId(aggregate.getAggregateId()).amount(Money.of(5)).build())
+      .build();
+    aggregate.applyCommand(depositAccountCommand);
+
+    final AccountAggregate reproduced = new AccountAggregate(aggregate.getAggregateId(), 0);
+    reproduced.reproduceFromEvents(new ArrayList<>(aggregate.getUnconfirmedEventsPool()));
+
+    assertEquals(aggregate.getData(), reproduced.getData());
+    assertEquals(2, reproduced.getAggregateVersion());
+    assertEquals(2, reproduced.getReproducedAggregateVersion());
+  }
+
+  @Test
+  void reproduceFromEventsAcceptsIteratorsAndSpliterators() {
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(4);
+    final List<Event> history = List.copyOf(aggregate.getUnconfirmedEventsPool());
+
+    final AccountAggregate fromIterator = new AccountAggregate(aggregate.getAggregateId(), 0);
+    fromIterator.reproduceFromEvents(history.subList(0, 2).iterator());
+    fromIterator.reproduceFromEvents(history.subList(2, 5).iterator());
+    final AccountAggregate fromSpliterator = new AccountAggregate(aggregate.getAggregateId(), 0);
+    fromSpliterator.reproduceFromEvents(history.stream().spliterator());
+
+    assertEquals(aggregate.getData(), fromIterator.getData());
+    assertEquals(5, fromIterator.getReproducedAggregateVersion());
+    assertEquals(aggregate.getData(), fromSpliterator.getData());
+    assertEquals(5, fromSpliterator.getAggregateVersion());
+  }
+
+  @Test
+  void reproduceFromEventsValidatesEveryEventAgainstTheReplayedVersion() {
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(2);
+    final List<Event> history = aggregate.getUnconfirmedEventsPool();
+
+    final AccountAggregate reproduced = new AccountAggregate(aggregate.getAggregateId(), 0);
+    assertThrows(IllegalArgumentException.class, () -> reproduced.reproduceFromEvents(List.of(history.get(0), history.get(1), history.get(1))));
+    assertEquals(2, reproduced.getAggregateVersion());
+    assertEquals(Money.of(11), reproduced.getData().balance());
+  }
+
+  @Test
+  void handlerFailuresAreWrapped() {
+    final AccountAggregate aggregate = createAccount(Money.of(10));
+    final Command withdrawAccountCommand = WithdrawAccountCommand.builder()
+      .aggregateId(aggregate.getAggregateId())
+      .data(WithdrawVO.builder().accountId(aggregate.getAggregateId()).amount(Money.of(50)).build())
+      .build();
+    final RuntimeException exception = assertThrows(RuntimeException.class, () -> aggregate.applyCommand(withdrawAccountCommand));
+    assertInstanceOf(AccountBalanceException.class, exception.getCause().getCause());
+  }
+
+  @Test
+  void unsupportedCommandIsRejected() {
+    final AccountAggregate aggregate = createAccount(Money.of(1));
+    final Command command = new Command(aggregate.getAggregateId(), AggregateType.ACCOUNT_AGGREGATE.getType()) {
+    };
+    assertThrows(UnsupportedOperationException.class, () -> aggregate.applyCommand(command));
+  }
+
+  @Test
+  void handlerTableIsBuiltOncePerAggregateClass() {
+    assertSame(AggregateHandlerRegistry.of(AccountAggregate.class), AggregateHandlerRegistry.of(AccountAggregate.class));
+  }
+
+  private static AccountAggregate createAccount(Money balance) {
+    final Command command = CreateAccountCommand.builder()
+      .data(AccountVO.builder().owner("Pepe").email("pepe@aggregate-account.com").balance(balance).isActive(true).build())
+      .build();
+    final AccountAggregate aggregate = new AccountAggregate(command.getAggregateId(), 0);
+    aggregate.applyCommand(command);
+    return aggregate;
+  }
+}
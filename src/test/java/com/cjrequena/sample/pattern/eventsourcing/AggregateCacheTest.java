@@ -0,0 +1,120 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ *
+ * @author cjrequena
+ */
+class AggregateCacheTest {
+
+  @TempDir
+  Path directory;
+
+  private EventStore eventStore;
+
+  @AfterEach
+  void tearDown() {
+    if (eventStore != null) {
+      eventStore.close();
+    }
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedAggregate() {
+    final AggregateCache cache = AggregateCache.ofMaxEntries(2);
+    final AccountAggregate first = new AccountAggregate(UUID.randomUUID(), 0);
+    final AccountAggregate second = new AccountAggregate(UUID.randomUUID(), 0);
+    final AccountAggregate third = new AccountAggregate(UUID.randomUUID(), 0);
+    cache.put(first);
+    cache.put(second);
+    assertSame(first, cache.get(first.getAggregateId()));
+    cache.put(third);
+
+    assertNull(cache.get(second.getAggregateId()));
+    assertSame(first, cache.get(first.getAggregateId()));
+    assertSame(third, cache.get(third.getAggregateId()));
+    assertEquals(new AggregateCache.Stats(3, 1, 1, 0, 2, 2), cache.getStats());
+    assertEquals(0.75, cache.getStats().hitRate());
+  }
+
+  @Test
+  void evictsByWeight() {
+    final AggregateCache cache = AggregateCache.ofMaxWeight(10, Aggregate::getAggregateVersion);
+    final AccountAggregate small = EventStoreTest.newAccountWithDeposits(2);
+    small.markUnconfirmedEventsAsConfirmed();
+    final AccountAggregate large = EventStoreTest.newAccountWithDeposits(7);
+    large.markUnconfirmedEventsAsConfirmed();
+    cache.put(small);
+    cache.put(large);
+    assertNull(cache.get(small.getAggregateId()));
+    assertSame(large, cache.get(large.getAggregateId()));
+    assertEquals(8, cache.getStats().weight());
+  }
+
+  @Test
+  void discardsAggregatesWithUnconfirmedEvents() {
+    final AggregateCache cache = AggregateCache.ofMaxEntries(10);
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(1);
+    cache.put(aggregate);
+    assertNull(cache.get(aggregate.getAggregateId()));
+    assertEquals(0, cache.getStats().size());
+  }
+
+  @Test
+  void repositoryRefreshesStaleAggregatesFromTheTail() {
+    eventStore = EventStore.open(directory.resolve("events"));
+    final SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("snapshots"));
+    final AggregateCache cache = AggregateCache.ofMaxEntries(10);
+    final AggregateRepository cached = new AggregateRepository(new AggregateFactory(), eventStore, snapshotStore, SnapshotPolicy.never(), cache);
+    final AggregateRepository uncached = new AggregateRepository(new AggregateFactory(), eventStore, snapshotStore, SnapshotPolicy.never());
+
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(2);
+    cached.save(aggregate);
+    assertSame(aggregate, cached.load(AccountAggregate.class, aggregate.getAggregateId()));
+
+    // Another writer appends behind the back of the cache
+    final Aggregate other = uncached.load(AccountAggregate.class, aggregate.getAggregateId());
+    other.applyCommand(DepositAccountCommand.builder()
+      .aggregateId(aggregate.getAggregateId())
+      .data(DepositVO.builder().accountId(aggregate.getAggregateId()).amount(Money.of(1)).build())
+      .build());
+    uncached.save(other);
+
+    final AccountAggregate refreshed = cached.load(AccountAggregate.class, aggregate.getAggregateId());
+    assertSame(aggregate, refreshed);
+    assertEquals(4, refreshed.getAggregateVersion());
+    assertEquals(Money.of(13), refreshed.getData().balance());
+    assertEquals(1, cache.getStats().refreshes());
+  }
+
+  @Test
+  void repositoryReloadsAggregatesWhoseSaveFailed() {
+    eventStore = EventStore.open(directory.resolve("events"));
+    final AggregateCache cache = AggregateCache.ofMaxEntries(10);
+    final AggregateRepository repository = new AggregateRepository(
+      new AggregateFactory(), eventStore, new SnapshotStore(directory.resolve("snapshots")), SnapshotPolicy.never(), cache);
+
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(1);
+    repository.save(aggregate);
+    final Aggregate loaded = repository.load(AccountAggregate.class, aggregate.getAggregateId());
+    loaded.applyCommand(DepositAccountCommand.builder()
+      .aggregateId(aggregate.getAggregateId())
+      .data(DepositVO.builder().accountId(aggregate.getAggregateId()).amount(Money.of(1)).build())
+      .build());
+
+    final AccountAggregate reloaded = repository.load(AccountAggregate.class, aggregate.getAggregateId());
+    assertNotSame(loaded, reloaded);
+    assertEquals(2, reloaded.getAggregateVersion());
+  }
+}
@@ -0,0 +1,60 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.SneakyThrows;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation of an empty {@link AccountAggregate} through the reflective constructor lookup the {@link AggregateFactory}
+ * used to do, against the constructors of the {@link AggregateRegistry}, resolved by class and by aggregate type.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregateFactoryBenchmark {
+
+  private final UUID aggregateId = UUID.randomUUID();
+  private final String aggregateType = AggregateType.ACCOUNT_AGGREGATE.getType();
+  private final AggregateFactory aggregateFactory = new AggregateFactory();
+
+  @Benchmark
+  @SneakyThrows(ReflectiveOperationException.class)
+  public Aggregate reflective() {
+    final Class<? extends Aggregate> aggregateClass = AggregateType.of(aggregateType).getClazz();
+    return aggregateClass.getDeclaredConstructor(UUID.class, Long.TYPE).newInstance(aggregateId, 0);
+  }
+
+  @Benchmark
+  public Aggregate registryByClass() {
+    return aggregateFactory.newInstance(AccountAggregate.class, aggregateId);
+  }
+
+  @Benchmark
+  public Aggregate registryByType() {
+    return aggregateFactory.newInstance(aggregateType, aggregateId);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(AggregateFactoryBenchmark.class.getSimpleName()).build()).run();
+  }
+}
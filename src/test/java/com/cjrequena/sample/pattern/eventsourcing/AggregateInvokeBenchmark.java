@@ -0,0 +1,72 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former reflective dispatch of {@code applyEvent} ({@code getMethod} + {@code Method.invoke} on every
+ * event) against the precompiled handler table of {@link AggregateHandlerRegistry}.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregateInvokeBenchmark {
+
+  private AccountAggregate aggregate;
+  private AccountDepositedEvent event;
+
+  @Setup
+  public void setUp() {
+    final UUID aggregateId = UUID.randomUUID();
+    aggregate = new AccountAggregate(aggregateId, 0);
+    aggregate.applyEvent(AccountCreatedEvent.builder()
+      .aggregateId(aggregateId)
+      .aggregateVersion(1)
+      .data(AccountVO.builder().id(aggregateId).owner("Pepe").email("pepe@aggregate-account.com").isActive(true).build())
+      .build());
+    event = AccountDepositedEvent.builder()
+      .aggregateId(aggregateId)
+      .aggregateVersion(2)
+      .data(DepositVO.builder().accountId(aggregateId).amount(Money.of(1)).build())
+      .build();
+  }
+
+  @Benchmark
+  public AccountAggregate reflective() throws ReflectiveOperationException {
+    Method method = aggregate.getClass().getMethod(AggregateHandlerRegistry.APPLY_EVENT, event.getClass());
+    method.invoke(aggregate, event);
+    return aggregate;
+  }
+
+  @Benchmark
+  public AccountAggregate handlerTable() {
+    AggregateHandlerRegistry.of(aggregate.getClass()).getEventHandler(event.getClass()).accept(aggregate, event);
+    return aggregate;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(AggregateInvokeBenchmark.class.getSimpleName()).build()).run();
+  }
+}
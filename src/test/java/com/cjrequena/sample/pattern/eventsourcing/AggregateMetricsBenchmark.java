@@ -0,0 +1,59 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording cost of {@link AggregateMetrics}: recording a latency into the histogram of an event class, alone and
+ * with the two clock reads timing it, from one and from four threads. Compare with {@link ReplayBenchmark} for the
+ * cost per replayed event.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregateMetricsBenchmark {
+
+  private final AggregateMetrics metrics = new AggregateMetrics();
+  private long value;
+
+  @Benchmark
+  public void recordEvent() {
+    metrics.recordEvent(AccountDepositedEvent.class, value++ & 0xFFFF);
+  }
+
+  @Benchmark
+  public void timeAndRecordEvent() {
+    final long start = System.nanoTime();
+    metrics.recordEvent(AccountDepositedEvent.class, System.nanoTime() - start);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void recordEventContended() {
+    metrics.recordEvent(AccountDepositedEvent.class, 100);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(AggregateMetricsBenchmark.class.getSimpleName()).build()).run();
+  }
+}
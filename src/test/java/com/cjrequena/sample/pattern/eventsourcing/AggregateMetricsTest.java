@@ -0,0 +1,49 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class AggregateMetricsTest {
+
+  @Test
+  void commandsAndEventsAreRecorded() {
+    final AggregateMetrics.Snapshot before = AggregateMetrics.global().snapshot();
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(3);
+
+    final AggregateMetrics.Snapshot after = AggregateMetrics.global().snapshot();
+    assertEquals(3, countOf(after.commandLatencies(), "DepositAccountCommand") - countOf(before.commandLatencies(), "DepositAccountCommand"));
+    assertEquals(1, countOf(after.commandLatencies(), "CreateAccountCommand") - countOf(before.commandLatencies(), "CreateAccountCommand"));
+    assertEquals(3, countOf(after.eventLatencies(), "AccountDepositedEvent") - countOf(before.eventLatencies(), "AccountDepositedEvent"));
+    assertEquals(4, after.unconfirmedPoolSizes().getCount() - before.unconfirmedPoolSizes().getCount());
+    assertTrue(after.unconfirmedPoolSizes().getMax() >= aggregate.getUnconfirmedEventsPool().size());
+  }
+
+  @Test
+  void replaysAreRecordedAndSampled() {
+    final List<Event> history = List.copyOf(EventStoreTest.newAccountWithDeposits(2 * AggregateMetrics.REPLAY_SAMPLE_INTERVAL - 1).getUnconfirmedEventsPool());
+    final AggregateMetrics.Snapshot before = AggregateMetrics.global().snapshot();
+
+    new AccountAggregate(history.get(0).getAggregateId(), 0).reproduceFromEvents(history);
+
+    final AggregateMetrics.Snapshot after = AggregateMetrics.global().snapshot();
+    assertEquals(history.size(), after.replayedEvents() - before.replayedEvents());
+    assertTrue(after.replayTime().compareTo(before.replayTime()) > 0);
+    assertTrue(after.replayRate() > 0);
+    assertEquals(2, countOf(after.eventLatencies(), "AccountDepositedEvent") - countOf(before.eventLatencies(), "AccountDepositedEvent"));
+    assertTrue(after.export().contains("replay.events " + after.replayedEvents()));
+  }
+
+  private static long countOf(Map<String, Histogram.Snapshot> latencies, String name) {
+    final Histogram.Snapshot snapshot = latencies.get(name);
+    return snapshot == null ? 0 : snapshot.getCount();
+  }
+}
@@ -0,0 +1,72 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author cjrequena
+ */
+class AggregateRegistryTest {
+
+  @Test
+  void defaultsResolveTheAggregateTypes() {
+    final AggregateFactory factory = new AggregateFactory();
+    final UUID aggregateId = UUID.randomUUID();
+
+    final Aggregate aggregate = factory.newInstance(AggregateType.ACCOUNT_AGGREGATE.getType(), aggregateId);
+
+    assertInstanceOf(AccountAggregate.class, aggregate);
+    assertEquals(aggregateId, aggregate.getAggregateId());
+    assertEquals(0, aggregate.getAggregateVersion());
+    assertSame(AccountAggregate.class, factory.getRegistry().classOf(AggregateType.ACCOUNT_AGGREGATE.getType()));
+    assertSame(AggregateType.ACCOUNT_AGGREGATE, AggregateType.of("ACCOUNT_AGGREGATE"));
+  }
+
+  @Test
+  void registersNewAggregateKinds() {
+    final AggregateRegistry registry = AggregateRegistry.withDefaults().register(NoteAggregate.TYPE, NoteAggregate.class, NoteAggregate::new);
+    final UUID aggregateId = UUID.randomUUID();
+
+    final Aggregate byType = new AggregateFactory(registry).newInstance(NoteAggregate.TYPE, aggregateId);
+    final Aggregate byClass = new AggregateFactory(registry).newInstance(NoteAggregate.class, aggregateId);
+
+    assertInstanceOf(NoteAggregate.class, byType);
+    assertInstanceOf(NoteAggregate.class, byClass);
+    assertEquals(aggregateId, byType.getAggregateId());
+    assertSame(registry.constructorOf(NoteAggregate.TYPE), registry.constructorOf(NoteAggregate.class));
+  }
+
+  @Test
+  void rejectsDuplicateAndUnknownAggregateKinds() {
+    final AggregateRegistry registry = AggregateRegistry.withDefaults();
+
+    assertThrows(IllegalArgumentException.class, () -> registry.register(AggregateType.ACCOUNT_AGGREGATE.getType(), NoteAggregate.class, NoteAggregate::new));
+    assertThrows(IllegalArgumentException.class, () -> registry.register(NoteAggregate.TYPE, AccountAggregate.class, AccountAggregate::new));
+    assertThrows(IllegalArgumentException.class, () -> registry.constructorOf(NoteAggregate.TYPE));
+    assertThrows(IllegalArgumentException.class, () -> AggregateType.of(NoteAggregate.TYPE));
+
+    // Unregistered classes are still created through their constructor
+    assertInstanceOf(NoteAggregate.class, new AggregateFactory(registry).newInstance(NoteAggregate.class, UUID.randomUUID()));
+  }
+
+  static class NoteAggregate extends Aggregate {
+
+    static final String TYPE = "NOTE_AGGREGATE";
+
+    NoteAggregate(UUID aggregateId, long aggregateVersion) {
+      super(aggregateId, aggregateVersion);
+    }
+
+    @Override
+    public String getAggregateType() {
+      return TYPE;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class AggregateRepositoryTest {
+
+  @TempDir
+  Path directory;
+
+  private EventStore eventStore;
+
+  @AfterEach
+  void tearDown() {
+    if (eventStore != null) {
+      eventStore.close();
+    }
+  }
+
+  @Test
+  void saveTakesSnapshotsAccordingToThePolicy() {
+    final SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("snapshots"));
+    final AggregateRepository repository = newRepository(snapshotStore, SnapshotPolicy.everyEvents(5));
+
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(3);
+    repository.save(aggregate);
+    assertTrue(snapshotStore.findLatest(aggregate.getAggregateId(), AccountVO.class).isEmpty());
+
+    deposit(aggregate, 2);
+    repository.save(aggregate);
+    final Snapshot<AccountVO> snapshot = snapshotStore.findLatest(aggregate.getAggregateId(), AccountVO.class).orElseThrow();
+    assertEquals(6, snapshot.aggregateVersion());
+    assertEquals(aggregate.getData(), snapshot.state());
+  }
+
+  @Test
+  void loadReplaysOnlyTheEventsAfterTheLatestSnapshot() {
+    final SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("snapshots"));
+    final AggregateRepository repository = newRepository(snapshotStore, SnapshotPolicy.everyEvents(10));
+
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(11);
+    repository.save(aggregate);
+    deposit(aggregate, 3);
+    repository.save(aggregate);
+
+    final AccountAggregate loaded = repository.load(AccountAggregate.class, aggregate.getAggregateId());
+    assertEquals(15, loaded.getAggregateVersion());
+    assertEquals(15, loaded.getReproducedAggregateVersion());
+    assertEquals(aggregate.getData(), loaded.getData());
+    assertEquals(12, snapshotStore.findLatest(aggregate.getAggregateId(), AccountVO.class).orElseThrow().aggregateVersion());
+  }
+
+  @Test
+  void loadAsOfAPastVersionStartsFromTheSnapshotHistory() {
+    final SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("snapshots"), 3);
+    final AggregateRepository repository = newRepository(snapshotStore, SnapshotPolicy.everyEvents(5));
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(4);
+    repository.save(aggregate);
+    final AccountAggregate other = EventStoreTest.newAccountWithDeposits(0);
+    repository.save(other);
+    for (int i = 0; i < 3; i++) {
+      deposit(aggregate, 5);
+      repository.save(aggregate);
+    }
+    final UUID aggregateId = aggregate.getAggregateId();
+
+    // Snapshots at versions 10, 15 and 20 are kept, the one at version 5 was dropped
+    assertEquals(10, snapshotStore.findLatestAtOrBefore(aggregateId, 12, AccountVO.class).orElseThrow().aggregateVersion());
+    assertEquals(20, snapshotStore.findLatestAtOrBefore(aggregateId, 100, AccountVO.class).orElseThrow().aggregateVersion());
+    assertTrue(snapshotStore.findLatestAtOrBefore(aggregateId, 7, AccountVO.class).isEmpty());
+
+    final AccountAggregate atVersion12 = repository.loadAsOfVersion(AccountAggregate.class, aggregateId, 12);
+    assertEquals(12, atVersion12.getAggregateVersion());
+    assertEquals(Money.of(21), atVersion12.getData().balance());
+    assertEquals(Money.of(16), repository.loadAsOfVersion(AccountAggregate.class, aggregateId, 7).getData().balance());
+    assertEquals(aggregate.getData(), repository.loadAsOfVersion(AccountAggregate.class, aggregateId, 100).getData());
+
+    // The other aggregate was appended at offset 6, between versions 5 and 6 of the aggregate
+    assertEquals(5, repository.loadAsOfOffset(AccountAggregate.class, aggregateId, 6).getAggregateVersion());
+    assertEquals(1, repository.loadAsOfOffset(AccountAggregate.class, other.getAggregateId(), 6).getAggregateVersion());
+    assertEquals(0, repository.loadAsOfOffset(AccountAggregate.class, other.getAggregateId(), 5).getAggregateVersion());
+
+    final Event latest = eventStore.retrieveEvents(aggregateId).get(19);
+    assertEquals(20, repository.loadAsOf(AccountAggregate.class, aggregateId, latest.getTime()).getAggregateVersion());
+    assertEquals(0, repository.loadAsOf(AccountAggregate.class, aggregateId, latest.getTime().minusYears(1)).getAggregateVersion());
+  }
+
+  @Test
+  void saveAllIsAllOrNothing() {
+    final AggregateRepository repository = newRepository(new SnapshotStore(directory.resolve("snapshots")), SnapshotPolicy.never());
+    final AccountAggregate first = EventStoreTest.newAccountWithDeposits(1);
+    final AccountAggregate second = EventStoreTest.newAccountWithDeposits(1);
+    repository.saveAll(List.of(first, second));
+    assertEquals(eventStore.retrieveEvents(first.getAggregateId()).get(1).getOffsetTxId(), eventStore.retrieveEvents(second.getAggregateId()).get(0).getOffsetTxId());
+
+    final AccountAggregate stale = repository.load(AccountAggregate.class, second.getAggregateId());
+    deposit(second, 1);
+    repository.save(second);
+    deposit(first, 1);
+    deposit(stale, 1);
+    final long versionConflicts = AggregateMetrics.global().snapshot().versionConflicts();
+    assertThrows(OptimisticConcurrencyException.class, () -> repository.saveAll(List.of(first, stale)));
+    assertEquals(versionConflicts + 1, AggregateMetrics.global().snapshot().versionConflicts());
+    assertEquals(2, eventStore.getAggregateVersion(first.getAggregateId()));
+    assertEquals(3, eventStore.getAggregateVersion(second.getAggregateId()));
+  }
+
+  @Test
+  void loadUnknownAggregate() {
+    final AggregateRepository repository = newRepository(new SnapshotStore(directory.resolve("snapshots")), SnapshotPolicy.never());
+    final AccountAggregate loaded = repository.load(AccountAggregate.class, UUID.randomUUID());
+    assertEquals(0, loaded.getAggregateVersion());
+  }
+
+  @Test
+  void snapshotPolicies() {
+    assertFalse(SnapshotPolicy.never().shouldTakeSnapshot(1_000, Duration.ofDays(1)));
+    assertFalse(SnapshotPolicy.everyEvents(10).shouldTakeSnapshot(9, null));
+    assertTrue(SnapshotPolicy.everyEvents(10).shouldTakeSnapshot(10, null));
+    assertTrue(SnapshotPolicy.every(Duration.ofMinutes(1)).shouldTakeSnapshot(1, null));
+    assertFalse(SnapshotPolicy.every(Duration.ofMinutes(1)).shouldTakeSnapshot(1, Duration.ofSeconds(59)));
+    assertTrue(SnapshotPolicy.everyEvents(10).or(SnapshotPolicy.every(Duration.ofMinutes(1))).shouldTakeSnapshot(1, Duration.ofMinutes(2)));
+  }
+
+  private AggregateRepository newRepository(SnapshotStore snapshotStore, SnapshotPolicy snapshotPolicy) {
+    eventStore = EventStore.open(directory.resolve("events"));
+    return new AggregateRepository(new AggregateFactory(), eventStore, snapshotStore, snapshotPolicy);
+  }
+
+  private static void deposit(Aggregate aggregate, int deposits) {
+    for (int i = 0; i < deposits; i++) {
+      aggregate.applyCommand(DepositAccountCommand.builder()
+        .aggregateId(aggregate.getAggregateId())
+        .data(DepositVO.builder().accountId(aggregate.getAggregateId()).amount(Money.of(1)).build())
+        .build());
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold rebuild time of all the {@link AccountAggregate}s of an event store through the {@link BulkRehydrator}, against
+ * the number of events and the parallelism of the pool. Events/s is {@code events} divided by the score.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class BulkRehydrationBenchmark {
+
+  private static final int ACCOUNTS = 10_000;
+
+  @Param({"100000", "1000000"})
+  public int events;
+
+  @Param({"1", "4", "16"})
+  public int parallelism;
+
+  private Path directory;
+  private EventStore eventStore;
+  private ForkJoinPool pool;
+  private BulkRehydrator rehydrator;
+
+  @Setup
+  public void setUp() throws IOException {
+    Configurator.setLevel("com.cjrequena.sample", Level.WARN);
+    directory = Files.createTempDirectory("bulk-rehydration-benchmark");
+    eventStore = EventStore.open(directory);
+    final List<Aggregate> accounts = new ArrayList<>(ACCOUNTS);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      final Command createAccountCommand = CommandBusTest.createAccountCommand(Money.of(10));
+      final Aggregate aggregate = new AccountAggregate(createAccountCommand.getAggregateId(), 0);
+      aggregate.applyCommand(createAccountCommand);
+      accounts.add(aggregate);
+    }
+    for (int written = ACCOUNTS; written < events; written += ACCOUNTS) {
+      append(accounts);
+      for (Aggregate aggregate : accounts) {
+        aggregate.applyCommand(CommandBusTest.depositAccountCommand(aggregate.getAggregateId(), Money.of(1)));
+      }
+    }
+    append(accounts);
+
+    pool = new ForkJoinPool(parallelism);
+    rehydrator = new BulkRehydrator(new AggregateFactory(), pool, BulkRehydrator.DEFAULT_CHUNK_SIZE, BulkRehydrator.DEFAULT_PROGRESS_INTERVAL, progress -> {
+    });
+  }
+
+  private void append(List<Aggregate> accounts) {
+    final List<EventStore.AppendRequest> requests = new ArrayList<>(accounts.size());
+    for (Aggregate aggregate : accounts) {
+      requests.add(new EventStore.AppendRequest(aggregate.getAggregateId(), aggregate.getReproducedAggregateVersion(), aggregate.getUnconfirmedEventsPool()));
+    }
+    eventStore.appendAll(requests);
+    accounts.forEach(Aggregate::markUnconfirmedEventsAsConfirmed);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    pool.shutdown();
+    eventStore.close();
+    try (var paths = Files.walk(directory)) {
+      paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public Map<UUID, AccountAggregate> rehydrate() {
+    return rehydrator.rehydrate(AccountAggregate.class, eventStore.retrieveAllEvents(0).iterator());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(BulkRehydrationBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,96 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class BulkRehydratorTest {
+
+  @TempDir
+  Path directory;
+
+  private EventStore eventStore;
+  private ForkJoinPool pool;
+
+  @BeforeEach
+  void setUp() {
+    eventStore = EventStore.open(directory.resolve("events"));
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    pool.shutdown();
+    eventStore.close();
+  }
+
+  @Test
+  void rehydrateRebuildsEveryAggregateFromTheGlobalStream() {
+    final AggregateRepository repository = new AggregateRepository(new AggregateFactory(), eventStore, new SnapshotStore(directory.resolve("snapshots")), SnapshotPolicy.never());
+    final CommandBus commandBus = new CommandBus(repository);
+    final List<UUID> accounts = new ArrayList<>();
+    final List<Command> commands = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      final Command createAccountCommand = CommandBusTest.createAccountCommand(Money.of(10));
+      accounts.add(createAccountCommand.getAggregateId());
+      commands.add(createAccountCommand);
+    }
+    commandBus.dispatch(commands);
+    // Interleave the deposits of all the accounts, with a different number of deposits per account
+    for (int round = 0; round < 20; round++) {
+      commands.clear();
+      for (int i = round; i < accounts.size(); i++) {
+        commands.add(CommandBusTest.depositAccountCommand(accounts.get(i), Money.parse("0.25")));
+      }
+      commandBus.dispatch(commands);
+    }
+
+    final List<BulkRehydrator.Progress> progress = new ArrayList<>();
+    final BulkRehydrator rehydrator = new BulkRehydrator(new AggregateFactory(), pool, 7, 100, progress::add);
+    final Map<UUID, AccountAggregate> aggregates = rehydrator.rehydrate(AccountAggregate.class, eventStore.retrieveAllEvents(0).iterator());
+
+    assertEquals(accounts.size(), aggregates.size());
+    for (UUID account : accounts) {
+      final AccountAggregate expected = repository.load(AccountAggregate.class, account);
+      assertEquals(expected.getAggregateVersion(), aggregates.get(account).getAggregateVersion());
+      assertEquals(expected.getData(), aggregates.get(account).getData());
+    }
+    final long events = eventStore.getLastOffsetId();
+    assertEquals(events / 100 + 1, progress.size());
+    final BulkRehydrator.Progress last = progress.get(progress.size() - 1);
+    assertEquals(events, last.events());
+    assertEquals(accounts.size(), last.aggregates());
+    assertTrue(last.eventsPerSecond() > 0);
+  }
+
+  @Test
+  void rehydrateThrowsTheFirstFailure() {
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(3);
+    // The first deposit is repeated after the second one, behind the version of the aggregate
+    final List<Event> events = List.of(
+      aggregate.getUnconfirmedEventsPool().get(0),
+      aggregate.getUnconfirmedEventsPool().get(1),
+      aggregate.getUnconfirmedEventsPool().get(2),
+      aggregate.getUnconfirmedEventsPool().get(1));
+    final BulkRehydrator rehydrator = new BulkRehydrator(new AggregateFactory(), pool, 2, 100, progress -> {
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> rehydrator.rehydrate(AccountAggregate.class, events.iterator()));
+  }
+}
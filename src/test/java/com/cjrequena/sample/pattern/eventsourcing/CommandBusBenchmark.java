@@ -0,0 +1,117 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command throughput of the {@link CommandBus} against the batch size. A batch size of 1 pays the store lock and the
+ * force of the segment for every command, larger batches share them through a single group commit.
+ * <p>
+ * Every invocation dispatches one batch of deposits spread over {@link #ACCOUNTS} accounts. The primary score counts
+ * batches, the {@code commands} secondary score counts the accepted commands per second.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBusBenchmark {
+
+  private static final int ACCOUNTS = 64;
+
+  @Param({"1", "100", "1000"})
+  public int batchSize;
+
+  private Path directory;
+  private EventStore eventStore;
+  private CommandBus commandBus;
+  private final List<UUID> accounts = new ArrayList<>();
+  private List<Command> batch;
+
+  @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+  public void setUp() throws IOException {
+    Configurator.setLevel("com.cjrequena.sample", Level.WARN);
+    directory = Files.createTempDirectory("command-bus-benchmark");
+    eventStore = EventStore.open(directory.resolve("events"));
+    final AggregateRepository repository = new AggregateRepository(
+      new AggregateFactory(),
+      eventStore,
+      new SnapshotStore(directory.resolve("snapshots")),
+      SnapshotPolicy.everyEvents(100));
+    commandBus = new CommandBus(repository);
+
+    accounts.clear();
+    final List<Command> createAccountCommands = new ArrayList<>();
+    for (int i = 0; i < ACCOUNTS; i++) {
+      final Command createAccountCommand = CommandBusTest.createAccountCommand(Money.of(10));
+      accounts.add(createAccountCommand.getAggregateId());
+      createAccountCommands.add(createAccountCommand);
+    }
+    commandBus.dispatch(createAccountCommands);
+
+    batch = new ArrayList<>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      final UUID account = accounts.get(i % ACCOUNTS);
+      batch.add(CommandBusTest.depositAccountCommand(account, Money.of(1)));
+    }
+  }
+
+  @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+  public void tearDown() throws IOException {
+    eventStore.close();
+    try (var paths = Files.walk(directory)) {
+      paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public void dispatch(Counters counters) {
+    // Commands carry no expected version, so the same batch can be dispatched again
+    counters.commands += commandBus.dispatch(batch).accepted();
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+
+    public long commands;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void reset() {
+      commands = 0;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CommandBusBenchmark.class.getSimpleName()).build()).run();
+  }
+}
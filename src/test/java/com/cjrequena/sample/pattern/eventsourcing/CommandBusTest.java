@@ -0,0 +1,186 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class CommandBusTest {
+
+  @TempDir
+  Path directory;
+
+  private EventStore eventStore;
+  private AggregateRepository repository;
+  private CommandBus commandBus;
+
+  @BeforeEach
+  void setUp() {
+    eventStore = EventStore.open(directory.resolve("events"));
+    repository = new AggregateRepository(new AggregateFactory(), eventStore, new SnapshotStore(directory.resolve("snapshots")), SnapshotPolicy.never());
+    commandBus = new CommandBus(repository);
+  }
+
+  @AfterEach
+  void tearDown() {
+    eventStore.close();
+  }
+
+  @Test
+  void dispatchGroupCommitsTheWholeBatch() {
+    final List<Command> commands = new ArrayList<>();
+    final List<UUID> accounts = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      final Command createAccountCommand = createAccountCommand(Money.of(10));
+      accounts.add(createAccountCommand.getAggregateId());
+      commands.add(createAccountCommand);
+    }
+    for (UUID account : accounts) {
+      commands.add(depositAccountCommand(account, Money.of(1)));
+      commands.add(depositAccountCommand(account, Money.of(1)));
+    }
+
+    final CommandBatchResult result = commandBus.dispatch(commands);
+
+    assertTrue(result.isFullyAccepted());
+    assertEquals(9, result.accepted());
+    assertEquals(9, eventStore.getLastOffsetId());
+    for (UUID account : accounts) {
+      final List<Event> events = eventStore.retrieveEvents(account);
+      assertEquals(3, events.size());
+      assertEquals(1, events.get(2).getOffsetTxId());
+      assertEquals(Money.of(12), repository.load(AccountAggregate.class, account).getData().balance());
+    }
+  }
+
+  @Test
+  void rejectedCommandsDoNotStopTheBatch() {
+    final Command createAccountCommand = createAccountCommand(Money.of(10));
+    final UUID account = createAccountCommand.getAggregateId();
+    commandBus.dispatch(List.of(createAccountCommand));
+
+    final Command withdrawAccountCommand = WithdrawAccountCommand.builder()
+      .aggregateId(account)
+      .data(WithdrawVO.builder().accountId(account).amount(Money.of(100)).build())
+      .build();
+    final CommandBatchResult result = commandBus.dispatch(List.of(
+      depositAccountCommand(account, Money.of(1)),
+      withdrawAccountCommand,
+      depositAccountCommand(account, Money.of(1))));
+
+    assertEquals(2, result.accepted());
+    assertEquals(1, result.failures().size());
+    assertSame(withdrawAccountCommand, result.failures().get(0).command());
+    final AccountAggregate aggregate = repository.load(AccountAggregate.class, account);
+    assertEquals(3, aggregate.getAggregateVersion());
+    assertEquals(Money.of(12), aggregate.getData().balance());
+  }
+
+  @Test
+  void duplicateCommandsAreDroppedBeforeTheyAreApplied() {
+    commandBus = new CommandBus(repository, CommandDeduplicator.of(1000, Duration.ofMinutes(1)));
+    final Command createAccountCommand = createAccountCommand(Money.of(10));
+    final UUID account = createAccountCommand.getAggregateId();
+    final Command depositAccountCommand = depositAccountCommand(account, Money.of(1));
+    final Command withdrawAccountCommand = WithdrawAccountCommand.builder()
+      .aggregateId(account)
+      .data(WithdrawVO.builder().accountId(account).amount(Money.of(100)).build())
+      .build();
+
+    CommandBatchResult result = commandBus.dispatch(List.of(createAccountCommand, depositAccountCommand, depositAccountCommand, withdrawAccountCommand));
+    assertEquals(2, result.accepted());
+    assertEquals(1, result.duplicates());
+    assertEquals(1, result.failures().size());
+
+    // A retried command is dropped without touching the store, while a failed one is applied again
+    final long lastOffsetId = eventStore.getLastOffsetId();
+    result = commandBus.dispatch(List.of(createAccountCommand, depositAccountCommand));
+    assertEquals(0, result.accepted());
+    assertEquals(2, result.duplicates());
+    assertEquals(lastOffsetId, eventStore.getLastOffsetId());
+    result = commandBus.dispatch(List.of(withdrawAccountCommand));
+    assertEquals(0, result.duplicates());
+    assertEquals(1, result.failures().size());
+    assertEquals(Money.of(11), repository.load(AccountAggregate.class, account).getData().balance());
+  }
+
+  @Test
+  void duplicatesTakeTheOutcomeOfTheirOriginal() {
+    commandBus = new CommandBus(repository, new CommandDeduplicator(2, Duration.ofMinutes(1), 100, 0.001));
+    final Command createAccountCommand = createAccountCommand(Money.of(10));
+    final UUID account = createAccountCommand.getAggregateId();
+    final Command withdrawAccountCommand = WithdrawAccountCommand.builder()
+      .aggregateId(account)
+      .data(WithdrawVO.builder().accountId(account).amount(Money.of(100)).build())
+      .build();
+    final List<Command> commands = new ArrayList<>(List.of(createAccountCommand, withdrawAccountCommand, withdrawAccountCommand));
+    for (int i = 0; i < 3; i++) {
+      commands.add(depositAccountCommand(account, Money.of(1)));
+    }
+
+    final CommandBatchResult result = commandBus.dispatch(commands);
+    assertEquals(4, result.accepted());
+    assertSame(withdrawAccountCommand, result.failures().get(0).command());
+    assertSame(withdrawAccountCommand, result.droppedDuplicates().get(0).original());
+
+    // The ids of a batch larger than the window aren't evicted before they are committed or forgotten
+    final long lastOffsetId = eventStore.getLastOffsetId();
+    assertEquals(4, commandBus.dispatch(List.of(createAccountCommand, commands.get(3), commands.get(4), commands.get(5))).duplicates());
+    assertEquals(lastOffsetId, eventStore.getLastOffsetId());
+    final CommandBatchResult retry = commandBus.dispatch(List.of(withdrawAccountCommand));
+    assertEquals(0, retry.duplicates());
+    assertEquals(1, retry.failures().size());
+  }
+
+  @Test
+  void snapshotFailuresDoNotFailCommittedCommands() {
+    final SnapshotStore failingSnapshotStore = new SnapshotStore(directory.resolve("failing-snapshots")) {
+      @Override
+      public void save(Snapshot<?> snapshot) {
+        throw new EventStoreException("Disk full");
+      }
+    };
+    repository = new AggregateRepository(new AggregateFactory(), eventStore, failingSnapshotStore, SnapshotPolicy.everyEvents(1));
+    commandBus = new CommandBus(repository, CommandDeduplicator.of(1000, Duration.ofMinutes(1)));
+    final Command first = createAccountCommand(Money.of(10));
+    final Command second = createAccountCommand(Money.of(20));
+
+    CommandBatchResult result = commandBus.dispatch(List.of(first, second));
+    assertTrue(result.isFullyAccepted());
+    assertEquals(2, result.accepted());
+    assertEquals(2, eventStore.getLastOffsetId());
+
+    // Both commands were committed, so their retries are dropped
+    result = commandBus.dispatch(List.of(first, second));
+    assertEquals(2, result.duplicates());
+    assertEquals(2, eventStore.getLastOffsetId());
+    assertEquals(Money.of(20), repository.load(AccountAggregate.class, second.getAggregateId()).getData().balance());
+  }
+
+  static Command createAccountCommand(Money balance) {
+    return CreateAccountCommand.builder()
+      .data(AccountVO.builder().owner("Pepe").email("pepe@aggregate-account.com").balance(balance).isActive(true).build())
+      .build();
+  }
+
+  static Command depositAccountCommand(UUID account, Money amount) {
+    return DepositAccountCommand.builder()
+      .aggregateId(account)
+      .data(DepositVO.builder().accountId(account).amount(amount).build())
+      .build();
+  }
+}
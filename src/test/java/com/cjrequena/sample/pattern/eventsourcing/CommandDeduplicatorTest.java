@@ -0,0 +1,99 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class CommandDeduplicatorTest {
+
+  @Test
+  void duplicatesAreDetectedWithinTheWindow() {
+    final CommandDeduplicator deduplicator = CommandDeduplicator.of(10, Duration.ofMinutes(1));
+    final UUID commandId = UUID.randomUUID();
+
+    assertTrue(deduplicator.markIfAbsent(commandId));
+    assertFalse(deduplicator.markIfAbsent(commandId));
+    assertTrue(deduplicator.markIfAbsent(UUID.randomUUID()));
+
+    deduplicator.forget(commandId);
+    assertTrue(deduplicator.markIfAbsent(commandId));
+  }
+
+  @Test
+  void windowIsBoundedBySizeAndTime() {
+    final AtomicLong now = new AtomicLong();
+    final CommandDeduplicator deduplicator = new CommandDeduplicator(3, Duration.ofSeconds(10), 0, 0, now::get);
+    final List<UUID> commandIds = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      commandIds.add(UUID.randomUUID());
+      deduplicator.markIfAbsent(commandIds.get(i));
+    }
+    assertEquals(3, deduplicator.size());
+    assertTrue(deduplicator.markIfAbsent(commandIds.get(0)));
+
+    now.addAndGet(Duration.ofSeconds(10).toNanos());
+    assertTrue(deduplicator.markIfAbsent(UUID.randomUUID()));
+    assertEquals(1, deduplicator.size());
+    assertTrue(deduplicator.markIfAbsent(commandIds.get(3)));
+  }
+
+  @Test
+  void reservedIdsAreEvictedOnceCommitted() {
+    final CommandDeduplicator deduplicator = CommandDeduplicator.of(2, Duration.ofMinutes(1));
+    final UUID reserved = UUID.randomUUID();
+    assertTrue(deduplicator.reserveIfAbsent(reserved));
+    final List<UUID> commandIds = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      commandIds.add(UUID.randomUUID());
+      deduplicator.markIfAbsent(commandIds.get(i));
+    }
+    assertEquals(4, deduplicator.size());
+    assertTrue(deduplicator.isInFlight(reserved));
+    assertFalse(deduplicator.reserveIfAbsent(reserved));
+
+    deduplicator.commit(reserved);
+    assertFalse(deduplicator.isInFlight(reserved));
+    assertEquals(2, deduplicator.size());
+
+    // A forgotten id no longer counts towards the max entries
+    deduplicator.forget(commandIds.get(1));
+    assertEquals(1, deduplicator.size());
+    assertTrue(deduplicator.markIfAbsent(UUID.randomUUID()));
+    assertEquals(2, deduplicator.size());
+    assertFalse(deduplicator.markIfAbsent(commandIds.get(2)));
+  }
+
+  @Test
+  void coldRangeRemembersEvictedIds() {
+    final CommandDeduplicator deduplicator = new CommandDeduplicator(100, Duration.ofMinutes(1), 1000, 0.001);
+    final List<UUID> commandIds = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      commandIds.add(UUID.randomUUID());
+      assertTrue(deduplicator.markIfAbsent(commandIds.get(i)));
+    }
+    assertEquals(100, deduplicator.size());
+    for (UUID commandId : commandIds) {
+      assertFalse(deduplicator.markIfAbsent(commandId));
+    }
+
+    int falsePositives = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (!deduplicator.markIfAbsent(UUID.randomUUID())) {
+        falsePositives++;
+      }
+    }
+    assertTrue(falsePositives < 20, "False positives: " + falsePositives);
+  }
+}
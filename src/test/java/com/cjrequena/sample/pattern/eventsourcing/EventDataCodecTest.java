@@ -0,0 +1,70 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class EventDataCodecTest {
+
+  private static final AccountVO ACCOUNT = AccountVO.builder()
+    .id(UUID.randomUUID())
+    .owner("Pepe")
+    .email("pepe@aggregate-account.com")
+    .balance(Money.parse("999.99"))
+    .isActive(true)
+    .build();
+
+  private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+  @Test
+  void binaryRoundTrip() {
+    final DepositVO deposit = DepositVO.builder().accountId(ACCOUNT.id()).amount(Money.parse("10.5")).build();
+    final WithdrawVO withdraw = WithdrawVO.builder().accountId(ACCOUNT.id()).amount(Money.parse("0.01")).build();
+
+    assertEquals(ACCOUNT, roundTrip(DataContentType.BINARY, EventType.ACCOUNT_CREATED_EVENT, ACCOUNT));
+    assertEquals(deposit, roundTrip(DataContentType.BINARY, EventType.ACCOUNT_DEPOSITED_EVENT, deposit));
+    assertEquals(withdraw, roundTrip(DataContentType.BINARY, EventType.ACCOUNT_WITHDRAWN_EVENT, withdraw));
+  }
+
+  @Test
+  void binaryRoundTripWithNullFields() {
+    final AccountVO account = new AccountVO(ACCOUNT.id(), "Pepe", null, Money.ZERO, null);
+    assertEquals(account, roundTrip(DataContentType.BINARY, EventType.ACCOUNT_CREATED_EVENT, account));
+  }
+
+  @Test
+  void jsonRoundTrip() {
+    assertEquals(ACCOUNT, roundTrip(DataContentType.JSON, EventType.ACCOUNT_CREATED_EVENT, ACCOUNT));
+  }
+
+  @Test
+  void binaryIsSmallerThanJson() {
+    DataContentType.JSON.getCodec().encode(EventType.ACCOUNT_CREATED_EVENT, ACCOUNT, buffer);
+    final int jsonSize = buffer.position();
+    buffer.clear();
+    DataContentType.BINARY.getCodec().encode(EventType.ACCOUNT_CREATED_EVENT, ACCOUNT, buffer);
+    assertTrue(buffer.position() < jsonSize);
+  }
+
+  @Test
+  void dataContentTypeIsResolvedByType() {
+    assertEquals(DataContentType.BINARY, DataContentType.of(DataContentType.BINARY.getType()));
+    assertThrows(IllegalArgumentException.class, () -> DataContentType.of("application/xml"));
+  }
+
+  private Object roundTrip(DataContentType dataContentType, EventType eventType, Object data) {
+    buffer.clear();
+    dataContentType.getCodec().encode(eventType, data, buffer);
+    buffer.flip();
+    return dataContentType.getCodec().decode(eventType, buffer);
+  }
+}
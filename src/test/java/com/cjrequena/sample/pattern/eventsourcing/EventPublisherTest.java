@@ -0,0 +1,108 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class EventPublisherTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void subscribersReceiveTheAppendedEventsInOffsetOrder() {
+    // Closed by the test, to complete the subscribers
+    final EventPublisher publisher = new EventPublisher();
+    try (EventStore eventStore = EventStore.open(directory)) {
+      eventStore.addAppendListener(publisher::publish);
+      final AccountAggregate before = EventStoreTest.newAccountWithDeposits(1);
+      eventStore.append(before.getAggregateId(), 0, before.getUnconfirmedEventsPool());
+
+      final AccountAggregate first = EventStoreTest.newAccountWithDeposits(2);
+      final AccountAggregate second = EventStoreTest.newAccountWithDeposits(0);
+      final StepVerifier verifier = StepVerifier.create(publisher.events())
+        .expectNextMatches(event -> event.getOffsetId() == 3 && event.getAggregateId().equals(first.getAggregateId()))
+        .expectNextMatches(event -> event.getOffsetId() == 4)
+        .expectNextMatches(event -> event.getOffsetId() == 5)
+        .expectNextMatches(event -> event.getOffsetId() == 6 && event.getAggregateId().equals(second.getAggregateId()))
+        .expectComplete()
+        .verifyLater();
+      eventStore.appendAll(List.of(
+        new EventStore.AppendRequest(first.getAggregateId(), 0, first.getUnconfirmedEventsPool()),
+        new EventStore.AppendRequest(second.getAggregateId(), 0, second.getUnconfirmedEventsPool())));
+      publisher.close();
+      verifier.verify(TIMEOUT);
+      assertEquals(6, publisher.getPublishedEvents());
+    }
+  }
+
+  @Test
+  void slowSubscriberDropsItsOldestEventsWithoutHoldingBackTheOthers() {
+    final EventPublisher publisher = new EventPublisher();
+    final List<Event> events = EventStoreTest.newAccountWithDeposits(99).getUnconfirmedEventsPool();
+    final List<Event> slowlyReceived = new ArrayList<>();
+    final StepVerifier slow = StepVerifier.create(publisher.events(4, BufferOverflowStrategy.DROP_OLDEST), 0)
+      .expectSubscription()
+      .thenAwait()
+      .thenRequest(Long.MAX_VALUE)
+      .recordWith(() -> slowlyReceived)
+      .thenConsumeWhile(event -> true)
+      .expectComplete()
+      .verifyLater();
+    final StepVerifier fast = StepVerifier.create(publisher.events()).expectNextCount(100).expectComplete().verifyLater();
+
+    publisher.publish(events);
+    publisher.close();
+    fast.verify(TIMEOUT);
+    slow.verify(TIMEOUT);
+
+    // The slow subscriber got the events in flight when its buffer filled up, and then the latest events
+    assertTrue(publisher.getDroppedEvents() > 0);
+    assertEquals(100, slowlyReceived.size() + publisher.getDroppedEvents());
+    assertEquals(events.get(99), slowlyReceived.get(slowlyReceived.size() - 1));
+  }
+
+  @Test
+  void subscriberIsCutOffOnOverflowByDefault() {
+    final EventPublisher publisher = new EventPublisher();
+    final StepVerifier verifier = StepVerifier.create(publisher.events(1, BufferOverflowStrategy.ERROR), 0)
+      .expectSubscription()
+      .thenAwait()
+      .thenRequest(Long.MAX_VALUE)
+      .thenConsumeWhile(event -> true)
+      .expectErrorMatches(Exceptions::isOverflow)
+      .verifyLater();
+    publisher.publish(EventStoreTest.newAccountWithDeposits(99).getUnconfirmedEventsPool());
+    assertEquals(0, publisher.getSubscriberCount());
+    verifier.verify(TIMEOUT);
+  }
+
+  @Test
+  void batchesAreEmittedWhenFullOrAfterTheirDelay() {
+    final EventPublisher publisher = new EventPublisher();
+    final StepVerifier verifier = StepVerifier.create(publisher.batches(64, BufferOverflowStrategy.ERROR, 10, Duration.ofMillis(50)))
+      .expectNextMatches(batch -> batch.size() == 10 && batch.get(0).getAggregateVersion() == 1)
+      .expectNextMatches(batch -> batch.size() == 10)
+      .expectNextMatches(batch -> batch.size() == 5 && batch.get(4).getAggregateVersion() == 25)
+      .thenCancel()
+      .verifyLater();
+    publisher.publish(EventStoreTest.newAccountWithDeposits(24).getUnconfirmedEventsPool());
+    verifier.verify(TIMEOUT);
+  }
+}
@@ -0,0 +1,379 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class EventStoreTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void appendAndRetrieveEvents() {
+    try (EventStore eventStore = EventStore.open(directory)) {
+      final AccountAggregate aggregate = newAccountWithDeposits(2);
+      eventStore.append(aggregate.getAggregateId(), 0, aggregate.getUnconfirmedEventsPool());
+
+      final List<Event> events = eventStore.retrieveEvents(aggregate.getAggregateId());
+      assertEquals(3, events.size());
+      assertInstanceOf(AccountCreatedEvent.class, events.get(0));
+      assertInstanceOf(AccountDepositedEvent.class, events.get(1));
+      assertEquals(1, events.get(0).getOffsetId());
+      assertEquals(3, events.get(2).getOffsetId());
+      assertEquals(events.get(0).getOffsetTxId(), events.get(2).getOffsetTxId());
+      assertEquals(3, eventStore.getAggregateVersion(aggregate.getAggregateId()));
+
+      final AccountAggregate reproduced = new AccountAggregate(aggregate.getAggregateId(), 0);
+      reproduced.reproduceFromEvents(events);
+      assertEquals(aggregate.getData(), reproduced.getData());
+    }
+  }
+
+  @Test
+  void eventDataIsDecodedWithItsContentType() {
+    try (EventStore eventStore = EventStore.open(directory)) {
+      final UUID aggregateId = UUID.randomUUID();
+      final AccountVO account = AccountVO.builder().id(aggregateId).owner("Pepe").balance(Money.of(10)).isActive(true).build();
+      eventStore.append(aggregateId, 0, List.of(AccountCreatedEvent.builder()
+        .aggregateId(aggregateId)
+        .aggregateVersion(1)
+        .dataContentType(DataContentType.JSON.getType())
+        .data(account)
+        .build()));
+
+      final Event event = eventStore.retrieveEvents(aggregateId).get(0);
+      assertEquals(DataContentType.JSON.getType(), event.getDataContentType());
+      assertEquals(account, event.getData());
+    }
+  }
+
+  @Test
+  void retrieveEventsAfterVersion() {
+    try (EventStore eventStore = EventStore.open(directory)) {
+      final AccountAggregate aggregate = newAccountWithDeposits(4);
+      eventStore.append(aggregate.getAggregateId(), 0, aggregate.getUnconfirmedEventsPool());
+
+      final List<Event> events = eventStore.retrieveEvents(aggregate.getAggregateId(), 3);
+      assertEquals(List.of(4L, 5L), events.stream().map(Event::getAggregateVersion).toList());
+      assertTrue(eventStore.retrieveEvents(aggregate.getAggregateId(), 5).isEmpty());
+      assertTrue(eventStore.retrieveEvents(UUID.randomUUID()).isEmpty());
+    }
+  }
+
+  @Test
+  void appendRejectsUnexpectedVersion() {
+    try (EventStore eventStore = EventStore.open(directory)) {
+      final AccountAggregate aggregate = newAccountWithDeposits(1);
+      eventStore.append(aggregate.getAggregateId(), 0, aggregate.getUnconfirmedEventsPool());
+
+      assertThrows(OptimisticConcurrencyException.class,
+        () -> eventStore.append(aggregate.getAggregateId(), 0, aggregate.getUnconfirmedEventsPool()));
+      assertEquals(2, eventStore.getAggregateVersion(aggregate.getAggregateId()));
+      assertEquals(2, eventStore.getLastOffsetId());
+    }
+  }
+
+  @Test
+  void failedAppendLeavesTheEventsUnassigned() {
+    try (EventStore eventStore = EventStore.open(directory)) {
+      final AccountAggregate aggregate = newAccountWithDeposits(1);
+      final List<Event> events = aggregate.getUnconfirmedEventsPool();
+      events.get(1).dataContentType = "text/plain";
+
+      assertThrows(IllegalArgumentException.class, () -> eventStore.append(aggregate.getAggregateId(), 0, events));
+      assertEquals(0, events.get(0).getOffsetId());
+      assertEquals(0, events.get(0).getOffsetTxId());
+      assertNull(events.get(0).getTime());
+      assertEquals(0, events.get(1).getOffsetId());
+      assertEquals("text/plain", events.get(1).getDataContentType());
+
+      events.get(1).dataContentType = null;
+      eventStore.append(aggregate.getAggregateId(), 0, events);
+      assertEquals(1, events.get(0).getOffsetId());
+      assertEquals(2, eventStore.getLastOffsetId());
+    }
+  }
+
+  @Test
+  void reopenRebuildsTheIndexAcrossSegments() throws Exception {
+    final AccountAggregate aggregate = newAccountWithDeposits(50);
+    try (EventStore eventStore = EventStore.open(directory, 4 * 1024)) {
+      eventStore.append(aggregate.getAggregateId(), 0, aggregate.getUnconfirmedEventsPool().subList(0, 20));
+      eventStore.append(aggregate.getAggregateId(), 20, aggregate.getUnconfirmedEventsPool().subList(20, 51));
+    }
+    try (var files = Files.list(directory)) {
+      assertTrue(files.count() > 1);
+    }
+
+    try (EventStore eventStore = EventStore.open(directory, 4 * 1024)) {
+      assertEquals(51, eventStore.getAggregateVersion(aggregate.getAggregateId()));
+      assertEquals(51, eventStore.getLastOffsetId());
+
+      final AccountAggregate reproduced = new AccountAggregate(aggregate.getAggregateId(), 0);
+      reproduced.reproduceFromEvents(eventStore.retrieveEvents(aggregate.getAggregateId()));
+      assertEquals(aggregate.getData(), reproduced.getData());
+      assertEquals(51, reproduced.getAggregateVersion());
+    }
+  }
+
+  @Test
+  void retrieveAllEventsInOffsetOrderAcrossSegments() {
+    final AccountAggregate first = newAccountWithDeposits(40);
+    final AccountAggregate second = newAccountWithDeposits(40);
+    try (EventStore eventStore = EventStore.open(directory, 4 * 1024)) {
+      for (int from = 0; from < 41; from += 10) {
+        final int to = Math.min(from + 10, 41);
+        eventStore.append(first.getAggregateId(), from, first.getUnconfirmedEventsPool().subList(from, to));
+        eventStore.append(second.getAggregateId(), from, second.getUnconfirmedEventsPool().subList(from, to));
+      }
+
+      final List<Event> all = eventStore.retrieveAllEvents(0).toList();
+      assertEquals(82, all.size());
+      for (int i = 0; i < all.size(); i++) {
+        assertEquals(i + 1, all.get(i).getOffsetId());
+      }
+      assertEquals(first.getAggregateId(), all.get(0).getAggregateId());
+      assertEquals(second.getAggregateId(), all.get(10).getAggregateId());
+
+      final List<Event> tail = eventStore.retrieveAllEvents(70).toList();
+      assertEquals(12, tail.size());
+      assertEquals(71, tail.get(0).getOffsetId());
+      assertTrue(eventStore.retrieveAllEvents(82).toList().isEmpty());
+    }
+  }
+
+  @Test
+  void cursorCoversTheEventsStoredWhenOpened() {
+    try (EventStore eventStore = EventStore.open(directory)) {
+      final AccountAggregate aggregate = newAccountWithDeposits(4);
+      eventStore.append(aggregate.getAggregateId(), 0, aggregate.getUnconfirmedEventsPool().subList(0, 3));
+
+      final Iterator<Event> cursor = eventStore.openCursor(aggregate.getAggregateId(), 1);
+      eventStore.append(aggregate.getAggregateId(), 3, aggregate.getUnconfirmedEventsPool().subList(3, 5));
+      assertEquals(2, cursor.next().getAggregateVersion());
+      assertEquals(3, cursor.next().getAggregateVersion());
+      assertFalse(cursor.hasNext());
+      assertFalse(eventStore.openCursor(UUID.randomUUID(), 0).hasNext());
+
+      final AccountAggregate reproduced = new AccountAggregate(aggregate.getAggregateId(), 0);
+      reproduced.reproduceFromEvents(eventStore.openCursor(aggregate.getAggregateId(), 0));
+      assertEquals(aggregate.getData(), reproduced.getData());
+    }
+  }
+
+  @Test
+  void viewReplayMatchesTheReplayOfDecodedEvents() {
+    try (EventStore eventStore = EventStore.open(directory)) {
+      final AccountAggregate aggregate = newAccountWithDeposits(3);
+      final UUID aggregateId = aggregate.getAggregateId();
+      aggregate.applyUnconfirmedEvent(AccountWithdrawnEvent.builder()
+        .aggregateId(aggregateId)
+        .aggregateVersion(5)
+        .dataContentType(DataContentType.JSON.getType())
+        .data(WithdrawVO.builder().accountId(aggregateId).amount(Money.parse("2.50")).build())
+        .build());
+      eventStore.append(aggregateId, 0, aggregate.getUnconfirmedEventsPool());
+
+      final Iterator<EventView> cursor = eventStore.openViewCursor(aggregateId, 3);
+      final EventView view = cursor.next();
+      assertEquals(EventType.ACCOUNT_DEPOSITED_EVENT, view.getEventType());
+      assertEquals(4, view.getAggregateVersion());
+      assertTrue(view.hasCurrentBinaryData());
+      assertEquals(100, AccountBinaryCodecs.readAmountMinorUnits(view));
+      // The cursor moves its single view
+      assertSame(view, cursor.next());
+      assertFalse(view.hasCurrentBinaryData());
+      assertEquals(250, AccountBinaryCodecs.readAmountMinorUnits(view));
+      assertFalse(cursor.hasNext());
+
+      final AccountAggregate reproduced = new AccountAggregate(aggregateId, 0);
+      reproduced.reproduceFromEventViews(eventStore.openViewCursor(aggregateId, 0));
+      assertEquals(aggregate.getData(), reproduced.getData());
+      assertEquals(Money.parse("10.50"), reproduced.getData().balance());
+      assertEquals(5, reproduced.getReproducedAggregateVersion());
+
+      // Catching up starts from the state of the aggregate
+      final AccountAggregate caughtUp = new AccountAggregate(aggregateId, 0);
+      caughtUp.reproduceFromEvents(eventStore.retrieveEvents(aggregateId).subList(0, 1));
+      caughtUp.reproduceFromEventViews(eventStore.openViewCursor(aggregateId, 1));
+      assertEquals(aggregate.getData(), caughtUp.getData());
+    }
+  }
+
+  @Test
+  void failedViewReplayKeepsTheStateOfTheViewsAppliedBefore() {
+    try (EventStore eventStore = EventStore.open(directory)) {
+      final AccountAggregate aggregate = newAccountWithDeposits(1);
+      final UUID aggregateId = aggregate.getAggregateId();
+      eventStore.append(aggregateId, 0, aggregate.getUnconfirmedEventsPool());
+      // Stored without going through the aggregate, which would reject it
+      eventStore.append(aggregateId, 2, List.of(AccountWithdrawnEvent.builder()
+        .aggregateId(aggregateId)
+        .aggregateVersion(3)
+        .dataContentType(DataContentType.BINARY.getType())
+        .data(WithdrawVO.builder().accountId(aggregateId).amount(Money.of(100)).build())
+        .build()));
+
+      final AccountAggregate reproduced = new AccountAggregate(aggregateId, 0);
+      final RuntimeException exception = assertThrows(RuntimeException.class, () -> reproduced.reproduceFromEventViews(eventStore.openViewCursor(aggregateId, 0)));
+      assertInstanceOf(AccountBalanceException.class, exception.getCause());
+      assertEquals(Money.of(11), reproduced.getData().balance());
+      assertEquals(2, reproduced.getReproducedAggregateVersion());
+    }
+  }
+
+  @Test
+  void offsetAtATimeIsFoundThroughTheSparseTimeIndex() {
+    final OffsetDateTime start = OffsetDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    final AccountAggregate aggregate = newAccountWithDeposits(999);
+    final List<Event> events = aggregate.getUnconfirmedEventsPool();
+    for (int i = 0; i < events.size(); i++) {
+      events.get(i).time = start.plusSeconds(i);
+    }
+    // Events appended with a time out of order hide the events after them from the earlier times
+    events.get(700).time = start.plusYears(1);
+    // Small segments, so the scans cross segments
+    try (EventStore eventStore = EventStore.open(directory, 16 * 1024)) {
+      for (int from = 0; from < events.size(); from += 300) {
+        eventStore.append(aggregate.getAggregateId(), from, events.subList(from, Math.min(from + 300, events.size())));
+      }
+      assertOffsetsAtTimes(eventStore, start);
+    }
+    try (EventStore eventStore = EventStore.open(directory, 16 * 1024)) {
+      assertOffsetsAtTimes(eventStore, start);
+    }
+  }
+
+  private static void assertOffsetsAtTimes(EventStore eventStore, OffsetDateTime start) {
+    assertEquals(0, eventStore.getOffsetIdAt(start.minusNanos(1)));
+    assertEquals(1, eventStore.getOffsetIdAt(start));
+    assertEquals(257, eventStore.getOffsetIdAt(start.plusSeconds(256).plusNanos(500)));
+    assertEquals(600, eventStore.getOffsetIdAt(start.plusSeconds(599).plusNanos(999_999_999)));
+    assertEquals(700, eventStore.getOffsetIdAt(start.plusSeconds(900)));
+    assertEquals(1000, eventStore.getOffsetIdAt(start.plusYears(2)));
+  }
+
+  @Test
+  void aggregateVersionAtAnOffset() {
+    try (EventStore eventStore = EventStore.open(directory)) {
+      final AccountAggregate aggregate = newAccountWithDeposits(4);
+      final AccountAggregate other = newAccountWithDeposits(1);
+      eventStore.append(aggregate.getAggregateId(), 0, aggregate.getUnconfirmedEventsPool().subList(0, 3));
+      eventStore.append(other.getAggregateId(), 0, other.getUnconfirmedEventsPool());
+      eventStore.append(aggregate.getAggregateId(), 3, aggregate.getUnconfirmedEventsPool().subList(3, 5));
+
+      assertEquals(0, eventStore.getAggregateVersionAt(aggregate.getAggregateId(), 0));
+      assertEquals(3, eventStore.getAggregateVersionAt(aggregate.getAggregateId(), 5));
+      assertEquals(4, eventStore.getAggregateVersionAt(aggregate.getAggregateId(), 6));
+      assertEquals(5, eventStore.getAggregateVersionAt(aggregate.getAggregateId(), 100));
+      assertEquals(0, eventStore.getAggregateVersionAt(other.getAggregateId(), 3));
+      assertEquals(0, eventStore.getAggregateVersionAt(UUID.randomUUID(), 100));
+
+      final Iterator<EventView> cursor = eventStore.openViewCursor(aggregate.getAggregateId(), 1, 3);
+      assertEquals(2, cursor.next().getAggregateVersion());
+      assertEquals(3, cursor.next().getAggregateVersion());
+      assertFalse(cursor.hasNext());
+    }
+  }
+
+  @Test
+  void streamEventsHonoursBackpressure() {
+    try (EventStore eventStore = EventStore.open(directory)) {
+      final AccountAggregate aggregate = newAccountWithDeposits(4);
+      eventStore.append(aggregate.getAggregateId(), 0, aggregate.getUnconfirmedEventsPool());
+
+      StepVerifier.create(eventStore.streamEvents(aggregate.getAggregateId(), 0), 0)
+        .expectSubscription()
+        .thenRequest(2)
+        .expectNextMatches(event -> event.getAggregateVersion() == 1)
+        .expectNextMatches(event -> event.getAggregateVersion() == 2)
+        .thenRequest(Long.MAX_VALUE)
+        .expectNextCount(3)
+        .verifyComplete();
+
+      final AccountAggregate reproduced = new AccountAggregate(aggregate.getAggregateId(), 0);
+      StepVerifier.create(reproduced.reproduceFromEvents(eventStore.streamEvents(aggregate.getAggregateId(), 0))).verifyComplete();
+      assertEquals(aggregate.getData(), reproduced.getData());
+      assertEquals(5, reproduced.getReproducedAggregateVersion());
+
+      // The replay fails on the first stale event
+      StepVerifier.create(reproduced.reproduceFromEvents(eventStore.streamEvents(aggregate.getAggregateId(), 3)))
+        .verifyError(IllegalArgumentException.class);
+    }
+  }
+
+  @Test
+  void reopenTruncatesTheTornGroupCommit() throws Exception {
+    final AccountAggregate first = newAccountWithDeposits(2);
+    final AccountAggregate second = newAccountWithDeposits(2);
+    final AccountAggregate third = newAccountWithDeposits(2);
+    try (EventStore eventStore = EventStore.open(directory, 4 * 1024)) {
+      eventStore.append(first.getAggregateId(), 0, first.getUnconfirmedEventsPool());
+      eventStore.appendAll(List.of(
+        new EventStore.AppendRequest(second.getAggregateId(), 0, second.getUnconfirmedEventsPool()),
+        new EventStore.AppendRequest(third.getAggregateId(), 0, third.getUnconfirmedEventsPool())));
+    }
+    // A crash stored all the records of the group commit but the end of its last one
+    final Path segment;
+    try (var files = Files.list(directory)) {
+      segment = files.sorted().toList().get(0);
+    }
+    final byte[] bytes = Files.readAllBytes(segment);
+    int end = bytes.length;
+    while (bytes[end - 1] == 0) {
+      end--;
+    }
+    bytes[end - 1] ^= 1;
+    Files.write(segment, bytes);
+
+    try (EventStore eventStore = EventStore.open(directory, 4 * 1024)) {
+      assertEquals(3, eventStore.getLastOffsetId());
+      assertEquals(3, eventStore.getAggregateVersion(first.getAggregateId()));
+      assertEquals(0, eventStore.getAggregateVersion(second.getAggregateId()));
+      assertEquals(0, eventStore.getAggregateVersion(third.getAggregateId()));
+      eventStore.append(third.getAggregateId(), 0, third.getUnconfirmedEventsPool().subList(0, 1));
+    }
+    try (EventStore eventStore = EventStore.open(directory, 4 * 1024)) {
+      assertEquals(4, eventStore.getLastOffsetId());
+      assertEquals(1, eventStore.getAggregateVersion(third.getAggregateId()));
+      assertEquals(4, eventStore.retrieveAllEvents(0).count());
+    }
+  }
+
+  static AccountAggregate newAccountWithDeposits(int deposits) {
+    final Command createAccountCommand = CreateAccountCommand.builder()
+      .data(AccountVO.builder().owner("Pepe").email("pepe@aggregate-account.com").balance(Money.of(10)).isActive(true).build())
+      .build();
+    final AccountAggregate aggregate = new AccountAggregate(createAccountCommand.getAggregateId(), 0);
+    aggregate.applyCommand(createAccountCommand);
+    for (int i = 0; i < deposits; i++) {
+      final Command depositAccountCommand = DepositAccountCommand.builder()
+        .aggregateId(aggregate.getAggregateId())
+        .data(DepositVO.builder().accountId(aggregate.getAggregateId()).amount(Money.of(1)).build())
+        .build();
+      aggregate.applyCommand(depositAccountCommand);
+    }
+    return aggregate;
+  }
+}
@@ -0,0 +1,88 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replay of an {@link AccountAggregate} from the {@link EventStore}, decoding every event into objects through
+ * {@link EventStore#openCursor(UUID, long)} against reading it in place through
+ * {@link EventStore#openViewCursor(UUID, long)}. The allocation per replayed event is the {@code gc.alloc.rate.norm}
+ * of the GC profiler divided by {@code events}.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath, which enables the GC profiler, as {@code -prof gc} does.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventViewReplayBenchmark {
+
+  @Param({"1000", "100000"})
+  public int events;
+
+  private Path directory;
+  private EventStore eventStore;
+  private UUID aggregateId;
+
+  @Setup
+  public void setUp() throws IOException {
+    Configurator.setLevel("com.cjrequena.sample", Level.WARN);
+    directory = Files.createTempDirectory("event-view-replay-benchmark");
+    eventStore = EventStore.open(directory);
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(events - 1);
+    aggregateId = aggregate.getAggregateId();
+    eventStore.append(aggregateId, 0, aggregate.getUnconfirmedEventsPool());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    eventStore.close();
+    try (var paths = Files.walk(directory)) {
+      paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public Aggregate decodedEvents() {
+    final Aggregate aggregate = new AccountAggregate(aggregateId, 0);
+    aggregate.reproduceFromEvents(eventStore.openCursor(aggregateId, 0));
+    return aggregate;
+  }
+
+  @Benchmark
+  public Aggregate eventViews() {
+    final Aggregate aggregate = new AccountAggregate(aggregateId, 0);
+    aggregate.reproduceFromEventViews(eventStore.openViewCursor(aggregateId, 0));
+    return aggregate;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(EventViewReplayBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,47 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class HistogramTest {
+
+  @Test
+  void bucketsCoverTheLongRangeWithinTheirPrecision() {
+    long previousIndex = -1;
+    for (long value = 0; value < 100_000; value++) {
+      final int index = Histogram.indexOf(value);
+      assertTrue(index == previousIndex || index == previousIndex + 1);
+      assertTrue(Histogram.lowestValueOf(index) <= value && value <= Histogram.highestValueOf(index));
+      previousIndex = index;
+    }
+    for (long value : new long[]{1L << 40, (1L << 40) + 12345, Long.MAX_VALUE}) {
+      final int index = Histogram.indexOf(value);
+      assertTrue(Histogram.lowestValueOf(index) <= value && value <= Histogram.highestValueOf(index));
+      assertTrue(Histogram.highestValueOf(index) - Histogram.lowestValueOf(index) < value / 16);
+    }
+  }
+
+  @Test
+  void snapshotReportsPercentiles() {
+    final Histogram histogram = new Histogram();
+    for (long value = 1; value <= 1000; value++) {
+      histogram.record(value);
+    }
+    histogram.record(-5);
+
+    final Histogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(1001, snapshot.getCount());
+    assertEquals(0, snapshot.getValueAtPercentile(0));
+    assertEquals(500, snapshot.getValueAtPercentile(50), 500 / 16.0);
+    assertEquals(990, snapshot.getValueAtPercentile(99), 990 / 16.0);
+    assertEquals(1000, snapshot.getMax(), 1000 / 16.0);
+    assertEquals(500, snapshot.getMean(), 500 / 16.0);
+    assertEquals(0, new Histogram().snapshot().getValueAtPercentile(99));
+  }
+}
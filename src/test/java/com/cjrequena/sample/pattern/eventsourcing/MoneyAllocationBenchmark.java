@@ -0,0 +1,98 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import lombok.Builder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the balance updates applied on every replayed deposit: the {@link Money} path of {@link AccountVO} against
+ * the former {@link BigDecimal} path, which added, rescaled and cloned the account through its builder.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath. The GC profiler is enabled, compare the
+ * {@code gc.alloc.rate.norm} of both paths, in bytes per deposit.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyAllocationBenchmark {
+
+  private static final int DEPOSITS = 1_000;
+
+  private AccountVO account;
+  private Money amount;
+  private BigDecimalAccountVO bigDecimalAccount;
+  private BigDecimal bigDecimalAmount;
+
+  @Setup
+  public void setUp() {
+    account = AccountVO.builder().owner("Pepe").email("pepe@aggregate-account.com").balance(Money.of(10)).isActive(true).build();
+    amount = Money.parse("1.25");
+    bigDecimalAccount = BigDecimalAccountVO.builder().id(account.id()).owner("Pepe").email("pepe@aggregate-account.com").balance(BigDecimal.TEN).isActive(true).build();
+    bigDecimalAmount = new BigDecimal("1.25");
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(DEPOSITS)
+  public AccountVO money() {
+    AccountVO current = account;
+    for (int i = 0; i < DEPOSITS; i++) {
+      current = current.addToBalanceAndClone(amount);
+    }
+    return current;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(DEPOSITS)
+  public BigDecimalAccountVO bigDecimal() {
+    BigDecimalAccountVO current = bigDecimalAccount;
+    for (int i = 0; i < DEPOSITS; i++) {
+      current = current.addToBalanceAndClone(bigDecimalAmount);
+    }
+    return current;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(MoneyAllocationBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+  }
+
+  /**
+   * The balance handling of {@link AccountVO} before it moved to {@link Money}.
+   */
+  @Builder
+  public record BigDecimalAccountVO(UUID id, String owner, String email, BigDecimal balance, Boolean isActive) {
+
+    public BigDecimalAccountVO {
+      if (owner != null) {
+        owner = owner.trim();
+      }
+      balance = balance == null ? BigDecimal.ZERO : balance.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    BigDecimalAccountVO addToBalanceAndClone(BigDecimal amount) {
+      return BigDecimalAccountVO.builder().id(id).owner(owner).email(email).balance(balance.add(amount)).isActive(isActive).build();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class MoneyTest {
+
+  @Test
+  void decimalsAreRoundedHalfUp() {
+    assertEquals(1050, Money.parse("10.5").minorUnits());
+    assertEquals(1, Money.parse("0.005").minorUnits());
+    assertEquals(0, Money.parse("0.004").minorUnits());
+    assertEquals(-1, Money.parse("-0.005").minorUnits());
+    assertEquals(Money.of(10), Money.of(BigDecimal.TEN));
+    assertEquals("10.50", Money.parse("10.5").toString());
+    assertEquals(new BigDecimal("10.50"), Money.ofMinor(1050).toBigDecimal());
+    assertSame(Money.ZERO, Money.parse("0.00"));
+  }
+
+  @Test
+  void arithmeticIsExact() {
+    assertEquals(Money.parse("0.30"), Money.parse("0.10").plus(Money.parse("0.20")));
+    assertEquals(Money.parse("-0.10"), Money.parse("0.10").minus(Money.parse("0.20")));
+    assertTrue(Money.of(1).isGreaterThanOrEqualTo(Money.parse("1.00")));
+    assertTrue(Money.parse("0.01").compareTo(Money.ZERO) > 0);
+  }
+
+  @Test
+  void overflowThrows() {
+    final Money max = Money.ofMinor(Long.MAX_VALUE);
+    assertThrows(ArithmeticException.class, () -> max.plus(Money.ofMinor(1)));
+    assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MIN_VALUE).minus(Money.ofMinor(1)));
+    assertThrows(ArithmeticException.class, () -> Money.of(Long.MAX_VALUE / 10));
+    assertThrows(ArithmeticException.class, () -> Money.of(max.toBigDecimal().add(new BigDecimal("0.01"))));
+    assertEquals(max, Money.of(max.toBigDecimal()));
+  }
+
+  @Test
+  void jsonIsADecimalNumber() throws Exception {
+    final ObjectMapper objectMapper = new ObjectMapper();
+    final DepositVO deposit = DepositVO.builder().accountId(UUID.randomUUID()).amount(Money.parse("10.5")).build();
+    final String json = objectMapper.writeValueAsString(deposit);
+    assertTrue(json.contains("\"amount\":10.50"), json);
+    assertEquals(deposit, objectMapper.readValue(json, DepositVO.class));
+    assertEquals(Money.parse("7.13"), objectMapper.readValue("7.125", Money.class));
+  }
+}
@@ -0,0 +1,269 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class ProjectionEngineTest {
+
+  @TempDir
+  Path directory;
+
+  private EventStore eventStore;
+  private CommandBus commandBus;
+
+  @BeforeEach
+  void setUp() {
+    eventStore = EventStore.open(directory.resolve("events"));
+    commandBus = new CommandBus(new AggregateRepository(new AggregateFactory(), eventStore, new SnapshotStore(directory.resolve("snapshots")), SnapshotPolicy.never()));
+  }
+
+  @AfterEach
+  void tearDown() {
+    eventStore.close();
+  }
+
+  @Test
+  void catchUpUpdatesTheReadModels() {
+    final UUID pepe = createAccount("Pepe", Money.of(10));
+    final UUID otherPepe = createAccount("Pepe", Money.of(5));
+    final UUID maria = createAccount("Maria", Money.ZERO);
+    commandBus.dispatch(List.of(
+      CommandBusTest.depositAccountCommand(pepe, Money.parse("2.50")),
+      CommandBusTest.depositAccountCommand(otherPepe, Money.of(1)),
+      CommandBusTest.depositAccountCommand(maria, Money.of(7)),
+      withdrawAccountCommand(pepe, Money.of(3))));
+
+    final BalanceByOwnerProjection balanceByOwner = new BalanceByOwnerProjection();
+    final DailyDepositsProjection dailyDeposits = new DailyDepositsProjection();
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), 2)) {
+      engine.register(balanceByOwner);
+      engine.register(dailyDeposits);
+      assertEquals(10, engine.catchUp());
+      assertEquals(7, engine.getCheckpoint(balanceByOwner));
+      assertEquals(7, engine.getCheckpoint(dailyDeposits));
+      assertEquals(0, engine.catchUp());
+    }
+
+    assertEquals(Money.parse("15.50"), balanceByOwner.getBalance("Pepe"));
+    assertEquals(Money.of(7), balanceByOwner.getBalance("Maria"));
+    assertEquals(Money.ZERO, balanceByOwner.getBalance("Juan"));
+    assertEquals(Money.parse("10.50"), dailyDeposits.getTotal(LocalDate.now(ZoneOffset.UTC)));
+  }
+
+  @Test
+  void registerRestoresTheCheckpointAndTheState() {
+    final UUID pepe = createAccount("Pepe", Money.of(10));
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), ProjectionEngine.DEFAULT_BATCH_SIZE)) {
+      engine.register(new BalanceByOwnerProjection());
+      engine.catchUp();
+    }
+
+    commandBus.dispatch(List.of(CommandBusTest.depositAccountCommand(pepe, Money.of(1))));
+    final BalanceByOwnerProjection restarted = new BalanceByOwnerProjection();
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), ProjectionEngine.DEFAULT_BATCH_SIZE)) {
+      engine.register(restarted);
+      assertEquals(1, engine.getCheckpoint(restarted));
+      assertEquals(Money.of(10), restarted.getBalance("Pepe"));
+      assertEquals(1, engine.catchUp());
+      assertEquals(Money.of(11), restarted.getBalance("Pepe"));
+    }
+  }
+
+  @Test
+  void registerReplaysTheJournalAndDropsATornFrame() throws Exception {
+    final UUID pepe = createAccount("Pepe", Money.of(10));
+    final UUID maria = createAccount("Maria", Money.of(5));
+    commandBus.dispatch(List.of(CommandBusTest.depositAccountCommand(pepe, Money.of(1)), CommandBusTest.depositAccountCommand(maria, Money.of(2))));
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), 1)) {
+      engine.register(new BalanceByOwnerProjection());
+      assertEquals(4, engine.catchUp());
+    }
+    // A crash while appending the next frame
+    final Path journal = directory.resolve("checkpoints").resolve(BalanceByOwnerProjection.NAME + ".journal");
+    final long size = Files.size(journal);
+    Files.write(journal, new byte[] {0, 0, 0, 0, 0, 0, 0, 9, 0, 0}, StandardOpenOption.APPEND);
+
+    final BalanceByOwnerProjection restarted = new BalanceByOwnerProjection();
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), 1)) {
+      engine.register(restarted);
+      assertEquals(4, engine.getCheckpoint(restarted));
+      assertEquals(Map.of("Pepe", Money.of(11), "Maria", Money.of(7)), restarted.getBalances());
+      assertEquals(size, Files.size(journal));
+
+      commandBus.dispatch(List.of(CommandBusTest.depositAccountCommand(maria, Money.of(1))));
+      assertEquals(1, engine.catchUp());
+    }
+    final BalanceByOwnerProjection again = new BalanceByOwnerProjection();
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), 1)) {
+      engine.register(again);
+      assertEquals(5, engine.getCheckpoint(again));
+      assertEquals(Money.of(8), again.getBalance("Maria"));
+    }
+  }
+
+  @Test
+  void failedBatchIsRolledBackAndDeliveredAgain() {
+    final UUID pepe = createAccount("Pepe", Money.of(10));
+    commandBus.dispatch(List.of(CommandBusTest.depositAccountCommand(pepe, Money.of(1)), CommandBusTest.depositAccountCommand(pepe, Money.of(2))));
+
+    final FlakyDepositCounter projection = new FlakyDepositCounter();
+    final DailyDepositsProjection dailyDeposits = new DailyDepositsProjection();
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), 10)) {
+      engine.register(projection);
+      engine.register(dailyDeposits);
+      // The projection registered after the failing one still catches up
+      assertEquals(2, engine.catchUp());
+      assertEquals(0, engine.getCheckpoint(projection));
+      assertEquals(0, projection.deposits);
+      assertEquals(3, engine.getCheckpoint(dailyDeposits));
+
+      assertEquals(2, engine.catchUp());
+      assertEquals(2, projection.deposits);
+      assertEquals(3, engine.getCheckpoint(projection));
+    }
+  }
+
+  @Test
+  void failedRollbackResetsTheReadModel() throws Exception {
+    final UUID pepe = createAccount("Pepe", Money.of(10));
+    commandBus.dispatch(List.of(CommandBusTest.depositAccountCommand(pepe, Money.of(1))));
+
+    final FlakyDepositCounter projection = new FlakyDepositCounter();
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), 10)) {
+      engine.register(projection);
+      assertEquals(1, engine.catchUp());
+      Files.write(directory.resolve("checkpoints").resolve(projection.getName() + ".checkpoint"), new byte[3]);
+
+      commandBus.dispatch(List.of(CommandBusTest.depositAccountCommand(pepe, Money.of(2))));
+      assertEquals(0, engine.catchUp());
+      assertEquals(0, engine.getCheckpoint(projection));
+      assertEquals(0, projection.deposits);
+
+      // Rebuilt from the start of the log, replacing the unreadable checkpoint
+      assertEquals(2, engine.catchUp());
+      assertEquals(3, engine.getCheckpoint(projection));
+    }
+    final FlakyDepositCounter restarted = new FlakyDepositCounter();
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), 10)) {
+      engine.register(restarted);
+      assertEquals(3, engine.getCheckpoint(restarted));
+      assertEquals(2, restarted.deposits);
+    }
+  }
+
+  @Test
+  void accountsWithoutOwnerAreLeftOut() {
+    final UUID pepe = createAccount("Pepe", Money.of(10));
+    final UUID nobody = createAccount(null, Money.of(5));
+    commandBus.dispatch(List.of(CommandBusTest.depositAccountCommand(nobody, Money.of(1)), CommandBusTest.depositAccountCommand(pepe, Money.of(2))));
+
+    final BalanceByOwnerProjection balanceByOwner = new BalanceByOwnerProjection();
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), ProjectionEngine.DEFAULT_BATCH_SIZE)) {
+      engine.register(balanceByOwner);
+      assertEquals(4, engine.catchUp());
+      assertEquals(4, engine.getCheckpoint(balanceByOwner));
+    }
+
+    assertEquals(Map.of("Pepe", Money.of(12)), balanceByOwner.getBalances());
+  }
+
+  @Test
+  void startTailsTheLog() throws Exception {
+    final BalanceByOwnerProjection balanceByOwner = new BalanceByOwnerProjection();
+    try (ProjectionEngine engine = new ProjectionEngine(eventStore, directory.resolve("checkpoints"), ProjectionEngine.DEFAULT_BATCH_SIZE)) {
+      engine.register(balanceByOwner);
+      engine.start(Duration.ofMillis(10));
+      createAccount("Pepe", Money.of(10));
+
+      final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+      while (engine.getCheckpoint(balanceByOwner) < 1 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, engine.getCheckpoint(balanceByOwner));
+      assertEquals(Money.of(10), balanceByOwner.getBalance("Pepe"));
+    }
+  }
+
+  @Test
+  void projectionsHandleOnlyTheirEventTypes() {
+    assertEquals(3, new BalanceByOwnerProjection().getEventTypes().size());
+    assertEquals(List.of(EventType.ACCOUNT_DEPOSITED_EVENT), List.copyOf(new DailyDepositsProjection().getEventTypes()));
+    assertTrue(new FlakyDepositCounter().getEventTypes().contains(EventType.ACCOUNT_DEPOSITED_EVENT));
+  }
+
+  private UUID createAccount(String owner, Money balance) {
+    final Command createAccountCommand = CreateAccountCommand.builder()
+      .data(AccountVO.builder().owner(owner).email(owner + "@aggregate-account.com").balance(balance).isActive(true).build())
+      .build();
+    commandBus.dispatch(List.of(createAccountCommand));
+    return createAccountCommand.getAggregateId();
+  }
+
+  private static Command withdrawAccountCommand(UUID account, Money amount) {
+    return WithdrawAccountCommand.builder()
+      .aggregateId(account)
+      .data(WithdrawVO.builder().accountId(account).amount(amount).build())
+      .build();
+  }
+
+  /**
+   * Counts deposits, failing on the second deposit the first time it sees it.
+   */
+  private static class FlakyDepositCounter extends Projection {
+
+    private int deposits;
+    private boolean failed;
+
+    FlakyDepositCounter() {
+      on(AccountDepositedEvent.class, event -> {
+        if (deposits == 1 && !failed) {
+          failed = true;
+          throw new IllegalStateException("Flaky handler");
+        }
+        deposits++;
+      });
+    }
+
+    @Override
+    public String getName() {
+      return "flaky-deposit-counter";
+    }
+
+    @Override
+    protected void reset() {
+      deposits = 0;
+    }
+
+    @Override
+    protected void writeState(DataOutputStream out) throws IOException {
+      out.writeInt(deposits);
+    }
+
+    @Override
+    protected void readState(DataInputStream in) throws IOException {
+      deposits = in.readInt();
+    }
+  }
+}
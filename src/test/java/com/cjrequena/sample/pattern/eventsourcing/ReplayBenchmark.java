@@ -0,0 +1,78 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replay throughput of {@link Aggregate#reproduceFromEvents} against the length of the history. The time per event is
+ * the score divided by {@code events}.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ReplayBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int events;
+
+  private UUID aggregateId;
+  private List<Event> history;
+
+  @Setup
+  public void setUp() {
+    Configurator.setLevel("com.cjrequena.sample", Level.WARN);
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(events - 1);
+    aggregateId = aggregate.getAggregateId();
+    history = List.copyOf(aggregate.getUnconfirmedEventsPool());
+  }
+
+  @Benchmark
+  public Aggregate list() {
+    final Aggregate aggregate = new AccountAggregate(aggregateId, 0);
+    aggregate.reproduceFromEvents(history);
+    return aggregate;
+  }
+
+  @Benchmark
+  public Aggregate iterator() {
+    final Aggregate aggregate = new AccountAggregate(aggregateId, 0);
+    aggregate.reproduceFromEvents(history.iterator());
+    return aggregate;
+  }
+
+  @Benchmark
+  public Aggregate spliterator() {
+    final Aggregate aggregate = new AccountAggregate(aggregateId, 0);
+    aggregate.reproduceFromEvents(history.spliterator());
+    return aggregate;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ReplayBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,125 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class RetryingCommandExecutorTest {
+
+  @TempDir
+  Path directory;
+
+  private EventStore eventStore;
+  private AggregateRepository otherNode;
+  private UUID account;
+
+  @BeforeEach
+  void setUp() {
+    eventStore = EventStore.open(directory);
+    otherNode = newRepository(0);
+    final Command createAccountCommand = CommandBusTest.createAccountCommand(Money.of(10));
+    account = createAccountCommand.getAggregateId();
+    new RetryingCommandExecutor(otherNode).execute(createAccountCommand);
+  }
+
+  @AfterEach
+  void tearDown() {
+    eventStore.close();
+  }
+
+  @Test
+  void conflictingCommandIsCaughtUpAndRetried() {
+    final InterferingRepository repository = newRepository(1);
+    final AggregateMetrics.Snapshot before = AggregateMetrics.global().snapshot();
+
+    final Aggregate aggregate = new RetryingCommandExecutor(repository, ConflictRetryPolicy.immediate(3))
+      .execute(CommandBusTest.depositAccountCommand(account, Money.of(1)));
+
+    assertEquals(3, aggregate.getAggregateVersion());
+    assertEquals(Money.of(12), ((AccountAggregate) aggregate).getData().balance());
+    assertEquals(Money.of(12), otherNode.load(AccountAggregate.class, account).getData().balance());
+    // Caught up from the tail of the stream instead of reloaded
+    assertEquals(1, repository.loads);
+    final AggregateMetrics.Snapshot after = AggregateMetrics.global().snapshot();
+    assertEquals(1, after.versionConflicts() - before.versionConflicts());
+    assertEquals(1, after.conflictRetries() - before.conflictRetries());
+    assertTrue(after.conflictRate() > 0);
+  }
+
+  @Test
+  void commandIsGivenUpOnceTheAttemptsAreExhausted() {
+    final InterferingRepository repository = newRepository(Integer.MAX_VALUE);
+    final AggregateMetrics.Snapshot before = AggregateMetrics.global().snapshot();
+
+    final RetryingCommandExecutor executor = new RetryingCommandExecutor(repository, ConflictRetryPolicy.immediate(3));
+    assertThrows(OptimisticConcurrencyException.class, () -> executor.execute(CommandBusTest.depositAccountCommand(account, Money.of(100))));
+
+    assertEquals(3, repository.interferences);
+    assertEquals(Money.of(13), otherNode.load(AccountAggregate.class, account).getData().balance());
+    final AggregateMetrics.Snapshot after = AggregateMetrics.global().snapshot();
+    assertEquals(2, after.conflictRetries() - before.conflictRetries());
+    assertEquals(1, after.exhaustedRetries() - before.exhaustedRetries());
+  }
+
+  @Test
+  void backoffGrowsUpToItsMaximum() {
+    final ConflictRetryPolicy policy = new ConflictRetryPolicy(10, Duration.ofMillis(1), Duration.ofMillis(8), 2);
+    for (int i = 0; i < 100; i++) {
+      assertTrue(policy.delayNanos(1) <= Duration.ofMillis(1).toNanos());
+      assertTrue(policy.delayNanos(9) <= Duration.ofMillis(8).toNanos());
+    }
+    assertEquals(0, ConflictRetryPolicy.immediate(3).delayNanos(2));
+    assertThrows(IllegalArgumentException.class, () -> new ConflictRetryPolicy(0, Duration.ZERO, Duration.ZERO, 1));
+  }
+
+  private InterferingRepository newRepository(int interferences) {
+    return new InterferingRepository(interferences);
+  }
+
+  /**
+   * Lets the other node deposit 1 into the account right before the first {@code maxInterferences} saves.
+   */
+  private class InterferingRepository extends AggregateRepository {
+
+    private final int maxInterferences;
+    private int interferences;
+    private int loads;
+
+    InterferingRepository(int maxInterferences) {
+      super(new AggregateFactory(), eventStore, new SnapshotStore(directory.resolve("snapshots")), SnapshotPolicy.never());
+      this.maxInterferences = maxInterferences;
+    }
+
+    @Override
+    public <T extends Aggregate> T load(Class<T> aggregateClass, UUID aggregateId) {
+      loads++;
+      return super.load(aggregateClass, aggregateId);
+    }
+
+    @Override
+    public void saveAll(Collection<? extends Aggregate> aggregates) {
+      if (interferences < maxInterferences) {
+        interferences++;
+        final AccountAggregate aggregate = otherNode.load(AccountAggregate.class, account);
+        aggregate.applyCommand(CommandBusTest.depositAccountCommand(account, Money.of(1)));
+        otherNode.saveAll(List.of(aggregate));
+      }
+      super.saveAll(aggregates);
+    }
+  }
+}
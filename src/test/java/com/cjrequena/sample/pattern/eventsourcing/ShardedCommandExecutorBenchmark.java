@@ -0,0 +1,99 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of the {@link ShardedCommandExecutor} with 1, 4 and 16 shards, that is 1, 4 and 16 cores
+ * applying commands. Producer threads submit deposits to random accounts and wait for each one to be committed, so
+ * the sample time mode reports the latency distribution from submission to commit.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(16)
+@Fork(1)
+public class ShardedCommandExecutorBenchmark {
+
+  private static final int ACCOUNTS = 1024;
+
+  @Param({"1", "4", "16"})
+  public int shards;
+
+  private Path directory;
+  private EventStore eventStore;
+  private ShardedCommandExecutor executor;
+  private final List<UUID> accounts = new ArrayList<>();
+
+  @Setup
+  public void setUp() throws IOException {
+    Configurator.setLevel("com.cjrequena.sample", Level.WARN);
+    directory = Files.createTempDirectory("sharded-command-executor-benchmark");
+    eventStore = EventStore.open(directory.resolve("events"));
+    final AggregateRepository repository = new AggregateRepository(
+      new AggregateFactory(),
+      eventStore,
+      new SnapshotStore(directory.resolve("snapshots")),
+      SnapshotPolicy.everyEvents(100));
+    executor = new ShardedCommandExecutor(new CommandBus(repository), shards, ShardedCommandExecutor.DEFAULT_MAX_BATCH_SIZE);
+
+    final List<CompletableFuture<Void>> created = new ArrayList<>();
+    for (int i = 0; i < ACCOUNTS; i++) {
+      final Command createAccountCommand = CommandBusTest.createAccountCommand(Money.of(10));
+      accounts.add(createAccountCommand.getAggregateId());
+      created.add(executor.submit(createAccountCommand));
+    }
+    CompletableFuture.allOf(created.toArray(CompletableFuture[]::new)).join();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    executor.close();
+    eventStore.close();
+    try (var paths = Files.walk(directory)) {
+      paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public void deposit() {
+    final UUID account = accounts.get(ThreadLocalRandom.current().nextInt(ACCOUNTS));
+    executor.submit(CommandBusTest.depositAccountCommand(account, Money.of(1))).join();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ShardedCommandExecutorBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,157 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author cjrequena
+ */
+class ShardedCommandExecutorTest {
+
+  @TempDir
+  Path directory;
+
+  private EventStore eventStore;
+  private AggregateRepository repository;
+  private ShardedCommandExecutor executor;
+
+  @BeforeEach
+  void setUp() {
+    eventStore = EventStore.open(directory.resolve("events"));
+    repository = new AggregateRepository(new AggregateFactory(), eventStore, new SnapshotStore(directory.resolve("snapshots")), SnapshotPolicy.never());
+    executor = new ShardedCommandExecutor(new CommandBus(repository), 4, 64);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.close();
+    eventStore.close();
+  }
+
+  @Test
+  void concurrentProducersSerializeTheCommandsOfEveryAggregate() throws Exception {
+    final List<UUID> accounts = new ArrayList<>();
+    final List<CompletableFuture<Void>> created = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final Command createAccountCommand = CommandBusTest.createAccountCommand(Money.ZERO);
+      accounts.add(createAccountCommand.getAggregateId());
+      created.add(executor.submit(createAccountCommand));
+    }
+    CompletableFuture.allOf(created.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+    final int producers = 8;
+    final int depositsPerProducer = 256;
+    final ExecutorService pool = Executors.newFixedThreadPool(producers);
+    final List<CompletableFuture<Void>> deposits = new ArrayList<>();
+    try {
+      final List<Future<List<CompletableFuture<Void>>>> submissions = new ArrayList<>();
+      for (int p = 0; p < producers; p++) {
+        submissions.add(pool.submit(() -> {
+          final List<CompletableFuture<Void>> futures = new ArrayList<>();
+          for (int i = 0; i < depositsPerProducer; i++) {
+            futures.add(executor.submit(CommandBusTest.depositAccountCommand(accounts.get(i % accounts.size()), Money.of(1))));
+          }
+          return futures;
+        }));
+      }
+      for (var submission : submissions) {
+        deposits.addAll(submission.get());
+      }
+    } finally {
+      pool.shutdown();
+    }
+    CompletableFuture.allOf(deposits.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+    final long depositsPerAccount = (long) producers * depositsPerProducer / accounts.size();
+    for (UUID account : accounts) {
+      final AccountAggregate aggregate = repository.load(AccountAggregate.class, account);
+      assertEquals(depositsPerAccount + 1, aggregate.getAggregateVersion());
+      assertEquals(Money.of(depositsPerAccount), aggregate.getData().balance());
+    }
+  }
+
+  @Test
+  void rejectedCommandCompletesExceptionally() throws Exception {
+    final Command createAccountCommand = CommandBusTest.createAccountCommand(Money.of(10));
+    final UUID account = createAccountCommand.getAggregateId();
+    executor.submit(createAccountCommand).get(10, TimeUnit.SECONDS);
+
+    final CompletableFuture<Void> withdrawal = executor.submit(WithdrawAccountCommand.builder()
+      .aggregateId(account)
+      .data(WithdrawVO.builder().accountId(account).amount(Money.of(100)).build())
+      .build());
+    final CompletableFuture<Void> deposit = executor.submit(CommandBusTest.depositAccountCommand(account, Money.of(1)));
+
+    assertThrows(ExecutionException.class, () -> withdrawal.get(10, TimeUnit.SECONDS));
+    deposit.get(10, TimeUnit.SECONDS);
+    assertEquals(2, eventStore.getAggregateVersion(account));
+  }
+
+  @Test
+  void shardOfIsStableAndInRange() {
+    for (int i = 0; i < 1_000; i++) {
+      final UUID aggregateId = UUID.randomUUID();
+      final int shard = executor.shardOf(aggregateId);
+      assertTrue(shard >= 0 && shard < executor.getShards());
+      assertEquals(shard, executor.shardOf(new UUID(aggregateId.getMostSignificantBits(), aggregateId.getLeastSignificantBits())));
+    }
+  }
+
+  @Test
+  void submitAfterCloseIsRejected() {
+    executor.close();
+    assertThrows(RejectedExecutionException.class, () -> executor.submit(CommandBusTest.createAccountCommand(Money.of(10))));
+  }
+
+  @Test
+  void commandsSubmittedWhileClosingAreExecutedOrRejected() throws Exception {
+    final ExecutorService producer = Executors.newSingleThreadExecutor();
+    try {
+      for (int round = 0; round < 20; round++) {
+        final ShardedCommandExecutor closing = new ShardedCommandExecutor(new CommandBus(repository), 4, 64);
+        final Future<List<CompletableFuture<Void>>> submitted = producer.submit(() -> {
+          final List<CompletableFuture<Void>> futures = new ArrayList<>();
+          try {
+            while (true) {
+              futures.add(closing.submit(CommandBusTest.createAccountCommand(Money.of(1))));
+            }
+          } catch (RejectedExecutionException e) {
+            return futures;
+          }
+        });
+        Thread.sleep(2);
+        closing.close();
+
+        // No future is left behind in a stopped shard
+        for (CompletableFuture<Void> future : submitted.get(10, TimeUnit.SECONDS)) {
+          try {
+            future.get(10, TimeUnit.SECONDS);
+          } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+          }
+        }
+      }
+    } finally {
+      producer.shutdownNow();
+    }
+  }
+}
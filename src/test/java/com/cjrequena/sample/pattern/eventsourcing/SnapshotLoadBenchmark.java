@@ -0,0 +1,101 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load latency of an {@link AccountAggregate} against the length of its history, with and without snapshots.
+ * A {@code snapshotInterval} of 0 disables snapshots, so the whole history is replayed on every load.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotLoadBenchmark {
+
+  private static final int COMMANDS_PER_SAVE = 50;
+
+  @Param({"100", "1000", "10000"})
+  public int historyLength;
+
+  @Param({"0", "100"})
+  public int snapshotInterval;
+
+  private Path directory;
+  private EventStore eventStore;
+  private AggregateRepository repository;
+  private UUID aggregateId;
+
+  @Setup
+  public void setUp() throws IOException {
+    Configurator.setLevel("com.cjrequena.sample", Level.WARN);
+    directory = Files.createTempDirectory("snapshot-load-benchmark");
+    eventStore = EventStore.open(directory.resolve("events"));
+    repository = new AggregateRepository(
+      new AggregateFactory(),
+      eventStore,
+      new SnapshotStore(directory.resolve("snapshots")),
+      snapshotInterval == 0 ? SnapshotPolicy.never() : SnapshotPolicy.everyEvents(snapshotInterval));
+
+    final Command createAccountCommand = CreateAccountCommand.builder()
+      .data(AccountVO.builder().owner("Pepe").email("pepe@aggregate-account.com").balance(Money.of(10)).isActive(true).build())
+      .build();
+    aggregateId = createAccountCommand.getAggregateId();
+    final Aggregate aggregate = repository.load(AccountAggregate.class, aggregateId);
+    aggregate.applyCommand(createAccountCommand);
+    for (int i = 1; i < historyLength; i++) {
+      aggregate.applyCommand(DepositAccountCommand.builder()
+        .aggregateId(aggregateId)
+        .data(DepositVO.builder().accountId(aggregateId).amount(Money.of(1)).build())
+        .build());
+      if (i % COMMANDS_PER_SAVE == 0) {
+        repository.save(aggregate);
+      }
+    }
+    repository.save(aggregate);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    eventStore.close();
+    try (var paths = Files.walk(directory)) {
+      paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public AccountAggregate load() {
+    return repository.load(AccountAggregate.class, aggregateId);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SnapshotLoadBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,112 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of point-in-time loads of an {@link AccountAggregate} with a long history, at random past times and
+ * versions, against replaying the history up to the version without snapshots.
+ * <p>
+ * Run through {@link #main(String[])} with the test classpath.
+ *
+ * @author cjrequena
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeTravelBenchmark {
+
+  private static final int SNAPSHOT_INTERVAL = 1000;
+
+  @Param({"100000"})
+  public int historyLength;
+
+  private Path directory;
+  private EventStore eventStore;
+  private AggregateRepository repository;
+  private AggregateRepository repositoryWithoutSnapshots;
+  private UUID aggregateId;
+  private OffsetDateTime[] times;
+
+  @Setup
+  public void setUp() throws IOException {
+    Configurator.setLevel("com.cjrequena.sample", Level.WARN);
+    directory = Files.createTempDirectory("time-travel-benchmark");
+    eventStore = EventStore.open(directory.resolve("events"));
+    final SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("snapshots"), historyLength / SNAPSHOT_INTERVAL + 1);
+    repository = new AggregateRepository(new AggregateFactory(), eventStore, snapshotStore, SnapshotPolicy.everyEvents(SNAPSHOT_INTERVAL));
+    repositoryWithoutSnapshots = new AggregateRepository(new AggregateFactory(), eventStore, new SnapshotStore(directory.resolve("none")), SnapshotPolicy.never());
+
+    final AccountAggregate aggregate = EventStoreTest.newAccountWithDeposits(0);
+    aggregateId = aggregate.getAggregateId();
+    for (int i = 1; i < historyLength; i++) {
+      aggregate.applyCommand(DepositAccountCommand.builder()
+        .aggregateId(aggregateId)
+        .data(DepositVO.builder().accountId(aggregateId).amount(Money.of(1)).build())
+        .build());
+      if (i % 100 == 0) {
+        repository.save(aggregate);
+      }
+    }
+    repository.save(aggregate);
+    final List<Event> events = eventStore.retrieveEvents(aggregateId);
+    times = new OffsetDateTime[1024];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = events.get(ThreadLocalRandom.current().nextInt(events.size())).getTime();
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    eventStore.close();
+    try (var paths = Files.walk(directory)) {
+      paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public AccountAggregate asOfTime() {
+    return repository.loadAsOf(AccountAggregate.class, aggregateId, times[ThreadLocalRandom.current().nextInt(times.length)]);
+  }
+
+  @Benchmark
+  public AccountAggregate asOfVersion() {
+    return repository.loadAsOfVersion(AccountAggregate.class, aggregateId, 1 + ThreadLocalRandom.current().nextInt(historyLength));
+  }
+
+  @Benchmark
+  public AccountAggregate asOfVersionWithoutSnapshots() {
+    return repositoryWithoutSnapshots.loadAsOfVersion(AccountAggregate.class, aggregateId, 1 + ThreadLocalRandom.current().nextInt(historyLength));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TimeTravelBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,104 @@
+package com.cjrequena.sample.pattern.eventsourcing;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.getMoney;
+import static com.cjrequena.sample.pattern.eventsourcing.BinaryDataCodec.getUUID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author cjrequena
+ */
+class UpcasterChainTest {
+
+  // Offset of the schema version in a record, see EventRecordCodec
+  private static final int SCHEMA_VERSION = 83;
+
+  private final AtomicInteger upcasts = new AtomicInteger();
+  private final UpcasterChain upcasterChain = UpcasterChain.of(new Upcaster<>(EventType.ACCOUNT_DEPOSITED_EVENT, (byte) 0, LegacyDeposit.class,
+    new BinaryDataCodec<>() {
+      @Override
+      public void write(LegacyDeposit data, ByteBuffer target) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public LegacyDeposit read(ByteBuffer source) {
+        return new LegacyDeposit(getUUID(source), getMoney(source).toBigDecimal());
+      }
+    },
+    legacy -> {
+      upcasts.incrementAndGet();
+      return new DepositVO(legacy.accountId(), Money.of(legacy.amount()).plus(Money.of(1)));
+    }));
+
+  @Test
+  void pastSchemaVersionsAreUpcastOnRead() {
+    for (DataContentType dataContentType : DataContentType.values()) {
+      final UUID accountId = UUID.randomUUID();
+      final ByteBuffer buffer = record(accountId, dataContentType);
+      buffer.put(SCHEMA_VERSION, (byte) 0);
+
+      final Event event = EventRecordCodec.read(buffer, 0, upcasterChain);
+      assertEquals(new DepositVO(accountId, Money.of(11)), event.getData());
+      assertEquals(accountId, event.getAggregateId());
+      assertThrows(EventStoreException.class, () -> EventRecordCodec.read(buffer, 0, UpcasterChain.NONE));
+    }
+    assertEquals(2, upcasts.get());
+  }
+
+  @Test
+  void currentSchemaVersionPassesThrough() {
+    final UUID accountId = UUID.randomUUID();
+    final Event event = EventRecordCodec.read(record(accountId, DataContentType.BINARY), 0, upcasterChain);
+
+    assertEquals(new DepositVO(accountId, Money.of(10)), event.getData());
+    assertEquals(0, upcasts.get());
+  }
+
+  @Test
+  void chainsMustUpgradePastVersionsOnce() {
+    final Upcaster<DepositVO, DepositVO> current = new Upcaster<>(EventType.ACCOUNT_DEPOSITED_EVENT, EventType.ACCOUNT_DEPOSITED_EVENT.getSchemaVersion(),
+      DepositVO.class, AccountBinaryCodecs.DEPOSIT, deposit -> deposit);
+    final Upcaster<DepositVO, DepositVO> first = new Upcaster<>(EventType.ACCOUNT_DEPOSITED_EVENT, (byte) 0,
+      DepositVO.class, AccountBinaryCodecs.DEPOSIT, deposit -> deposit);
+
+    assertThrows(IllegalArgumentException.class, () -> UpcasterChain.of(current));
+    assertThrows(IllegalArgumentException.class, () -> UpcasterChain.of(first, first));
+  }
+
+  private static ByteBuffer record(UUID accountId, DataContentType dataContentType) {
+    final ByteBuffer buffer = ByteBuffer.allocate(1024);
+    EventRecordCodec.write(AccountDepositedEvent.builder()
+      .eventId(UUID.randomUUID())
+      .offsetId(1)
+      .offsetTxId(1)
+      .aggregateId(accountId)
+      .aggregateVersion(2)
+      .dataContentType(dataContentType.getType())
+      .time(OffsetDateTime.now(ZoneOffset.UTC))
+      .data(new DepositVO(accountId, Money.of(10)))
+      .build(), true, buffer);
+    return buffer;
+  }
+
+  /**
+   * Deposit data of a past schema version.
+   */
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+  record LegacyDeposit(UUID accountId, BigDecimal amount) {
+  }
+}